@@ -8,6 +8,7 @@ plugins {
     kotlin("jvm") version "1.7.0"
     id("ua.eshepelyuk.ManifestClasspath") version "1.0.0"
     id("com.github.johnrengelman.shadow") version "7.1.2"
+    id("me.champeau.jmh") version "0.7.1"
 }
 
 val versionName = "4Beta"
@@ -116,6 +117,28 @@ tasks.test {
     useJUnitPlatform()
 }
 
+// Benchmarks in src/jmh. Allocation rates are reported by the gc profiler. Results are written as json to
+// build/results/jmh/results.json, or to the file given by jmhResults, so runs can be compared between releases.
+// Sample invocation:
+// gradle jmh
+// gradle jmh -PjmhIncludes=NeuronArrayChainBenchmark
+// gradle jmh -PjmhResults=benchmarks-4.0.0.json
+jmh {
+    jvmArgs.set(simbrainJvmArgs)
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    resultsFile.set(
+        if (project.hasProperty("jmhResults")) {
+            layout.projectDirectory.file(project.property("jmhResults") as String)
+        } else {
+            layout.buildDirectory.file("results/jmh/results.json")
+        }
+    )
+    if (project.hasProperty("jmhIncludes")) {
+        includes.add(project.property("jmhIncludes") as String)
+    }
+}
+
 // Sample invocation:
 // gradle runSim -PsimName="Test Sim"
 // gradle runSim -PsimName="Evolve Grazing Cows" -PoptionString="2:20:1000:100:0.5:true"
@@ -133,6 +156,38 @@ tasks.register<JavaExec>("runSim") {
     }
 }
 
+// Headless batch runner. installDist and distZip include a simbrain-batch script next to the Simbrain one.
+// Sample invocation:
+// gradle runBatch -PbatchArgs="--iterations 10000 --producer Neuron_1:Activation sweep1.zip sweep2.zip"
+val batchMainClass = "org.simbrain.workspace.batch.SimbrainBatchKt"
+
+val batchStartScripts = tasks.register<CreateStartScripts>("batchStartScripts") {
+    applicationName = "simbrain-batch"
+    mainClass.set(batchMainClass)
+    defaultJvmOpts = simbrainJvmArgs + "-Djava.awt.headless=true"
+    classpath = files(tasks.jar) + configurations.runtimeClasspath.get()
+    outputDir = file("${buildDir}/batchScripts")
+}
+
+distributions {
+    main {
+        contents {
+            from(batchStartScripts) {
+                into("bin")
+            }
+        }
+    }
+}
+
+tasks.register<JavaExec>("runBatch") {
+    jvmArgs(simbrainJvmArgs + "-Djava.awt.headless=true")
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set(batchMainClass)
+    if (project.hasProperty("batchArgs")) {
+        args((project.property("batchArgs") as String).split(" ").filter { it.isNotBlank() })
+    }
+}
+
 tasks.withType<KotlinCompile>().configureEach {
     kotlinOptions {
         jvmTarget = "17"
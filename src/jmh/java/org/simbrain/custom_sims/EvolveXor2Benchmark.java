@@ -0,0 +1,58 @@
+package org.simbrain.custom_sims;
+
+import kotlinx.coroutines.BuildersKt;
+import kotlinx.coroutines.Dispatchers;
+import org.openjdk.jmh.annotations.*;
+import org.simbrain.custom_sims.simulations.Xor2Sim;
+import org.simbrain.custom_sims.simulations.XorGenotype;
+import org.simbrain.util.geneticalgorithm2.EvaluationPool;
+import org.simbrain.util.geneticalgorithm2.EvoSim;
+import org.simbrain.workspace.Workspace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluating one generation of the xor population of {@code evolveXor2}, either building a new workspace and network
+ * for each sim, or reusing the networks of an {@link EvaluationPool}. The population is copied first, as it is each
+ * generation by {@code evaluator2}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EvolveXor2Benchmark {
+
+    @Param({"true", "false"})
+    boolean reuseContexts;
+
+    private final List<EvoSim> population = new ArrayList<>();
+
+    private EvaluationPool pool;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < 100; i++) {
+            Xor2Sim sim = new Xor2Sim(new XorGenotype(i), Workspace::new);
+            // Vary the topologies, as in a population that has evolved for a while
+            for (int j = 0; j < 20; j++) {
+                sim.mutate();
+            }
+            population.add(sim);
+        }
+        pool = new EvaluationPool(Runtime.getRuntime().availableProcessors(), reuseContexts);
+    }
+
+    @Benchmark
+    public List<Double> evaluateGeneration() throws InterruptedException {
+        List<EvoSim> copies = new ArrayList<>(population.size());
+        for (EvoSim sim : population) {
+            copies.add(sim.copy());
+        }
+        return BuildersKt.runBlocking(Dispatchers.getDefault(), (scope, continuation) ->
+                pool.evaluate(copies, continuation));
+    }
+}
@@ -0,0 +1,68 @@
+package org.simbrain.network;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.Synapse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of model events in a network with no listeners, as when running headless. Run with the gc profiler (the
+ * default for the jmh task): the normalized allocation rate of {@link #createNetwork} is the heap allocated to build
+ * the neurons and synapses and their events, and that of {@link #update} is what firing their events costs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HeadlessEventsBenchmark {
+
+    @Param({"1000"})
+    int numNeurons;
+
+    @Param({"10"})
+    int fanIn;
+
+    private Network network;
+
+    @Setup
+    public void setUp() {
+        network = buildNetwork();
+    }
+
+    private Network buildNetwork() {
+        Network net = new Network();
+        Random random = new Random(1);
+        List<Neuron> neurons = new ArrayList<>(numNeurons);
+        for (int i = 0; i < numNeurons; i++) {
+            neurons.add(new Neuron(net));
+        }
+        net.addNetworkModelsAsync(neurons);
+        List<Synapse> synapses = new ArrayList<>(numNeurons * fanIn);
+        for (Neuron target : neurons) {
+            for (int j = 0; j < fanIn; j++) {
+                synapses.add(new Synapse(neurons.get(random.nextInt(numNeurons)), target, random.nextGaussian()));
+            }
+        }
+        net.addNetworkModelsAsync(synapses);
+        return net;
+    }
+
+    @Benchmark
+    public Network createNetwork() {
+        return buildNetwork();
+    }
+
+    @Benchmark
+    public void update(Blackhole bh) {
+        network.update();
+        bh.consume(network.getTime());
+    }
+}
@@ -0,0 +1,102 @@
+package org.simbrain.network;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.core.SynapseGroup2;
+import org.simbrain.network.groups.NeuronGroup;
+import org.simbrain.network.matrix.NeuronArray;
+import org.simbrain.network.matrix.WeightMatrix;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full {@link Network#update()} of networks of about the same size built from each kind of model: loose neurons and
+ * synapses, two neuron groups joined by a sparse synapse group, and three neuron arrays joined by weight matrices.
+ * Also copying those networks with {@link Network#copy()} and through xml.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NetworkUpdateBenchmark {
+
+    @Param({"neurons", "neuronGroups", "neuronArrays"})
+    String topology;
+
+    @Param({"100", "1000"})
+    int size;
+
+    private Network network;
+
+    @Setup
+    public void setUp() {
+        network = new Network();
+        switch (topology) {
+            case "neurons" -> addNeurons();
+            case "neuronGroups" -> addNeuronGroups();
+            case "neuronArrays" -> addNeuronArrays();
+            default -> throw new IllegalArgumentException("Unknown topology " + topology);
+        }
+    }
+
+    private void addNeurons() {
+        Random random = new Random(1);
+        List<Neuron> neurons = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            neurons.add(new Neuron(network));
+        }
+        network.addNetworkModelsAsync(neurons);
+        List<Synapse> synapses = new ArrayList<>(size * 10);
+        for (Neuron target : neurons) {
+            for (int j = 0; j < 10; j++) {
+                synapses.add(new Synapse(neurons.get(random.nextInt(size)), target, random.nextGaussian()));
+            }
+        }
+        network.addNetworkModelsAsync(synapses);
+    }
+
+    private void addNeuronGroups() {
+        NeuronGroup source = new NeuronGroup(network, size);
+        NeuronGroup target = new NeuronGroup(network, size);
+        network.addNetworkModelsAsync(List.of(source, target));
+        network.addNetworkModelAsync(new SynapseGroup2(source, target));
+        source.randomize();
+    }
+
+    private void addNeuronArrays() {
+        NeuronArray input = new NeuronArray(network, size);
+        NeuronArray hidden = new NeuronArray(network, size);
+        NeuronArray output = new NeuronArray(network, size);
+        network.addNetworkModelsAsync(List.of(input, hidden, output));
+        WeightMatrix inputToHidden = new WeightMatrix(network, input, hidden);
+        WeightMatrix hiddenToOutput = new WeightMatrix(network, hidden, output);
+        inputToHidden.randomize();
+        hiddenToOutput.randomize();
+        network.addNetworkModelsAsync(List.of(inputToHidden, hiddenToOutput));
+        input.randomize();
+    }
+
+    @Benchmark
+    public void update(Blackhole bh) {
+        network.update();
+        bh.consume(network.getTime());
+    }
+
+    @Benchmark
+    public Network copy() {
+        return network.copy();
+    }
+
+    @Benchmark
+    public Network copyThroughXml() {
+        return network.copyThroughXml();
+    }
+}
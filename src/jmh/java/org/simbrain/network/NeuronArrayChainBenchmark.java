@@ -0,0 +1,75 @@
+package org.simbrain.network;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.simbrain.network.core.Connector;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.matrix.NeuronArray;
+import org.simbrain.network.matrix.WeightMatrix;
+import smile.math.matrix.Matrix;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Forward pass through a chain of three neuron arrays joined by weight matrices. Run with the gc profiler (the default
+ * for the jmh task) to compare the allocation rate of the in-place forward pass with the allocating one it replaced.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NeuronArrayChainBenchmark {
+
+    @Param({"100", "1000"})
+    int size;
+
+    private List<NeuronArray> layers;
+
+    @Setup
+    public void setUp() {
+        Network net = new Network();
+        NeuronArray input = new NeuronArray(net, size);
+        NeuronArray hidden = new NeuronArray(net, size);
+        NeuronArray output = new NeuronArray(net, size);
+        net.addNetworkModelsAsync(List.of(input, hidden, output));
+        WeightMatrix inputToHidden = new WeightMatrix(net, input, hidden);
+        WeightMatrix hiddenToOutput = new WeightMatrix(net, hidden, output);
+        inputToHidden.randomize();
+        hiddenToOutput.randomize();
+        net.addNetworkModelsAsync(List.of(inputToHidden, hiddenToOutput));
+        input.setClamped(true);
+        layers = List.of(input, hidden, output);
+    }
+
+    /**
+     * Connectors add their outputs directly to the target input arrays.
+     */
+    @Benchmark
+    public void forwardPass(Blackhole bh) {
+        for (NeuronArray layer : layers) {
+            layer.updateInputs();
+            layer.update();
+        }
+        bh.consume(layers.get(2).getOutputView());
+    }
+
+    /**
+     * Connector outputs are allocated and summed into a new matrix before being added to the inputs, as was done
+     * before inputs were accumulated in place.
+     */
+    @Benchmark
+    public void allocatingForwardPass(Blackhole bh) {
+        for (NeuronArray layer : layers) {
+            Matrix wtdInputs = new Matrix(layer.inputSize(), 1);
+            for (Connector c : layer.getIncomingConnectors()) {
+                wtdInputs.add(c.getOutput());
+            }
+            layer.addInputs(wtdInputs);
+            layer.update();
+        }
+        bh.consume(layers.get(2).getOutputs().toArray());
+    }
+}
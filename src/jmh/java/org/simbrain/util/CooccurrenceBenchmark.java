@@ -0,0 +1,66 @@
+package org.simbrain.util;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.simbrain.util.TextUtilitiesKt.generateCooccurrenceMatrix;
+import static org.simbrain.util.TextUtilitiesKt.generateSparseCooccurrenceMatrix;
+
+/**
+ * {@link TextUtilitiesKt#generateCooccurrenceMatrix} of a document of random ten word sentences drawn from a fixed
+ * vocabulary, so the matrix size is set by the vocabulary and the counting work by the number of sentences. The sparse
+ * benchmarks build the {@link CooccurrenceMatrix} that the text world uses, without converting it to a dense matrix.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CooccurrenceBenchmark {
+
+    @Param({"200", "2000"})
+    int vocabularySize;
+
+    @Param({"100", "10000"})
+    int numSentences;
+
+    private String document;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < numSentences; i++) {
+            for (int j = 0; j < 10; j++) {
+                // Sentences start with a capital, or the sentence splitter treats the document as one sentence
+                builder.append(j == 0 ? "Word" : " word").append(random.nextInt(vocabularySize));
+            }
+            builder.append(". ");
+        }
+        document = builder.toString();
+    }
+
+    @Benchmark
+    public void cooccurrence(Blackhole bh) {
+        bh.consume(generateCooccurrenceMatrix(document, 2, false, false));
+    }
+
+    @Benchmark
+    public void cooccurrencePPMI(Blackhole bh) {
+        bh.consume(generateCooccurrenceMatrix(document, 2, false, true));
+    }
+
+    @Benchmark
+    public void sparseCooccurrence(Blackhole bh) {
+        bh.consume(generateSparseCooccurrenceMatrix(document, 2, false, false, 0));
+    }
+
+    @Benchmark
+    public void sparseCooccurrencePPMI(Blackhole bh) {
+        bh.consume(generateSparseCooccurrenceMatrix(document, 2, false, true, 0));
+    }
+}
@@ -0,0 +1,45 @@
+package org.simbrain.util.projection;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One iteration of {@link TSNEProjection} with the Barnes-Hut approximation, at a size the exact algorithm of
+ * {@link TSNEBenchmark} can't run in a normal heap.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BarnesHutTSNEBenchmark {
+
+    @Param({"50000"})
+    int numPoints;
+
+    @Param({"25"})
+    int dimension;
+
+    @Param({"0.5"})
+    double theta;
+
+    private Projector2 projector;
+
+    private TSNEProjection tsne;
+
+    @Setup
+    public void setUp() {
+        projector = TSNEBenchmark.clusters(numPoints, dimension);
+        tsne = new TSNEProjection();
+        tsne.setTheta(theta);
+        tsne.setIterationsPerUpdate(1);
+        tsne.init(projector.getDataset());
+    }
+
+    @Benchmark
+    public void iterate() {
+        tsne.iterate(projector.getDataset());
+    }
+}
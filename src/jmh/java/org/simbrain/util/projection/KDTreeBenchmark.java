@@ -0,0 +1,97 @@
+package org.simbrain.util.projection;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link KDTree#findClosestNPoints} of random targets in a tree of points inserted one at a time as the projection plot
+ * does, inserting the points, and iterating over them. Points are uniformly random, or correlated: near a line and
+ * inserted in order along it, like the activations of a slowly changing network.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KDTreeBenchmark {
+
+    @Param({"10000"})
+    int numPoints;
+
+    @Param({"5", "25"})
+    int dimension;
+
+    @Param({"10"})
+    int n;
+
+    @Param({"random", "correlated"})
+    String distribution;
+
+    private DataPoint2[] points;
+
+    private KDTree tree;
+
+    private DataPoint2[] targets;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        points = new DataPoint2[numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            points[i] = distribution.equals("random") ? randomPoint(random) : correlatedPoint(random, i);
+        }
+        tree = insertAll();
+        targets = new DataPoint2[1024];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = distribution.equals("random") ? randomPoint(random) : correlatedPoint(random, random.nextInt(numPoints));
+        }
+    }
+
+    private DataPoint2 randomPoint(Random random) {
+        double[] point = new double[dimension];
+        for (int i = 0; i < dimension; i++) {
+            point[i] = random.nextDouble();
+        }
+        return new DataPoint2(point, 2, null);
+    }
+
+    private DataPoint2 correlatedPoint(Random random, int i) {
+        double[] point = new double[dimension];
+        for (int d = 0; d < dimension; d++) {
+            point[d] = (double) i / numPoints + random.nextDouble() * 0.01;
+        }
+        return new DataPoint2(point, 2, null);
+    }
+
+    private KDTree insertAll() {
+        KDTree tree = new KDTree(dimension);
+        for (DataPoint2 point : points) {
+            tree.insert(point);
+        }
+        return tree;
+    }
+
+    @Benchmark
+    public void findClosestNPoints(Blackhole bh) {
+        next = (next + 1) % targets.length;
+        bh.consume(tree.findClosestNPoints(targets[next], n));
+    }
+
+    @Benchmark
+    public KDTree insert() {
+        return insertAll();
+    }
+
+    @Benchmark
+    public void iterate(Blackhole bh) {
+        for (DataPoint2 point : tree) {
+            bh.consume(point);
+        }
+    }
+}
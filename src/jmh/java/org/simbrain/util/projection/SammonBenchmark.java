@@ -0,0 +1,72 @@
+package org.simbrain.util.projection;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SammonProjection2} of uniformly random points: adding points one at a time as the projection plot does, and
+ * iterating once all the points are added.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SammonBenchmark {
+
+    @Param({"1000"})
+    int numPoints;
+
+    @Param({"25"})
+    int dimension;
+
+    @Param({"false", "true"})
+    boolean parallelUpdate;
+
+    @Param({"0", "50"})
+    int sampleSize;
+
+    private Projector2 projector;
+
+    private SammonProjection2 sammon;
+
+    private double[][] points;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        points = new double[numPoints][dimension];
+        for (double[] point : points) {
+            for (int i = 0; i < dimension; i++) {
+                point[i] = random.nextDouble();
+            }
+        }
+        sammon = new SammonProjection2();
+        sammon.setEpsilon(1.0);
+        sammon.setParallelUpdate(parallelUpdate);
+        sammon.setSampleSize(sampleSize);
+        projector = project();
+    }
+
+    private Projector2 project() {
+        Projector2 projector = new Projector2(dimension);
+        projector.setProjectionMethod(sammon);
+        for (double[] point : points) {
+            projector.addDataPoint(point);
+        }
+        return projector;
+    }
+
+    @Benchmark
+    public Projector2 addPoints() {
+        return project();
+    }
+
+    @Benchmark
+    public void iterate() {
+        sammon.iterate(projector.getDataset());
+    }
+}
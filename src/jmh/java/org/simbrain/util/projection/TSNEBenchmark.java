@@ -0,0 +1,71 @@
+package org.simbrain.util.projection;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One iteration of {@link TSNEProjection} on points in four gaussian clusters, with the exact algorithm (theta 0) and
+ * the Barnes-Hut approximation. The exact algorithm keeps several N x N matrices, about 2.4 GB at 10000 points, and its
+ * setup runs 1000 iterations, which takes about 20 minutes at 10000 points. Larger sizes are only run with Barnes-Hut,
+ * in {@link BarnesHutTSNEBenchmark}. To compare them at 50000 points anyway, which takes tens of gigabytes of heap, run
+ * the jar built by {@code gradle jmhJar} with {@code -p numPoints=50000 -jvmArgsAppend -Xmx64g}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TSNEBenchmark {
+
+    @Param({"1000", "10000"})
+    int numPoints;
+
+    @Param({"25"})
+    int dimension;
+
+    @Param({"0", "0.5"})
+    double theta;
+
+    private Projector2 projector;
+
+    private TSNEProjection tsne;
+
+    @Setup
+    public void setUp() {
+        projector = clusters(numPoints, dimension);
+        tsne = new TSNEProjection();
+        tsne.setTheta(theta);
+        tsne.setIterationsPerUpdate(1);
+        tsne.init(projector.getDataset());
+    }
+
+    /**
+     * A projector with points in four gaussian clusters.
+     */
+    static Projector2 clusters(int numPoints, int dimension) {
+        Random random = new Random(1);
+        double[][] centers = new double[4][dimension];
+        for (double[] center : centers) {
+            for (int i = 0; i < dimension; i++) {
+                center[i] = random.nextDouble() * 20;
+            }
+        }
+        Projector2 projector = new Projector2(dimension);
+        for (int k = 0; k < numPoints; k++) {
+            double[] point = new double[dimension];
+            for (int i = 0; i < dimension; i++) {
+                point[i] = centers[k % 4][i] + random.nextGaussian();
+            }
+            projector.addDataPoint(point);
+        }
+        return projector;
+    }
+
+    @Benchmark
+    public void iterate() {
+        tsne.iterate(projector.getDataset());
+    }
+}
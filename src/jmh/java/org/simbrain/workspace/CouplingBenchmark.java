@@ -0,0 +1,62 @@
+package org.simbrain.workspace;
+
+import org.openjdk.jmh.annotations.*;
+import org.simbrain.network.NetworkComponent;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.workspace.couplings.Coupling;
+import org.simbrain.workspace.couplings.CouplingManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Coupling#update()} of one-to-one couplings from the activations of the neurons of one network to the inputs
+ * of the neurons of another.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CouplingBenchmark {
+
+    @Param({"10", "1000"})
+    int numCouplings;
+
+    private List<Coupling> couplings;
+
+    @Setup
+    public void setUp() {
+        Workspace workspace = new Workspace();
+        List<Neuron> sources = addNeurons(workspace, "source");
+        List<Neuron> targets = addNeurons(workspace, "target");
+        CouplingManager couplingManager = workspace.getCouplingManager();
+        couplings = new ArrayList<>(numCouplings);
+        for (int i = 0; i < numCouplings; i++) {
+            couplings.add(couplingManager.createCoupling(
+                    couplingManager.getProducer(sources.get(i), "getActivation"),
+                    couplingManager.getConsumer(targets.get(i), "addInputValue")));
+        }
+    }
+
+    private List<Neuron> addNeurons(Workspace workspace, String name) {
+        Network network = new Network();
+        workspace.addWorkspaceComponent(new NetworkComponent(name, network));
+        List<Neuron> neurons = new ArrayList<>(numCouplings);
+        for (int i = 0; i < numCouplings; i++) {
+            neurons.add(new Neuron(network));
+        }
+        network.addNetworkModelsAsync(neurons);
+        return neurons;
+    }
+
+    @Benchmark
+    public void update() {
+        for (Coupling coupling : couplings) {
+            coupling.update();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.simbrain.workspace;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.simbrain.network.NetworkComponent;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.matrix.NeuronArray;
+import org.simbrain.network.matrix.WeightMatrix;
+import org.simbrain.workspace.serialization.WorkspaceSerializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving and opening a workspace zip with one network of two neuron arrays joined by a weight matrix, so the time is
+ * mostly that of writing and reading the weights. {@link #saveWorkspace} is the snapshot taken between updates by
+ * {@link Workspace#saveInBackground}, i.e. the time the simulation waits, and {@link #saveToFile} the whole save. Run
+ * with the gc profiler (the default for the jmh task): the normalized allocation rate is the memory each needs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorkspaceSerializationBenchmark {
+
+    @Param({"100", "1000"})
+    int size;
+
+    private Workspace workspace;
+
+    private Network network;
+
+    private File file;
+
+    private byte[] zip;
+
+    @Setup
+    public void setUp() throws IOException {
+        workspace = new Workspace();
+        network = new Network();
+        workspace.addWorkspaceComponent(new NetworkComponent("network", network));
+        NeuronArray source = new NeuronArray(network, size);
+        NeuronArray target = new NeuronArray(network, size);
+        network.addNetworkModelsAsync(List.of(source, target));
+        WeightMatrix weightMatrix = new WeightMatrix(network, source, target);
+        weightMatrix.randomize();
+        network.addNetworkModelAsync(weightMatrix);
+        zip = save();
+        file = File.createTempFile("workspace", ".zip");
+        file.deleteOnExit();
+    }
+
+    private byte[] save() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new WorkspaceSerializer(workspace).serialize(output, true);
+        return output.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] saveWorkspace() throws IOException {
+        return save();
+    }
+
+    @Benchmark
+    public void saveToFile() {
+        workspace.save(file, true);
+    }
+
+    @Benchmark
+    public void openWorkspace(Blackhole bh) throws IOException {
+        Workspace opened = new Workspace();
+        new WorkspaceSerializer(opened).deserialize(new ByteArrayInputStream(zip), true);
+        bh.consume(opened);
+    }
+
+    @Benchmark
+    public Network copyNetwork() {
+        return network.copy();
+    }
+}
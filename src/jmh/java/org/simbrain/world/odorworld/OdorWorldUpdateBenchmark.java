@@ -0,0 +1,57 @@
+package org.simbrain.world.odorworld;
+
+import org.openjdk.jmh.annotations.*;
+import org.simbrain.world.odorworld.entities.EntityType;
+import org.simbrain.world.odorworld.entities.OdorWorldEntity;
+import org.simbrain.world.odorworld.sensors.ObjectSensor;
+import org.simbrain.world.odorworld.sensors.SmellSensor;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link OdorWorld#update()} of a world of agents that move around, each with smell and object sensors, with the
+ * sensors of all agents updated one agent at a time or in parallel.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OdorWorldUpdateBenchmark {
+
+    @Param({"500", "2000"})
+    int numEntities;
+
+    @Param({"false", "true"})
+    boolean parallelSensorUpdate;
+
+    private OdorWorld world;
+
+    @Setup
+    public void setUp() {
+        world = new OdorWorld();
+        world.getTileMap().updateMapSize(64, 64);
+        world.setParallelSensorUpdate(parallelSensorUpdate);
+        Random random = new Random(1);
+        for (int i = 0; i < numEntities; i++) {
+            OdorWorldEntity entity = world.addEntity(
+                    random.nextDouble() * world.getWidth(),
+                    random.nextDouble() * world.getHeight(),
+                    EntityType.MOUSE);
+            entity.addSensor(new SmellSensor("Left", 45, 10));
+            entity.addSensor(new SmellSensor("Right", -45, 10));
+            entity.addSensor(new ObjectSensor(EntityType.MOUSE));
+            entity.setHeading(random.nextDouble() * 360);
+            entity.setSpeed(2);
+            entity.setDtheta(random.nextDouble() - 0.5);
+        }
+    }
+
+    @Benchmark
+    public OdorWorld update() {
+        world.update();
+        return world;
+    }
+}
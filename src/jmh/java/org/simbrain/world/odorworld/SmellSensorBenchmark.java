@@ -0,0 +1,68 @@
+package org.simbrain.world.odorworld;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.simbrain.world.odorworld.entities.EntityType;
+import org.simbrain.world.odorworld.entities.OdorWorldEntity;
+import org.simbrain.world.odorworld.sensors.SmellSensor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SmellSensor#update} of every entity of a world of entities scattered at random, each with one smell sensor
+ * and a smell source. Each update only considers the entities within the radius of the linear decay functions of the
+ * smell sources, found in the entity grid of the world, so the time per update grows with the number of entities
+ * times their density.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SmellSensorBenchmark {
+
+    @Param({"100", "1000"})
+    int numEntities;
+
+    /**
+     * Width and height of the world in 32 pixel tiles. 14 is the size of a new world.
+     */
+    @Param({"14", "64"})
+    int worldTiles;
+
+    private List<OdorWorldEntity> entities;
+
+    private List<SmellSensor> sensors;
+
+    @Setup
+    public void setUp() {
+        OdorWorld world = new OdorWorld();
+        world.getTileMap().updateMapSize(worldTiles, worldTiles);
+        Random random = new Random(1);
+        entities = new ArrayList<>(numEntities);
+        sensors = new ArrayList<>(numEntities);
+        for (int i = 0; i < numEntities; i++) {
+            OdorWorldEntity entity = world.addEntity(
+                    random.nextDouble() * world.getWidth(),
+                    random.nextDouble() * world.getHeight(),
+                    EntityType.MOUSE);
+            SmellSensor sensor = new SmellSensor("Smell", 0, 10);
+            entity.addSensor(sensor);
+            entities.add(entity);
+            sensors.add(sensor);
+        }
+    }
+
+    @Benchmark
+    public void update(Blackhole bh) {
+        for (int i = 0; i < numEntities; i++) {
+            SmellSensor sensor = sensors.get(i);
+            sensor.update(entities.get(i));
+            bh.consume(sensor.getSmellVector());
+        }
+    }
+}
@@ -53,6 +53,19 @@ public abstract class Connector extends NetworkModel implements EditableObject,
      */
     public abstract Matrix getOutput();
 
+    /**
+     * Add the output of this connector to an array of target inputs. Subclasses should override this to write into
+     * the array directly rather than allocating an output matrix.
+     *
+     * @param inputs target input array, with one entry per row of the output
+     */
+    public void addOutputTo(double[] inputs) {
+        Matrix output = getOutput();
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] += output.get(i, 0);
+        }
+    }
+
     protected void initEvents() {
 
         // When the parents of the matrix are deleted, delete the matrix
@@ -124,6 +137,12 @@ public abstract class Connector extends NetworkModel implements EditableObject,
                 return "Dense matrix";
             }
         },
+        SPARSE {
+            @Override
+            public String toString() {
+                return "Sparse matrix";
+            }
+        },
         ZOE {
             @Override
             public String toString() {
@@ -26,6 +26,9 @@ import org.simbrain.network.groups.SynapseGroup;
 import org.simbrain.network.matrix.NeuronArray;
 import org.simbrain.network.matrix.WeightMatrix;
 import org.simbrain.network.update_actions.BufferedUpdate;
+import org.simbrain.network.update_actions.CompiledBufferedUpdate;
+import org.simbrain.network.update_actions.EventDrivenUpdate;
+import org.simbrain.network.update_actions.PartitionedBufferedUpdate;
 import org.simbrain.network.update_actions.PriorityUpdate;
 import org.simbrain.network.update_actions.UpdateNetworkModel;
 import org.simbrain.workspace.updater.UpdateAction;
@@ -100,6 +103,9 @@ public class NetworkUpdateManager {
 
         // By default these actions are always available
         availableActionList.add(new BufferedUpdate(network));
+        availableActionList.add(new CompiledBufferedUpdate(network));
+        availableActionList.add(new PartitionedBufferedUpdate(network));
+        availableActionList.add(new EventDrivenUpdate(network));
         availableActionList.add(new PriorityUpdate(network));
 
         // TODO: If added, these should be removed when any corresponding object is removed
@@ -155,6 +161,9 @@ public class NetworkUpdateManager {
      */
     public void removeAction(UpdateAction action) {
         actionList.remove(action);
+        if (action instanceof EventDrivenUpdate) {
+            network.syncEventDrivenModels();
+        }
         network.getEvents().getUpdateActionsChanged().fireAndForget();
     }
 
@@ -163,6 +172,7 @@ public class NetworkUpdateManager {
      */
     public void clear() {
         actionList.clear();
+        network.syncEventDrivenModels();
         network.getEvents().getUpdateActionsChanged().fireAndForget();
     }
 
@@ -242,12 +242,43 @@ public class Neuron extends LocatableModel implements EditableObject, AttributeC
         setLabel(n.getLabel());
     }
 
+    /**
+     * Copy constructor used when copying a whole network. The rule and data holder are copied by the caller, so that
+     * neurons which share them in the original network share their copies. Unlike {@link #Neuron(Network, Neuron)},
+     * all state is copied, including inputs and spikes, and no events are fired.
+     *
+     * @param parent     the network the copy belongs to
+     * @param n          the neuron to copy
+     * @param updateRule copy of the update rule of n
+     * @param dataHolder copy of the data holder of n
+     */
+    Neuron(final Network parent, final Neuron n, final NeuronUpdateRule<?, ?> updateRule,
+           final ScalarDataHolder dataHolder) {
+        this.parent = parent;
+        this.updateRule = updateRule;
+        this.dataHolder = dataHolder;
+        activation = n.activation;
+        increment = n.increment;
+        spike = n.spike;
+        inputValue = n.inputValue;
+        x = n.x;
+        y = n.y;
+        z = n.z;
+        clamped = n.clamped;
+        polarity = n.polarity;
+        lastActivation = n.lastActivation;
+        updatePriority = n.updatePriority;
+        auxValue = n.auxValue;
+        setLabel(n.getLabel());
+    }
+
     public ScalarDataHolder getDataHolder() {
         return dataHolder;
     }
 
     public void setDataHolder(ScalarDataHolder dataHolder) {
         this.dataHolder = dataHolder;
+        invalidateUpdatePlans();
     }
 
     /**
@@ -306,6 +337,7 @@ public class Neuron extends LocatableModel implements EditableObject, AttributeC
         NeuronUpdateRule oldRule = this.updateRule;
         this.updateRule = updateRule;
         dataHolder = updateRule.createScalarData();
+        invalidateUpdatePlans();
 
         if (getNetwork() != null) {
             getNetwork().updateTimeType();
@@ -319,6 +351,7 @@ public class Neuron extends LocatableModel implements EditableObject, AttributeC
     public void changeUpdateRule(final NeuronUpdateRule<?,?> updateRule, final ScalarDataHolder data) {
         this.updateRule = updateRule;
         this.dataHolder = data;
+        invalidateUpdatePlans();
     }
 
     public void clip() {
@@ -379,8 +412,15 @@ public class Neuron extends LocatableModel implements EditableObject, AttributeC
         events.getActivationChanged().fireAndForget(lastActivation, act);
     }
 
+    /**
+     * Returns the activation, first writing back any activations computed by
+     * {@link org.simbrain.network.update_actions.CompiledBufferedUpdate} that are still pending.
+     */
     @Producible()
     public double getActivation() {
+        if (parent != null) {
+            parent.syncCompiledModels();
+        }
         return activation;
     }
 
@@ -692,6 +732,24 @@ public class Neuron extends LocatableModel implements EditableObject, AttributeC
         inputValue = 0.0;
     }
 
+    /**
+     * Let the parent network know that this neuron may need to be compiled or scheduled differently.
+     * See {@link CompiledNetworkModels} and {@link PartitionedNetworkModels}.
+     */
+    private void invalidateUpdatePlans() {
+        if (parent != null) {
+            parent.invalidateUpdatePlans();
+        }
+    }
+
+    /**
+     * Editing a neuron can change its update rule in place, for example by turning on noise.
+     */
+    @Override
+    public void onCommit() {
+        invalidateUpdatePlans();
+    }
+
     @Override
     public void increment() {
         updateRule.contextualIncrement(this);
@@ -747,6 +805,7 @@ public class Neuron extends LocatableModel implements EditableObject, AttributeC
      */
     public void setClamped(final boolean clamped) {
         this.clamped = clamped;
+        invalidateUpdatePlans();
         getEvents().getClampChanged().fireAndForget();
     }
 
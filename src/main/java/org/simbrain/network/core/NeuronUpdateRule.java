@@ -19,11 +19,18 @@
 package org.simbrain.network.core;
 
 import org.simbrain.network.core.Network.TimeType;
+import org.simbrain.network.neuron_update_rules.IACRule;
+import org.simbrain.network.neuron_update_rules.KuramotoRule;
+import org.simbrain.network.neuron_update_rules.PointNeuronRule;
+import org.simbrain.network.neuron_update_rules.TimedAccumulatorRule;
 import org.simbrain.network.neuron_update_rules.UpdateRuleEnum;
+import org.simbrain.network.neuron_update_rules.activity_generators.RandomNeuronRule;
+import org.simbrain.network.neuron_update_rules.activity_generators.StochasticRule;
 import org.simbrain.network.updaterules.AdExIFRule;
 import org.simbrain.network.updaterules.IntegrateAndFireRule;
 import org.simbrain.network.updaterules.IzhikevichRule;
 import org.simbrain.network.updaterules.interfaces.BoundedUpdateRule;
+import org.simbrain.network.updaterules.interfaces.NoisyUpdateRule;
 import org.simbrain.network.util.EmptyMatrixData;
 import org.simbrain.network.util.EmptyScalarData;
 import org.simbrain.network.util.MatrixDataHolder;
@@ -90,6 +97,24 @@ public abstract class NeuronUpdateRule<DS extends ScalarDataHolder, DM extends M
     private static final HashSet<Class> usesCustomZeroPoint =
             new HashSet<>(Arrays.asList(IntegrateAndFireRule.class, AdExIFRule.class, IzhikevichRule.class));
 
+    /**
+     * Rules in this list read the activations of the source neurons of their fan-in when they are applied, and so
+     * depend on the order in which neurons are updated.
+     * <p>
+     * Add an update type to this list if its apply method reads other neurons' activations.
+     */
+    private static final HashSet<Class> readsFanInActivations =
+            new HashSet<>(Arrays.asList(IACRule.class, KuramotoRule.class, PointNeuronRule.class));
+
+    /**
+     * Rules in this list draw random numbers every time they are applied, whether or not noise is added, and so
+     * produce different results when neurons are updated in a different order.
+     * <p>
+     * Add an update type to this list if its apply method samples a random generator unconditionally.
+     */
+    private static final HashSet<Class> drawsRandomNumbers =
+            new HashSet<>(Arrays.asList(RandomNeuronRule.class, StochasticRule.class, TimedAccumulatorRule.class));
+
     /**
      * Defines the update rule as it applies to scalar data.
      *
@@ -267,4 +292,20 @@ public abstract class NeuronUpdateRule<DS extends ScalarDataHolder, DM extends M
         return usesCustomZeroPoint.contains(rule.getClass());
     }
 
+    /**
+     * Checks if the provided rule reads the activations of other neurons when it is applied.
+     */
+    public static boolean readsFanInActivations(NeuronUpdateRule rule) {
+        return readsFanInActivations.contains(rule.getClass());
+    }
+
+    /**
+     * Checks if the provided rule draws random numbers when it is applied, either because it is a random rule or
+     * because it adds noise.
+     */
+    public static boolean isStochastic(NeuronUpdateRule rule) {
+        return drawsRandomNumbers.contains(rule.getClass())
+                || (rule instanceof NoisyUpdateRule && ((NoisyUpdateRule) rule).getAddNoise());
+    }
+
 }
\ No newline at end of file
@@ -335,6 +335,41 @@ public class Synapse extends NetworkModel implements EditableObject, AttributeCo
         isTemplate = s.isTemplate;
     }
 
+    /**
+     * Copy constructor used when copying a whole network. The spike responder is copied by the caller, so that
+     * synapses which share it in the original network share its copy. Unlike
+     * {@link #Synapse(Network, Neuron, Neuron, Synapse)}, all state is copied, including post synaptic responses, rule
+     * data and delays, and no events are fired.
+     *
+     * @param newParent      the network the copy belongs to
+     * @param source         copy of the source neuron of s
+     * @param target         copy of the target neuron of s
+     * @param s              the synapse to copy
+     * @param spikeResponder copy of the spike responder of s
+     */
+    Synapse(Network newParent, Neuron source, Neuron target, Synapse s, SpikeResponder spikeResponder) {
+        parentNetwork = newParent;
+        learningRule = s.learningRule.deepCopy();
+        dataHolder = s.dataHolder.copy();
+        this.spikeResponder = spikeResponder;
+        spikeResponderData = s.spikeResponderData.copy();
+        strength = s.strength;
+        psr = s.psr;
+        increment = s.increment;
+        upperBound = s.upperBound;
+        lowerBound = s.lowerBound;
+        enabled = s.enabled;
+        frozen = s.frozen;
+        isVisible = s.isVisible;
+        delay = s.delay;
+        delayManager = s.delayManager == null ? null : s.delayManager.clone();
+        dlyPtr = s.dlyPtr;
+        dlyVal = s.dlyVal;
+        isTemplate = s.isTemplate;
+        setLabel(s.getLabel());
+        setSourceAndTarget(source, target);
+    }
+
     /**
      * Makes a deep copy of a template synapse (one with no source or target).
      *
@@ -461,6 +496,9 @@ public class Synapse extends NetworkModel implements EditableObject, AttributeCo
 
     public void forceSetStrength(final double wt) {
         strength = wt;
+        if (parentNetwork != null) {
+            parentNetwork.synapseStrengthChanged(this);
+        }
         events.getStrengthUpdated().fireAndForget();
     }
 
@@ -585,6 +623,9 @@ public class Synapse extends NetworkModel implements EditableObject, AttributeCo
         if (strength < lowerBound) {
             strength = lowerBound;
         }
+        if (parentNetwork != null) {
+            parentNetwork.synapseStrengthChanged(this);
+        }
     }
 
     /**
@@ -610,9 +651,14 @@ public class Synapse extends NetworkModel implements EditableObject, AttributeCo
         return spikeResponder;
     }
 
+    public ScalarDataHolder getSpikeResponderData() {
+        return spikeResponderData;
+    }
+
     public void setSpikeResponder(final SpikeResponder sr) {
         this.spikeResponder = sr;
         spikeResponderData = sr.createResponderData();
+        invalidateUpdatePlans();
     }
 
     /**
@@ -625,6 +671,7 @@ public class Synapse extends NetworkModel implements EditableObject, AttributeCo
             return;
         }
         delay = dly;
+        invalidateUpdatePlans();
 
         if (delay <= 0) {
             delayManager = null;
@@ -695,6 +742,7 @@ public class Synapse extends NetworkModel implements EditableObject, AttributeCo
      */
     public void setEnabled(final boolean enabled) {
         this.enabled = enabled;
+        invalidateUpdatePlans();
     }
 
     /**
@@ -727,13 +775,15 @@ public class Synapse extends NetworkModel implements EditableObject, AttributeCo
     }
 
     /**
-     * Change this synapse's learning rule.
+     * Change this synapse's learning rule. The synapse gets its own copy of the rule, and new data for it.
      *
      * @param newLearningRule the learningRule to set
      */
     public void setLearningRule(SynapseUpdateRule newLearningRule) {
         SynapseUpdateRule oldRule = learningRule;
         this.learningRule = newLearningRule.deepCopy();
+        dataHolder = learningRule.createScalarData();
+        invalidateUpdatePlans();
         // TODO: Needed for calls to SynapseGroup.postOpenInit, which calls
         // SynapseGroup.setAndComformToTemplate. Template synapses don't seem to have
         // change support initialized.
@@ -828,6 +878,7 @@ public class Synapse extends NetworkModel implements EditableObject, AttributeCo
      */
     public void setFrozen(boolean frozen) {
         this.frozen = frozen;
+        invalidateUpdatePlans();
         // Trying to fire an event from here causes problems relating to
         // template synapses
         if (getNetwork() != null && !isTemplate) {
@@ -835,6 +886,24 @@ public class Synapse extends NetworkModel implements EditableObject, AttributeCo
         }
     }
 
+    /**
+     * Let the parent network know that this synapse may need to be compiled or scheduled differently.
+     * See {@link CompiledNetworkModels} and {@link PartitionedNetworkModels}.
+     */
+    private void invalidateUpdatePlans() {
+        if (parentNetwork != null) {
+            parentNetwork.invalidateUpdatePlans();
+        }
+    }
+
+    /**
+     * Editing a synapse can change its learning rule or spike responder in place.
+     */
+    @Override
+    public void onCommit() {
+        invalidateUpdatePlans();
+    }
+
     public double getPsr() {
         return psr;
     }
@@ -28,6 +28,7 @@ import org.simbrain.util.Utils;
 import org.simbrain.util.propertyeditor.CopyableObject;
 
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 
 /**
@@ -53,6 +54,12 @@ public abstract class SynapseUpdateRule<DS extends ScalarDataHolder, DM extends
         return RULE_LIST;
     }
 
+    /**
+     * Rules in this list draw random numbers when they are applied, and so produce different results when synapses
+     * are updated in a different order.
+     */
+    private static final HashSet<Class> drawsRandomNumbers = new HashSet<>(Arrays.asList(LogSTDPRule.class));
+
     /**
      * The maximum number of digits to display in the tool tip.
      */
@@ -136,6 +143,13 @@ public abstract class SynapseUpdateRule<DS extends ScalarDataHolder, DM extends
         return "(" + synapse.getId() + ") Strength: " + Utils.round(synapse.getStrength(), MAX_DIGITS);
     }
 
+    /**
+     * Checks if the provided rule draws random numbers when it is applied.
+     */
+    public static boolean isStochastic(SynapseUpdateRule rule) {
+        return drawsRandomNumbers.contains(rule.getClass());
+    }
+
     @Override
     public SynapseUpdateRule copy() {
         return deepCopy();
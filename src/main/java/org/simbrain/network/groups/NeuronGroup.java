@@ -139,6 +139,33 @@ public class NeuronGroup extends AbstractNeuronCollection {
         this.setLayout(toCopy.getLayout());
     }
 
+    /**
+     * Copy constructor used when copying a whole network. The neurons, prototype rule and data holder are copied by
+     * the caller, so that neurons which share the rule and data of the group in the original network share their
+     * copies.
+     *
+     * @param net           the network the copy belongs to
+     * @param toCopy        the neuron group to copy
+     * @param neurons       copies of the neurons of toCopy, in the same order
+     * @param prototypeRule copy of the prototype rule of toCopy
+     * @param dataHolder    copy of the data holder of toCopy
+     */
+    public NeuronGroup(final Network net, final NeuronGroup toCopy, final List<Neuron> neurons,
+                       final NeuronUpdateRule prototypeRule, final ScalarDataHolder dataHolder) {
+        this(net);
+        neurons.forEach(this::addNeuron);
+        this.prototypeRule = prototypeRule;
+        this.dataHolder = dataHolder;
+        inputManager.setInputSpikes(toCopy.inputManager.isInputSpikes());
+        if (toCopy.inputManager.getData() != null) {
+            inputManager.setData(Stream.of(toCopy.inputManager.getData()).map(double[]::clone).toArray(double[][]::new));
+        }
+        layout = toCopy.layout.copy();
+        gridThreshold = toCopy.gridThreshold;
+        betweenNeuronInterval = toCopy.betweenNeuronInterval;
+        setLabel(toCopy.getLabel());
+    }
+
     /**
      * Returns a deep copy of the neuron group with a new network parent
      *
@@ -198,6 +225,14 @@ public class NeuronGroup extends AbstractNeuronCollection {
         setNeuronType(rule);
     }
 
+    public NeuronUpdateRule getPrototypeRule() {
+        return prototypeRule;
+    }
+
+    public ScalarDataHolder getDataHolder() {
+        return dataHolder;
+    }
+
     @Override
     public void clear() {
         super.clear();
@@ -21,6 +21,7 @@ package org.simbrain.network.gui.dialogs.group;
 import org.simbrain.network.core.Connector;
 import org.simbrain.network.core.Layer;
 import org.simbrain.network.gui.NetworkPanel;
+import org.simbrain.network.matrix.SparseWeightMatrix;
 import org.simbrain.network.matrix.WeightMatrix;
 import org.simbrain.network.matrix.ZoeConnector;
 import org.simbrain.util.StandardDialog;
@@ -91,6 +92,8 @@ public final class ConnectorDialog extends StandardDialog {
             for (Layer target: targets) {
                 if (widget == Connector.ConnectorEnum.DENSE) {
                     net.addNetworkModelAsync(new WeightMatrix(net, source, target));
+                } else if (widget == Connector.ConnectorEnum.SPARSE) {
+                    net.addNetworkModelAsync(new SparseWeightMatrix(net, source, target));
                 } else if (widget == Connector.ConnectorEnum.ZOE) {
                     net.addNetworkModelAsync(new ZoeConnector(net, source, target));
                 }
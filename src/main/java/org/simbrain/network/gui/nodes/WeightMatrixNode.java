@@ -10,6 +10,7 @@ import org.simbrain.network.gui.WeightMatrixArrow;
 import org.simbrain.network.gui.actions.edit.CopyAction;
 import org.simbrain.network.gui.actions.edit.CutAction;
 import org.simbrain.network.gui.actions.edit.PasteAction;
+import org.simbrain.network.matrix.SparseWeightMatrix;
 import org.simbrain.network.matrix.WeightMatrix;
 import org.simbrain.network.matrix.ZoeConnector;
 import org.simbrain.util.ImageKt;
@@ -99,27 +100,34 @@ public class WeightMatrixNode extends ScreenElement implements PropertyChangeLis
      * Render the weight matrix to the {@link #imageBox}.
      */
     private void renderMatrixToImage() {
+        imageBox.setImage(weightMatrix.isEnableRendering() ? createMatrixImage(weightMatrix) : null);
+    }
 
-        BufferedImage img = null;
-
-        if (weightMatrix.isEnableRendering()) {
-
-            if (weightMatrix instanceof ZoeConnector) {
-                // TODO: Temp representation. If there is enough divergence can break into separate classes and update
-                //  NetworkPanel.kt accordingly
-                double[] tempArray = new double[100];
-                Arrays.fill(tempArray, .1);
-                img = ImageKt.toSimbrainColorImage(tempArray, 10, 10);
-            } else {
-                double[] pixelArray = ((WeightMatrix)weightMatrix).getWeights();
-                img = ImageKt.toSimbrainColorImage(pixelArray, ((WeightMatrix)weightMatrix).getWeightMatrix().ncol(),
-                        ((WeightMatrix)weightMatrix).getWeightMatrix().nrow());
-
-            }
-
+    /**
+     * Returns an image of the strengths of a connector, with a pixel per entry, or null if the connector type can't
+     * be rendered. Unconnected entries of a sparse matrix are shown as 0.
+     */
+    public static BufferedImage createMatrixImage(Connector connector) {
+        if (connector instanceof ZoeConnector) {
+            // TODO: Temp representation. If there is enough divergence can break into separate classes and update
+            //  NetworkPanel.kt accordingly
+            double[] tempArray = new double[100];
+            Arrays.fill(tempArray, .1);
+            return ImageKt.toSimbrainColorImage(tempArray, 10, 10);
+        } else if (connector instanceof WeightMatrix) {
+            WeightMatrix wm = (WeightMatrix) connector;
+            return ImageKt.toSimbrainColorImage(wm.getWeights(), wm.getWeightMatrix().ncol(),
+                    wm.getWeightMatrix().nrow());
+        } else if (connector instanceof SparseWeightMatrix) {
+            SparseWeightMatrix swm = (SparseWeightMatrix) connector;
+            int rows = swm.getRowStart().length - 1;
+            int columns = swm.getSource().outputSize();
+            double[] values = swm.getValues();
+            double[] pixelArray = new double[rows * columns];
+            swm.forEachEntry((k, i, j) -> pixelArray[i * columns + j] = values[k]);
+            return ImageKt.toSimbrainColorImage(pixelArray, columns, rows);
         }
-
-        imageBox.setImage(img);
+        return null;
     }
 
     @Override
@@ -207,6 +215,8 @@ public class WeightMatrixNode extends ScreenElement implements PropertyChangeLis
                 }
             }
         };
+        // A sparse matrix only has the entries its connection strategy made, which need not include the diagonal
+        diagAction.setEnabled(weightMatrix instanceof WeightMatrix);
         contextMenu.add(diagAction);
 
         // Coupling menu
@@ -241,6 +251,13 @@ public class WeightMatrixNode extends ScreenElement implements PropertyChangeLis
                 ((WeightMatrix) weightMatrix).setWeights(wm.get2DDoubleArray());
                 weightMatrix.getEvents().getUpdated().fireAndForget();
             });
+        } else if (weightMatrix instanceof SparseWeightMatrix) {
+            SparseWeightMatrix swm = (SparseWeightMatrix) weightMatrix;
+            var wm = BasicDataWrapperKt.createFromMatrix(swm.toDense());
+            var wmViewer = new SimbrainDataViewer(wm, false);
+            TableActionsKt.addSimpleDefaults(wmViewer);
+            tabs.addTab("Weight Matrix", wmViewer);
+            dialog.addClosingTask(() -> swm.setWeights(wm.get2DDoubleArray()));
         }
 
         dialog.setContentPane(tabs);
@@ -41,6 +41,17 @@ public class NeuronArray extends ArrayLayer implements EditableObject, Attribute
     @UserParameter(label = "Activations", description = "Neuron activations", order = 1)
     private Matrix activations;
 
+    /**
+     * Array that {@link #activations} is a view of, returned by {@link #getOutputView()}. Rebuilt when activations
+     * is replaced by a matrix that is not backed by it, e.g. by {@link #setActivations(Matrix)}.
+     */
+    private transient double[] activationBuffer;
+
+    /**
+     * The activations matrix that is a view of {@link #activationBuffer}.
+     */
+    private transient Matrix bufferedActivations;
+
     private Matrix targets = null;
 
     /**
@@ -79,8 +90,8 @@ public class NeuronArray extends ArrayLayer implements EditableObject, Attribute
         NeuronArray copy = new NeuronArray(newParent, this.outputSize());
         copy.setLocation(this.getLocation());
         copy.setGridMode(this.gridMode);
-        copy.setActivations(this.getActivations());
-        copy.setUpdateRule(this.getUpdateRule());
+        copy.setActivations(this.getActivations().clone());
+        copy.setUpdateRule(this.getUpdateRule().deepCopy());
         copy.setDataHolder(this.getDataHolder().copy());
         return copy;
     }
@@ -110,6 +121,25 @@ public class NeuronArray extends ArrayLayer implements EditableObject, Attribute
         return activations;
     }
 
+    @NotNull
+    @Override
+    public double[] getOutputView() {
+        if (bufferedActivations != activations) {
+            activationBuffer = activations.col(0);
+            activations = SmileUtilsKt.toColumnView(activationBuffer);
+            bufferedActivations = activations;
+        }
+        return activationBuffer;
+    }
+
+    /**
+     * Returns the array backing {@link #getActivations()}. Changes to it change the activations, so array update
+     * rules can update activations in place.
+     */
+    public double[] getActivationBuffer() {
+        return getOutputView();
+    }
+
     @Override
     public void randomize() {
         activations = Matrix.rand(size(),1,
@@ -193,7 +223,7 @@ public class NeuronArray extends ArrayLayer implements EditableObject, Attribute
             return;
         }
         updateRule.apply(this, dataHolder);
-        getInputs().mul(0); // clear inputs
+        clearInputs();
         getEvents().getUpdated().fireAndForget();
     }
 
@@ -284,21 +314,24 @@ public class NeuronArray extends ArrayLayer implements EditableObject, Attribute
      * See {@link org.simbrain.workspace.serialization.WorkspaceComponentDeserializer}
      */
     public Object readResolve() {
+        super.readResolve();
         events = new NeuronArrayEvents2();
         return this;
     }
 
     public double[] getExcitatoryInputs() {
         return getIncomingConnectors().stream()
-                .filter(wm -> wm instanceof WeightMatrix)
-                .map(wm -> ((WeightMatrix) wm).getExcitatoryOutputs())
+                .filter(wm -> wm instanceof WeightMatrix || wm instanceof SparseWeightMatrix)
+                .map(wm -> wm instanceof WeightMatrix ? ((WeightMatrix) wm).getExcitatoryOutputs()
+                        : ((SparseWeightMatrix) wm).getExcitatoryOutputs())
                 .reduce(SimbrainMath::addVector)
                 .orElse(new double[inputSize()]);
     }
     public double[] getInhibitoryInputs() {
         return getIncomingConnectors().stream()
-                .filter(wm -> wm instanceof WeightMatrix)
-                .map(wm -> ((WeightMatrix) wm).getInhibitoryOutputs())
+                .filter(wm -> wm instanceof WeightMatrix || wm instanceof SparseWeightMatrix)
+                .map(wm -> wm instanceof WeightMatrix ? ((WeightMatrix) wm).getInhibitoryOutputs()
+                        : ((SparseWeightMatrix) wm).getInhibitoryOutputs())
                 .reduce(SimbrainMath::addVector)
                 .orElse(new double[inputSize()]);
     }
@@ -0,0 +1,386 @@
+package org.simbrain.network.matrix;
+
+import org.simbrain.network.connections.ConnectionStrategy;
+import org.simbrain.network.connections.LayerConnectionsKt;
+import org.simbrain.network.connections.Sparse;
+import org.simbrain.network.core.*;
+import org.simbrain.network.spikeresponders.NonResponder;
+import org.simbrain.network.synapse_update_rules.StaticSynapseRule;
+import org.simbrain.network.synapse_update_rules.spikeresponders.SpikeResponder;
+import org.simbrain.network.util.EmptyMatrixData;
+import org.simbrain.network.util.MatrixDataHolder;
+import org.simbrain.util.SmileUtilsKt;
+import org.simbrain.util.UserParameter;
+import org.simbrain.workspace.Consumable;
+import org.simbrain.workspace.Producible;
+import smile.math.matrix.Matrix;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A sparse weight matrix that connects a source and target {@link Layer}. Only the connections made by a
+ * {@link ConnectionStrategy} are stored, in compressed sparse row (CSR) format, so memory use is proportional to the
+ * number of connections rather than to the product of the layer sizes.
+ *
+ * As with {@link WeightMatrix}, rows correspond to target units and columns to source units. The connections into
+ * target unit i are entries rowStart[i] until rowStart[i + 1] of {@link #getColumnIndices()}, which holds the index of
+ * the source unit of each connection, and {@link #getValues()}, which holds its strength.
+ *
+ * Spike responders and learning rules visit the entries using {@link #forEachEntry(EntryConsumer)}. Their matrix data
+ * holders are created with a single row and one column per entry.
+ */
+public class SparseWeightMatrix extends Connector {
+
+    /**
+     * Default density of connections when no connection strategy is provided.
+     */
+    public static final double DEFAULT_DENSITY = .1;
+
+    @UserParameter(label = "Increment amount", increment = .1, order = 20)
+    private double increment = .1;
+
+    @UserParameter(label = "Learning Rule", useSetter = true, isObjectType = true, order = 100)
+    SynapseUpdateRule prototypeRule = new StaticSynapseRule();
+
+    /**
+     * Only used if source connector's rule is spiking.
+     */
+    @UserParameter(label = "Spike Responder", isObjectType = true,
+            useSetter = true, showDetails = false, order = 200)
+    private SpikeResponder spikeResponder = new NonResponder();
+
+    /**
+     * Holds data for prototype rule.
+     */
+    private MatrixDataHolder dataHolder = EmptyMatrixData.INSTANCE;
+
+    /**
+     * Holds data for spike responder, with one column per entry.
+     */
+    public MatrixDataHolder spikeResponseData = EmptyMatrixData.INSTANCE;
+
+    /**
+     * Index into {@link #columnIndices} and {@link #values} of the first entry of each row, plus the number of
+     * entries as a last element.
+     */
+    private int[] rowStart;
+
+    /**
+     * Column (source unit) of each entry.
+     */
+    private int[] columnIndices;
+
+    /**
+     * Strength of each entry.
+     */
+    private double[] values;
+
+    /**
+     * Post synaptic response of each entry. Only used with spike responders.
+     */
+    private double[] psr;
+
+    /**
+     * Visits the entries of a sparse weight matrix.
+     */
+    public interface EntryConsumer {
+        /**
+         * @param index  index of the entry in {@link #getValues()}
+         * @param row    row (target unit) of the entry
+         * @param column column (source unit) of the entry
+         */
+        void accept(int index, int row, int column);
+    }
+
+    /**
+     * Construct a sparse matrix with connections made by a {@link Sparse} connection strategy with
+     * {@link #DEFAULT_DENSITY}.
+     *
+     * @param net    parent network
+     * @param source source layer
+     * @param target target layer
+     */
+    public SparseWeightMatrix(Network net, Layer source, Layer target) {
+        this(net, source, target, new Sparse(DEFAULT_DENSITY));
+    }
+
+    /**
+     * Construct a sparse matrix with connections made by the provided strategy. Strengths are set to excitatory or
+     * inhibitory values using the strategy's percent excitatory.
+     *
+     * @param net                parent network
+     * @param source             source layer
+     * @param target             target layer
+     * @param connectionStrategy strategy used to make the connections
+     */
+    public SparseWeightMatrix(Network net, Layer source, Layer target, ConnectionStrategy connectionStrategy) {
+        super(source, target, net);
+
+        source.addOutgoingConnector(this);
+        target.addIncomingConnector(this);
+
+        setConnections(connectionStrategy.connectLayers(source, target));
+        values = LayerConnectionsKt.polarizedWeights(values.length, connectionStrategy.getPercentExcitatory(),
+                LayerConnectionsKt.getConnectionRandom(target));
+    }
+
+    /**
+     * Replace the connections of this matrix. All strengths are set to 0.
+     *
+     * @param connections for each target unit, the ascending indices of the source units it is connected to.
+     */
+    public void setConnections(int[][] connections) {
+        if (connections.length != target.inputSize()) {
+            throw new IllegalArgumentException("Expected connections for " + target.inputSize() + " target units but" +
+                    " got " + connections.length);
+        }
+        rowStart = new int[connections.length + 1];
+        for (int i = 0; i < connections.length; i++) {
+            rowStart[i + 1] = rowStart[i] + connections[i].length;
+        }
+        columnIndices = new int[rowStart[connections.length]];
+        for (int i = 0; i < connections.length; i++) {
+            for (int j : connections[i]) {
+                if (j < 0 || j >= source.outputSize()) {
+                    throw new IllegalArgumentException("Source index " + j + " out of bounds");
+                }
+            }
+            System.arraycopy(connections[i], 0, columnIndices, rowStart[i], connections[i].length);
+        }
+        values = new double[columnIndices.length];
+        psr = new double[columnIndices.length];
+        spikeResponseData = spikeResponder.createMatrixData(1, columnIndices.length);
+        getEvents().getUpdated().fireAndForget();
+    }
+
+    /**
+     * Visit every entry, row by row.
+     */
+    public void forEachEntry(EntryConsumer consumer) {
+        for (int i = 0; i < rowStart.length - 1; i++) {
+            for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+                consumer.accept(k, i, columnIndices[k]);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of stored connections.
+     */
+    public int getNumConnections() {
+        return values.length;
+    }
+
+    public int[] getRowStart() {
+        return rowStart;
+    }
+
+    public int[] getColumnIndices() {
+        return columnIndices;
+    }
+
+    /**
+     * Returns the strengths of the connections, in the order of {@link #getColumnIndices()}. Changes to the array
+     * change the strengths.
+     */
+    public double[] getValues() {
+        return values;
+    }
+
+    public double[] getPsr() {
+        return psr;
+    }
+
+    /**
+     * Index of the entry at the given row and column, or a negative number if there is no connection there.
+     */
+    private int indexOf(int row, int column) {
+        int index = Arrays.binarySearch(columnIndices, rowStart[row], rowStart[row + 1], column);
+        return index >= rowStart[row] ? index : -1;
+    }
+
+    /**
+     * Returns the strength from a source unit to a target unit, which is 0 if they are not connected.
+     */
+    public double get(int row, int column) {
+        int index = indexOf(row, column);
+        return index < 0 ? 0 : values[index];
+    }
+
+    /**
+     * Set the strength of an existing connection.
+     */
+    public void set(int row, int column, double value) {
+        int index = indexOf(row, column);
+        if (index < 0) {
+            throw new IllegalArgumentException("No connection from " + column + " to " + row);
+        }
+        values[index] = value;
+    }
+
+    /**
+     * Returns a dense copy of the matrix. Mainly for display and testing; avoid for large layers.
+     */
+    public Matrix toDense() {
+        Matrix dense = new Matrix(target.inputSize(), source.outputSize());
+        forEachEntry((k, i, j) -> dense.set(i, j, values[k]));
+        return dense;
+    }
+
+    @Producible
+    public double[] getWeights() {
+        return values.clone();
+    }
+
+    @Consumable
+    public void setWeights(double[] newWeights) {
+        System.arraycopy(newWeights, 0, values, 0, Math.min(values.length, newWeights.length));
+        getEvents().getUpdated().fireAndForget();
+    }
+
+    /**
+     * Set the strengths of the existing connections from a dense array whose rows are target units, e.g. one edited
+     * from {@link #toDense()}. Entries where there is no connection are ignored.
+     */
+    public void setWeights(double[][] newWeights) {
+        forEachEntry((k, i, j) -> values[k] = newWeights[i][j]);
+        getEvents().getUpdated().fireAndForget();
+    }
+
+    @Override
+    public void update() {
+        if (!(prototypeRule instanceof StaticSynapseRule)) {
+            prototypeRule.apply(this, dataHolder);
+            getEvents().getUpdated().fireAndForget();
+        }
+    }
+
+    /**
+     * Returns the product of this matrix and its source activations, or summed psrs if source array's rule is
+     * spiking.
+     *
+     * @see WeightMatrix#getOutput()
+     */
+    @Override
+    public Matrix getOutput() {
+        double[] output = new double[rowStart.length - 1];
+        addOutputTo(output);
+        return SmileUtilsKt.toColumnView(output);
+    }
+
+    @Override
+    public void addOutputTo(double[] inputs) {
+        if (spikeResponder instanceof NonResponder) {
+            double[] activations = source.getOutputView();
+            for (int i = 0; i < inputs.length; i++) {
+                double sum = 0;
+                for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+                    sum += values[k] * activations[columnIndices[k]];
+                }
+                inputs[i] += sum;
+            }
+        } else {
+            spikeResponder.apply(this, spikeResponseData);
+            for (int i = 0; i < inputs.length; i++) {
+                double sum = 0;
+                for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+                    sum += psr[k];
+                }
+                inputs[i] += sum;
+            }
+        }
+    }
+
+    /**
+     * Sums, for each target unit, the responses of connections whose strength has the given sign.
+     */
+    private double[] getSignedOutputs(boolean excitatory) {
+        double[] output = new double[rowStart.length - 1];
+        double[] activations = spikeResponder instanceof NonResponder ? source.getOutputView() : null;
+        for (int i = 0; i < output.length; i++) {
+            for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+                if (excitatory ? values[k] > 0 : values[k] < 0) {
+                    output[i] += activations != null ? values[k] * activations[columnIndices[k]] : psr[k];
+                }
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Returns an array representing the sum of the psr's for all excitatory (> 0) pre-synaptic weights
+     */
+    public double[] getExcitatoryOutputs() {
+        return getSignedOutputs(true);
+    }
+
+    /**
+     * Returns an array representing the sum of the psr's for all inhibitory (< 0) pre-synaptic weights
+     */
+    public double[] getInhibitoryOutputs() {
+        return getSignedOutputs(false);
+    }
+
+    public SynapseUpdateRule getPrototypeRule() {
+        return prototypeRule;
+    }
+
+    public void setPrototypeRule(SynapseUpdateRule prototypeRule) {
+        this.prototypeRule = prototypeRule;
+    }
+
+    /**
+     * Set the strengths to standard normal values, drawn from the network's weight randomizer so that they can be
+     * reproduced by seeding it.
+     */
+    @Override
+    public void randomize() {
+        Random random = parent.getWeightRandomizer().getRandomGenerator();
+        for (int k = 0; k < values.length; k++) {
+            values[k] = random.nextGaussian();
+        }
+        getEvents().getUpdated().fireAndForget();
+    }
+
+    @Override
+    public void increment() {
+        for (int k = 0; k < values.length; k++) {
+            values[k] += increment;
+        }
+        getEvents().getUpdated().fireAndForget();
+    }
+
+    @Override
+    public void decrement() {
+        for (int k = 0; k < values.length; k++) {
+            values[k] -= increment;
+        }
+        getEvents().getUpdated().fireAndForget();
+    }
+
+    /**
+     * Set all strengths to 0, keeping the connections.
+     */
+    public void hardClear() {
+        Arrays.fill(values, 0);
+        getEvents().getUpdated().fireAndForget();
+    }
+
+    @Override
+    public String toString() {
+        return getId()
+                + " (" + target.inputSize() + "x" + source.outputSize() + ", " + values.length + " connections) "
+                + "connecting " + source.getId() + " to " + target.getId();
+    }
+
+    public SpikeResponder getSpikeResponder() {
+        return spikeResponder;
+    }
+
+    public void setSpikeResponder(SpikeResponder spikeResponder) {
+        this.spikeResponder = spikeResponder;
+        spikeResponseData = spikeResponder.createMatrixData(1, values.length);
+    }
+
+}
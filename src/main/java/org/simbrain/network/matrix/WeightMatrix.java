@@ -9,6 +9,7 @@ import org.simbrain.network.util.MatrixDataHolder;
 import org.simbrain.util.UserParameter;
 import org.simbrain.workspace.Consumable;
 import org.simbrain.workspace.Producible;
+import smile.math.blas.Transpose;
 import smile.math.matrix.Matrix;
 import smile.stat.distribution.GaussianDistribution;
 
@@ -102,6 +103,29 @@ public class WeightMatrix extends Connector {
         updateInhibitoryMask();
     }
 
+    /**
+     * Make a deep copy of this weight matrix between new layers.
+     *
+     * @param newParent the new parent network
+     * @param newSource the new source layer, with the same output size as the source of this matrix
+     * @param newTarget the new target layer, with the same input size as the target of this matrix
+     * @return the deep copy
+     */
+    public WeightMatrix deepCopy(Network newParent, Layer newSource, Layer newTarget) {
+        WeightMatrix copy = new WeightMatrix(newParent, newSource, newTarget);
+        copy.increment = increment;
+        copy.prototypeRule = prototypeRule.deepCopy();
+        copy.dataHolder = dataHolder.copy();
+        copy.spikeResponder = spikeResponder.deepCopy();
+        copy.spikeResponseData = spikeResponseData.copy();
+        copy.weightMatrix = weightMatrix.clone();
+        copy.psrMatrix = psrMatrix.clone();
+        copy.setEnableRendering(isEnableRendering());
+        copy.updateExcitatoryMask();
+        copy.updateInhibitoryMask();
+        return copy;
+    }
+
     @Producible
     public Matrix getWeightMatrix() {
         return weightMatrix;
@@ -180,6 +204,24 @@ public class WeightMatrix extends Connector {
         }
     }
 
+    /**
+     * Adds the output to the target inputs in place. In the connectionist case this is a single matrix-vector
+     * multiply-add (gemv) against the source's output array, so nothing is allocated.
+     */
+    @Override
+    public void addOutputTo(double[] inputs) {
+        if (spikeResponder instanceof NonResponder) {
+            weightMatrix.mv(Transpose.NO_TRANSPOSE, 1.0, source.getOutputView(), 1.0, inputs);
+        } else {
+            spikeResponder.apply(this, spikeResponseData);
+            for (int j = 0; j < psrMatrix.ncol(); j++) {
+                for (int i = 0; i < inputs.length; i++) {
+                    inputs[i] += psrMatrix.get(i, j);
+                }
+            }
+        }
+    }
+
     /**
      * Update the psr matrix in the connectionist case.
      */
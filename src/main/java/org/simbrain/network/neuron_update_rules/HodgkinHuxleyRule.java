@@ -18,15 +18,21 @@
  */
 package org.simbrain.network.neuron_update_rules;
 
+import org.simbrain.network.core.Layer;
 import org.simbrain.network.core.Network.TimeType;
 import org.simbrain.network.core.Neuron;
 import org.simbrain.network.core.NeuronUpdateRule;
+import org.simbrain.network.matrix.NeuronArray;
 import org.simbrain.network.updaterules.interfaces.NoisyUpdateRule;
+import org.simbrain.network.util.HodgkinHuxleyMatrixData;
+import org.simbrain.network.util.MatrixDataHolder;
 import org.simbrain.network.util.ScalarDataHolder;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.stats.ProbabilityDistribution;
 import org.simbrain.util.stats.distributions.UniformRealDistribution;
 
+import java.util.Arrays;
+
 // TODO: deal with ENa, EK
 /**
  * Hodgkin-Huxley Neuron.
@@ -163,6 +169,62 @@ public class HodgkinHuxleyRule extends NeuronUpdateRule implements NoisyUpdateRu
 
     }
 
+    @Override
+    public void apply(Layer array, MatrixDataHolder data) {
+        if (!(array instanceof NeuronArray na)) {
+            return;
+        }
+        HodgkinHuxleyMatrixData gates = (HodgkinHuxleyMatrixData) data;
+        double timeStep = na.getNetwork().getTimeStep();
+        double[] activations = na.getActivationBuffer();
+        double[] inputs = na.getInputArray();
+        double[] nArr = gates.getN();
+        double[] mArr = gates.getM();
+        double[] hArr = gates.getH();
+        // Same as the scalar update, with gating variables and intermediate values held per unit
+        for (int i = 0; i < activations.length; i++) {
+            double v = inputs[i];
+            double ni = nArr[i];
+            double mi = mArr[i];
+            double hi = hArr[i];
+            double bhi = 1 / (Math.exp((v + 30) / 10) + 1);
+            double ahi = 0.07 * Math.exp(v / 20);
+            double dhi = (ahi * (1 - hi) - bhi * hi) * timeStep;
+            double bmi = 4 * Math.exp(v / 18);
+            double ami = 0.1 * (v + 25) / (Math.exp((v + 25) / 10) - 1);
+            double bni = 0.125 * Math.exp(v / 80);
+            double ani = 0.01 * (v + 10) / (Math.exp((v + 10) / 10) - 1);
+            double dmi = (ami * (1 - mi) - bmi * mi) * timeStep;
+            double dni = (ani * (1 - ni) - bni * ni) * timeStep;
+            double naCurrent = gna * (mi * mi * mi * hi) * (v - vna);
+            double kCurrent = gk * (ni * ni * ni * ni) * (v - vk);
+            double dvi = -1 * timeStep * (kCurrent + naCurrent + gl * (v - vl)) / cm;
+            activations[i] = -1 * (v + dvi + resting_v);
+            hArr[i] = hi + dhi;
+            mArr[i] = mi + dmi;
+            nArr[i] = ni + dni;
+        }
+    }
+
+    /**
+     * Gating variables start in the same steady state as those of the scalar rule.
+     */
+    @Override
+    public MatrixDataHolder createMatrixData(int size) {
+        HodgkinHuxleyMatrixData data = new HodgkinHuxleyMatrixData(size);
+        double v = -70;
+        double bhi = 1 / (Math.exp((v + 30) / 10) + 1);
+        double ahi = 0.07 * Math.exp(v / 20);
+        double bmi = 4 * Math.exp(v / 18);
+        double ami = 0.1 * (v + 25) / (Math.exp((v + 25) / 10) - 1);
+        double bni = 0.125 * Math.exp(v / 80);
+        double ani = 0.01 * (v + 10) / (Math.exp((v + 10) / 10) - 1);
+        Arrays.fill(data.getN(), ani / (ani + bni));
+        Arrays.fill(data.getM(), ami / (ami + bmi));
+        Arrays.fill(data.getH(), ahi / (ahi + bhi));
+        return data;
+    }
+
     // Initializer quickly hacked from old init. Zoë this is in your hands to fix! :)
     {
         cm = 1.0;
@@ -23,6 +23,7 @@ import org.simbrain.network.core.Synapse;
 import org.simbrain.network.core.SynapseUpdateRule;
 import org.simbrain.network.gui.dialogs.NetworkPreferences;
 import org.simbrain.network.matrix.NeuronArray;
+import org.simbrain.network.matrix.SparseWeightMatrix;
 import org.simbrain.network.matrix.WeightMatrix;
 import org.simbrain.network.util.EmptyMatrixData;
 import org.simbrain.network.util.EmptyScalarData;
@@ -61,6 +62,13 @@ public class HebbianRule extends SynapseUpdateRule<EmptyScalarData, EmptyMatrixD
             Matrix src = ((NeuronArray)connector.getSource()).getActivations();
             Matrix tar = ((NeuronArray)connector.getTarget()).getActivations();
             wm.add(src.mt(tar).mul(learningRate));
+        } else if (connector instanceof SparseWeightMatrix) {
+            // Only existing connections learn
+            SparseWeightMatrix swm = (SparseWeightMatrix) connector;
+            double[] src = connector.getSource().getOutputs().col(0);
+            double[] tar = connector.getTarget().getOutputs().col(0);
+            double[] weights = swm.getValues();
+            swm.forEachEntry((k, i, j) -> weights[k] += learningRate * src[j] * tar[i]);
         }
     }
 
@@ -22,6 +22,7 @@ import org.simbrain.network.core.Connector;
 import org.simbrain.network.core.Synapse;
 import org.simbrain.network.core.SynapseUpdateRule;
 import org.simbrain.network.gui.dialogs.NetworkPreferences;
+import org.simbrain.network.matrix.SparseWeightMatrix;
 import org.simbrain.network.matrix.WeightMatrix;
 import org.simbrain.network.util.EmptyMatrixData;
 import org.simbrain.network.util.EmptyScalarData;
@@ -80,6 +81,14 @@ public class OjaRule extends SynapseUpdateRule<EmptyScalarData, EmptyMatrixData>
 
         if (connector instanceof WeightMatrix) {
             // TODO
+        } else if (connector instanceof SparseWeightMatrix) {
+            // Only existing connections learn
+            SparseWeightMatrix swm = (SparseWeightMatrix) connector;
+            double[] src = connector.getSource().getOutputs().col(0);
+            double[] tar = connector.getTarget().getOutputs().col(0);
+            double[] weights = swm.getValues();
+            swm.forEachEntry((k, i, j) -> weights[k] += learningRate * ((src[j] * tar[i])
+                    - ((tar[i] * tar[i] * weights[k]) / normalizationFactor)));
         }
     }
 
@@ -31,6 +31,7 @@ import org.simbrain.util.propertyeditor.CopyableObject;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 
 /**
@@ -49,6 +50,13 @@ public abstract class SpikeResponder implements CopyableObject {
         ConvolvedJumpAndDecay.class, ProbabilisticResponder.class,
         RiseAndDecay.class, StepResponder.class, UDF.class);
 
+    /**
+     * Responders in this list draw random numbers when they are applied, and so produce different results when
+     * synapses are updated in a different order.
+     */
+    private static final HashSet<Class> drawsRandomNumbers =
+            new HashSet<>(Arrays.asList(ProbabilisticResponder.class));
+
     /**
      * Called via reflection using {@link UserParameter#typeListMethod()}.
      */
@@ -121,6 +129,14 @@ public abstract class SpikeResponder implements CopyableObject {
         return srList;
     }
 
+    /**
+     * Checks if the provided responder draws random numbers when it is applied. Responders are applied when the
+     * target neuron of their synapse updates its inputs.
+     */
+    public static boolean isStochastic(SpikeResponder responder) {
+        return drawsRandomNumbers.contains(responder.getClass());
+    }
+
     @Override
     public SpikeResponder copy() {
         return deepCopy();
@@ -0,0 +1,200 @@
+package org.simbrain.util;
+
+import smile.math.matrix.Matrix;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Large double arrays and matrices stored as little-endian binary blocks in their own zip entries, next to the xml
+ * of the object that contains them. While a set of blocks is active on the current thread (see {@link #begin}),
+ * {@link DoubleArrayConverter} and {@link MatrixConverter} write arrays of at least {@link #THRESHOLD} values as a
+ * reference to a block rather than as text, and read such references back. Without active blocks they read and write
+ * text as before, so xml written either way can be read.
+ */
+public class BinaryBlocks {
+
+    /**
+     * Arrays with at least this many values are written as blocks.
+     */
+    public static final int THRESHOLD = 1024;
+
+    /**
+     * Name of the attribute that holds the block index.
+     */
+    public static final String ATTRIBUTE = "block";
+
+    /**
+     * Size of the buffer used to write blocks.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final ThreadLocal<BinaryBlocks> current = new ThreadLocal<>();
+
+    /**
+     * Prefix of the zip entries of the blocks, e.g. "components/1_Network1.xml.blocks/".
+     */
+    private final String prefix;
+
+    /**
+     * Arrays or matrices to write, in order of their block index.
+     */
+    private final List<Object> written = new ArrayList<>();
+
+    /**
+     * Contents of the blocks read, by block index.
+     */
+    private final Map<Integer, byte[]> read = new HashMap<>();
+
+    /**
+     * Create blocks stored in zip entries next to the entry with the given name.
+     */
+    public BinaryBlocks(String entryName) {
+        this.prefix = entryName + ".blocks/";
+    }
+
+    /**
+     * Create blocks for reading, from the contents of all the entries of a zip file.
+     */
+    public BinaryBlocks(String entryName, Map<String, byte[]> entries) {
+        this(entryName);
+        entries.forEach((name, data) -> {
+            if (name.startsWith(prefix)) {
+                read.put(Integer.parseInt(name.substring(prefix.length())), data);
+            }
+        });
+    }
+
+    /**
+     * Make these blocks the active blocks of the current thread, until {@link #end()}.
+     */
+    public void begin() {
+        current.set(this);
+    }
+
+    /**
+     * Stop using these blocks on the current thread.
+     */
+    public void end() {
+        current.remove();
+    }
+
+    /**
+     * Returns the blocks active on the current thread, or null.
+     */
+    public static BinaryBlocks current() {
+        return current.get();
+    }
+
+    /**
+     * Returns the active blocks if an array of the given length should be written to them, otherwise null.
+     */
+    static BinaryBlocks forLength(long length) {
+        BinaryBlocks blocks = current.get();
+        return blocks != null && length >= THRESHOLD ? blocks : null;
+    }
+
+    /**
+     * Add an array to be written and return its block index. The array is not copied.
+     */
+    public int add(double[] array) {
+        written.add(array);
+        return written.size() - 1;
+    }
+
+    /**
+     * Add a matrix to be written in row-major order and return its block index.
+     */
+    public int add(Matrix matrix) {
+        written.add(matrix);
+        return written.size() - 1;
+    }
+
+    /**
+     * Returns the values of a block that was read.
+     */
+    public double[] get(int index) {
+        byte[] data = read.get(index);
+        if (data == null) {
+            throw new IllegalStateException("Missing block " + prefix + index);
+        }
+        DoubleBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        double[] values = new double[buffer.remaining()];
+        buffer.get(values);
+        return values;
+    }
+
+    public boolean isEmpty() {
+        return written.isEmpty();
+    }
+
+    /**
+     * Write each block added since construction as a zip entry. Blocks are stored uncompressed, as doubles do not
+     * compress well and deflating them costs more time than it saves.
+     */
+    public void write(ZipOutputStream zip) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < written.size(); i++) {
+            Object block = written.get(i);
+            // Stored entries need their size and checksum before the data
+            CRC32 crc = new CRC32();
+            long size = writeBlock(block, buffer, (bytes, length) -> crc.update(bytes, 0, length));
+            ZipEntry entry = new ZipEntry(prefix + i);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(size);
+            entry.setCompressedSize(size);
+            entry.setCrc(crc.getValue());
+            zip.putNextEntry(entry);
+            writeBlock(block, buffer, (bytes, length) -> zip.write(bytes, 0, length));
+            zip.closeEntry();
+        }
+    }
+
+    private interface Sink {
+        void accept(byte[] bytes, int length) throws IOException;
+    }
+
+    /**
+     * Pass the little-endian bytes of a block to a sink, a buffer at a time, and return the number of bytes.
+     */
+    private static long writeBlock(Object block, ByteBuffer buffer, Sink sink) throws IOException {
+        long size = 0;
+        buffer.clear();
+        if (block instanceof double[] array) {
+            for (double value : array) {
+                size += put(buffer, value, sink);
+            }
+        } else {
+            Matrix matrix = (Matrix) block;
+            int rows = matrix.nrow();
+            int cols = matrix.ncol();
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    size += put(buffer, matrix.get(i, j), sink);
+                }
+            }
+        }
+        if (buffer.position() > 0) {
+            sink.accept(buffer.array(), buffer.position());
+        }
+        return size;
+    }
+
+    private static int put(ByteBuffer buffer, double value, Sink sink) throws IOException {
+        if (buffer.remaining() < Double.BYTES) {
+            sink.accept(buffer.array(), buffer.position());
+            buffer.clear();
+        }
+        buffer.putDouble(value);
+        return Double.BYTES;
+    }
+}
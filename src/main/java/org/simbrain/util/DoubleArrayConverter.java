@@ -11,7 +11,8 @@ import java.nio.DoubleBuffer;
 import java.util.Base64;
 
 /**
- * Save double arrays in a user readable format for shorter arrays and Base64 encodings for large arrays..
+ * Save double arrays in a user readable format for shorter arrays and Base64 encodings for large arrays, or as
+ * {@link BinaryBlocks} for large arrays when blocks are active.
  */
 public class DoubleArrayConverter implements Converter {
 
@@ -33,15 +34,35 @@ public class DoubleArrayConverter implements Converter {
     @Override
     public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context) {
         double[] array = (double[]) source;
-        context.convertAnother(arrayToString(array));
+        BinaryBlocks blocks = BinaryBlocks.forLength(array.length);
+        if (blocks != null) {
+            writer.addAttribute(BinaryBlocks.ATTRIBUTE, Integer.toString(blocks.add(array)));
+        } else {
+            context.convertAnother(arrayToString(array));
+        }
     }
 
     @Override
     public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
+        String block = reader.getAttribute(BinaryBlocks.ATTRIBUTE);
+        if (block != null) {
+            return readBlock(block);
+        }
         String str = reader.getValue();
         return stringToArray(str);
     }
 
+    /**
+     * Returns the values of a block of the blocks active on this thread.
+     */
+    static double[] readBlock(String block) {
+        BinaryBlocks blocks = BinaryBlocks.current();
+        if (blocks == null) {
+            throw new IllegalStateException("Array stored in binary block " + block + " but no blocks were loaded");
+        }
+        return blocks.get(Integer.parseInt(block));
+    }
+
     /**
      * For arrays below compression threshold return a json-style array string [1,2,3,...].  Otherwise
      * return a base64 encoding of the string.
@@ -8,7 +8,8 @@ import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
 import smile.math.matrix.Matrix;
 
 /**
- * Save Smile Matrices as base 64 byte-streams from double arrays.
+ * Save Smile Matrices as base 64 byte-streams from double arrays, or as {@link BinaryBlocks} for large matrices when
+ * blocks are active.
  */
 public class MatrixConverter implements Converter {
 
@@ -30,8 +31,13 @@ public class MatrixConverter implements Converter {
         writer.endNode();
 
         writer.startNode("data");
-        double[] flatArray = CollectionsKt.flattenArray(matrix.toArray());
-        context.convertAnother(DoubleArrayConverter.arrayToString(flatArray));
+        BinaryBlocks blocks = BinaryBlocks.forLength((long) matrix.nrow() * matrix.ncol());
+        if (blocks != null) {
+            writer.addAttribute(BinaryBlocks.ATTRIBUTE, Integer.toString(blocks.add(matrix)));
+        } else {
+            double[] flatArray = CollectionsKt.flattenArray(matrix.toArray());
+            context.convertAnother(DoubleArrayConverter.arrayToString(flatArray));
+        }
         writer.endNode();
     }
 
@@ -47,7 +53,10 @@ public class MatrixConverter implements Converter {
         reader.moveUp();
 
         reader.moveDown();
-        double[] flatData = DoubleArrayConverter.stringToArray(reader.getValue());
+        String block = reader.getAttribute(BinaryBlocks.ATTRIBUTE);
+        double[] flatData = block != null
+                ? DoubleArrayConverter.readBlock(block)
+                : DoubleArrayConverter.stringToArray(reader.getValue());
         reader.moveUp();
 
         return Matrix.of(CollectionsKt.reshape(rows, cols, flatData));
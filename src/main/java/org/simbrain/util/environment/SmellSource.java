@@ -80,6 +80,12 @@ public class SmellSource implements EditableObject {
             order = 15)
     private ProbabilityDistribution randomizer  = new UniformRealDistribution();
 
+    /**
+     * Noise drawn by {@link #sampleNoise()}, added by {@link #getStimulus(double)} instead of new noise until
+     * {@link #clearSampledNoise()} is called.
+     */
+    private transient double[] sampledNoise;
+
     public SmellSource(final double[] distalstim) {
         this.stimulusVector = distalstim;
     }
@@ -106,11 +112,27 @@ public class SmellSource implements EditableObject {
      */
     public double[] getStimulus(final double distance) {
         var scalingFactor = decayFunction.getScalingFactor(distance);
+        double[] noise = sampledNoise;
+        if (noise != null) {
+            double[] stimulus = new double[stimulusVector.length];
+            for (int i = 0; i < stimulus.length; i++) {
+                stimulus[i] = stimulusVector[i] * scalingFactor + noise[i];
+            }
+            return stimulus;
+        }
         return Arrays.stream(stimulusVector)
                 .map(s -> s * scalingFactor + getNoise())
                 .toArray();
     }
 
+    /**
+     * Returns the distance beyond which {@link #getStimulus(double)} is all zeros, or infinity if there is no such
+     * distance. Noise is added at every distance, so a noisy source has no effective radius.
+     */
+    public double getEffectiveRadius() {
+        return addNoise ? Double.POSITIVE_INFINITY : decayFunction.getEffectiveRadius();
+    }
+
     private Double getNoise() {
         if (addNoise) {
             return randomizer.sampleDouble();
@@ -119,6 +141,21 @@ public class SmellSource implements EditableObject {
         }
     }
 
+    /**
+     * Draw the noise for one update, so that {@link #getStimulus(double)} can be called from several threads without
+     * sharing the randomizer. Every stimulus then gets the same noise until {@link #clearSampledNoise()} is called.
+     */
+    public void sampleNoise() {
+        sampledNoise = addNoise ? randomizer.sampleDouble(stimulusVector.length) : null;
+    }
+
+    /**
+     * Go back to drawing new noise for each stimulus.
+     */
+    public void clearSampledNoise() {
+        sampledNoise = null;
+    }
+
     /**
      * Randomize values.
      */
@@ -156,6 +193,22 @@ public class SmellSource implements EditableObject {
         this.decayFunction = decayFunction;
     }
 
+    public boolean isAddNoise() {
+        return addNoise;
+    }
+
+    public void setAddNoise(boolean addNoise) {
+        this.addNoise = addNoise;
+    }
+
+    public ProbabilityDistribution getRandomizer() {
+        return randomizer;
+    }
+
+    public void setRandomizer(ProbabilityDistribution randomizer) {
+        this.randomizer = randomizer;
+    }
+
     public double[] getStimulusVector() {
         return stimulusVector;
     }
@@ -842,6 +842,30 @@ public class SimbrainMath {
 
     }
 
+    /**
+     * Primitive version of {@link #clip(Number, Number, Number)}, which avoids boxing in update loops.
+     *
+     * @param number the number to check
+     * @param lowerBound lower bound
+     * @param upperBound upper bound
+     * @return the clipped value
+     */
+    public static double clip(double number, double lowerBound, double upperBound) {
+        if (Double.compare(upperBound, lowerBound) < 0) {
+            double temp = upperBound;
+            upperBound = lowerBound;
+            lowerBound = temp;
+        }
+
+        if (Double.compare(number, lowerBound) < 0) {
+            return lowerBound;
+        } else if (Double.compare(number, upperBound) > 0) {
+            return upperBound;
+        } else {
+            return number;
+        }
+    }
+
     /**
      * Test randPermuteWithExclusion.
      *
@@ -37,7 +37,7 @@ public class NTreeConverter implements Converter {
         reader.moveUp();
 
         reader.moveDown();
-        List<DataPoint> datapoints = (List<DataPoint>) context.convertAnother(reader.getValue(), ArrayList.class);
+        List<DataPoint> datapoints = (List<DataPoint>) context.convertAnother(null, ArrayList.class);
         reader.moveUp();
 
         var ntree = new NTree(dims);
@@ -135,6 +135,12 @@ public abstract class WorkspaceComponent {
         workspace.removeWorkspaceComponent(this);
     }
 
+    /**
+     * Called by Workspace after the component is removed. Override to release resources such as threads.
+     */
+    public void dispose() {
+    }
+
     /**
      * Called by Workspace to update the state of the component.
      */
@@ -18,6 +18,7 @@
  */
 package org.simbrain.workspace.serialization;
 
+import org.simbrain.util.BinaryBlocks;
 import org.simbrain.util.SFileChooser;
 import org.simbrain.util.XStreamUtils;
 import org.simbrain.workspace.*;
@@ -50,6 +51,9 @@ import java.util.zip.ZipOutputStream;
  * It should return a list of objects that contain consumers or producers, i.e. that contain methods
  * annotated as {@link Consumable} or {@link Producible}.</li>
  * <li>Mark any fields that should not be serialized as transient.</li>
+ * <li>Large double arrays and Smile matrices are written as little-endian binary entries next to the component's
+ * xml (see {@link BinaryBlocks}) when the component's xstream uses {@link org.simbrain.util.DoubleArrayConverter}
+ * and {@link org.simbrain.util.MatrixConverter}. Files without such entries are read as plain xml.</li>
  * <li>Special initialization when de-serializing can be handled with ReadResolve methods, or by using custom XStream
  * converters. For details on de-serialization see {@link WorkspaceComponentDeserializer}</li>
  * </ol>
@@ -158,7 +162,15 @@ public class WorkspaceSerializer {
         ZipEntry entry = new ZipEntry(archiveComp.getUri());
         try {
             zipStream.putNextEntry(entry);
-            serializer.serializeComponent(component, zipStream);
+            // Large arrays and matrices go in binary entries next to the component's xml
+            BinaryBlocks blocks = new BinaryBlocks(archiveComp.getUri());
+            blocks.begin();
+            try {
+                serializer.serializeComponent(component, zipStream);
+            } finally {
+                blocks.end();
+            }
+            blocks.write(zipStream);
             if (!headless) {
                 DesktopComponent<?> desktopComponent = SimbrainDesktop.INSTANCE.getDesktopComponent(component);
                 // Makes it possible to save a non-GUI simulation
@@ -227,15 +239,17 @@ public class WorkspaceSerializer {
      * Creates a workspace from a zip compressed input stream.
      *
      * @param stream The stream to read from. This is expected to be zip compressed.
+     * @param headless if true no desktop components are created, and a component that fails to deserialize
+     *                 throws an exception rather than showing a dialog.
      * @throws IOException if an IO error occurs.
      */
     @SuppressWarnings("unchecked")
-    public void deserialize(InputStream stream) throws IOException {
+    public void deserialize(InputStream stream, boolean headless) throws IOException {
         Map<String, byte[]> byteArrays = processInputStream(stream);
         ArchivedWorkspace archive = (ArchivedWorkspace) ArchivedWorkspace.xstream().fromXML(new ByteArrayInputStream(byteArrays.get("contents.xml")));
 
         WorkspaceComponentDeserializer deserializer = new WorkspaceComponentDeserializer();
-        deserializeComponents(archive, deserializer, byteArrays);
+        deserializeComponents(archive, deserializer, byteArrays, headless);
 
         deserializeCouplings(archive);
         // deserializeUpdateActions(archive, deserializer);
@@ -243,6 +257,10 @@ public class WorkspaceSerializer {
 
     }
 
+    public void deserialize(InputStream stream) throws IOException {
+        deserialize(stream, false);
+    }
+
     private Map<String, byte[]> processInputStream(InputStream stream) throws IOException {
         // Populate the byte stream BUFFER_SIZE at a time and create a zip input
         // stream (currently 1 kb at a time).
@@ -291,21 +309,31 @@ public class WorkspaceSerializer {
         return byteArrays;
     }
 
-    private void deserializeComponents(ArchivedWorkspace archive, WorkspaceComponentDeserializer deserializer, Map<String, byte[]> byteArrays) {
+    private void deserializeComponents(ArchivedWorkspace archive, WorkspaceComponentDeserializer deserializer, Map<String, byte[]> byteArrays, boolean headless) throws IOException {
         if (archive.getArchivedComponents() != null) {
             for (ArchivedWorkspaceComponent archivedComponent : archive.getArchivedComponents()) {
                 try {
-                    WorkspaceComponent wc = deserializer.deserializeWorkspaceComponent(archivedComponent, new ByteArrayInputStream(byteArrays.get(archivedComponent.getUri())));
+                    BinaryBlocks blocks = new BinaryBlocks(archivedComponent.getUri(), byteArrays);
+                    blocks.begin();
+                    WorkspaceComponent wc;
+                    try {
+                        wc = deserializer.deserializeWorkspaceComponent(archivedComponent, new ByteArrayInputStream(byteArrays.get(archivedComponent.getUri())));
+                    } finally {
+                        blocks.end();
+                    }
                     workspace.addWorkspaceComponent(wc);
-                    if (archivedComponent.getDesktopComponent() != null) {
+                    if (!headless && archivedComponent.getDesktopComponent() != null) {
                         Rectangle bounds =
                                 (Rectangle) XStreamUtils.getSimbrainXStream().fromXML(new ByteArrayInputStream(byteArrays.get(archivedComponent.getDesktopComponent().getUri())));
                         DesktopComponent<?> desktopComponent = SimbrainDesktop.INSTANCE.getDesktopComponent(wc);
                         desktopComponent.parentFrame.setBounds(bounds);
                     }
                 } catch (Exception ex) {
-                    ex.printStackTrace();
                     String message = String.format("Failed to deserialize component %s.", archivedComponent.getName());
+                    if (headless) {
+                        throw new IOException(message, ex);
+                    }
+                    ex.printStackTrace();
                     JOptionPane.showMessageDialog(null, message);
                 }
             }
@@ -306,6 +306,7 @@ public class UpdateActionManager {
 
         // Default updater
         availableActionList.add(new UpdateAllAction(workspaceUpdater));
+        availableActionList.add(new DependencyGraphUpdate(workspaceUpdater));
 
         // Add update actions for all components available
         for (WorkspaceComponent component : workspaceUpdater.getComponents()) {
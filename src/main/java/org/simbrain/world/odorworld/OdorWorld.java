@@ -19,6 +19,7 @@
 package org.simbrain.world.odorworld;
 
 import org.jetbrains.annotations.NotNull;
+import org.simbrain.util.Events2;
 import org.simbrain.util.SimpleIdManager;
 import org.simbrain.util.UserParameter;
 import org.simbrain.util.environment.SmellSource;
@@ -64,6 +65,25 @@ public class OdorWorld implements EditableObject, Bounded {
      */
     private transient double maxVectorNorm;
 
+    /**
+     * Locations of the entities, so that sensors and collision checks only visit nearby entities.
+     */
+    private transient EntityGrid entityGrid = new EntityGrid();
+
+    /**
+     * Largest effective radius and stimulus dimension of the smell sources of the entities. Cached until the next
+     * update, or until entities or their smell sources change.
+     */
+    private transient double maxSmellRadius;
+
+    private transient int maxSmellDimension;
+
+    private transient int numAtMaxSmellDimension;
+
+    private transient int secondSmellDimension;
+
+    private transient boolean smellExtentValid;
+
     /**
      * Whether or not sprites wrap around or are halted at the borders
      */
@@ -82,6 +102,15 @@ public class OdorWorld implements EditableObject, Bounded {
             order = 20)
     private boolean useCameraCentering = true;
 
+    /**
+     * If true, the sensors of all entities are updated in parallel before any entity moves.
+     */
+    @UserParameter(label = "Parallel sensor update", description = "If true, the sensors of all entities are " +
+            "updated in parallel at the start of each update, before any entity moves. Then entities move and " +
+            "their effectors are updated, one entity at a time. Faster in worlds with many agents.",
+            order = 30)
+    private boolean parallelSensorUpdate = false;
+
     /**
      * Entity Id generator.
      */
@@ -120,9 +149,42 @@ public class OdorWorld implements EditableObject, Bounded {
 
     /**
      * Update world.
+     *
+     * By default each entity in turn moves and updates its sensors and effectors, so sensors see the entities
+     * before it in the list where they have moved to, and the entities after it where they were. With {@link
+     * #parallelSensorUpdate} every sensor is first updated in parallel against the locations at the start of the
+     * update, and then each entity in turn moves, resolving collisions in list order, and updates its effectors. Noisy
+     * smell sources then draw their noise once per update, in list order, so that all sensors see the same noise.
+     *
+     * Events fired by entities during the update, e.g. when they move, are coalesced so that the gui handles each
+     * one once per update.
      */
     public void update() {
-        entityList.forEach(OdorWorldEntity::update);
+        // Decay functions may have been edited since the last update
+        invalidateSmellExtent();
+        Events2.coalesce(() -> {
+            if (parallelSensorUpdate) {
+                // Cache the smell extent and draw the smell noise before the sensors read them concurrently
+                computeSmellExtent();
+                entityList.forEach(entity -> entity.getSmellSource().sampleNoise());
+                Events2.Coalescing coalescing = Events2.getCurrentCoalescing();
+                try {
+                    entityList.parallelStream().forEach(entity -> Events2.coalesceWith(coalescing, () -> {
+                        entity.updateSensors();
+                        return null;
+                    }));
+                } finally {
+                    entityList.forEach(entity -> entity.getSmellSource().clearSampledNoise());
+                }
+                for (OdorWorldEntity entity : entityList) {
+                    entity.applyMovement();
+                    entity.updateEffectors();
+                }
+            } else {
+                entityList.forEach(OdorWorldEntity::update);
+            }
+            return null;
+        });
         events.getUpdated().fireAndForget();
     }
 
@@ -151,6 +213,8 @@ public class OdorWorld implements EditableObject, Bounded {
 
         // Add entity to the map
         entityList.add(entity);
+        entityGrid.add(entity);
+        invalidateSmellExtent();
 
         events.getEntityAdded().fireAndForget(entity);
 
@@ -342,6 +406,8 @@ public class OdorWorld implements EditableObject, Bounded {
         // map.removeSprite(entity);
         if (entityList.contains(entity)) {
             entityList.remove(entity);
+            entityGrid.remove(entity);
+            invalidateSmellExtent();
             entity.delete();
             for (Sensor sensor : entity.getSensors()) {
                 entity.getEvents().getSensorRemoved().fireAndForget(sensor);
@@ -382,6 +448,9 @@ public class OdorWorld implements EditableObject, Bounded {
 
         events = new OdorWorldEvents2();
 
+        entityGrid = new EntityGrid();
+        entityList.forEach(entityGrid::add);
+
         for (OdorWorldEntity entity : entityList) {
 //            entity.postSerializationInit();
         }
@@ -479,6 +548,14 @@ public class OdorWorld implements EditableObject, Bounded {
         return tileMap.getMapHeight();
     }
 
+    public boolean isParallelSensorUpdate() {
+        return parallelSensorUpdate;
+    }
+
+    public void setParallelSensorUpdate(boolean parallelSensorUpdate) {
+        this.parallelSensorUpdate = parallelSensorUpdate;
+    }
+
     public boolean isObjectsBlockMovement() {
         return objectsBlockMovement;
     }
@@ -501,6 +578,110 @@ public class OdorWorld implements EditableObject, Bounded {
         return bounds;
     }
 
+    /**
+     * Returns the collidable objects whose bounds may intersect the given bound, in the same order as {@link
+     * #getCollidableObjects()}. Objects that are not returned do not intersect it.
+     */
+    public List<Bounded> getCollidableObjects(Bounded bound) {
+        var bounds = new ArrayList<Bounded>();
+
+        if (isObjectsBlockMovement()) {
+            // Bounds intersect when their centers are closer than half their summed sizes. Add a pixel so rounding
+            // never drops an intersecting entity.
+            double halfWidth = (bound.getWidth() + entityGrid.getMaxEntityWidth()) / 2 + 1;
+            double halfHeight = (bound.getHeight() + entityGrid.getMaxEntityHeight()) / 2 + 1;
+            bounds.addAll(entityGrid.query(
+                    bound.getX() - halfWidth, bound.getY() - halfHeight,
+                    bound.getX() + halfWidth, bound.getY() + halfHeight));
+        }
+
+        if (!wrapAround) {
+            bounds.add(this);
+        }
+
+        return bounds;
+    }
+
+    /**
+     * Returns the entities that may be within a distance of a point, in the order of the entity list. Entities that
+     * are not returned are further away. An infinite radius returns every entity.
+     */
+    public List<OdorWorldEntity> getEntitiesNear(Point2D point, double radius) {
+        if (!(radius < Double.POSITIVE_INFINITY)) {
+            return entityList;
+        }
+        // A margin so that rounding in distance computations never drops an entity at the edge
+        double range = Math.max(radius, 0) * (1 + 1e-9) + 1;
+        return entityGrid.query(point.getX() - range, point.getY() - range, point.getX() + range, point.getY() + range);
+    }
+
+    /**
+     * Called by entities when their location changes, to keep the entity grid up to date.
+     */
+    public void entityMoved(OdorWorldEntity entity) {
+        // Null while the world is being deserialized
+        if (entityGrid != null) {
+            entityGrid.moved(entity);
+        }
+    }
+
+    /**
+     * Largest distance at which the smell source of any entity has a non-zero stimulus, or infinity if some source
+     * has no effective radius. See {@link SmellSource#getEffectiveRadius()}.
+     */
+    public double getMaxSmellRadius() {
+        computeSmellExtent();
+        return maxSmellRadius;
+    }
+
+    /**
+     * Largest stimulus dimension of the smell sources of the entities other than the given one, which is the length
+     * of the smell vector of a sensor on that entity.
+     */
+    public int getMaxSmellDimension(OdorWorldEntity excluded) {
+        computeSmellExtent();
+        if (numAtMaxSmellDimension == 1 && excluded.getSmellSource().getStimulusDimension() == maxSmellDimension
+                && entityGrid.contains(excluded)) {
+            return secondSmellDimension;
+        }
+        return maxSmellDimension;
+    }
+
+    /**
+     * Called when smell sources change, so that the smell radius and dimension are recomputed.
+     */
+    public void invalidateSmellExtent() {
+        smellExtentValid = false;
+    }
+
+    private void computeSmellExtent() {
+        if (smellExtentValid) {
+            return;
+        }
+        double radius = 0;
+        int max = 0;
+        int numAtMax = 0;
+        int second = 0;
+        for (OdorWorldEntity entity : entityList) {
+            radius = Math.max(radius, entity.getSmellSource().getEffectiveRadius());
+            int dimension = entity.getSmellSource().getStimulusDimension();
+            if (dimension > max) {
+                second = max;
+                max = dimension;
+                numAtMax = 1;
+            } else if (dimension == max) {
+                numAtMax++;
+            } else {
+                second = Math.max(second, dimension);
+            }
+        }
+        maxSmellRadius = radius;
+        maxSmellDimension = max;
+        numAtMaxSmellDimension = numAtMax;
+        secondSmellDimension = second;
+        smellExtentValid = true;
+    }
+
     public double getMaxVectorNorm() {
         return maxVectorNorm;
     }
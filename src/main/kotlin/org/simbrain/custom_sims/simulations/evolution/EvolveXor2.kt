@@ -5,6 +5,7 @@ import kotlinx.coroutines.Deferred
 import org.simbrain.custom_sims.newSim
 import org.simbrain.network.NetworkComponent
 import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
 import org.simbrain.network.core.Synapse
 import org.simbrain.network.core.activations
 import org.simbrain.network.groups.NeuronCollection
@@ -16,135 +17,162 @@ import org.simbrain.workspace.Workspace
 import java.awt.Dimension
 import kotlin.random.Random
 
-val evolveXor2 = newSim {
+class XorGenotype(seed: Long = Random.nextLong()) : Genotype2 {
 
-    class XorGenotype(seed: Long = Random.nextLong()) : Genotype2 {
+    override val random: Random = Random(seed)
 
-        override val random: Random = Random(seed)
+    var inputLayerChromosome = chromosome2(2) { add(nodeGene2 { isClamped = true; upperBound = 1.0; lowerBound = -1.0 }) }
+    var hiddenLayerChromosome = chromosome2(2) { add(nodeGene2 { upperBound = 1.0; lowerBound = -1.0 }) }
+    var outputLayerChromosome = chromosome2(1) { add(nodeGene2 { upperBound = 1.0; lowerBound = -1.0 }) }
+    var connectionChromosome = chromosome2(1) {
+        add(connectionGene2(inputLayerChromosome.sampleOne(random), hiddenLayerChromosome.sampleOne(random)))
+        add(connectionGene2(hiddenLayerChromosome.sampleOne(random), outputLayerChromosome.sampleOne(random)))
+    }
 
-        var inputLayerChromosome = chromosome2(2) { add(nodeGene2 { isClamped = true; upperBound = 1.0; lowerBound = -1.0 }) }
-        var hiddenLayerChromosome = chromosome2(2) { add(nodeGene2 { upperBound = 1.0; lowerBound = -1.0 }) }
-        var outputLayerChromosome = chromosome2(1) { add(nodeGene2 { upperBound = 1.0; lowerBound = -1.0 }) }
-        var connectionChromosome = chromosome2(1) {
-            add(connectionGene2(inputLayerChromosome.sampleOne(random), hiddenLayerChromosome.sampleOne(random)))
-            add(connectionGene2(hiddenLayerChromosome.sampleOne(random), outputLayerChromosome.sampleOne(random)))
-        }
+    inner class Phenotype(
+        val inputs: NeuronCollection,
+        val hiddens: NeuronCollection,
+        val outputs: NeuronCollection,
+        val connections: List<Synapse>
+    )
 
-        inner class Phenotype(
-            val inputs: NeuronCollection,
-            val hiddens: NeuronCollection,
-            val outputs: NeuronCollection,
-            val connections: List<Synapse>
+    suspend fun expressWith(network: Network): Phenotype {
+        return Phenotype(
+            NeuronCollection(network, network.express(inputLayerChromosome)).also { network.addNetworkModelAsync(it); it.label = "input" },
+            NeuronCollection(network, network.express(hiddenLayerChromosome)).also { network.addNetworkModelAsync(it); it.label = "hidden" },
+            NeuronCollection(network, network.express(outputLayerChromosome)).also { network.addNetworkModelAsync(it); it.label = "output" },
+            network.express(connectionChromosome)
         )
+    }
 
-        suspend fun expressWith(network: Network): Phenotype {
-            return Phenotype(
-                NeuronCollection(network, network.express(inputLayerChromosome)).also { network.addNetworkModelAsync(it); it.label = "input" },
-                NeuronCollection(network, network.express(hiddenLayerChromosome)).also { network.addNetworkModelAsync(it); it.label = "hidden" },
-                NeuronCollection(network, network.express(outputLayerChromosome)).also { network.addNetworkModelAsync(it); it.label = "output" },
-                network.express(connectionChromosome)
-            )
-        }
-
-        fun copy() = XorGenotype(random.nextLong()).apply {
-            val current = this@XorGenotype
-            val new = this@apply
-
-            new.inputLayerChromosome = current.inputLayerChromosome.copy()
-            new.hiddenLayerChromosome = current.hiddenLayerChromosome.copy()
-            new.outputLayerChromosome = current.outputLayerChromosome.copy()
-            new.connectionChromosome = current.connectionChromosome.copy()
-        }
+    fun copy() = XorGenotype(random.nextLong()).apply {
+        val current = this@XorGenotype
+        val new = this@apply
 
-        fun mutate() {
-            hiddenLayerChromosome.forEach {
-                it.mutate {
-                    with(dataHolder as BiasedScalarData) {
-                        bias += random.nextDouble(-1.0, 1.0)
-                    }
-                }
-            }
+        new.inputLayerChromosome = current.inputLayerChromosome.copy()
+        new.hiddenLayerChromosome = current.hiddenLayerChromosome.copy()
+        new.outputLayerChromosome = current.outputLayerChromosome.copy()
+        new.connectionChromosome = current.connectionChromosome.copy()
+    }
 
-            connectionChromosome.forEach {
-                it.mutate {
-                    strength += random.nextDouble(-1.0, 1.0)
+    fun mutate() {
+        hiddenLayerChromosome.forEach {
+            it.mutate {
+                with(dataHolder as BiasedScalarData) {
+                    bias += random.nextDouble(-1.0, 1.0)
                 }
             }
+        }
 
-            // Ensure existing connections are not used when creating new connections
-            val existingConnections = connectionChromosome.map { it.source to it.target }.toSet()
-            val availableInputToHidden = (inputLayerChromosome cartesianProduct hiddenLayerChromosome) - existingConnections
-            val availableHiddenToTarget = (hiddenLayerChromosome cartesianProduct outputLayerChromosome) - existingConnections
-            if (random.nextDouble() < 0.25 && availableInputToHidden.isNotEmpty() && availableHiddenToTarget.isNotEmpty()) {
-                val (source, target) = if (random.nextBoolean()) {
-                    // Make a new connection from the input to hidden layer
-                    availableInputToHidden.sampleOne()
-                } else {
-                    // Make a new connection from the hidden to output layer
-                    availableHiddenToTarget.sampleOne()
-                }
-                connectionChromosome.add(connectionGene2(source, target) { strength = random.nextDouble(-1.0, 1.0) })
+        connectionChromosome.forEach {
+            it.mutate {
+                strength += random.nextDouble(-1.0, 1.0)
             }
+        }
 
-            // Add a new hidden unit
-            if (random.nextDouble() < 0.1) {
-                hiddenLayerChromosome.add(nodeGene2())
+        // Ensure existing connections are not used when creating new connections
+        val existingConnections = connectionChromosome.map { it.source to it.target }.toSet()
+        val availableInputToHidden = (inputLayerChromosome cartesianProduct hiddenLayerChromosome) - existingConnections
+        val availableHiddenToTarget = (hiddenLayerChromosome cartesianProduct outputLayerChromosome) - existingConnections
+        if (random.nextDouble() < 0.25 && availableInputToHidden.isNotEmpty() && availableHiddenToTarget.isNotEmpty()) {
+            val (source, target) = if (random.nextBoolean()) {
+                // Make a new connection from the input to hidden layer
+                availableInputToHidden.sampleOne()
+            } else {
+                // Make a new connection from the hidden to output layer
+                availableHiddenToTarget.sampleOne()
             }
+            connectionChromosome.add(connectionGene2(source, target) { strength = random.nextDouble(-1.0, 1.0) })
+        }
 
+        // Add a new hidden unit
+        if (random.nextDouble() < 0.1) {
+            hiddenLayerChromosome.add(nodeGene2())
         }
 
     }
 
-    class Xor2Sim(
-        val xor2Genotype: XorGenotype = XorGenotype(),
-        val workspace: Workspace = Workspace()
-    ) : EvoSim {
+}
 
-        val networkComponent = NetworkComponent("network 1").also { workspace.addWorkspaceComponent(it) }
+class Xor2Sim(
+    val xor2Genotype: XorGenotype = XorGenotype(),
+    createWorkspace: () -> Workspace = ::Workspace
+) : PooledEvoSim<ReusableNetwork> {
 
-        val network = networkComponent.network
+    /**
+     * Created when the sim is first built, so that copies evaluated in a pool never create one.
+     */
+    @delegate:Transient
+    val workspace by lazy(createWorkspace)
 
-        private val _phenotype = CompletableDeferred<XorGenotype.Phenotype>()
-        val phenotype: Deferred<XorGenotype.Phenotype> by this::_phenotype
+    @delegate:Transient
+    val networkComponent by lazy { NetworkComponent("network 1").also { workspace.addWorkspaceComponent(it) } }
 
-        override fun mutate() {
-            xor2Genotype.mutate()
-        }
+    val network get() = networkComponent.network
 
-        override suspend fun build() {
-            if (!_phenotype.isCompleted) {
-                _phenotype.complete(xor2Genotype.expressWith(network))
-            }
-        }
+    @Transient
+    private val _phenotype = CompletableDeferred<XorGenotype.Phenotype>()
+    val phenotype: Deferred<XorGenotype.Phenotype> by this::_phenotype
 
-        override fun visualize(workspace: Workspace): Xor2Sim {
-            return Xor2Sim(xor2Genotype.copy(), workspace)
-        }
+    override fun mutate() {
+        xor2Genotype.mutate()
+    }
 
-        override fun copy(): EvoSim {
-            return Xor2Sim(xor2Genotype.copy(), Workspace())
+    override suspend fun build() {
+        if (!_phenotype.isCompleted) {
+            _phenotype.complete(xor2Genotype.expressWith(network))
         }
+    }
 
-        override suspend fun eval(): Double {
-            build()
-            val testData = listOf(
-                listOf(0.0, 0.0) to listOf(0.0),
-                listOf(0.0, 1.0) to listOf(1.0),
-                listOf(1.0, 0.0) to listOf(1.0),
-                listOf(1.0, 1.0) to listOf(0.0)
-            )
-
-            return testData.sumOf { (input, output) ->
-                phenotype.await().inputs.neuronList.activations = input
-                // Iterate more each run if allowing recurrent connections
-                workspace.iterateSuspend(2)
-                val error = (phenotype.await().outputs.neuronList.activations sse output)
-                -error
-            }
-        }
+    override fun visualize(workspace: Workspace): Xor2Sim {
+        return Xor2Sim(xor2Genotype.copy()) { workspace }
+    }
 
+    override fun copy(): EvoSim {
+        return Xor2Sim(xor2Genotype.copy())
     }
 
+    /**
+     * Recreates the workspace and phenotype, which are not serialized, when the sim is sent to a worker process.
+     */
+    private fun readResolve(): Any = Xor2Sim(xor2Genotype)
+
+    override suspend fun eval(): Double {
+        build()
+        return eval(workspace, phenotype.await().inputs.neuronList, phenotype.await().outputs.neuronList)
+    }
+
+    override fun createContext() = ReusableNetwork()
+
+    override suspend fun eval(context: ReusableNetwork): Double = with(xor2Genotype) {
+        val inputs = context.express("input", inputLayerChromosome)
+        context.express("hidden", hiddenLayerChromosome)
+        val outputs = context.express("output", outputLayerChromosome)
+        context.express("connections", connectionChromosome)
+        eval(context.workspace, inputs, outputs)
+    }
+
+    private suspend fun eval(workspace: Workspace, inputs: List<Neuron>, outputs: List<Neuron>): Double {
+        val testData = listOf(
+            listOf(0.0, 0.0) to listOf(0.0),
+            listOf(0.0, 1.0) to listOf(1.0),
+            listOf(1.0, 0.0) to listOf(1.0),
+            listOf(1.0, 1.0) to listOf(0.0)
+        )
+
+        return testData.sumOf { (input, output) ->
+            inputs.activations = input
+            // Iterate more each run if allowing recurrent connections
+            workspace.iterateSuspend(2)
+            val error = (outputs.activations sse output)
+            -error
+        }
+    }
+
+}
+
+val evolveXor2 = newSim {
+
     val maxGenerations = 500
     val progressWindow = ProgressWindow(maxGenerations, "Error").apply {
         minimumSize = Dimension(300, 100)
@@ -12,6 +12,7 @@
  */
 package org.simbrain.network.connections
 
+import org.simbrain.network.core.Layer
 import org.simbrain.network.core.Network
 import org.simbrain.network.core.Neuron
 import org.simbrain.network.core.Synapse
@@ -67,6 +68,13 @@ class AllToAll(
         return syns
     }
 
+    override fun connectLayers(source: Layer, target: Layer): Array<IntArray> {
+        val excludeSelf = source === target && !allowSelfConnection
+        return Array(target.inputSize()) { i ->
+            (0 until source.outputSize()).filter { j -> !excludeSelf || i != j }.toIntArray()
+        }
+    }
+
     companion object {
         @JvmStatic
         fun getTypes(): List<Class<*>> {
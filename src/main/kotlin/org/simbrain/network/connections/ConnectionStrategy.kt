@@ -18,6 +18,7 @@
  */
 package org.simbrain.network.connections
 
+import org.simbrain.network.core.Layer
 import org.simbrain.network.core.Network
 import org.simbrain.network.core.Neuron
 import org.simbrain.network.core.Synapse
@@ -104,6 +105,17 @@ abstract class ConnectionStrategy : CopyableObject {
         addToNetwork: Boolean = true
     ): List<Synapse>
 
+    /**
+     * Connect the units of two layers, for sparse connectors like [org.simbrain.network.matrix.SparseWeightMatrix].
+     * Returns, for each unit of the target layer, the indices of the source layer units it receives connections from,
+     * in ascending order. See LayerConnections.kt.
+     *
+     * @param source source layer
+     * @param target target layer
+     * @return connections listed by target unit
+     */
+    abstract fun connectLayers(source: Layer, target: Layer): Array<IntArray>
+
     val stringDescription: String
         get() = "" + this.javaClass.simpleName
 
@@ -17,6 +17,7 @@
  */
 package org.simbrain.network.connections
 
+import org.simbrain.network.core.Layer
 import org.simbrain.network.core.Network
 import org.simbrain.network.core.Neuron
 import org.simbrain.network.core.Synapse
@@ -55,6 +56,18 @@ class DistanceBased (
         return syns
     }
 
+    override fun connectLayers(source: Layer, target: Layer): Array<IntArray> {
+        val sourceLocations = source.unitLocations()
+        val targetLocations = target.unitLocations()
+        val random = target.connectionRandom
+        return Array(target.inputSize()) { i ->
+            sourceLocations.indices.filter { j ->
+                !(source === target && i == j) &&
+                        random.nextDouble() < decayFunction.getScalingFactor(sourceLocations[j].distance(targetLocations[i]))
+            }.toIntArray()
+        }
+    }
+
     override fun toString(): String {
         return name
     }
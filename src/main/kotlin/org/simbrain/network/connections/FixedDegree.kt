@@ -17,6 +17,7 @@
  */
 package org.simbrain.network.connections
 
+import org.simbrain.network.core.Layer
 import org.simbrain.network.core.Network
 import org.simbrain.network.core.Neuron
 import org.simbrain.network.core.Synapse
@@ -24,6 +25,7 @@ import org.simbrain.util.UserParameter
 import org.simbrain.util.propertyeditor.EditableObject
 import org.simbrain.util.stats.ProbabilityDistribution
 import org.simbrain.util.stats.distributions.NormalDistribution
+import java.awt.geom.Point2D
 
 /**
  * For each source neuron, create a fixed number of connections to or from target neurons (fixed indegree vs. fixed
@@ -94,6 +96,31 @@ class FixedDegree(
         return syns
     }
 
+    override fun connectLayers(source: Layer, target: Layer): Array<IntArray> {
+        val excludeSelf = source === target && !allowSelfConnections
+        val sourceLocations = if (useRadius) source.unitLocations() else listOf()
+        val targetLocations = if (useRadius) target.unitLocations() else listOf()
+        val random = target.connectionRandom
+
+        // Candidates for unit index of the layer being connected to or from, drawn from the other layer
+        fun candidates(index: Int, location: Point2D?, pool: List<Point2D>, poolSize: Int) = (0 until poolSize)
+            .filter { other -> !(excludeSelf && other == index) }
+            .filter { other -> location == null || location.distance(pool[other]) < radius }
+            .toIntArray()
+
+        return if (direction == Direction.IN) {
+            Array(target.inputSize()) { i ->
+                val candidates = candidates(i, targetLocations.getOrNull(i), sourceLocations, source.outputSize())
+                sampleIndices(candidates, degree, random)
+            }
+        } else {
+            Array(source.outputSize()) { j ->
+                val candidates = candidates(j, sourceLocations.getOrNull(j), targetLocations, target.inputSize())
+                sampleIndices(candidates, degree, random)
+            }.let { transposeConnections(it, target.inputSize()) }
+        }
+    }
+
     override val name = "Fixed degree"
 
     override fun toString(): String {
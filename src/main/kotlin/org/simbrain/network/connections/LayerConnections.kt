@@ -0,0 +1,122 @@
+package org.simbrain.network.connections
+
+import org.simbrain.network.core.Layer
+import org.simbrain.network.groups.AbstractNeuronCollection
+import org.simbrain.network.matrix.NeuronArray
+import java.awt.geom.Point2D
+import kotlin.math.ceil
+import kotlin.math.ln
+import kotlin.math.sqrt
+import kotlin.random.Random
+import kotlin.random.asKotlinRandom
+
+/*
+ * Utilities for connecting the units of [Layer]s with sparse connectors, without creating [org.simbrain.network.core.Synapse]
+ * objects. Connections are represented as they are stored in a compressed sparse row matrix: for each target unit,
+ * the sorted indices of the source units it receives connections from.
+ *
+ * See [ConnectionStrategy.connectLayers].
+ */
+
+/**
+ * Locations of the units of a layer, used by strategies that connect based on distance. Neuron collections use the
+ * locations of their neurons. Other layers lay their units out across their bounds, as a grid for neuron arrays in
+ * grid mode and as a horizontal line otherwise.
+ */
+fun Layer.unitLocations(): List<Point2D> {
+    if (this is AbstractNeuronCollection) {
+        return neuronList.map { it.location }
+    }
+    val size = outputSize()
+    val bound = bound
+    val columns = if (this is NeuronArray && isGridMode) ceil(sqrt(size.toDouble())).toInt() else size
+    val rows = ceil(size / columns.toDouble()).toInt().coerceAtLeast(1)
+    val dx = bound.width / columns
+    val dy = bound.height / rows
+    return List(size) { i ->
+        Point2D.Double(bound.x + (i % columns + .5) * dx, bound.y + (i / columns + .5) * dy)
+    }
+}
+
+/**
+ * Random numbers for connecting a layer, drawn from the [org.simbrain.network.core.Network.weightRandomizer] of its
+ * network, so that connections can be reproduced by seeding that randomizer.
+ */
+val Layer.connectionRandom: Random get() = network.weightRandomizer.randomGenerator.asKotlinRandom()
+
+/**
+ * Returns [count] distinct indices in `0 until n`, excluding [exclude], in ascending order. Returns all candidates
+ * if there are fewer than [count].
+ */
+fun sampleIndices(n: Int, count: Int, exclude: Int = -1, random: Random = Random): IntArray {
+    val candidates = (0 until n).filter { it != exclude }.toIntArray()
+    return sampleIndices(candidates, count, random)
+}
+
+/**
+ * Returns [count] distinct entries of [candidates] in ascending order, using a partial Fisher-Yates shuffle. Returns
+ * all candidates if there are fewer than [count].
+ */
+fun sampleIndices(candidates: IntArray, count: Int, random: Random = Random): IntArray {
+    val k = count.coerceIn(0, candidates.size)
+    for (i in 0 until k) {
+        val j = i + random.nextInt(candidates.size - i)
+        val tmp = candidates[i]
+        candidates[i] = candidates[j]
+        candidates[j] = tmp
+    }
+    return candidates.copyOf(k).apply { sort() }
+}
+
+/**
+ * Returns each index in `0 until n` except [exclude] with the given [probability], in ascending order. Uses geometric
+ * skips, so the cost is proportional to the number of indices returned rather than to [n].
+ */
+fun bernoulliIndices(n: Int, probability: Double, exclude: Int = -1, random: Random = Random): IntArray {
+    if (probability <= 0.0) return IntArray(0)
+    if (probability >= 1.0) return (0 until n).filter { it != exclude }.toIntArray()
+    val result = ArrayList<Int>((n * probability * 1.2).toInt() + 1)
+    val logQ = ln(1 - probability)
+    var i = -1
+    while (true) {
+        i += 1 + (ln(1 - random.nextDouble()) / logQ).toInt()
+        if (i >= n || i < 0) break
+        if (i != exclude) result.add(i)
+    }
+    return result.toIntArray()
+}
+
+/**
+ * Convert connections listed per source unit into connections listed per target unit.
+ */
+fun transposeConnections(connections: Array<IntArray>, numTargets: Int): Array<IntArray> {
+    val counts = IntArray(numTargets)
+    connections.forEach { row -> row.forEach { counts[it]++ } }
+    val result = Array(numTargets) { IntArray(counts[it]) }
+    val fill = IntArray(numTargets)
+    // Sources are visited in ascending order, so each target's row comes out sorted
+    connections.forEachIndexed { src, row -> row.forEach { tar -> result[tar][fill[tar]++] = src } }
+    return result
+}
+
+/**
+ * Excitatory and inhibitory strengths for [count] connections, in the proportion given by [percentExcitatory], in
+ * random order. Analogous to [polarizeSynapses].
+ */
+@JvmOverloads
+fun polarizedWeights(count: Int, percentExcitatory: Double, random: Random = Random): DoubleArray {
+    if (percentExcitatory > 100 || percentExcitatory < 0) {
+        throw IllegalArgumentException("The percent of excitatory connections must be between 0 and 100.")
+    }
+    val excitatoryCount = (percentExcitatory / 100 * count).toInt()
+    val weights = DoubleArray(count) {
+        if (it < excitatoryCount) DEFAULT_EXCITATORY_STRENGTH else DEFAULT_INHIBITORY_STRENGTH
+    }
+    for (i in count - 1 downTo 1) {
+        val j = random.nextInt(i + 1)
+        val tmp = weights[i]
+        weights[i] = weights[j]
+        weights[j] = tmp
+    }
+    return weights
+}
@@ -12,6 +12,7 @@
  */
 package org.simbrain.network.connections
 
+import org.simbrain.network.core.Layer
 import org.simbrain.network.core.Network
 import org.simbrain.network.core.Neuron
 import org.simbrain.network.core.Synapse
@@ -56,6 +57,15 @@ class OneToOne(
         return syns
     }
 
+    /**
+     * Connects each unit of the source layer to the target unit with the same index, up to the size of the smaller
+     * layer. The orientation and bi-directional options do not apply to layers.
+     */
+    override fun connectLayers(source: Layer, target: Layer): Array<IntArray> {
+        val count = minOf(source.outputSize(), target.inputSize())
+        return Array(target.inputSize()) { i -> if (i < count) intArrayOf(i) else IntArray(0) }
+    }
+
     override val name = "One to one"
 
     override fun toString(): String {
@@ -17,6 +17,7 @@
  */
 package org.simbrain.network.connections
 
+import org.simbrain.network.core.Layer
 import org.simbrain.network.core.Network
 import org.simbrain.network.core.Neuron
 import org.simbrain.network.core.Synapse
@@ -147,6 +148,23 @@ class RadialGaussian(
         return syns
     }
 
+    /**
+     * Layer units have no polarity, so units are connected with the no polarity constant, with a probability that
+     * drops off with the distance between their locations. See [unitLocations].
+     */
+    override fun connectLayers(source: Layer, target: Layer): Array<IntArray> {
+        val sourceLocations = source.unitLocations()
+        val targetLocations = target.unitLocations()
+        val random = target.connectionRandom
+        return Array(target.inputSize()) { i ->
+            sourceLocations.indices.filter { j ->
+                val squaredDistance = sourceLocations[j].distanceSq(targetLocations[i])
+                // As with neurons, units at the same location are not connected
+                squaredDistance > 0 && random.nextDouble() < distConst * Math.exp(-squaredDistance / (lambda * lambda))
+            }.toIntArray()
+        }
+    }
+
     public override fun toString(): String {
         return "Radial (Gaussian)"
     }
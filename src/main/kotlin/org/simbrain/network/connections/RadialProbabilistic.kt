@@ -17,6 +17,7 @@
  */
 package org.simbrain.network.connections
 
+import org.simbrain.network.core.Layer
 import org.simbrain.network.core.Network
 import org.simbrain.network.core.Neuron
 import org.simbrain.network.core.Synapse
@@ -127,6 +128,23 @@ class RadialProbabilistic(
     }
 
 
+    /**
+     * Layer units have no polarity, so each target unit is connected to the source units within the excitatory radius
+     * with the excitatory probability, as non-polar neurons are. See [unitLocations].
+     */
+    override fun connectLayers(source: Layer, target: Layer): Array<IntArray> {
+        val sourceLocations = source.unitLocations()
+        val targetLocations = target.unitLocations()
+        val random = target.connectionRandom
+        return Array(target.inputSize()) { i ->
+            sourceLocations.indices.filter { j ->
+                (allowSelfConnections || !(source === target && i == j)) &&
+                        sourceLocations[j].distance(targetLocations[i]) < excitatoryRadius &&
+                        random.nextDouble() < excitatoryProbability
+            }.toIntArray()
+        }
+    }
+
     override val name = "Radial (Probabilistic)"
 
     override fun toString(): String {
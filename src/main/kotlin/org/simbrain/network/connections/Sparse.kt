@@ -17,6 +17,7 @@
  */
 package org.simbrain.network.connections
 
+import org.simbrain.network.core.Layer
 import org.simbrain.network.core.Network
 import org.simbrain.network.core.Neuron
 import org.simbrain.network.core.Synapse
@@ -110,6 +111,21 @@ class Sparse @JvmOverloads constructor(
         }
     }
 
+    override fun connectLayers(source: Layer, target: Layer): Array<IntArray> {
+        val excludeSelf = source === target && !allowSelfConnection
+        val random = target.connectionRandom
+        return if (equalizeEfferents) {
+            // Each source unit connects to the same number of target units
+            val count = (connectionDensity * target.inputSize()).roundToInt()
+            Array(source.outputSize()) { j -> sampleIndices(target.inputSize(), count, if (excludeSelf) j else -1, random) }
+                .let { transposeConnections(it, target.inputSize()) }
+        } else {
+            Array(target.inputSize()) { i ->
+                bernoulliIndices(source.outputSize(), connectionDensity, if (excludeSelf) i else -1, random)
+            }
+        }
+    }
+
     override val name = "Sparse"
 
     override fun toString() = name
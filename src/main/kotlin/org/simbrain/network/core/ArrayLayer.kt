@@ -3,6 +3,7 @@ package org.simbrain.network.core
 import org.simbrain.util.UserParameter
 import org.simbrain.util.randomize
 import org.simbrain.util.stats.distributions.UniformRealDistribution
+import org.simbrain.util.toColumnView
 import org.simbrain.util.toDoubleArray
 import org.simbrain.workspace.Consumable
 import org.simbrain.workspace.Producible
@@ -27,7 +28,19 @@ abstract class ArrayLayer(
             events.clampChanged.fireAndForget()
         }
 
-    override val inputs: Matrix = Matrix(inputSize, 1)
+    /**
+     * Backing array of [inputs]. Connectors add their outputs to it directly, so that no intermediate matrices are
+     * allocated when inputs are updated.
+     */
+    @Transient
+    var inputArray = DoubleArray(inputSize)
+        private set
+
+    /**
+     * Column vector view of [inputArray].
+     */
+    final override var inputs: Matrix = inputArray.toColumnView()
+        private set
 
     override val network: Network
         get() = parent
@@ -37,11 +50,16 @@ abstract class ArrayLayer(
     }
 
     override fun updateInputs() {
-        val wtdInputs = Matrix(inputSize(), 1)
         for (c in incomingConnectors) {
-            wtdInputs.add(c.output)
+            c.addOutputTo(inputArray)
         }
-        addInputs(wtdInputs)
+    }
+
+    /**
+     * Set all inputs to 0. Called after inputs have been used in an update.
+     */
+    fun clearInputs() {
+        inputArray.fill(0.0)
     }
 
     @Consumable
@@ -81,4 +99,11 @@ abstract class ArrayLayer(
 
     @Producible
     fun getInputActivations() = inputs.toDoubleArray()
+
+    override fun readResolve(): Any? {
+        super.readResolve()
+        inputArray = inputs.col(0)
+        inputs = inputArray.toColumnView()
+        return this
+    }
 }
\ No newline at end of file
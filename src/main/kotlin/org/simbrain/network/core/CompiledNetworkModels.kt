@@ -0,0 +1,384 @@
+package org.simbrain.network.core
+
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import org.simbrain.network.NetworkModel
+import org.simbrain.network.groups.AbstractNeuronCollection
+import org.simbrain.network.neuron_update_rules.LinearRule
+import org.simbrain.network.spikeresponders.NonResponder
+import org.simbrain.network.synapse_update_rules.StaticSynapseRule
+import org.simbrain.network.util.BiasedScalarData
+import java.util.*
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * Structure-of-arrays ("compiled") form of the free [Neuron]s and [Synapse]s of a [Network], used by
+ * [org.simbrain.network.update_actions.CompiledBufferedUpdate].
+ *
+ * Activations, biases and linear rule parameters are packed into primitive arrays, and the weights of plain
+ * connectionist synapses are stored in compressed sparse row (CSR) form, one row per target neuron, so that the
+ * two-phase buffered update runs as tight loops over those arrays.
+ *
+ * Only models whose update can be expressed this way are compiled: unclamped free neurons with a noise-free
+ * [LinearRule], and enabled, static (or frozen), non-delayed synapses with a [NonResponder] whose target is a compiled
+ * neuron. Everything else is "residual" and is updated through the usual object path, in the same two phases.
+ *
+ * Compiled activations are written back to the [Neuron] objects lazily, when they are read (see
+ * [Neuron.getActivation] and [sync]), so their last activation is the last value written back rather than the
+ * activation on the previous update. Neurons that object-path models read during an update (e.g. sources of
+ * residual synapses or members of neuron collections) are "eager" and written back every update.
+ *
+ * The compiled form is invalidated by [Network.invalidateUpdatePlans] when models are added or removed or a model
+ * changes in a way that affects how it is compiled, and rebuilt before the next update.
+ */
+class CompiledNetworkModels(private val models: NetworkModelList) {
+
+    /**
+     * False when the arrays no longer reflect the network and must be rebuilt before the next update.
+     */
+    var isValid = false
+        private set
+
+    /**
+     * True while an update is running. Lazy write-back is suspended during updates.
+     */
+    @Volatile
+    var isUpdating = false
+        private set
+
+    /**
+     * True when some compiled activations have not yet been written back to their neurons.
+     */
+    @Volatile
+    var needsSync = false
+        private set
+
+    /**
+     * All free neurons. Index in this array is the neuron's index in all the other neuron arrays.
+     */
+    private var neurons: Array<Neuron> = arrayOf()
+
+    /**
+     * Current activation of every neuron. Authoritative for compiled neurons until written back.
+     */
+    private var activations = DoubleArray(0)
+
+    /**
+     * The activation each neuron object had the last time it was read or written by this class. Used to detect
+     * activations changed from outside (GUI, couplings, clear, randomize) since then.
+     */
+    private var syncedActivations = DoubleArray(0)
+
+    /**
+     * Net input (weighted inputs plus external input) accumulated in the first phase of the update.
+     */
+    private var netInputs = DoubleArray(0)
+
+    /**
+     * Indices (into [neurons]) of compiled neurons.
+     */
+    private var compiledIndices = IntArray(0)
+
+    /**
+     * Per-neuron flag for compiled neurons that must be written back every update.
+     */
+    private var eager = BooleanArray(0)
+
+    /**
+     * Indices of residual (object path) free neurons, whose activations must be re-read after every update.
+     */
+    private var residualIndices = IntArray(0)
+
+    // Linear rule parameters, indexed like compiledIndices. Refreshed at the start of each update.
+    private var biases = DoubleArray(0)
+    private var slopes = DoubleArray(0)
+    private var lowerBounds = DoubleArray(0)
+    private var upperBounds = DoubleArray(0)
+    private var clippingTypes = arrayOf<LinearRule.ClippingType>()
+
+    // CSR synapses: row k (compiled neuron compiledIndices[k]) spans [rowStart[k], rowStart[k+1]).
+    private var rowStart = IntArray(1)
+    private var sourceIndices = IntArray(0)
+    private var weights = DoubleArray(0)
+
+    /**
+     * Position of a compiled synapse in [weights], used to write through strength changes.
+     */
+    private val weightIndex = IdentityHashMap<Synapse, Int>()
+
+    // Residual synapses into compiled neurons, in CSR form like the compiled synapses.
+    private var residualRowStart = IntArray(1)
+    private var residualFanIn = arrayOf<Synapse>()
+
+    /**
+     * Models updated through the object path (everything except compiled neurons and synapses) that are not
+     * updated asynchronously.
+     */
+    private var residualModels: List<NetworkModel> = listOf()
+
+    /**
+     * Models updated asynchronously, as in [Network.asyncBufferedUpdate].
+     */
+    private var asyncModels: List<NetworkModel> = listOf()
+
+    /**
+     * Mark the compiled form as stale, so that it is rebuilt before the next update.
+     */
+    @Synchronized
+    fun invalidate() {
+        isValid = false
+    }
+
+    /**
+     * Pack the network's free neurons and synapses into arrays.
+     */
+    @Synchronized
+    fun compile() {
+        // Pending activations are written back so that nothing is lost when the arrays are rebuilt from the neurons
+        writeBackAll()
+        val freeNeurons = models.get<Neuron>()
+        val freeSynapses = Collections.newSetFromMap(IdentityHashMap<Synapse, Boolean>()).apply {
+            addAll(models.get<Synapse>())
+        }
+
+        neurons = freeNeurons.toTypedArray()
+        val indexOf = IdentityHashMap<Neuron, Int>(neurons.size)
+        neurons.forEachIndexed { i, n -> indexOf[n] = i }
+
+        val isCompiledNeuron = BooleanArray(neurons.size) { isCompilable(neurons[it]) }
+        compiledIndices = neurons.indices.filter { isCompiledNeuron[it] }.toIntArray()
+        residualIndices = neurons.indices.filter { !isCompiledNeuron[it] }.toIntArray()
+
+        fun isCompiledSynapse(s: Synapse): Boolean {
+            val target = indexOf[s.target] ?: return false
+            return s in freeSynapses && s.source in indexOf && isCompiledNeuron[target] && isCompilable(s)
+        }
+
+        // Neurons read by object path models during an update must be written back every update
+        eager = BooleanArray(neurons.size)
+        models.get<Synapse>().filterNot { isCompiledSynapse(it) }.forEach { s ->
+            indexOf[s.source]?.let { eager[it] = true }
+            indexOf[s.target]?.let { eager[it] = true }
+        }
+        models.all.filterIsInstance<AbstractNeuronCollection>().forEach { nc ->
+            nc.neuronList.forEach { n -> indexOf[n]?.let { eager[it] = true } }
+        }
+
+        val numCompiled = compiledIndices.size
+        biases = DoubleArray(numCompiled)
+        slopes = DoubleArray(numCompiled)
+        lowerBounds = DoubleArray(numCompiled)
+        upperBounds = DoubleArray(numCompiled)
+        clippingTypes = Array(numCompiled) { LinearRule.ClippingType.NoClipping }
+
+        rowStart = IntArray(numCompiled + 1)
+        residualRowStart = IntArray(numCompiled + 1)
+        val sources = ArrayList<Int>()
+        val wts = ArrayList<Double>()
+        val residual = ArrayList<Synapse>()
+        weightIndex.clear()
+
+        compiledIndices.forEachIndexed { k, i ->
+            val neuron = neurons[i]
+            // Rows preserve fan-in order, so sums are accumulated in the same order as Neuron.getWeightedInputs
+            for (s in neuron.fanInUnsafe) {
+                if (isCompiledSynapse(s)) {
+                    weightIndex[s] = wts.size
+                    sources.add(indexOf[s.source]!!)
+                    wts.add(s.strength)
+                } else {
+                    residual.add(s)
+                    eager[i] = true
+                }
+            }
+            rowStart[k + 1] = wts.size
+            residualRowStart[k + 1] = residual.size
+        }
+        sourceIndices = sources.toIntArray()
+        weights = wts.toDoubleArray()
+        residualFanIn = residual.toTypedArray()
+
+        val compiledModels = Collections.newSetFromMap(IdentityHashMap<NetworkModel, Boolean>()).apply {
+            compiledIndices.forEach { add(neurons[it]) }
+            addAll(weightIndex.keys)
+        }
+        residualModels = models.getNonAsyncModels().filter { it !in compiledModels }
+        asyncModels = models.getAsyncModels().toList()
+
+        activations = DoubleArray(neurons.size) { neurons[it].activation }
+        syncedActivations = activations.copyOf()
+        netInputs = DoubleArray(neurons.size)
+        needsSync = false
+        isValid = true
+    }
+
+    /**
+     * Buffered update of the network. Compiled models are updated using the arrays, residual models in the same two
+     * phases using their own update methods.
+     */
+    suspend fun update() {
+        if (!isValid) {
+            compile()
+        }
+        isUpdating = true
+        try {
+            if (!readActivations()) {
+                compile()
+                readActivations()
+            }
+            coroutineScope {
+                asyncModels.map { async { it.updateInputs() } }.awaitAll()
+                residualModels.forEach { it.updateInputs() }
+                updateCompiledInputs()
+                asyncModels.map { async { it.update() } }.awaitAll()
+                updateCompiledActivations()
+                residualModels.forEach { it.update() }
+            }
+            readResidualActivations()
+        } finally {
+            isUpdating = false
+        }
+    }
+
+    /**
+     * Pick up activations changed from outside since they were last read or written, and refresh the linear rule
+     * parameters of compiled neurons, which can be edited in place.
+     *
+     * @return false if some compiled neuron can no longer be compiled, in which case the caller should recompile.
+     */
+    private fun readActivations(): Boolean {
+        for (i in neurons.indices) {
+            val activation = neurons[i].activation
+            if (activation != syncedActivations[i]) {
+                activations[i] = activation
+                syncedActivations[i] = activation
+            }
+        }
+        for (k in compiledIndices.indices) {
+            val neuron = neurons[compiledIndices[k]]
+            if (!isCompilable(neuron)) {
+                return false
+            }
+            val rule = neuron.updateRule as LinearRule
+            biases[k] = (neuron.dataHolder as? BiasedScalarData)?.bias ?: 0.0
+            slopes[k] = rule.slope
+            lowerBounds[k] = min(rule.lowerBound, rule.upperBound)
+            upperBounds[k] = max(rule.lowerBound, rule.upperBound)
+            clippingTypes[k] = rule.clippingType
+        }
+        return true
+    }
+
+    /**
+     * Phase one: sparse matrix-vector product of the weights with the activations, plus residual synapses and
+     * external inputs.
+     */
+    private fun updateCompiledInputs() {
+        for (k in compiledIndices.indices) {
+            var sum = 0.0
+            for (j in rowStart[k] until rowStart[k + 1]) {
+                sum += weights[j] * activations[sourceIndices[j]]
+            }
+            for (j in residualRowStart[k] until residualRowStart[k + 1]) {
+                val synapse = residualFanIn[j]
+                synapse.updateOutput()
+                sum += synapse.psr
+            }
+            val neuron = neurons[compiledIndices[k]]
+            netInputs[k] = sum + neuron.input
+        }
+    }
+
+    /**
+     * Phase two: apply the linear rule to the net inputs.
+     */
+    private fun updateCompiledActivations() {
+        var changed = false
+        for (k in compiledIndices.indices) {
+            val i = compiledIndices[k]
+            val linear = netInputs[k] * slopes[k] + biases[k]
+            val activation = when (clippingTypes[k]) {
+                LinearRule.ClippingType.NoClipping -> linear
+                LinearRule.ClippingType.Relu -> max(0.0, linear)
+                LinearRule.ClippingType.PiecewiseLinear -> min(upperBounds[k], max(lowerBounds[k], linear))
+            }
+            activations[i] = activation
+            val neuron = neurons[i]
+            neuron.clearInput()
+            if (eager[i]) {
+                writeBack(i)
+            } else if (activation != syncedActivations[i]) {
+                changed = true
+            }
+        }
+        if (changed) {
+            needsSync = true
+        }
+    }
+
+    /**
+     * Residual neurons were updated through their objects, so refresh their packed activations.
+     */
+    private fun readResidualActivations() {
+        for (i in residualIndices) {
+            val activation = neurons[i].activation
+            activations[i] = activation
+            syncedActivations[i] = activation
+        }
+    }
+
+    private fun writeBack(i: Int) {
+        if (activations[i] != syncedActivations[i]) {
+            neurons[i].setActivation(activations[i])
+            syncedActivations[i] = activations[i]
+        }
+    }
+
+    /**
+     * Write pending compiled activations back to their neuron objects. Called when something reads them.
+     */
+    @Synchronized
+    fun sync() {
+        if (isUpdating || !needsSync) {
+            return
+        }
+        writeBackAll()
+    }
+
+    private fun writeBackAll() {
+        needsSync = false
+        for (i in compiledIndices) {
+            writeBack(i)
+        }
+    }
+
+    /**
+     * Write a changed synapse strength through to the packed weights.
+     */
+    fun strengthChanged(synapse: Synapse) {
+        weightIndex[synapse]?.let { weights[it] = synapse.strength }
+    }
+
+    override fun toString() = "Compiled network models: ${compiledIndices.size} of ${neurons.size} neurons, " +
+            "${weights.size} compiled synapses, ${residualFanIn.size} residual synapses"
+
+    companion object {
+
+        /**
+         * Whether a neuron's update can be run from the arrays.
+         */
+        fun isCompilable(neuron: Neuron) = !neuron.isClamped
+                && neuron.updateRule.javaClass == LinearRule::class.java
+                && !(neuron.updateRule as LinearRule).addNoise
+
+        /**
+         * Whether a synapse's output can be computed from the arrays. The target must also be compiled.
+         */
+        fun isCompilable(synapse: Synapse) = synapse.isEnabled
+                && synapse.delay == 0
+                && synapse.spikeResponder is NonResponder
+                && (synapse.isFrozen || synapse.learningRule is StaticSynapseRule)
+    }
+}
@@ -0,0 +1,398 @@
+package org.simbrain.network.core
+
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import org.simbrain.network.NetworkModel
+import org.simbrain.network.spikeresponders.JumpAndDecay
+import org.simbrain.network.spikeresponders.StepResponder
+import org.simbrain.network.spikeresponders.StepResponderData
+import org.simbrain.network.synapse_update_rules.StaticSynapseRule
+import java.util.*
+import kotlin.math.max
+import kotlin.math.pow
+
+/**
+ * Event-driven form of the free [Neuron]s and [Synapse]s of a [Network], used by
+ * [org.simbrain.network.update_actions.EventDrivenUpdate].
+ *
+ * In a buffered update every synapse calls its spike responder on every update, even though spiking neurons rarely
+ * spike. Here the synapses leaving spiking neurons are instead "event synapses": when a source neuron spikes its
+ * spike is pushed once through its fan out, and the responses of the event synapses are kept per target neuron, so
+ * that the cost of an update depends on the number of spikes rather than the number of synapses.
+ *
+ * - [StepResponder] responses are added to a per-target sum when a spike arrives and removed when they expire.
+ * - [JumpAndDecay] responses decay geometrically between spikes, so the responses into a target with the same decay
+ *   factor are kept as one decaying sum, and a spike only replaces the response of its own synapse.
+ *
+ * Step expiries are scheduled on a circular queue of time buckets, one per update.
+ *
+ * Event synapses are enabled free synapses without delay from a neuron with a spiking update rule to a free neuron,
+ * with one of the responders above and a static (or frozen) learning rule. All other models, including delayed
+ * synapses, whose delay line [Synapse.updateOutput] feeds back into the responder, are updated through the usual
+ * object path in the same two phases, so results are the same as with a buffered update, up to rounding.
+ *
+ * The post-synaptic response of an event synapse is written back to the synapse when a spike arrives, and all of them
+ * are written back by [sync]. Responder parameters and the network time step are read when the event synapses are
+ * collected, which happens after [Network.invalidateUpdatePlans] or a change in time step.
+ */
+class EventDrivenNetworkModels(private val models: NetworkModelList) {
+
+    /**
+     * False when the event synapses no longer reflect the network and must be collected again before the next update.
+     */
+    @Volatile
+    var isValid = false
+        private set
+
+    /**
+     * Number of updates since the event synapses were collected.
+     */
+    private var step = 0
+
+    /**
+     * Network time step the decay factors were computed with.
+     */
+    private var timeStep = Double.NaN
+
+    private var asyncModels: List<NetworkModel> = listOf()
+
+    /**
+     * Non-async models that update their inputs through the object path: everything but the targets.
+     */
+    private var inputModels: List<NetworkModel> = listOf()
+
+    /**
+     * Non-async models that update through the object path: everything but the event synapses.
+     */
+    private var updateModels: List<NetworkModel> = listOf()
+
+    /**
+     * Free neurons with at least one event synapse in their fan in.
+     */
+    private var targets: Array<Neuron> = arrayOf()
+
+    /**
+     * Sum of the jump and decay base lines of the event synapses into each target.
+     */
+    private var targetBaseLines = DoubleArray(0)
+
+    /**
+     * Sum of the active step responses into each target.
+     */
+    private var targetSteps = DoubleArray(0)
+
+    /**
+     * The decay pools of target k are `targetPoolStart[k] until targetPoolStart[k + 1]`.
+     */
+    private var targetPoolStart = IntArray(1)
+
+    /**
+     * Fan in of each target that is not made of event synapses, updated through the object path.
+     */
+    private var targetResidualFanIn: Array<Array<Synapse>> = arrayOf()
+
+    /**
+     * Sum of jump and decay responses, less their base lines, of the event synapses in each pool.
+     */
+    private var poolSums = DoubleArray(0)
+
+    /**
+     * Factor by which the responses of a pool decay each update.
+     */
+    private var poolDecays = DoubleArray(0)
+
+    private var synapses: Array<Synapse> = arrayOf()
+
+    private var isStep = BooleanArray(0)
+
+    /**
+     * Index into [targets] of the target of each event synapse.
+     */
+    private var synapseTargets = IntArray(0)
+
+    /**
+     * Index into the pools of each jump and decay synapse.
+     */
+    private var synapsePools = IntArray(0)
+
+    /**
+     * Response on spike arrival: jump less base line for jump and decay, height for step.
+     */
+    private var jumps = DoubleArray(0)
+
+    private var baseLines = DoubleArray(0)
+
+    private var durations = IntArray(0)
+
+    /**
+     * Current response. For jump and decay synapses, the response less base line as of [lastSteps].
+     */
+    private var responses = DoubleArray(0)
+
+    private var lastSteps = IntArray(0)
+
+    /**
+     * Step on which the response of each step synapse expires.
+     */
+    private var expiries = IntArray(0)
+
+    /**
+     * Sources of event synapses. The event synapses of source j are
+     * `sourceSynapses[sourceStart[j] until sourceStart[j + 1]]`.
+     */
+    private var sources: Array<Neuron> = arrayOf()
+
+    private var sourceStart = IntArray(1)
+
+    private var sourceSynapses = IntArray(0)
+
+    /**
+     * Circular queue of time buckets, holding the step synapses whose response may expire on that step.
+     */
+    private var buckets: Array<IntArray> = arrayOf()
+
+    private var bucketSizes = IntArray(0)
+
+    /**
+     * Mark the event synapses as stale, so that they are collected again before the next update.
+     */
+    fun invalidate() {
+        isValid = false
+    }
+
+    /**
+     * Collect the event synapses and their targets and sources.
+     */
+    @Synchronized
+    fun build(network: Network) {
+        // Responses are written back so that the current state is read back in below
+        sync()
+        val freeNeurons = Collections.newSetFromMap(IdentityHashMap<Neuron, Boolean>()).apply {
+            addAll(models.get<Neuron>())
+        }
+        val eventSynapses = models.get<Synapse>().filter { it.target in freeNeurons && isEventSynapse(it) }
+        val eventSynapseSet = Collections.newSetFromMap(IdentityHashMap<Synapse, Boolean>()).apply {
+            addAll(eventSynapses)
+        }
+
+        timeStep = network.timeStep
+        step = 0
+
+        // Targets, in network order, with one decay pool per distinct decay factor
+        val targetList = models.get<Neuron>().filter { n -> n.fanInUnsafe.any { it in eventSynapseSet } }
+        val targetIndex = IdentityHashMap<Neuron, Int>()
+        targetList.forEachIndexed { k, n -> targetIndex[n] = k }
+        targets = targetList.toTypedArray()
+        targetBaseLines = DoubleArray(targets.size)
+        targetSteps = DoubleArray(targets.size)
+        targetPoolStart = IntArray(targets.size + 1)
+        val decays = ArrayList<Double>()
+        val poolOf = IdentityHashMap<Synapse, Int>()
+        targets.forEachIndexed { k, n ->
+            val poolIndex = HashMap<Double, Int>()
+            n.fanInUnsafe.filter { it in eventSynapseSet && it.spikeResponder is JumpAndDecay }.forEach { s ->
+                val responder = s.spikeResponder as JumpAndDecay
+                val decay = 1 - timeStep / responder.timeConstant
+                poolOf[s] = poolIndex.getOrPut(decay) { decays.add(decay); decays.size - 1 }
+            }
+            targetPoolStart[k + 1] = decays.size
+        }
+        targetResidualFanIn = Array(targets.size) { k ->
+            targets[k].fanInUnsafe.filter { it !in eventSynapseSet }.toTypedArray()
+        }
+        poolDecays = decays.toDoubleArray()
+        poolSums = DoubleArray(poolDecays.size)
+
+        synapses = eventSynapses.toTypedArray()
+        val n = synapses.size
+        isStep = BooleanArray(n)
+        synapseTargets = IntArray(n)
+        synapsePools = IntArray(n)
+        jumps = DoubleArray(n)
+        baseLines = DoubleArray(n)
+        durations = IntArray(n)
+        responses = DoubleArray(n)
+        lastSteps = IntArray(n)
+        expiries = IntArray(n) { -1 }
+        var horizon = 1
+        val pendingExpiries = ArrayList<Int>()
+        synapses.forEachIndexed { i, s ->
+            val k = targetIndex[s.target]!!
+            synapseTargets[i] = k
+            when (val responder = s.spikeResponder) {
+                is JumpAndDecay -> {
+                    synapsePools[i] = poolOf[s]!!
+                    baseLines[i] = responder.baseLine
+                    jumps[i] = responder.jumpHeight * s.strength - responder.baseLine
+                    responses[i] = s.psr - responder.baseLine
+                    targetBaseLines[k] += responder.baseLine
+                    poolSums[synapsePools[i]] += responses[i]
+                }
+                is StepResponder -> {
+                    isStep[i] = true
+                    durations[i] = responder.responseDuration
+                    horizon = max(horizon, durations[i])
+                    jumps[i] = responder.responseHeight * s.strength
+                    val counter = (s.spikeResponderData as? StepResponderData)?.counter ?: 0
+                    if (counter > 0 && s.psr != 0.0) {
+                        responses[i] = s.psr
+                        expiries[i] = counter
+                        targetSteps[k] += s.psr
+                        horizon = max(horizon, counter)
+                        pendingExpiries.add(i)
+                    }
+                }
+            }
+        }
+
+        buckets = Array(horizon + 1) { IntArray(4) }
+        bucketSizes = IntArray(horizon + 1)
+        pendingExpiries.forEach { schedule(expiries[it], it) }
+
+        // Sources in order of first appearance, with their event synapses in fan out order
+        val eventSynapseIndex = IdentityHashMap<Synapse, Int>()
+        synapses.forEachIndexed { i, s -> eventSynapseIndex[s] = i }
+        val sourceSet = LinkedHashSet<Neuron>()
+        synapses.forEach { sourceSet.add(it.source) }
+        sources = sourceSet.toTypedArray()
+        sourceStart = IntArray(sources.size + 1)
+        val fanOut = ArrayList<Int>()
+        sources.forEachIndexed { j, source ->
+            source.fanOutUnsafe.values.forEach { s -> eventSynapseIndex[s]?.let { fanOut.add(it) } }
+            sourceStart[j + 1] = fanOut.size
+        }
+        sourceSynapses = fanOut.toIntArray()
+
+        val targetSet = Collections.newSetFromMap(IdentityHashMap<NetworkModel, Boolean>()).apply { addAll(targets) }
+        asyncModels = models.getAsyncModels().toList()
+        inputModels = models.getNonAsyncModels().filter { it !in targetSet }
+        updateModels = models.getNonAsyncModels().filter { it !in eventSynapseSet }
+        isValid = true
+    }
+
+    /**
+     * Buffered update of the network, with the responses of event synapses updated by their spikes.
+     */
+    suspend fun update(network: Network) {
+        if (!isValid || network.timeStep != timeStep) {
+            build(network)
+        }
+        step++
+        coroutineScope {
+            asyncModels.map { async { it.updateInputs() } }.awaitAll()
+            updateEventInputs()
+            inputModels.forEach { it.updateInputs() }
+            asyncModels.map { async { it.update() } }.awaitAll()
+            updateModels.forEach { it.update() }
+        }
+    }
+
+    /**
+     * Phase one for the targets: decay, deliver spikes from the sources, expire step responses, and sum the responses.
+     */
+    @Synchronized
+    private fun updateEventInputs() {
+        for (p in poolSums.indices) {
+            poolSums[p] *= poolDecays[p]
+        }
+        for (j in sources.indices) {
+            if (!sources[j].isSpike) {
+                continue
+            }
+            for (e in sourceStart[j] until sourceStart[j + 1]) {
+                arrive(sourceSynapses[e])
+            }
+        }
+        val bucket = step % buckets.size
+        val events = buckets[bucket]
+        for (e in 0 until bucketSizes[bucket]) {
+            val i = events[e]
+            if (expiries[i] == step) {
+                targetSteps[synapseTargets[i]] -= responses[i]
+                responses[i] = 0.0
+                synapses[i].psr = 0.0
+            }
+        }
+        bucketSizes[bucket] = 0
+        for (k in targets.indices) {
+            var sum = targetBaseLines[k] + targetSteps[k]
+            for (p in targetPoolStart[k] until targetPoolStart[k + 1]) {
+                sum += poolSums[p]
+            }
+            for (s in targetResidualFanIn[k]) {
+                s.updateOutput()
+                sum += s.psr
+            }
+            targets[k].addInputValue(sum)
+        }
+    }
+
+    /**
+     * A spike reaches event synapse i on this step.
+     */
+    private fun arrive(i: Int) {
+        if (isStep[i]) {
+            if (durations[i] <= 0) {
+                return
+            }
+            targetSteps[synapseTargets[i]] += jumps[i] - responses[i]
+            responses[i] = jumps[i]
+            expiries[i] = step + durations[i]
+            schedule(expiries[i], i)
+            synapses[i].psr = jumps[i]
+        } else {
+            poolSums[synapsePools[i]] += jumps[i] - decayedResponse(i)
+            responses[i] = jumps[i]
+            lastSteps[i] = step
+            synapses[i].psr = jumps[i] + baseLines[i]
+        }
+    }
+
+    /**
+     * Current response, less base line, of jump and decay synapse i.
+     */
+    private fun decayedResponse(i: Int) =
+        responses[i] * poolDecays[synapsePools[i]].pow((step - lastSteps[i]).toDouble())
+
+    private fun schedule(time: Int, event: Int) {
+        val bucket = time % buckets.size
+        if (bucketSizes[bucket] == buckets[bucket].size) {
+            buckets[bucket] = buckets[bucket].copyOf(bucketSizes[bucket] * 2)
+        }
+        buckets[bucket][bucketSizes[bucket]++] = event
+    }
+
+    /**
+     * Write the current responses back to the event synapses.
+     */
+    @Synchronized
+    fun sync() {
+        for (i in synapses.indices) {
+            val synapse = synapses[i]
+            if (isStep[i]) {
+                synapse.psr = responses[i]
+                (synapse.spikeResponderData as? StepResponderData)?.counter =
+                    if (responses[i] != 0.0) expiries[i] - step else 0
+            } else {
+                synapse.psr = decayedResponse(i) + baseLines[i]
+            }
+        }
+    }
+
+    override fun toString() = "Event driven network models: ${synapses.size} event synapses from " +
+            "${sources.size} sources into ${targets.size} targets"
+
+    companion object {
+
+        /**
+         * True if a synapse's response can be updated by its source's spikes alone.
+         */
+        fun isEventSynapse(s: Synapse) = s.isEnabled
+                && s.delay == 0
+                && s.source?.updateRule?.isSpikingRule == true
+                && (s.learningRule is StaticSynapseRule || s.isFrozen)
+                && (s.spikeResponder is JumpAndDecay || s.spikeResponder is StepResponder)
+    }
+
+}
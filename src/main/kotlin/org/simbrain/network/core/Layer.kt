@@ -57,6 +57,16 @@ abstract class Layer : LocatableModel(), AttributeContainer {
      */
     abstract val outputs: Matrix
 
+    /**
+     * Output values as an array. Layers that store their outputs in an array return that array rather than a copy, so
+     * it must not be modified. Used by connectors to read outputs without allocating.
+     */
+    open val outputView: DoubleArray
+        get() = outputs.toDoubleArray()
+
+    /**
+     * Copy of the output values, for couplings. A copy is needed since consumers can keep the arrays they receive.
+     */
     @get:Producible
     val outputActivations: DoubleArray
         get() = outputs.toDoubleArray()
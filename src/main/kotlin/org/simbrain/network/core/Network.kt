@@ -14,6 +14,7 @@ import org.simbrain.network.gui.PlacementManager
 import org.simbrain.network.gui.dialogs.NetworkPreferences
 import org.simbrain.network.matrix.NeuronArray
 import org.simbrain.network.matrix.WeightMatrix
+import org.simbrain.util.Events2
 import org.simbrain.util.SimpleIdManager
 import org.simbrain.util.UserParameter
 import org.simbrain.util.math.SimbrainMath
@@ -23,6 +24,7 @@ import org.simbrain.util.stats.distributions.NormalDistribution
 import org.simbrain.util.stats.distributions.UniformRealDistribution
 import org.simbrain.workspace.updater.PerformanceMonitor
 import org.simbrain.workspace.updater.UpdateAction
+import java.util.concurrent.ForkJoinPool
 import java.util.concurrent.atomic.AtomicBoolean
 import kotlin.math.abs
 import kotlin.math.ceil
@@ -33,6 +35,11 @@ import kotlin.math.ln
  */
 private val LOG_10 = ln(10.0)
 
+/**
+ * Default number of models per chunk in the partitioned update.
+ */
+private const val DEFAULT_UPDATE_CHUNK_SIZE = 256
+
 /**
  * <b>Network</b> provides core neural network functionality and is the main neural network model object. The core
  * data structure is a [NetworkModelList] that associates classes of [NetworkModel] with linked hash sets of
@@ -78,6 +85,34 @@ class Network: CoroutineScope, EditableObject {
      */
     private val networkModels = NetworkModelList()
 
+    /**
+     * Compiled (structure-of-arrays) form of the free neurons and synapses, created the first time
+     * [compiledBufferedUpdate] runs.
+     */
+    @Transient
+    var compiledModels: CompiledNetworkModels? = null
+        private set
+
+    /**
+     * Partitioned form of the models updated serially by the buffered update, created the first time
+     * [partitionedBufferedUpdate] runs.
+     */
+    @Transient
+    private var partitionedModels: PartitionedNetworkModels? = null
+
+    /**
+     * Event-driven form of the free neurons and synapses, created the first time [eventDrivenUpdate] runs.
+     */
+    @Transient
+    private var eventDrivenModels: EventDrivenNetworkModels? = null
+
+    /**
+     * Pool used by [partitionedBufferedUpdate]. Recreated when [updateParallelism] changes, and shut down by
+     * [dispose].
+     */
+    @Transient
+    private var updatePool: ForkJoinPool? = null
+
     /**
      * The update manager for this network.
      */
@@ -128,13 +163,27 @@ class Network: CoroutineScope, EditableObject {
     )
     var biasesRandomizer: ProbabilityDistribution = NormalDistribution(0.0, 0.01)
 
+    @UserParameter(
+        label = "Update Chunk Size",
+        description = "Number of loose neurons or synapses updated together on one thread by the partitioned update.",
+        minimumValue = 1.0,
+        order = 50
+    )
+    var updateChunkSize = DEFAULT_UPDATE_CHUNK_SIZE
+
+    @UserParameter(
+        label = "Update Parallelism",
+        description = "Number of threads used by the partitioned update.",
+        minimumValue = 1.0,
+        order = 60
+    )
+    var updateParallelism = Runtime.getRuntime().availableProcessors()
+
     /**
      * In iterations or msec.
      */
     var time = 0.0
-        private set(i) {
-            field = i
-        }
+        internal set
 
     /**
      * Time step.
@@ -202,17 +251,19 @@ class Network: CoroutineScope, EditableObject {
 
     fun update(name: String = "") {
 
-        // Main update
-        updateManager.actionList.forEach {
+        // Main update. Changes fired by models during the update are delivered once, when it is done.
+        Events2.coalesce {
             runBlocking {
-                PerformanceMonitor.record(it, "${name}:${it.description}") {
-                    it.run()
+                updateManager.actionList.forEach {
+                    PerformanceMonitor.record(it, { "${name}:${it.description}" }) {
+                        it.run()
+                    }
                 }
             }
-        }
 
-        updateTime()
-        setUpdateCompleted(true)
+            updateTime()
+            setUpdateCompleted(true)
+        }
         events.updated.fireAndBlock()
     }
 
@@ -284,6 +335,84 @@ class Network: CoroutineScope, EditableObject {
         networkModels.getNonAsyncModels().forEach { it.update() }
     }
 
+    /**
+     * Buffered update using [CompiledNetworkModels]. Called by
+     * [org.simbrain.network.update_actions.CompiledBufferedUpdate].
+     */
+    suspend fun compiledBufferedUpdate() {
+        val compiled = compiledModels ?: CompiledNetworkModels(networkModels).also { compiledModels = it }
+        compiled.update()
+    }
+
+    /**
+     * Buffered update with loose neurons and synapses updated in parallel chunks. Called by
+     * [org.simbrain.network.update_actions.PartitionedBufferedUpdate].
+     */
+    suspend fun partitionedBufferedUpdate() {
+        val parallelism = updateParallelism.coerceAtLeast(1)
+        val pool = updatePool?.takeIf { it.parallelism == parallelism } ?: ForkJoinPool(parallelism).also {
+            updatePool?.shutdown()
+            updatePool = it
+        }
+        val partitioned = partitionedModels ?: PartitionedNetworkModels(networkModels).also { partitionedModels = it }
+        partitioned.update(pool, updateChunkSize.coerceAtLeast(1))
+    }
+
+    /**
+     * Release the threads used to update the network. Called when the network's component is removed from the
+     * workspace. The network can still be updated afterwards, in which case a new pool is created.
+     */
+    fun dispose() {
+        updatePool?.shutdown()
+        updatePool = null
+    }
+
+    /**
+     * Buffered update in which spikes are propagated as events. Called by
+     * [org.simbrain.network.update_actions.EventDrivenUpdate].
+     */
+    suspend fun eventDrivenUpdate() {
+        val eventDriven = eventDrivenModels ?: EventDrivenNetworkModels(networkModels).also { eventDrivenModels = it }
+        eventDriven.update(this)
+    }
+
+    /**
+     * Write the post-synaptic responses kept by [eventDrivenUpdate] back to their synapses, so that other update
+     * actions continue from them.
+     */
+    fun syncEventDrivenModels() {
+        eventDrivenModels?.sync()
+    }
+
+    /**
+     * Write activations computed by [compiledBufferedUpdate] back to their neurons. Called whenever neuron
+     * activations are read, so is cheap when there is nothing to write back.
+     */
+    fun syncCompiledModels() {
+        val compiled = compiledModels ?: return
+        if (compiled.needsSync && !compiled.isUpdating) {
+            compiled.sync()
+        }
+    }
+
+    /**
+     * Notify the compiled, partitioned and event-driven models that the network's structure, or a model in a way that
+     * affects how it is compiled or partitioned, has changed.
+     */
+    fun invalidateUpdatePlans() {
+        compiledModels?.invalidate()
+        partitionedModels?.invalidate()
+        eventDrivenModels?.invalidate()
+    }
+
+    /**
+     * Notify the compiled and event-driven models that a synapse strength has changed.
+     */
+    fun synapseStrengthChanged(synapse: Synapse) {
+        compiledModels?.strengthChanged(synapse)
+        eventDrivenModels?.takeIf { it.isValid && EventDrivenNetworkModels.isEventSynapse(synapse) }?.invalidate()
+    }
+
     /**
      * Set the activation level of all neurons to zero.
      */
@@ -359,19 +488,27 @@ class Network: CoroutineScope, EditableObject {
     /**
      * Add a new [NetworkModel]. All network models MUST be added using this method.
      */
-    fun addNetworkModelAsync(model: NetworkModel): Job? {
+    fun addNetworkModelAsync(model: NetworkModel): Job? = addNetworkModelAsync(model, true)
+
+    /**
+     * Add a model, updating the priority list if it is a neuron and [updatePriorities] is true. Models added in bulk
+     * update the list once when all are added.
+     */
+    private fun addNetworkModelAsync(model: NetworkModel, updatePriorities: Boolean): Job? {
         if (model.shouldAdd()) {
             model.id = idManager.getAndIncrementId(model.javaClass)
             networkModels.add(model)
+            invalidateUpdatePlans()
             if (model is LocatableModel && model.shouldBePlaced) {
                 placementManager.placeObject(model)
             }
             model.events.deleted.on(wait = true) {
                 networkModels.remove(it)
+                invalidateUpdatePlans()
                 events.modelRemoved.fire(it)
             }
             val job = events.modelAdded.fire(model)
-            if (model is Neuron) updatePriorityList()
+            if (model is Neuron && updatePriorities) updatePriorityList()
             return job
         }
         return null
@@ -390,12 +527,20 @@ class Network: CoroutineScope, EditableObject {
         }
     }
 
+    /**
+     * Returns a deep copy of this network. Networks made of the common model types are copied directly by a
+     * [NetworkCopier], others through their xml representation.
+     *
+     * @return the copied network.
+     */
+    fun copy(): Network = NetworkCopier(this).copy() ?: copyThroughXml()
+
     /**
      * Returns a copy of this network based on its xml rep.
      *
      * @return the copied network.
      */
-    fun copy(): Network {
+    fun copyThroughXml(): Network {
         val xmlRepresentation = getNetworkXStream().toXML(this)
         return getNetworkXStream().fromXML(xmlRepresentation) as Network
     }
@@ -421,10 +566,14 @@ class Network: CoroutineScope, EditableObject {
         networkModels.allInReconstructionOrder.forEach { model ->
             model.events.deleted.on(wait = true) {
                 networkModels.remove(it)
+                invalidateUpdatePlans()
                 events.modelRemoved.fire(it)
             }
         }
         idManager = SimpleIdManager ({ cls -> networkModels.getRawModelSet(cls).size + 1 })
+        // Networks saved before these settings existed
+        if (updateChunkSize <= 0) updateChunkSize = DEFAULT_UPDATE_CHUNK_SIZE
+        if (updateParallelism <= 0) updateParallelism = Runtime.getRuntime().availableProcessors()
         return this
     }
 
@@ -530,7 +679,8 @@ class Network: CoroutineScope, EditableObject {
      * @param toAdd list of objects to add.
      */
     fun addNetworkModelsAsync(toAdd: List<NetworkModel>): Job {
-        val jobs = toAdd.mapNotNull { addNetworkModelAsync(it) }
+        val jobs = toAdd.mapNotNull { addNetworkModelAsync(it, false) }
+        if (toAdd.any { it is Neuron }) updatePriorityList()
         return launch { jobs.joinAll() }
     }
 
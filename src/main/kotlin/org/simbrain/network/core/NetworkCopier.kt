@@ -0,0 +1,186 @@
+package org.simbrain.network.core
+
+import org.simbrain.network.LocatableModel
+import org.simbrain.network.NetworkModel
+import org.simbrain.network.groups.AbstractNeuronCollection
+import org.simbrain.network.groups.NeuronGroup
+import org.simbrain.network.matrix.NeuronArray
+import org.simbrain.network.matrix.WeightMatrix
+import org.simbrain.network.update_actions.*
+import org.simbrain.workspace.updater.UpdateAction
+import java.util.*
+
+/**
+ * Copies a network model by model, without going through xml, which is much faster. Every copied object is recorded
+ * in an identity map from original to copy, so synapses and connectors are attached to the copies of their endpoints,
+ * and objects that are shared in the original (e.g. the prototype rule of a neuron group and its neurons) are shared
+ * in the copy, as they are when copying through xml.
+ *
+ * Only the model and update action classes in [supportedModels] and [supportedActions] are copied this way. Other
+ * classes, like subnetworks or legacy synapse groups, have state that would be missed, so [copy] returns null for
+ * networks that contain them and [Network.copy] falls back to xml.
+ */
+class NetworkCopier(private val original: Network) {
+
+    private val network = Network()
+
+    private val copies = IdentityHashMap<Any, Any>()
+
+    /**
+     * Returns the copy of an object that was already copied, or copies it.
+     */
+    @Suppress("UNCHECKED_CAST")
+    private fun <T : Any> shared(obj: T, copy: (T) -> T): T = copies.getOrPut(obj) { copy(obj) } as T
+
+    @Suppress("UNCHECKED_CAST")
+    private fun <T : Any> copyOf(obj: T): T = copies[obj] as T? ?: throw IllegalStateException("$obj was not copied")
+
+    /**
+     * Returns the copy, or null if the network contains models or update actions that are not supported.
+     */
+    fun copy(): Network? {
+        val models = original.modelsInReconstructionOrder
+        if (models.any { it.javaClass !in supportedModels } ||
+            original.updateManager.actionList.any { action ->
+                action.javaClass !in supportedActions ||
+                        action is UpdateNetworkModel && models.none { it === action.networkModel }
+            }) {
+            return null
+        }
+
+        with(network) {
+            connectionStrategy = original.connectionStrategy.copy()
+            weightRandomizer = original.weightRandomizer.deepCopy()
+            excitatoryRandomizer = original.excitatoryRandomizer.deepCopy()
+            inhibitoryRandomizer = original.inhibitoryRandomizer.deepCopy()
+            biasesRandomizer = original.biasesRandomizer.deepCopy()
+            updateChunkSize = original.updateChunkSize
+            updateParallelism = original.updateParallelism
+            time = original.time
+            timeStep = original.timeStep
+        }
+
+        val modelCopies = models.map { model ->
+            copyModel(model).also {
+                copies[model] = it
+                if (it is LocatableModel) {
+                    it.shouldBePlaced = false
+                }
+            }
+        }
+        network.addNetworkModelsAsync(modelCopies)
+        models.zip(modelCopies).forEach { (model, copy) ->
+            copy.id = model.id
+            if (copy.label != model.label) {
+                copy.label = model.label
+            }
+            if (model is LocatableModel && copy is LocatableModel) {
+                copy.shouldBePlaced = model.shouldBePlaced
+            }
+        }
+
+        with(network.updateManager) {
+            clear()
+            original.updateManager.actionList.forEach { addAction(copyAction(it)) }
+        }
+        network.updateTimeType()
+        return network
+    }
+
+    private fun copyNeuron(neuron: Neuron) = Neuron(
+        network,
+        neuron,
+        shared(neuron.updateRule) { it.deepCopy() },
+        shared(neuron.dataHolder) { it.copy() }
+    ).also {
+        it.id = neuron.id
+        copies[neuron] = it
+    }
+
+    private fun copySynapse(synapse: Synapse) = Synapse(
+        network,
+        copyOf(synapse.source),
+        copyOf(synapse.target),
+        synapse,
+        shared(synapse.spikeResponder) { it.deepCopy() }
+    ).also {
+        it.id = synapse.id
+    }
+
+    private fun copyModel(model: NetworkModel): NetworkModel = when (model) {
+        is Neuron -> copyNeuron(model)
+        is Synapse -> copySynapse(model)
+        is NetworkTextObject -> NetworkTextObject(network, model)
+        is NeuronGroup -> NeuronGroup(
+            network,
+            model,
+            model.neuronList.map { copyNeuron(it) },
+            shared(model.prototypeRule) { it.deepCopy() },
+            shared(model.dataHolder) { it.copy() }
+        ).apply {
+            // Adding neurons to the group gives them new ids
+            neuronList.zip(model.neuronList).forEach { (copy, neuron) -> copy.id = neuron.id }
+        }
+        is NeuronArray -> model.deepCopy(network).apply {
+            isClamped = model.isClamped
+            isRenderActivations = model.isRenderActivations
+            model.targetValues?.let { targetValues = it.clone() }
+        }
+        is WeightMatrix -> model.deepCopy(network, copyOf(model.source), copyOf(model.target))
+        is SynapseGroup2 -> SynapseGroup2(
+            copyOf<AbstractNeuronCollection>(model.source),
+            copyOf<AbstractNeuronCollection>(model.target),
+            model.connectionSelector.cs.copy(),
+            model.synapses.map { copySynapse(it) }.toMutableList()
+        ).apply {
+            if (displaySynapses != model.displaySynapses) {
+                displaySynapses = model.displaySynapses
+            }
+            synapses.zip(model.synapses)
+                .filter { (copy, synapse) -> copy.isVisible != synapse.isVisible }
+                .forEach { (copy, synapse) -> copy.isVisible = synapse.isVisible }
+            weightRandomizer.probabilityDistribution = model.weightRandomizer.probabilityDistribution.deepCopy()
+            excitatoryRandomizer.probabilityDistribution = model.excitatoryRandomizer.probabilityDistribution.deepCopy()
+            inhibitoryRandomizer.probabilityDistribution = model.inhibitoryRandomizer.probabilityDistribution.deepCopy()
+        }
+        else -> throw IllegalArgumentException("Copying ${model.javaClass.simpleName} is not supported")
+    }
+
+    private fun copyAction(action: UpdateAction): UpdateAction = when (action) {
+        is BufferedUpdate -> BufferedUpdate(network)
+        is CompiledBufferedUpdate -> CompiledBufferedUpdate(network)
+        is PartitionedBufferedUpdate -> PartitionedBufferedUpdate(network)
+        is EventDrivenUpdate -> EventDrivenUpdate(network)
+        is PriorityUpdate -> PriorityUpdate(network)
+        is UpdateNetworkModel -> UpdateNetworkModel(copyOf(action.networkModel))
+        else -> throw IllegalArgumentException("Copying ${action.javaClass.simpleName} is not supported")
+    }
+
+    companion object {
+
+        /**
+         * Model classes that can be copied. Subclasses are not included, since they may have state of their own.
+         */
+        val supportedModels: Set<Class<out NetworkModel>> = setOf(
+            Neuron::class.java,
+            Synapse::class.java,
+            NetworkTextObject::class.java,
+            NeuronGroup::class.java,
+            NeuronArray::class.java,
+            WeightMatrix::class.java,
+            SynapseGroup2::class.java
+        )
+
+        /**
+         * Update action classes that can be copied.
+         */
+        val supportedActions: Set<Class<out UpdateAction>> = setOf(
+            BufferedUpdate::class.java,
+            CompiledBufferedUpdate::class.java,
+            PartitionedBufferedUpdate::class.java,
+            EventDrivenUpdate::class.java,
+            PriorityUpdate::class.java,
+            UpdateNetworkModel::class.java
+        )
+    }
+}
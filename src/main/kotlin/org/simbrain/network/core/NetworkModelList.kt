@@ -156,7 +156,7 @@ class NetworkModelListConverter : Converter {
         while (reader.hasMoreChildren()) {
             reader.moveDown()
             val cls = Class.forName(reader.nodeName)
-            val model = context.convertAnother(reader.value, cls) as NetworkModel
+            val model = context.convertAnother(modelList, cls) as NetworkModel
             modelList.putUnsafe(cls as Class<out NetworkModel>, model)
             reader.moveUp()
         }
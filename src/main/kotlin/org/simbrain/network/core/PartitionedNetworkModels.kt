@@ -0,0 +1,138 @@
+package org.simbrain.network.core
+
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import org.simbrain.network.NetworkModel
+import org.simbrain.network.synapse_update_rules.spikeresponders.SpikeResponder
+import org.simbrain.util.Events2
+import java.util.IdentityHashMap
+import java.util.concurrent.Callable
+import java.util.concurrent.ForkJoinPool
+
+/**
+ * Partitioned form of the models that [Network.asyncBufferedUpdate] updates serially, used by
+ * [org.simbrain.network.update_actions.PartitionedBufferedUpdate].
+ *
+ * The non-async models are split, in update order, into segments. Runs of loose neurons and runs of loose synapses
+ * become parallel segments, which are cut into chunks of [Network.updateChunkSize] models and updated on a fork-join
+ * pool. All other models are updated serially in their own segments. So are neurons whose update rule reads the
+ * activations of other neurons, draws random numbers (see [NeuronUpdateRule.isStochastic]) or is shared with another
+ * neuron, neurons with a fan-in synapse whose spike responder draws random numbers (see
+ * [SpikeResponder.isStochastic]), and synapses whose learning rule draws random numbers (see
+ * [SynapseUpdateRule.isStochastic]). Random numbers are then drawn in the same order as with a serial update. Each
+ * segment finishes before the next one starts, and phase one ([NetworkModel.updateInputs]) finishes before phase two
+ * ([NetworkModel.update]) starts, so results are the same as with a serial buffered update.
+ *
+ * The segments are rebuilt after [Network.invalidateUpdatePlans], which setting a rule or responder, or editing a
+ * neuron or synapse, calls. Code that turns on noise in a rule that is already in use should call it too.
+ */
+class PartitionedNetworkModels(private val models: NetworkModelList) {
+
+    /**
+     * A run of models updated together, either in parallel chunks or serially.
+     */
+    private class Segment(val models: Array<NetworkModel>, val parallel: Boolean)
+
+    /**
+     * False when the segments no longer reflect the network and must be rebuilt before the next update.
+     */
+    @Volatile
+    var isValid = false
+        private set
+
+    private var segments: List<Segment> = listOf()
+
+    /**
+     * Mark the segments as stale, so that they are rebuilt before the next update.
+     */
+    fun invalidate() {
+        isValid = false
+    }
+
+    /**
+     * Split the non-async models into segments.
+     */
+    fun partition() {
+        val newSegments = ArrayList<Segment>()
+        var run = ArrayList<NetworkModel>()
+        var runKind: Class<*>? = null
+        fun endRun() {
+            if (run.isNotEmpty()) {
+                newSegments.add(Segment(run.toTypedArray(), runKind != null))
+                run = ArrayList()
+            }
+        }
+        val nonAsyncModels = models.getNonAsyncModels()
+        val ruleUsers = IdentityHashMap<NeuronUpdateRule<*, *>, Int>()
+        nonAsyncModels.forEach { if (it is Neuron) ruleUsers.merge(it.updateRule, 1) { a, b -> a + b } }
+        for (model in nonAsyncModels) {
+            val kind = when {
+                model is Neuron && isIndependent(model, ruleUsers) -> Neuron::class.java
+                model is Synapse && !SynapseUpdateRule.isStochastic(model.learningRule) -> Synapse::class.java
+                else -> null
+            }
+            if (kind != runKind) {
+                endRun()
+                runKind = kind
+            }
+            run.add(model)
+        }
+        endRun()
+        segments = newSegments
+        isValid = true
+    }
+
+    /**
+     * True if a neuron can be updated at the same time as other neurons: its rule reads no other neuron, draws no
+     * random numbers, and is not shared, and the spike responders of its fan-in, which it applies when it updates its
+     * inputs, draw no random numbers.
+     */
+    private fun isIndependent(neuron: Neuron, ruleUsers: Map<NeuronUpdateRule<*, *>, Int>): Boolean {
+        val rule = neuron.updateRule
+        return !NeuronUpdateRule.readsFanInActivations(rule) && !NeuronUpdateRule.isStochastic(rule) &&
+                ruleUsers[rule] == 1 && neuron.fanIn.none { SpikeResponder.isStochastic(it.spikeResponder) }
+    }
+
+    /**
+     * Two-phase buffered update of the network, with loose neurons and synapses updated in parallel.
+     */
+    suspend fun update(pool: ForkJoinPool, chunkSize: Int) {
+        if (!isValid) {
+            partition()
+        }
+        coroutineScope {
+            models.getAsyncModels().map { async { it.updateInputs() } }.awaitAll()
+            segments.forEach { it.run(pool, chunkSize) { updateInputs() } }
+            models.getAsyncModels().map { async { it.update() } }.awaitAll()
+            segments.forEach { it.run(pool, chunkSize) { update() } }
+        }
+    }
+
+    /**
+     * Apply an update phase to the models in a segment. Returns when all chunks are done.
+     */
+    private inline fun Segment.run(pool: ForkJoinPool, chunkSize: Int, crossinline phase: NetworkModel.() -> Unit) {
+        if (!parallel || models.size <= chunkSize) {
+            models.forEach { it.phase() }
+            return
+        }
+        // Fires from the pool threads join the coalesced network update
+        val coalescing = Events2.currentCoalescing
+        val chunks = (models.indices step chunkSize).map { start ->
+            Callable {
+                Events2.coalesceWith(coalescing) {
+                    for (i in start until minOf(start + chunkSize, models.size)) {
+                        models[i].phase()
+                    }
+                }
+            }
+        }
+        // invokeAll waits for every chunk; get() rethrows any exception thrown by a model
+        pool.invokeAll(chunks).forEach { it.get() }
+    }
+
+    override fun toString() = "Partitioned network models: ${segments.size} segments, " +
+            "${segments.filter { it.parallel }.sumOf { it.models.size }} models updated in parallel"
+
+}
@@ -693,6 +693,8 @@ class NetworkPanel constructor(val networkComponent: NetworkComponent) : JPanel(
             }
             updateActionsChanged.on(Dispatchers.Swing) { timeLabel.update() }
             updated.on(Dispatchers.Swing, wait = true) {
+                // Compiled activations are only written back when read, so make them visible to the nodes
+                network.syncCompiledModels()
                 repaint()
                 timeLabel.update()
             }
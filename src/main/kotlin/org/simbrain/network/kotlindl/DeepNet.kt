@@ -199,7 +199,7 @@ class DeepNet(
             outputs = Matrix(outputSize(), 1)
         }
         events.updated.fireAndForget()
-        inputs.mul(0.0) // clear inputs
+        clearInputs()
     }
 
     override fun delete() {
@@ -81,7 +81,7 @@ class SmileClassifier(
             }
         }
         events.updated.fireAndForget()
-        inputs.mul(0.0) // clear inputs
+        clearInputs()
     }
 
     override fun toString(): String {
@@ -21,6 +21,7 @@ package org.simbrain.network.spikeresponders
 import org.simbrain.network.core.Connector
 import org.simbrain.network.core.Synapse
 import org.simbrain.network.matrix.NeuronArray
+import org.simbrain.network.matrix.SparseWeightMatrix
 import org.simbrain.network.matrix.WeightMatrix
 import org.simbrain.network.synapse_update_rules.spikeresponders.SpikeResponder
 import org.simbrain.network.util.MatrixDataHolder
@@ -74,6 +75,16 @@ class JumpAndDecay : SpikeResponder() {
     }
 
     override fun apply(conn: Connector, responderData: MatrixDataHolder) {
+        if (conn is SparseWeightMatrix) {
+            val na = conn.source.let { if (it is NeuronArray) it else return }
+            val spikeData = na.dataHolder.let { if (it is SpikingMatrixData) it else return }
+            if (na.updateRule.isSpikingRule) {
+                conn.forEachEntry { k, _, j ->
+                    conn.psr[k] = jumpAndDecay(spikeData.spikes[j], conn.psr[k], conn.values[k], na.network.timeStep)
+                }
+            }
+            return
+        }
         val wm = conn.let { if (it is WeightMatrix) it else return }
         val na = conn.source.let { if (it is NeuronArray) it else return }
         val spikeData = na.dataHolder.let { if (it is SpikingMatrixData) it else return }
@@ -21,12 +21,15 @@ package org.simbrain.network.spikeresponders
 import org.simbrain.network.core.Connector
 import org.simbrain.network.core.Synapse
 import org.simbrain.network.matrix.NeuronArray
+import org.simbrain.network.matrix.SparseWeightMatrix
 import org.simbrain.network.matrix.WeightMatrix
 import org.simbrain.network.synapse_update_rules.spikeresponders.SpikeResponder
 import org.simbrain.network.util.MatrixDataHolder
 import org.simbrain.network.util.ScalarDataHolder
 import org.simbrain.network.util.SpikingMatrixData
 import org.simbrain.util.UserParameter
+import org.simbrain.util.stats.ProbabilityDistribution
+import org.simbrain.util.stats.distributions.UniformRealDistribution
 
 /**
  * Probabilistic spike responders produces a response with some probability. If a response is produced it is set
@@ -44,13 +47,29 @@ class ProbabilisticResponder : SpikeResponder() {
     )
     var activationProbability = .5
 
+    /**
+     * Draws the numbers that decide whether a spike produces a response. Set its seed to reproduce a run.
+     */
+    var randomizer: ProbabilityDistribution = UniformRealDistribution()
+
     override fun deepCopy(): ProbabilisticResponder {
         val pr = ProbabilisticResponder()
         pr.activationProbability = activationProbability
+        pr.randomizer = randomizer.deepCopy()
         return pr
     }
 
     override fun apply(conn: Connector, responderData: MatrixDataHolder) {
+        if (conn is SparseWeightMatrix) {
+            val na = conn.source.let { if (it is NeuronArray) it else return }
+            val spikeData = na.dataHolder.let { if (it is SpikingMatrixData) it else return }
+            if (na.updateRule.isSpikingRule) {
+                conn.forEachEntry { k, _, j ->
+                    conn.psr[k] = probResponder(spikeData.spikes[j]) * conn.values[k]
+                }
+            }
+            return
+        }
         val wm = conn.let { if (it is WeightMatrix) it else return }
         val na = conn.source.let { if (it is NeuronArray) it else return }
         val spikeData = na.dataHolder.let { if (it is SpikingMatrixData) it else return }
@@ -70,7 +89,7 @@ class ProbabilisticResponder : SpikeResponder() {
 
     private fun probResponder(spiked: Boolean) : Double {
         return if (spiked) {
-            if (Math.random() > 1 - activationProbability) {
+            if (randomizer.sampleDouble() > 1 - activationProbability) {
                 1.0
             } else {
                 0.0
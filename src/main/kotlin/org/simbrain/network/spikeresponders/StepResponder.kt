@@ -21,6 +21,7 @@ package org.simbrain.network.spikeresponders
 import org.simbrain.network.core.Connector
 import org.simbrain.network.core.Synapse
 import org.simbrain.network.matrix.NeuronArray
+import org.simbrain.network.matrix.SparseWeightMatrix
 import org.simbrain.network.matrix.WeightMatrix
 import org.simbrain.network.synapse_update_rules.spikeresponders.SpikeResponder
 import org.simbrain.network.util.MatrixDataHolder
@@ -53,6 +54,27 @@ class StepResponder(
 ) : SpikeResponder() {
 
     override fun apply(conn: Connector, data: MatrixDataHolder) {
+        if (conn is SparseWeightMatrix) {
+            val na = conn.source.let { if (it is NeuronArray) it else return }
+            val stepResponseData = data.let { if (it is StepMatrixData) it else return }
+            val spikeData = na.dataHolder.let { if (it is SpikingMatrixData) it else return }
+            if (na.updateRule.isSpikingRule) {
+                // Sparse matrix data has one column per entry
+                val counters = stepResponseData.counterMatrix
+                conn.forEachEntry { k, _, j ->
+                    if (spikeData.spikes[j]) {
+                        counters.set(0, k, responseDuration.toDouble())
+                        conn.psr[k] = responseHeight * conn.values[k]
+                    } else {
+                        counters.set(0, k, maxOf(counters[0, k] - 1, 0.0))
+                    }
+                    if (counters[0, k] <= 0) {
+                        conn.psr[k] = 0.0
+                    }
+                }
+            }
+            return
+        }
         val wm = conn.let { if (it is WeightMatrix) it else return }
         val na = conn.source.let { if (it is NeuronArray) it else return }
         val stepResponseData = data.let { if (it is StepMatrixData) it else return }
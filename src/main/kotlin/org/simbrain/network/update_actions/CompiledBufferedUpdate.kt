@@ -0,0 +1,18 @@
+package org.simbrain.network.update_actions
+
+import org.simbrain.network.core.CompiledNetworkModels
+import org.simbrain.network.core.Network
+import org.simbrain.workspace.updater.UpdateAction
+
+/**
+ * Buffered update in which free linear neurons and static synapses are packed into arrays and updated together. Gives
+ * the same results as [BufferedUpdate] but is faster on large networks of loose neurons.
+ *
+ * See [CompiledNetworkModels].
+ */
+class CompiledBufferedUpdate(private val network: Network) : UpdateAction("Loose neurons (compiled) and synapses",
+    "Buffered update of loose items, with linear neurons and static synapses packed into arrays") {
+    override suspend fun run() {
+        network.compiledBufferedUpdate()
+    }
+}
@@ -0,0 +1,18 @@
+package org.simbrain.network.update_actions
+
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.PartitionedNetworkModels
+import org.simbrain.workspace.updater.UpdateAction
+
+/**
+ * Buffered update in which loose neurons and synapses are split into chunks that are updated in parallel. Gives the
+ * same results as [BufferedUpdate]. Chunk size and number of threads are set on the network.
+ *
+ * See [PartitionedNetworkModels].
+ */
+class PartitionedBufferedUpdate(private val network: Network) : UpdateAction("Loose neurons (partitioned) and synapses",
+    "Buffered update of loose items, in parallel chunks") {
+    override suspend fun run() {
+        network.partitionedBufferedUpdate()
+    }
+}
@@ -8,7 +8,7 @@ import org.simbrain.workspace.updater.UpdateAction
  *
  * @author jyoshimi
  */
-class UpdateNetworkModel(private val networkModel: NetworkModel) : UpdateAction(
+class UpdateNetworkModel(val networkModel: NetworkModel) : UpdateAction(
     networkModel.label,
     "Update ${networkModel.label}"
 ) {
@@ -269,21 +269,40 @@ open class AdExIFRule : SpikingNeuronUpdateRule<AdexData, AdexMatrixData>(), Noi
 
     override fun apply(na: Layer, data: AdexMatrixData) {
         if (na is NeuronArray) {
-            for (i in 0 until na.size()) {
-                val excitInputs = na.excitatoryInputs
-                val inhibInputs = na.inhibitoryInputs
-                val (spiked, v, w) = adExRule(
-                    na.activations.get(i, 0),
-                    data.w.get(i),
-                    excitInputs[i],
-                    inhibInputs[i],
-                    data.lastSpikeTimes[i],
-                    na.network.time,
-                    na.network.timeStep
-                )
-                data.setHasSpiked(i, spiked, na.network.time)
-                na.activations.set(i, 0, v)
-                data.w.set(i, w)
+            val t = na.network.time
+            val dt = na.network.timeStep
+            val excitInputs = na.excitatoryInputs
+            val inhibInputs = na.inhibitoryInputs
+            val activations = na.activationBuffer
+            val lastSpikeTimes = data.lastSpikeTimes
+            val adaptation = data.w
+            // Same as adExRule, without allocating a triple per unit
+            for (i in activations.indices) {
+                var v_mem = activations[i]
+                var w = adaptation[i]
+                val refractory = lastSpikeTimes[i] + refractoryPeriod >= t
+                val iSyn_ex = g_e_bar * excitInputs[i] * (exReversal - v_mem)
+                val iSyn_in = -g_i_bar * inhibInputs[i] * (inReversal - v_mem)
+                val i_leak = g_L * (leakReversal - v_mem)
+                var ibg = i_bg
+                if (addNoise) {
+                    ibg += noiseGenerator.sampleDouble()
+                }
+                var dVdt =
+                    g_L * slopeFactor * Math.exp((v_mem - v_Th) / slopeFactor) + i_leak + iSyn_ex + iSyn_in + ibg - w
+                dVdt /= memCapacitance
+                val dwdt = (a * (v_mem - leakReversal) - w) / tauW
+                v_mem += dVdt * dt
+                w += dwdt * dt
+                var spiked = false
+                if (v_mem >= v_Peak) {
+                    v_mem = v_Reset
+                    w += b * CURRENT_CONVERTER
+                    spiked = !refractory
+                }
+                data.setHasSpiked(i, spiked, t)
+                activations[i] = clip(v_mem, -1000.0, 1000.0)
+                adaptation[i] = w
             }
         }
     }
@@ -416,8 +435,11 @@ open class AdExIFRule : SpikingNeuronUpdateRule<AdexData, AdexMatrixData>(), Noi
 }
 
 class AdexMatrixData(size: Int) : SpikingMatrixData(size) {
+    /**
+     * Adaptation variable of each unit. Starts at the same value as [AdexData.w].
+     */
     @get:Producible
-    var w = DoubleArray(size)
+    var w = DoubleArray(size) { 200.0 }
     override fun copy() = AdexMatrixData(size).also {
         commonCopy(it)
         it.w = w.copyOf()
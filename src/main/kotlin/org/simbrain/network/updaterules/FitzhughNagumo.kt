@@ -123,16 +123,26 @@ class FitzhughNagumo : SpikingNeuronUpdateRule<FitzHughData, FitzHughMatrixData>
 
     override fun apply(na: Layer, data: FitzHughMatrixData) {
         if (na is NeuronArray) {
-            for (i in 0 until na.size()) {
-                val (spiked, v, w) = fitzhughNagumoRule(
-                    na.activations.get(i, 0),
-                    data.w.get(i),
-                    na.inputs.get(i, 0),
-                    na.network.timeStep
-                )
-                data.setHasSpiked(i, spiked, na.network.time)
-                na.activations.set(i, 0, v)
-                data.w.set(i, w)
+            val timeStep = na.network.timeStep
+            val time = na.network.time
+            val activations = na.activationBuffer
+            val inputArray = na.inputArray
+            val recovery = data.w
+            // Same as fitzhughNagumoRule, without allocating a triple per unit
+            for (i in activations.indices) {
+                var inputs = inputArray[i]
+                var v = activations[i]
+                var w = recovery[i]
+                if (addNoise) {
+                    inputs += noiseGenerator.sampleDouble()
+                }
+                inputs += iBg
+                w += timeStep * (a * (b * v + 0.7 - c * w))
+                v += timeStep * (v - v * v * v / 3 - w + inputs)
+                v = clip(v, -1000.0, 1000.0)
+                data.setHasSpiked(i, v >= threshold, time)
+                activations[i] = v
+                recovery[i] = w
             }
         }
     }
@@ -138,15 +138,22 @@ open class IntegrateAndFireRule : SpikingNeuronUpdateRule<SpikingScalarData, Spi
 
     override fun apply(na: Layer, data: SpikingMatrixData) {
         if (na is NeuronArray) {
-            for (i in 0 until na.size()) {
-                val(spiked, V) = intFireRule(
-                    na.network.time,
-                    data.lastSpikeTimes[i],
-                    na.network.timeStep,
-                    na.inputs.get(i, 0),
-                    na.activations.get(i, 0))
-                data.setHasSpiked(i, spiked, na.network.time)
-                na.activations.set(i, 0, V)
+            val t = na.network.time
+            val timeStep = na.network.timeStep
+            val activations = na.activationBuffer
+            val inputs = na.inputArray
+            val lastSpikeTimes = data.lastSpikeTimes
+            // Same as intFireRule, without allocating a pair per unit
+            for (i in activations.indices) {
+                val memPotential = activations[i]
+                var synCurrent = if (t < lastSpikeTimes[i] + refractoryPeriod) 0.0 else inputs[i] + backgroundCurrent
+                if (addNoise) {
+                    synCurrent += noiseGenerator.sampleDouble()
+                }
+                val dVm = timeStep * (-(memPotential - restingPotential) + resistance * synCurrent) / timeConstant
+                val spiked = memPotential >= threshold && t > lastSpikeTimes[i] + refractoryPeriod
+                data.setHasSpiked(i, spiked, t)
+                activations[i] = if (spiked) resetPotential else memPotential + dVm
             }
         }
     }
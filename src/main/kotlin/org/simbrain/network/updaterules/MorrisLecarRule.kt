@@ -1,18 +1,21 @@
 package org.simbrain.network.updaterules
 
+import org.simbrain.network.core.Layer
 import org.simbrain.network.core.Neuron
 import org.simbrain.network.core.SpikingNeuronUpdateRule
+import org.simbrain.network.matrix.NeuronArray
 import org.simbrain.network.updaterules.interfaces.NoisyUpdateRule
 import org.simbrain.network.util.SpikingMatrixData
 import org.simbrain.network.util.SpikingScalarData
 import org.simbrain.util.UserParameter
 import org.simbrain.util.stats.ProbabilityDistribution
 import org.simbrain.util.stats.distributions.NormalDistribution
+import org.simbrain.workspace.Producible
 
 /**
  * @author Zoë Tosi
  */
-class MorrisLecarRule : SpikingNeuronUpdateRule<MorrisLecarData, SpikingMatrixData>(), NoisyUpdateRule {
+class MorrisLecarRule : SpikingNeuronUpdateRule<MorrisLecarData, MorrisLecarMatrixData>(), NoisyUpdateRule {
     /**
      * Calcium channel conductance (micro Siemens/cm^2).
      */
@@ -208,6 +211,32 @@ class MorrisLecarRule : SpikingNeuronUpdateRule<MorrisLecarData, SpikingMatrixDa
         neuron.activation = vMembrane
     }
 
+    override fun apply(na: Layer, data: MorrisLecarMatrixData) {
+        if (na is NeuronArray) {
+            val dt = na.network.timeStep
+            val time = na.network.time
+            val activations = na.activationBuffer
+            val inputs = na.inputArray
+            val w = data.w_K
+            for (i in activations.indices) {
+                val i_syn = inputs[i]
+                val vMembrane = activations[i]
+                val dVdt = dVdt(vMembrane, i_syn, w[i])
+                val dWdt = dWdt(vMembrane, w[i])
+                val vmFut = vMembrane + dt * dVdt
+                val wKFut = w[i] + dt * dWdt
+                val vNext = vMembrane + dt / 2 * (dVdt + dVdt(vmFut, i_syn, w[i]))
+                w[i] = w[i] + dt / 2 * (dWdt + dWdt(vNext, wKFut))
+                data.setHasSpiked(i, vNext > threshold, time)
+                activations[i] = vNext
+            }
+        }
+    }
+
+    override fun createMatrixData(size: Int): MorrisLecarMatrixData {
+        return MorrisLecarMatrixData(size)
+    }
+
     private fun dVdt(vMembrane: Double, i_syn: Double, w_K: Double): Double {
         val i_Ca = g_Ca * membraneFunction(vMembrane) * (vMembrane - vRest_Ca)
         val i_K = g_K * w_K * (vMembrane - vRest_k)
@@ -382,6 +411,18 @@ class MorrisLecarRule : SpikingNeuronUpdateRule<MorrisLecarData, SpikingMatrixDa
 }
 
 
+class MorrisLecarMatrixData(size: Int) : SpikingMatrixData(size) {
+    /**
+     * Fraction of open potassium channels of each unit.
+     */
+    @get:Producible
+    var w_K = DoubleArray(size)
+    override fun copy() = MorrisLecarMatrixData(size).also {
+        commonCopy(it)
+        it.w_K = w_K.copyOf()
+    }
+}
+
 class MorrisLecarData(
     @UserParameter(label = "w_K", description = "Fraction of open potassium channels")
     var w_K: Double = 0.0,
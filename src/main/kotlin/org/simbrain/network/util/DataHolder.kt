@@ -4,6 +4,7 @@ import org.simbrain.util.UserParameter
 import org.simbrain.util.Utils
 import org.simbrain.util.propertyeditor.CopyableObject
 import org.simbrain.util.toDoubleArray
+import org.simbrain.workspace.Producible
 import smile.math.matrix.Matrix
 import java.util.*
 
@@ -35,7 +36,11 @@ class BiasedMatrixData(var size: Int) : MatrixDataHolder {
 open class SpikingMatrixData(var size: Int) : MatrixDataHolder {
     var spikes = BooleanArray(size) // TODO: Possibly use int Smile array of binary ints for perf
         private set
-    var lastSpikeTimes = DoubleArray(size)
+    /**
+     * Time of last spike of each unit. Default assumes no spikes have occurred when simulation begins, as in
+     * [SpikingScalarData].
+     */
+    var lastSpikeTimes = DoubleArray(size) { Double.NEGATIVE_INFINITY }
     override fun copy() = SpikingMatrixData(size).also {
         it.spikes = spikes.copyOf()
         it.lastSpikeTimes = lastSpikeTimes.copyOf()
@@ -62,6 +67,23 @@ class NakaMatrixData(var size: Int) : MatrixDataHolder {
     }
 }
 
+/**
+ * Gating variables of each unit for [org.simbrain.network.neuron_update_rules.HodgkinHuxleyRule].
+ */
+class HodgkinHuxleyMatrixData(var size: Int) : MatrixDataHolder {
+    @get:Producible
+    var n = DoubleArray(size)
+    @get:Producible
+    var m = DoubleArray(size)
+    @get:Producible
+    var h = DoubleArray(size)
+    override fun copy() = HodgkinHuxleyMatrixData(size).also {
+        it.n = n.copyOf()
+        it.m = m.copyOf()
+        it.h = h.copyOf()
+    }
+}
+
 /**
  * Holders for scalar data used in scalar update rules, like [NeuronUpdateRule] and [SynapseUpdateRule].
  */
@@ -2,9 +2,12 @@ package org.simbrain.util
 
 import kotlinx.coroutines.*
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
 import java.util.function.BiConsumer
 import java.util.function.Consumer
+import java.util.function.LongConsumer
 
 /**
  * Event objects corresponding to no-arg, adding, removing, and changing objects. Each object has a set of functions
@@ -18,18 +21,132 @@ import java.util.function.Consumer
  *   A wait option on handlers can be used if the fire function that triggers it, should block, i.e. wait for the
  *   event handling to finish before continuing execution.
  *
+ * Models are created in large numbers and most have no listeners (e.g. when running headless), so an event costs
+ *   nothing until a handler is added: handler queues are allocated on the first "on", all events share one
+ *   coroutine scope, and firing an event with no handlers returns without launching anything.
+ *
+ * Within [coalesce] (e.g. a network update), handlers that do not wait see each no-arg or changed event fired by the
+ *   block once, when the outermost block ends. Coalescing is scoped to the thread running the block, and to worker
+ *   threads the block hands to [coalesceWith].
+ *
  * For examples see [TrainerEvents2]
  */
 open class Events2: CoroutineScope {
 
-    private val job = SupervisorJob()
+    override val coroutineContext get() = sharedContext
+
+    companion object {
+
+        /**
+         * Context shared by all events. Handlers are launched as children of one supervisor job, so that a failing
+         * handler does not cancel the others.
+         */
+        private val sharedContext = Dispatchers.Default + SupervisorJob()
+
+        private val completedJob = Job().apply { complete() }
+
+        /**
+         * The [coalesce] block running on each thread, if any.
+         */
+        private val threadCoalescing = ThreadLocal<Coalescing?>()
+
+        /**
+         * The [coalesce] block running on the current thread, or null. Pass it to [coalesceWith] to coalesce the fires
+         * of work the block runs on other threads.
+         */
+        @JvmStatic
+        val currentCoalescing: Coalescing? get() = threadCoalescing.get()
+
+        /**
+         * If set, called with the time in nanoseconds each fire of an event with handlers takes on the firing thread,
+         * i.e. the time to launch its handlers and wait for those that wait. Used by the performance monitor.
+         */
+        @JvmStatic
+        @Volatile
+        var dispatchTimeListener: LongConsumer? = null
+
+        /**
+         * Run a block in which repeated fires of no-arg and changed events on this thread are coalesced. Handlers
+         * that wait are run as usual. Handlers that do not wait are run once per event after the block, with the new
+         * value of its last fire and the old value of its first. A block nested in another one joins it, and its
+         * fires are delivered when the outer block ends.
+         */
+        @JvmStatic
+        inline fun <T> coalesce(block: () -> T): T {
+            val coalescing = beginCoalescing()
+            try {
+                return block()
+            } finally {
+                endCoalescing(coalescing)
+            }
+        }
+
+        /**
+         * Run a block, e.g. a chunk of a parallel update, in the [coalescing] block of the thread that started it, so
+         * that its fires are delivered when that block ends. Runs the block as usual if [coalescing] is null.
+         */
+        @JvmStatic
+        fun <T> coalesceWith(coalescing: Coalescing?, block: () -> T): T {
+            if (coalescing == null) {
+                return block()
+            }
+            val previous = threadCoalescing.get()
+            threadCoalescing.set(coalescing)
+            try {
+                return block()
+            } finally {
+                if (previous == null) threadCoalescing.remove() else threadCoalescing.set(previous)
+            }
+        }
+
+        @PublishedApi
+        internal fun beginCoalescing(): Coalescing {
+            val coalescing = threadCoalescing.get() ?: Coalescing().also { threadCoalescing.set(it) }
+            coalescing.depth.incrementAndGet()
+            return coalescing
+        }
 
-    override val coroutineContext = Dispatchers.Default + job
+        @PublishedApi
+        internal fun endCoalescing(coalescing: Coalescing) {
+            if (coalescing.depth.decrementAndGet() == 0) {
+                threadCoalescing.remove()
+                coalescing.deliver()
+            }
+        }
+    }
 
     /**
-     * Associates events to their listeners
+     * Fires of events during a [coalesce] block, waiting to be delivered to handlers that do not wait when the
+     * outermost block ends.
      */
-    private val eventMapping = HashMap<EventObject, ConcurrentLinkedQueue<EventObjectHandler>>()
+    class Coalescing internal constructor() {
+
+        /**
+         * Number of nested [coalesce] blocks running.
+         */
+        internal val depth = AtomicInteger()
+
+        private class PendingFire(@Volatile var new: Any?, val old: Any?)
+
+        private val pending = ConcurrentHashMap<Events2.EventObject, PendingFire>()
+
+        /**
+         * Record a fire of [event], keeping the old value of its first fire. Returns false if the block has ended.
+         */
+        internal fun record(event: Events2.EventObject, new: Any?, old: Any?): Boolean {
+            if (depth.get() == 0) {
+                return false
+            }
+            pending.compute(event) { _, fire -> fire?.also { it.new = new } ?: PendingFire(new, old) }
+            return true
+        }
+
+        internal fun deliver() {
+            for (event in pending.keys) {
+                pending.remove(event)?.let { event.deliverCoalesced(it.new, it.old) }
+            }
+        }
+    }
 
     enum class TimingMode {
         Throttle, Debounce
@@ -39,63 +156,146 @@ open class Events2: CoroutineScope {
 
         abstract val interval: Int
 
-        private var intervalEndTime = System.currentTimeMillis()
+        private var intervalEndTime = 0L
 
         abstract var timingMode: TimingMode
 
-        private val batchNew = ConcurrentLinkedQueue<Any?>()
-        private val batchOld = ConcurrentLinkedQueue<Any?>()
+        /**
+         * Handlers of this event, allocated when the first one is added.
+         */
+        @Volatile
+        private var handlers: ConcurrentLinkedQueue<EventObjectHandler>? = null
+
+        /**
+         * Values collected by batch events, allocated on the first batch fire.
+         */
+        private var batchNew: ConcurrentLinkedQueue<Any?>? = null
+        private var batchOld: ConcurrentLinkedQueue<Any?>? = null
 
         private var job: Job? = null
 
+        /**
+         * True if there is at least one handler for this event.
+         */
+        val hasHandlers get() = handlers?.isNotEmpty() == true
+
+        /**
+         * Whether fires of this event can be coalesced by [coalesce].
+         */
+        protected open val coalescible = false
+
+        private fun addHandler(eventObjectHandler: EventObjectHandler) {
+            (handlers ?: synchronized(this) {
+                handlers ?: ConcurrentLinkedQueue<EventObjectHandler>().also { handlers = it }
+            }).add(eventObjectHandler)
+        }
+
         protected fun onSuspendHelper(dispatcher: CoroutineDispatcher?, wait: Boolean, run: suspend (new: Any?, old: Any?) -> Unit) {
-            val eventObjectHandler = EventObjectHandler(dispatcher, wait, run)
-            eventMapping.getOrPut(this@EventObject) { ConcurrentLinkedQueue() }.add(eventObjectHandler)
+            addHandler(EventObjectHandler(dispatcher, wait, run))
         }
 
         protected fun onHelper(dispatcher: CoroutineDispatcher?, wait: Boolean, run: (new: Any?, old: Any?) -> Unit) {
-            val eventObjectHandler = EventObjectHandler(dispatcher, wait, run)
-            eventMapping.getOrPut(this@EventObject) { ConcurrentLinkedQueue() }.add(eventObjectHandler)
+            addHandler(EventObjectHandler(dispatcher, wait, run))
+        }
+
+        private fun launchHandler(eventObjectHandler: EventObjectHandler, run: suspend (suspend (new: Any?, old: Any?) -> Unit) -> Unit) =
+            with(eventObjectHandler) {
+                if (dispatcher != null) launch(dispatcher) { run(handler) } else launch { run(handler) }
+            }
+
+        /**
+         * Launch the handlers that do not wait with the arguments of a coalesced fire.
+         */
+        internal open fun deliverCoalesced(new: Any?, old: Any?) {
+            handlers?.forEach { if (!it.wait) launchHandler(it) { handler -> handler(new, old) } }
         }
 
-        private suspend inline fun runAllHandlers(crossinline run: suspend (suspend (new: Any?, old: Any?) -> Unit) -> Unit) = eventMapping[this@EventObject]
-            ?.map { (dispatcher, wait, handler, stackTrace) ->
+        private suspend fun runAllHandlers(
+            waitingOnly: Boolean = false,
+            run: suspend (suspend (new: Any?, old: Any?) -> Unit) -> Unit
+        ): List<Job>? {
+            return handlers?.mapNotNull { eventObjectHandler ->
+                val (dispatcher, wait, _, stackTrace) = eventObjectHandler
+                if (!wait && waitingOnly) {
+                    return@mapNotNull null
+                }
                 try {
-                    if (dispatcher != null) {
-                        launch(dispatcher) { run(handler) }.let { if (wait) withTimeout(60*1000) { it.join() } else it }
-                    } else {
-                        launch { run(handler) }.let { if (wait) withTimeout(60*1000) { it.join() } else it }
-                    }
+                    launchHandler(eventObjectHandler, run).also { if (wait) withTimeout(60*1000) { it.join() } }
                 } catch (e: TimeoutCancellationException) {
                     throw IllegalStateException("Event time out on dispatcher $dispatcher. Event handler created by ${stackTrace.contentDeepToString()}")
                 }
-            }?.filterIsInstance<Job>()
+            }
+        }
 
-        protected suspend fun fireAndSuspendHelper(run: suspend (suspend (new: Any?, old: Any?) -> Unit) -> Unit) {
+        /**
+         * Fire the event. [new] and [old] are the arguments [run] passes to handlers, recorded if the fire is
+         * coalesced.
+         */
+        protected suspend fun fireAndSuspendHelper(
+            new: Any? = null,
+            old: Any? = null,
+            run: suspend (suspend (new: Any?, old: Any?) -> Unit) -> Unit
+        ) {
+            if (!hasHandlers) {
+                return
+            }
+            val listener = dispatchTimeListener ?: return dispatch(new, old, run)
+            val start = System.nanoTime()
+            try {
+                dispatch(new, old, run)
+            } finally {
+                listener.accept(System.nanoTime() - start)
+            }
+        }
+
+        private suspend fun dispatch(new: Any?, old: Any?, run: suspend (suspend (new: Any?, old: Any?) -> Unit) -> Unit) {
+            val coalescing = if (coalescible) currentCoalescing else null
+            if (coalescing != null && handlers?.any { !it.wait } == true && coalescing.record(this, new, old)) {
+                if (handlers?.any { it.wait } == true) {
+                    schedule(waitingOnly = true, run)
+                }
+                return
+            }
+            schedule(run = run)
+        }
+
+        private suspend fun schedule(
+            waitingOnly: Boolean = false,
+            run: suspend (suspend (new: Any?, old: Any?) -> Unit) -> Unit
+        ) {
             val now = System.currentTimeMillis()
             if (interval == 0) {
-                runAllHandlers(run)
+                runAllHandlers(waitingOnly, run)
                 return
             }
             when (timingMode) {
                 TimingMode.Throttle -> {
                     if (now >= intervalEndTime) {
                         intervalEndTime = now + interval
-                        runAllHandlers(run)
+                        runAllHandlers(waitingOnly, run)
                     }
                 }
                 TimingMode.Debounce -> {
                     job?.cancel()
                     job = launch {
                         delay(interval.toLong())
-                        runAllHandlers(run)
+                        runAllHandlers(waitingOnly, run)
                     }
                 }
             }
         }
 
         protected fun batchFireAndSuspendHelper(new: Any?, old: Any?): Job {
+            if (!hasHandlers) {
+                return completedJob
+            }
             val now = System.currentTimeMillis()
+            val batchNew = batchNew ?: synchronized(this) {
+                batchNew ?: ConcurrentLinkedQueue<Any?>().also { batchNew = it }
+            }
+            val batchOld = batchOld ?: synchronized(this) {
+                batchOld ?: ConcurrentLinkedQueue<Any?>().also { batchOld = it }
+            }
             new?.let { batchNew.add(it) }
             old?.let { batchOld.add(it) }
             if (interval == 0) {
@@ -133,6 +333,8 @@ open class Events2: CoroutineScope {
      */
     inner class NoArgEvent(override val interval: Int = 0, override var timingMode: TimingMode =  TimingMode.Debounce) : EventObject() {
 
+        override val coalescible = true
+
         /**
          * Kotlin "on"
          */
@@ -163,6 +365,9 @@ open class Events2: CoroutineScope {
          * Java fire and block. Fire event and wait for it to terminate before continuing.
          */
         fun fireAndBlock() {
+            if (!hasHandlers) {
+                return
+            }
             runBlocking {
                 fire()
             }
@@ -193,6 +398,9 @@ open class Events2: CoroutineScope {
         suspend fun fire(new: T) = fireAndSuspendHelper { handler -> handler(new, null) }
 
         fun fireAndBlock(new: T) {
+            if (!hasHandlers) {
+                return
+            }
             runBlocking {
                 fire(new)
             }
@@ -219,6 +427,9 @@ open class Events2: CoroutineScope {
         fun fire(new: T) = batchFireAndSuspendHelper(new, null)
 
         fun fireAndBlock(new: T) {
+            if (!hasHandlers) {
+                return
+            }
             runBlocking {
                 fire(new).join()
             }
@@ -249,6 +460,9 @@ open class Events2: CoroutineScope {
         suspend fun fire(old: T) = fireAndSuspendHelper { handler -> handler(null, old) }
 
         fun fireAndBlock(old: T) {
+            if (!hasHandlers) {
+                return
+            }
             runBlocking {
                 fire(old)
             }
@@ -262,6 +476,8 @@ open class Events2: CoroutineScope {
      */
     inner class ChangedEvent<T>(override val interval: Int = 0, override var timingMode: TimingMode =  TimingMode.Debounce) : EventObject() {
 
+        override val coalescible = true
+
         @Suppress("UNCHECKED_CAST")
 
         fun on(dispatcher: CoroutineDispatcher? = null, wait: Boolean = false, handler: (new: T, old: T) -> Unit) = onSuspendHelper(dispatcher, wait) {
@@ -277,9 +493,21 @@ open class Events2: CoroutineScope {
         @Deprecated(message = "Blocking is now determinate by `on`", replaceWith = ReplaceWith("fireAndBlock(new, old)"))
         fun fireAndForget(new: T, old: T) = fireAndBlock(new, old)
 
-        suspend fun fire(new: T, old: T) = fireAndSuspendHelper { handler -> if (new != old) handler(new, old) }
+        suspend fun fire(new: T, old: T) = fireAndSuspendHelper(new, old) { handler -> if (new != old) handler(new, old) }
+
+        /**
+         * Fires that leave the value where the first one found it are not delivered.
+         */
+        override fun deliverCoalesced(new: Any?, old: Any?) {
+            if (new != old) {
+                super.deliverCoalesced(new, old)
+            }
+        }
 
         fun fireAndBlock(new: T, old: T) {
+            if (!hasHandlers) {
+                return
+            }
             runBlocking {
                 fire(new, old)
             }
@@ -306,6 +534,9 @@ open class Events2: CoroutineScope {
         suspend fun fire(new: T, old: T) = batchFireAndSuspendHelper(new, old)
 
         fun fireAndBlock(new: T, old: T) {
+            if (!hasHandlers) {
+                return
+            }
             runBlocking {
                 fire(new, old)
             }
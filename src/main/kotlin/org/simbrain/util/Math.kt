@@ -190,9 +190,13 @@ fun DoubleArray.format(precision: Int): String {
     return joinToString(",") { it.format(precision) }
 }
 
-fun DoubleArray.euclideanDistance(other: DoubleArray) = this.zip(other) { a, b -> (a - b) * (a - b) }
-    .sum()
-    .let { sqrt(it) }
+fun DoubleArray.euclideanDistance(other: DoubleArray): Double {
+    var sum = 0.0
+    for (i in 0 until minOf(size, other.size)) {
+        sum += (this[i] - other[i]) * (this[i] - other[i])
+    }
+    return sqrt(sum)
+}
 
 operator fun FloatArray.minus(other: FloatArray) = (this zip other).map { (a, b) -> a - b }.toFloatArray()
 
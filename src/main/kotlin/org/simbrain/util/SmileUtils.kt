@@ -37,6 +37,11 @@ fun Matrix.rowMatrixTransposed(rowIndex: Int): Matrix {
  */
 fun DoubleArray.toMatrix() = Matrix.column(this)!!
 
+/**
+ * Returns a column vector backed by this array, so that changes to either are seen by both.
+ */
+fun DoubleArray.toColumnView() = Matrix(size, 1, size, this)
+
 /**
  * Add the entries of a double array in-place to a Smile matrix / column vector. Assumes the matrix has as many rows
  * as the array has entries.
@@ -1,9 +1,13 @@
 package org.simbrain.util
 
 import smile.math.matrix.Matrix
+import smile.math.matrix.SparseMatrix
 import smile.nlp.tokenizer.SimpleSentenceSplitter
+import java.util.stream.Collectors
 import javax.swing.JScrollPane
 import javax.swing.JTextArea
+import kotlin.math.max
+import kotlin.math.min
 
 /**
  * Sentence tokenizer: parse document into sentences and return as a list of sentences.
@@ -104,73 +108,219 @@ fun manualPPMI(cocMatrix: Matrix, positive: Boolean = true): Matrix {
     return adjustedMatrix
 }
 
-// TODO: Return a TokenVectorDictionary
+/**
+ * [manualPPMI] for a sparse co-occurrence matrix. Entries that are zero stay zero, so only the non-zero entries are
+ * weighted, and the result has the same values as [manualPPMI] of the dense matrix.
+ */
+fun sparsePPMI(cooccurrences: SparseMatrix): SparseMatrix {
+    val rowTotals = DoubleArray(cooccurrences.nrow())
+    val columnTotals = DoubleArray(cooccurrences.ncol())
+    cooccurrences.forEachNonZero { i, j, x ->
+        rowTotals[i] += x
+        columnTotals[j] += x
+    }
+    val totalSum = columnTotals.sum()
+    return cooccurrences.clone().apply {
+        // Divide by the expected value as manualPPMI does, so that the results are identical
+        forEach { it.update(it.x / (rowTotals[it.i] * columnTotals[it.j] / totalSum)) }
+    }
+}
 
 /**
- * Generates co-occurrence matrix from a provided [docString].
- *
- * Example: if [windowSize] is 2 and [skipGram] is true, then the context for "dog" in "the quick dog ran fastly"
- * is ["the", "quick", "ran", "fastly"].  If [windowSize] 2 and [skipGram] false, then the context for "dog"
- * is ["the", "quick"].
+ * Co-occurrence counts, or their PPMI weights, of the tokens of a document. See [generateSparseCooccurrenceMatrix].
+ */
+class CooccurrenceMatrix(
+    /**
+     * Unique tokens of the document, one for each row of [matrix].
+     */
+    val tokens: List<String>,
+    /**
+     * Context tokens, one for each column of [matrix]. All the tokens, or the most frequent contexts.
+     */
+    val contexts: List<String>,
+    /**
+     * Sparse matrix whose rows are targets and columns are contexts.
+     */
+    val matrix: SparseMatrix
+) {
+
+    /**
+     * Returns the matrix as a dense matrix.
+     */
+    fun toMatrix() = Matrix(matrix.nrow(), matrix.ncol()).also { dense ->
+        matrix.forEachNonZero { i, j, x -> dense[i, j] = x }
+    }
+}
+
+/**
+ * Number of sentences whose co-occurrences are counted together on one thread.
+ */
+private const val SENTENCES_PER_TASK = 256
+
+/**
+ * Generates a sparse co-occurrence matrix from a provided [docString], without allocating a dense matrix with a row
+ * and column for every pair of tokens, so it can be used for large documents. See [generateCooccurrenceMatrix].
  *
- * @param windowSize specifies how many words should be included in a context.
- * @param skipGram  if true, window includes this many tokens before AND after; if false the window only includes
- * previous tokens.
- * @return a symmetrical co-occurrence matrix with as many rows and columns as there are unique tokens in [docString].
+ * Sentences are counted in parallel. Each co-occurrence in a window is recorded as a pair of token indices packed in a
+ * long, and the pairs of all sentences are sorted and counted, which gives the non-zero entries of the matrix in
+ * column order.
  *
+ * @param contextDimensions if positive, only the columns of this many contexts are kept, those that co-occur with other
+ * tokens the most. PPMI weights are computed before columns are dropped.
  */
-fun generateCooccurrenceMatrix(docString: String, windowSize: Int = 2, skipGram: Boolean = false , usePPMI: Boolean = true):
-        Pair<List<String>, Matrix> {
-    // println(docString)
+fun generateSparseCooccurrenceMatrix(
+    docString: String,
+    windowSize: Int = 2,
+    skipGram: Boolean = false,
+    usePPMI: Boolean = true,
+    contextDimensions: Int = 0
+): CooccurrenceMatrix {
     val convertedDocString = docString.removeSpecialCharacters()
 
     if (windowSize == 0) throw IllegalArgumentException("windowsize must be greater than 0")
 
     // get tokens from whole document
-    val tokenizedSentence = convertedDocString.tokenizeWordsFromSentence()
-    val tokens = tokenizedSentence.uniqueTokensFromArray()
-    val targets = removeStopWords(tokens)
+    val tokens = convertedDocString.tokenizeWordsFromSentence().uniqueTokensFromArray()
+    val vocabulary = HashMap<String, Int>(tokens.size * 2)
+    tokens.forEachIndexed { index, token -> vocabulary.putIfAbsent(token, index) }
 
     // Split document into sentences
     val sentences = convertedDocString.tokenizeSentencesFromDoc()
 
-    // Set up matrix
-    val matrixSize = tokens.size
-    val cooccurrenceSmileMatrix = Matrix(matrixSize, matrixSize)
+    val pairs = sentences.chunked(SENTENCES_PER_TASK)
+        .parallelStream()
+        .map { countWindows(it, vocabulary, windowSize, skipGram) }
+        .collect(Collectors.toList())
+    val counts = pairsToMatrix(tokens.size, pairs)
+
+    // Most frequent contexts, by co-occurrence count
+    val columns = if (contextDimensions > 0 && contextDimensions < tokens.size) {
+        val columnTotals = DoubleArray(tokens.size)
+        counts.forEachNonZero { _, j, x -> columnTotals[j] += x }
+        tokens.indices.sortedByDescending { columnTotals[it] }.take(contextDimensions).toIntArray()
+    } else {
+        null
+    }
 
-    // cooccurrenceMatrix[0][1] = 2 // cooccurrenceMatrix[target][context]
+    val weighted = if (usePPMI) sparsePPMI(counts) else counts
+    return if (columns == null) {
+        CooccurrenceMatrix(tokens, tokens, weighted)
+    } else {
+        CooccurrenceMatrix(tokens, columns.map { tokens[it] }, weighted.selectColumns(columns))
+    }
+}
 
-    // Loop through sentences, through words
+/**
+ * Returns the co-occurrences in the windows of the tokens of some sentences, as context index << 32 | target index.
+ * Tokens that are not in the vocabulary are skipped.
+ */
+private fun countWindows(
+    sentences: List<String>,
+    vocabulary: Map<String, Int>,
+    windowSize: Int,
+    skipGram: Boolean
+): LongArray {
+    var pairs = LongArray(1024)
+    var size = 0
     for (sentence in sentences) {
-        // println(sentence)
-        val tokenizedSentence = sentence.tokenizeWordsFromSentence()
-        for (sentenceIndex in tokenizedSentence.indices) {
-            val maxIndex = tokenizedSentence.size - 1  // used for window range check
-
-            val currentToken = tokenizedSentence[sentenceIndex] // Current iterated token
-
-            val contextLowerLimit = sentenceIndex - windowSize
-            val contextUpperLimit = if (skipGram) (sentenceIndex + windowSize) else (sentenceIndex)
-
+        val indices = sentence.tokenizeWordsFromSentence().map { vocabulary[it] ?: -1 }
+        for (sentenceIndex in indices.indices) {
+            val tokenCoordinate = indices[sentenceIndex]
+            if (tokenCoordinate < 0) continue
+            val contextLowerLimit = max(sentenceIndex - windowSize, 0)
+            val contextUpperLimit = min(if (skipGram) (sentenceIndex + windowSize) else (sentenceIndex), indices.size - 1)
             for (contextIndex in contextLowerLimit..contextUpperLimit) {
-                if (contextIndex in 0..maxIndex && contextIndex != sentenceIndex) {
-                    val currentContext = tokenizedSentence[contextIndex]
-                    val tokenCoordinate = tokens.indexOf(currentToken)
-                    val contextCoordinate = tokens.indexOf(currentContext)
-                    // print(listOf("Current Token:", currentToken, tokenCoordinate))
-                    // println(listOf("Current Context",currentContext, contextCoordinate))
-                    cooccurrenceSmileMatrix[tokenCoordinate, contextCoordinate] =
-                        cooccurrenceSmileMatrix[tokenCoordinate, contextCoordinate] + 1
+                val contextCoordinate = indices[contextIndex]
+                if (contextIndex != sentenceIndex && contextCoordinate >= 0) {
+                    if (size == pairs.size) {
+                        pairs = pairs.copyOf(size * 2)
+                    }
+                    pairs[size++] = (contextCoordinate.toLong() shl 32) or tokenCoordinate.toLong()
                 }
             }
+        }
+    }
+    return pairs.copyOf(size)
+}
 
-
+/**
+ * Counts equal pairs to make a sparse matrix in compressed column form.
+ */
+private fun pairsToMatrix(numTokens: Int, pairs: List<LongArray>): SparseMatrix {
+    val allPairs = LongArray(pairs.sumOf { it.size })
+    var offset = 0
+    for (array in pairs) {
+        array.copyInto(allPairs, offset)
+        offset += array.size
+    }
+    allPairs.sort()
+
+    val rowIndex = IntArray(allPairs.size)
+    val values = DoubleArray(allPairs.size)
+    val columnPointers = IntArray(numTokens + 1)
+    var numNonZeros = 0
+    var index = 0
+    while (index < allPairs.size) {
+        val pair = allPairs[index]
+        var count = 0
+        while (index < allPairs.size && allPairs[index] == pair) {
+            count++
+            index++
         }
+        rowIndex[numNonZeros] = pair.toInt()
+        values[numNonZeros] = count.toDouble()
+        columnPointers[(pair ushr 32).toInt() + 1]++
+        numNonZeros++
+    }
+    for (column in 0 until numTokens) {
+        columnPointers[column + 1] += columnPointers[column]
     }
-    if (usePPMI) {
-        return Pair(tokens, manualPPMI(cooccurrenceSmileMatrix, true).replaceNaN(0.0))
+    return SparseMatrix(numTokens, numTokens, values.copyOf(numNonZeros), rowIndex.copyOf(numNonZeros), columnPointers)
+}
+
+/**
+ * Returns a sparse matrix with the given columns of this one, in the given order.
+ */
+fun SparseMatrix.selectColumns(columns: IntArray): SparseMatrix {
+    val columnPointers = IntArray(columns.size + 1)
+    columns.forEachIndexed { k, j ->
+        var count = 0
+        forEachNonZero(j, j + 1) { _, _, _ -> count++ }
+        columnPointers[k + 1] = columnPointers[k] + count
     }
-    return Pair(tokens, cooccurrenceSmileMatrix.replaceNaN(0.0))
+    val rowIndex = IntArray(columnPointers.last())
+    val values = DoubleArray(columnPointers.last())
+    var index = 0
+    columns.forEach { j ->
+        forEachNonZero(j, j + 1) { i, _, x ->
+            rowIndex[index] = i
+            values[index] = x
+            index++
+        }
+    }
+    return SparseMatrix(nrow(), columns.size, values, rowIndex, columnPointers)
+}
+
+/**
+ * Generates co-occurrence matrix from a provided [docString].
+ *
+ * Example: if [windowSize] is 2 and [skipGram] is true, then the context for "dog" in "the quick dog ran fastly"
+ * is ["the", "quick", "ran", "fastly"].  If [windowSize] 2 and [skipGram] false, then the context for "dog"
+ * is ["the", "quick"].
+ *
+ * Counted with [generateSparseCooccurrenceMatrix] and converted to a dense matrix, which for large documents may not
+ * fit in memory.
+ *
+ * @param windowSize specifies how many words should be included in a context.
+ * @param skipGram  if true, window includes this many tokens before AND after; if false the window only includes
+ * previous tokens.
+ * @return a symmetrical co-occurrence matrix with as many rows and columns as there are unique tokens in [docString].
+ *
+ */
+fun generateCooccurrenceMatrix(docString: String, windowSize: Int = 2, skipGram: Boolean = false , usePPMI: Boolean = true):
+        Pair<List<String>, Matrix> {
+    val cooccurrences = generateSparseCooccurrenceMatrix(docString, windowSize, skipGram, usePPMI)
+    return Pair(cooccurrences.tokens, cooccurrences.toMatrix())
 }
 
 /**
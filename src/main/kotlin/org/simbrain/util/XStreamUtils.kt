@@ -7,12 +7,13 @@ import com.thoughtworks.xstream.converters.UnmarshallingContext
 import com.thoughtworks.xstream.converters.reflection.ReflectionConverter
 import com.thoughtworks.xstream.converters.reflection.ReflectionProvider
 import com.thoughtworks.xstream.io.HierarchicalStreamReader
-import com.thoughtworks.xstream.io.xml.DomDriver
+import com.thoughtworks.xstream.io.xml.XppDriver
 import com.thoughtworks.xstream.mapper.Mapper
+import java.io.OutputStream
+import java.io.OutputStreamWriter
 import kotlin.reflect.KClass
 import kotlin.reflect.KMutableProperty
 import kotlin.reflect.full.declaredMemberProperties
-import kotlin.reflect.full.isSubclassOf
 import kotlin.reflect.full.primaryConstructor
 import kotlin.reflect.javaType
 
@@ -23,7 +24,7 @@ import kotlin.reflect.javaType
  * @return the properly initialized XStream object
  */
 fun getSimbrainXStream(): XStream {
-    return XStream(DomDriver("UTF-8")).apply {
+    return XStream(StreamingDriver()).apply {
         ignoreUnknownElements()
         allowTypesByWildcard(
             // be sure to sync these with the build.gradle simbrainJvmArgs --add-opens items
@@ -35,6 +36,15 @@ fun getSimbrainXStream(): XStream {
     }
 }
 
+/**
+ * Reads xml with a pull parser as it is unmarshalled, rather than first building a DOM of the whole document as
+ * DomDriver does, so reading a large network does not need several times its size in memory. Writes the same
+ * formatted UTF-8 as DomDriver, straight to the output stream.
+ */
+private class StreamingDriver : XppDriver() {
+    override fun createWriter(out: OutputStream) = createWriter(OutputStreamWriter(out, Charsets.UTF_8))
+}
+
 /**
  * XStream support for classes that require a primary constructor call.
  *
@@ -80,13 +90,13 @@ fun <T : Any> createConstructorCallingConverter(
             fun read() {
                 val nodeName = reader.nodeName
                 fieldMap[nodeName]?.let {
-                    val fieldValue = context.convertAnother(reader.value, it.type)
+                    val fieldValue = context.convertAnother(null, it.type)
                     fieldValueMap[nodeName] = fieldValue
                     return@read
                 }
                 propertyMap[nodeName]?.let {
                     propertyValueMap[nodeName] =
-                        context.convertAnother(reader.value, it.returnType.javaType as Class<*>)
+                        context.convertAnother(null, it.returnType.javaType as Class<*>)
                 }
             }
 
@@ -126,7 +136,7 @@ fun <T : Any> createConstructorCallingConverter(
         }
 
         override fun canConvert(type: Class<*>?): Boolean {
-            return super.canConvert(type) || type?.kotlin?.isSubclassOf(clazz.kotlin) == true
+            return super.canConvert(type) || type != null && clazz.isAssignableFrom(type)
         }
     }
 }
\ No newline at end of file
@@ -34,6 +34,13 @@ abstract class DecayFunction(
      */
     abstract fun getScalingFactor(distance: Double): Double
 
+    /**
+     * Distance beyond which [getScalingFactor] is 0, or infinity if it is positive at every distance. Lets callers
+     * skip objects that are too far away to have any effect.
+     */
+    open val effectiveRadius: Double
+        get() = Double.POSITIVE_INFINITY
+
     // TODO: Stub for future implementation of, for example, elliptical decay functions
     // open fun getScalingFactor(relativeLocation: Point2D): Double {
     //     return 0.0
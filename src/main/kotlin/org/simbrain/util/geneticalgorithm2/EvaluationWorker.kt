@@ -0,0 +1,31 @@
+package org.simbrain.util.geneticalgorithm2
+
+import kotlinx.coroutines.runBlocking
+import org.simbrain.workspace.updater.PerformanceMonitor
+import java.io.*
+import kotlin.system.exitProcess
+
+/**
+ * Entry point of the worker processes of a [ProcessEvaluationPool]. Evaluates the sims read from standard input one
+ * at a time and writes their fitness to standard output, until standard input is closed.
+ */
+fun main() {
+    val input = DataInputStream(BufferedInputStream(System.`in`))
+    val output = DataOutputStream(BufferedOutputStream(FileOutputStream(FileDescriptor.out)))
+    // Anything printed by a sim would corrupt the responses
+    System.setOut(System.err)
+    PerformanceMonitor.enabled = false
+    val pool = EvaluationPool(1)
+    runBlocking {
+        while (true) {
+            val (genome, seed) = readRequest(input) ?: break
+            val response = try {
+                Fitness(pool.evaluate(listOf(decodeSim(genome)), listOf(seed)).first())
+            } catch (e: Exception) {
+                EvaluationFailure(e.toString())
+            }
+            writeResponse(output, response)
+        }
+    }
+    exitProcess(0)
+}
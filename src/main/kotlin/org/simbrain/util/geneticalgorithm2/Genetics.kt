@@ -3,8 +3,13 @@ package org.simbrain.util.geneticalgorithm2
 import kotlinx.coroutines.async
 import kotlinx.coroutines.awaitAll
 import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
 import org.simbrain.util.sampleWithReplacement
 import org.simbrain.workspace.Workspace
+import java.util.concurrent.ConcurrentLinkedQueue
+import kotlin.coroutines.AbstractCoroutineContextElement
+import kotlin.coroutines.CoroutineContext
 import kotlin.math.roundToInt
 import kotlin.random.Random
 
@@ -29,6 +34,86 @@ interface EvoSim {
     suspend fun eval(): Double
 }
 
+/**
+ * An [EvoSim] that can be evaluated in a reusable context, e.g. a built network and workspace, instead of one it
+ * creates for itself. [evaluator2] keeps an [EvaluationPool] of contexts for these sims, so that each generation
+ * resets and updates existing networks rather than building new ones.
+ */
+interface PooledEvoSim<C : Any> : EvoSim {
+
+    /**
+     * Creates a context for an [EvaluationPool]. Called at most once per worker over a whole run.
+     */
+    fun createContext(): C
+
+    /**
+     * Evaluates the sim in a context that was last used by some other sim of the same kind. Should give the same
+     * fitness as [eval].
+     */
+    suspend fun eval(context: C): Double
+}
+
+/**
+ * Evaluates the fitness of each sim in a population. See [EvaluationPool] and [ProcessEvaluationPool].
+ */
+interface PopulationEvaluator {
+
+    /**
+     * Returns the fitness of each sim, evaluated with its seed in an [EvaluationSeed] coroutine context element.
+     */
+    suspend fun evaluate(population: List<EvoSim>, seeds: List<Long>): List<Double>
+}
+
+/**
+ * The seed of the sim being evaluated, in the coroutine context of [EvoSim.eval]. Sims that use randomness while they
+ * are evaluated can seed it with `coroutineContext[EvaluationSeed]`, so that their fitness does not depend on which
+ * thread or process evaluates them.
+ */
+class EvaluationSeed(val seed: Long) : AbstractCoroutineContextElement(EvaluationSeed) {
+    companion object Key : CoroutineContext.Key<EvaluationSeed>
+}
+
+/**
+ * Evaluates sims, at most [workers] at once. [PooledEvoSim]s are evaluated in reusable contexts, one per running
+ * evaluation, which are created the first time they are needed and kept for later evaluations. All pooled sims
+ * evaluated in a pool should use the same type of context.
+ *
+ * @param reuseContexts if false, pooled sims are evaluated with [EvoSim.eval] like other sims, e.g. to compare the two
+ */
+class EvaluationPool(val workers: Int, val reuseContexts: Boolean = true) : PopulationEvaluator {
+
+    private val permits = Semaphore(workers)
+
+    private val contexts = ConcurrentLinkedQueue<Any>()
+
+    suspend fun eval(sim: EvoSim): Double = permits.withPermit {
+        if (reuseContexts && sim is PooledEvoSim<*>) {
+            evalInContext(sim)
+        } else {
+            sim.eval()
+        }
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private suspend fun <C : Any> evalInContext(sim: PooledEvoSim<C>): Double {
+        val context = contexts.poll() as C? ?: sim.createContext()
+        try {
+            return sim.eval(context)
+        } finally {
+            contexts.add(context)
+        }
+    }
+
+    override suspend fun evaluate(population: List<EvoSim>, seeds: List<Long>): List<Double> = coroutineScope {
+        (population zip seeds).map { (sim, seed) -> async(EvaluationSeed(seed)) { eval(sim) } }.awaitAll()
+    }
+
+    /**
+     * Returns the fitness of each sim in the population, evaluated with random seeds.
+     */
+    suspend fun evaluate(population: List<EvoSim>) = evaluate(population, List(population.size) { Random.nextLong() })
+}
+
 /**
  * A typed list of Genes, with functions to copy and concatenate.
  */
@@ -56,6 +141,10 @@ class Chromosome2<P, G : Gene2<P>>(genes: List<G>) : MutableList<G> by ArrayList
  * @param stoppingFunction a function that determines when to stop running the sim. Generally check a generation
  * number and for fitness.
  * @param peek code to run each iteration, for example to update a progress bar
+ * @param workers the maximum number of sims evaluated at once. [PooledEvoSim]s are evaluated in a pool of this many
+ * reusable contexts.
+ * @param evaluator evaluates each generation, by default in this process. Each sim is evaluated with a seed drawn from
+ * [random], so runs with the same seed evaluate the same way whichever evaluator is used.
  */
 suspend fun evaluator2(
 
@@ -65,13 +154,15 @@ suspend fun evaluator2(
     stoppingFunction: GenerationFitnessPair.() -> Boolean,
     peek: GenerationFitnessPair.() -> Unit = {},
     seed: Long = Random.nextLong(),
-    random: Random = Random(seed)
+    random: Random = Random(seed),
+    workers: Int = Runtime.getRuntime().availableProcessors(),
+    evaluator: PopulationEvaluator = EvaluationPool(workers)
 ): List<EvoSim> = coroutineScope {
     var generation = 0
     var population = List(populationSize) { populatingFunction(generation) }
     do {
         generation++
-        val fitnessScores = population.map { async { it.eval() } }.awaitAll()
+        val fitnessScores = evaluator.evaluate(population, List(population.size) { random.nextLong() })
         val agentFitnessPair = (population zip fitnessScores).shuffled().sortedByDescending { it.second }
         val eliminationCount = (agentFitnessPair.size * eliminationRatio).roundToInt()
         val survivors = agentFitnessPair.take(populationSize - eliminationCount).map { (sim) -> sim }
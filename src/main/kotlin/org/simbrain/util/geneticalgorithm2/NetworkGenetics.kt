@@ -2,10 +2,13 @@ package org.simbrain.util.geneticalgorithm2
 
 import kotlinx.coroutines.CompletableDeferred
 import kotlinx.coroutines.withTimeout
+import org.simbrain.network.NetworkComponent
 import org.simbrain.network.NetworkModel
 import org.simbrain.network.core.Network
 import org.simbrain.network.core.Neuron
 import org.simbrain.network.core.Synapse
+import org.simbrain.workspace.Workspace
+import java.util.*
 
 abstract class NetworkGene2<P : NetworkModel> : Gene2<P>() {
     abstract suspend fun express(network: Network): P
@@ -14,9 +17,13 @@ abstract class NetworkGene2<P : NetworkModel> : Gene2<P>() {
 
 class NodeGene2(override val template: Neuron) : NetworkGene2<Neuron>() {
 
-    private val _expressedNeuron = CompletableDeferred<Neuron>()
+    /**
+     * Not serialized, so that genes can be sent to worker processes. See [ProcessEvaluationPool].
+     */
+    @Transient
+    private var _expressedNeuron = CompletableDeferred<Neuron>()
 
-    val expressedNeuron by this::_expressedNeuron
+    val expressedNeuron get() = _expressedNeuron
 
     private val listeners = mutableListOf<(NodeGene2) -> Unit>()
     fun onCopied(block: (NodeGene2) -> Unit) {
@@ -32,6 +39,11 @@ class NodeGene2(override val template: Neuron) : NetworkGene2<Neuron>() {
         return NodeGene2(template.deepCopy()).also { listeners.forEach { l -> l(it) } }
     }
 
+    private fun readResolve(): Any {
+        _expressedNeuron = CompletableDeferred()
+        return this
+    }
+
 }
 
 /**
@@ -52,7 +64,10 @@ class ConnectionGene2(override val template: Synapse, val source: NodeGene2, val
     override suspend fun express(network: Network) =
         with(withTimeout(1000) { source.expressedNeuron.await() } to withTimeout(1000) { target.expressedNeuron.await() }) {
             val (source, target) = this
-            Synapse(network, source, target, template.learningRule, template).also { network.addNetworkModelAsync(it) }
+            Synapse(network, source, target, template.learningRule, template).also {
+                it.spikeResponder = template.spikeResponder.deepCopy()
+                network.addNetworkModelAsync(it)
+            }
         }
 
     override fun copy(): ConnectionGene2 {
@@ -65,4 +80,105 @@ fun nodeGene2(block: Neuron.() -> Unit = {}) = NodeGene2(template = Neuron(null)
 fun connectionGene2(source: NodeGene2, target: NodeGene2, block: Synapse.() -> Unit = {}) = ConnectionGene2(
     template = Synapse(null as Neuron?, null),
     source, target
-).apply { template.block() }
\ No newline at end of file
+).apply { template.block() }
+
+/**
+ * A network that chromosomes are expressed into again and again, e.g. as the context of a [PooledEvoSim]. The models
+ * expressed for each key are kept, and the next chromosome expressed with that key resets them to its gene templates.
+ * Models are only created when a chromosome needs more of them than were ever expressed for its key. Models that are
+ * not needed are not deleted, since deleting models is much slower than updating them, but are parked: their synapses
+ * are cleared and disabled, so that they have no effect on the rest of the network.
+ *
+ * Node chromosomes should be expressed before the connection chromosomes that refer to them.
+ */
+class ReusableNetwork(val workspace: Workspace = Workspace()) {
+
+    val networkComponent = NetworkComponent("network 1").also { workspace.addWorkspaceComponent(it) }
+
+    val network: Network = networkComponent.network
+
+    /**
+     * All neurons created for each key. The first ones are those expressed for the last chromosome.
+     */
+    private val neurons = HashMap<String, MutableList<Neuron>>()
+
+    /**
+     * All synapses created for each key, by source and target.
+     */
+    private val synapses = HashMap<String, HashMap<Pair<Neuron, Neuron>, Synapse>>()
+
+    /**
+     * The neuron each node gene was last expressed as, by key. Not [NodeGene2.expressedNeuron], since a gene can be
+     * expressed in more than one network.
+     */
+    private val expressed = HashMap<String, IdentityHashMap<NodeGene2, Neuron>>()
+
+    @JvmName("expressNodes")
+    fun express(key: String, chromosome: Chromosome2<Neuron, NodeGene2>): List<Neuron> {
+        val all = neurons.getOrPut(key) { mutableListOf() }
+        all.zip(chromosome).forEach { (neuron, gene) -> neuron.resetTo(gene.template) }
+        val added = chromosome.drop(all.size).map { Neuron(network, it.template) }
+        network.addNetworkModelsAsync(added)
+        all.addAll(added)
+        all.drop(chromosome.size).forEach { it.clear() }
+        val current = all.take(chromosome.size)
+        expressed[key] = current.zip(chromosome).associateTo(IdentityHashMap()) { (neuron, gene) -> gene to neuron }
+        return current
+    }
+
+    @JvmName("expressConnections")
+    fun express(key: String, chromosome: Chromosome2<Synapse, ConnectionGene2>): List<Synapse> {
+        val all = synapses.getOrPut(key) { HashMap() }
+        val parked = all.values.toMutableSet()
+        val added = mutableListOf<Synapse>()
+        val current = chromosome.map { gene ->
+            val source = expressedNeuron(gene.source)
+            val target = expressedNeuron(gene.target)
+            val synapse = all[source to target]?.also { it.resetTo(gene.template) }
+                ?: Synapse(network, source, target, gene.template.learningRule, gene.template).also {
+                    it.spikeResponder = gene.template.spikeResponder.deepCopy()
+                    added.add(it)
+                    all[source to target] = it
+                }
+            parked.remove(synapse)
+            synapse
+        }
+        network.addNetworkModelsAsync(added)
+        parked.forEach {
+            it.clear()
+            it.isEnabled = false
+        }
+        return current
+    }
+
+    private fun expressedNeuron(gene: NodeGene2) = expressed.values.firstNotNullOfOrNull { it[gene] }
+        ?: throw IllegalStateException("Node gene was not expressed in this network")
+
+    private fun Neuron.resetTo(template: Neuron) {
+        clear()
+        updateRule = template.updateRule.deepCopy()
+        dataHolder = template.dataHolder.copy()
+        isClamped = template.isClamped
+        increment = template.increment
+        forceSetActivation(template.activation)
+        updatePriority = template.updatePriority
+        label = template.label
+    }
+
+    /**
+     * Reset a synapse to a template. Like a newly expressed synapse, it gets copies of the template's learning rule and
+     * spike responder, whose setters also create new data for them.
+     */
+    private fun Synapse.resetTo(template: Synapse) {
+        clear()
+        learningRule = template.learningRule
+        forceSetStrength(template.strength)
+        upperBound = template.upperBound
+        lowerBound = template.lowerBound
+        increment = template.increment
+        spikeResponder = template.spikeResponder.deepCopy()
+        isEnabled = template.isEnabled
+        delay = template.delay
+        isFrozen = template.isFrozen
+    }
+}
@@ -0,0 +1,259 @@
+package org.simbrain.util.geneticalgorithm2
+
+import kotlinx.coroutines.*
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import org.simbrain.util.getSimbrainXStream
+import java.io.*
+import java.lang.management.ManagementFactory
+import java.nio.file.Path
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+
+/**
+ * Evaluates sims in worker JVMs on this machine, so that evolution runs are not limited by the garbage collection
+ * and the shared coroutine threads of one JVM. Pass one to [evaluator2] and close it when the run is done:
+ *
+ * ```
+ * ProcessEvaluationPool(workers = 4).use { pool ->
+ *     evaluator2(..., evaluator = pool)
+ * }
+ * ```
+ *
+ * Each worker is a JVM with the classpath of this one, running the main function of EvaluationWorker.kt. It evaluates
+ * one sim at a time, reading sims from its standard input and writing their fitness to its standard output. Sims are
+ * sent as gzipped xml, so everything a sim needs to evaluate must be serializable with XStream: runtime state like
+ * workspaces and deferreds should be transient and recreated in `readResolve`. Workers evaluate [PooledEvoSim]s in a
+ * reused context, like [EvaluationPool].
+ *
+ * A worker that exits, fails to respond, or takes longer than [timeoutMillis] is destroyed and the sim is evaluated
+ * again by a new worker, with the same seed, up to [maxAttempts] times. Exceptions thrown by [EvoSim.eval] are not
+ * retried but rethrown here. A worker whose evaluation is cancelled, e.g. because another evaluation of the population
+ * failed, is destroyed.
+ *
+ * @param workers the number of worker processes
+ * @param jvmArgs arguments for the worker JVMs. By default the module and heap options of this JVM.
+ * @param maxAttempts how many times a sim is sent to a worker before the evaluation fails
+ * @param timeoutMillis how long to wait for a fitness before restarting the worker, or 0 to wait indefinitely
+ */
+class ProcessEvaluationPool(
+    val workers: Int = Runtime.getRuntime().availableProcessors(),
+    val jvmArgs: List<String> = defaultWorkerJvmArgs(),
+    val maxAttempts: Int = 3,
+    val timeoutMillis: Long = 0
+) : PopulationEvaluator, AutoCloseable {
+
+    private val permits = Semaphore(workers)
+
+    private val idle = ConcurrentLinkedQueue<Worker>()
+
+    /**
+     * Workers started and not yet stopped or destroyed, idle or evaluating.
+     */
+    private val running = ConcurrentHashMap.newKeySet<Worker>()
+
+    @Volatile
+    private var closed = false
+
+    private val started = AtomicInteger()
+
+    /**
+     * Number of worker processes started so far, including restarts.
+     */
+    val workersStarted get() = started.get()
+
+    /**
+     * Number of worker processes currently running.
+     */
+    val workersRunning get() = running.size
+
+    override suspend fun evaluate(population: List<EvoSim>, seeds: List<Long>): List<Double> = coroutineScope {
+        (population zip seeds).map { (sim, seed) -> async { eval(sim, seed) } }.awaitAll()
+    }
+
+    private suspend fun eval(sim: EvoSim, seed: Long): Double {
+        val genome = encodeSim(sim)
+        return permits.withPermit {
+            var lastFailure: IOException? = null
+            repeat(maxAttempts) {
+                if (closed) {
+                    throw IllegalStateException("Evaluation pool was closed", lastFailure)
+                }
+                val worker = idle.poll() ?: startWorker()
+                val response = try {
+                    worker.evaluate(genome, seed)
+                } catch (e: IOException) {
+                    worker.destroy()
+                    // A destroyed worker's read fails too, so don't retry if that was due to cancellation
+                    currentCoroutineContext().ensureActive()
+                    lastFailure = e
+                    return@repeat
+                } catch (e: Throwable) {
+                    // Cancelled or interrupted mid-evaluation, so the worker may still be running the sim
+                    worker.destroy()
+                    throw e
+                }
+                if (closed) worker.destroy() else idle.add(worker)
+                return@withPermit when (response) {
+                    is Fitness -> response.value
+                    is EvaluationFailure -> throw IllegalStateException("Evaluation failed in worker: ${response.message}")
+                }
+            }
+            throw IllegalStateException("Evaluation failed after $maxAttempts attempts", lastFailure)
+        }
+    }
+
+    private fun startWorker(): Worker {
+        val java = Path.of(System.getProperty("java.home"), "bin", "java").toString()
+        val command = listOf(java) + jvmArgs +
+                listOf("-Djava.awt.headless=true", "-cp", System.getProperty("java.class.path"), WORKER_MAIN_CLASS)
+        val process = ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start()
+        started.incrementAndGet()
+        return Worker(process).also { running.add(it) }
+    }
+
+    /**
+     * Stops the idle workers, which exit when their input is closed, and destroys the workers still evaluating.
+     */
+    override fun close() {
+        closed = true
+        generateSequence { idle.poll() }.toList().forEach { worker ->
+            worker.stop()
+        }
+        running.toList().forEach { it.destroy() }
+    }
+
+    private inner class Worker(val process: Process) {
+
+        private val input = DataInputStream(BufferedInputStream(process.inputStream))
+
+        private val output = DataOutputStream(BufferedOutputStream(process.outputStream))
+
+        /**
+         * Sends a sim and waits for its fitness. Throws an [IOException] if the worker exits or times out. If the
+         * evaluation is cancelled the process is destroyed, since a blocked read of its output can't be interrupted.
+         */
+        suspend fun evaluate(genome: ByteArray, seed: Long): EvaluationResponse = coroutineScope {
+            val watchdog = if (timeoutMillis > 0) {
+                launch {
+                    delay(timeoutMillis)
+                    process.destroyForcibly()
+                }
+            } else null
+            val response = async(Dispatchers.IO) {
+                writeRequest(output, genome, seed)
+                readResponse(input) ?: throw EOFException("Worker exited")
+            }
+            try {
+                response.await()
+            } catch (e: CancellationException) {
+                destroy()
+                throw e
+            } finally {
+                watchdog?.cancel()
+            }
+        }
+
+        fun stop() {
+            try {
+                output.close()
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroyForcibly()
+                }
+            } catch (e: IOException) {
+                process.destroyForcibly()
+            } finally {
+                running.remove(this)
+            }
+        }
+
+        fun destroy() {
+            process.destroyForcibly()
+            running.remove(this)
+        }
+    }
+
+    companion object {
+
+        private const val WORKER_MAIN_CLASS = "org.simbrain.util.geneticalgorithm2.EvaluationWorkerKt"
+
+        /**
+         * The module, heap and system property options of this JVM, which workers need to deserialize and run sims.
+         */
+        fun defaultWorkerJvmArgs(): List<String> = ManagementFactory.getRuntimeMXBean().inputArguments.filter {
+            it.startsWith("--add-opens") || it.startsWith("--add-exports") || it.startsWith("-Xmx") ||
+                    (it.startsWith("-D") && !it.startsWith("-Djava.awt.headless"))
+        }
+    }
+}
+
+/**
+ * Serialization of sims and the messages exchanged with worker processes. A request is the length and bytes of a
+ * gzipped xml sim followed by its seed. A response is a flag for success followed by the fitness, or by the message of
+ * the exception that the evaluation threw.
+ */
+internal sealed class EvaluationResponse
+
+internal class Fitness(val value: Double) : EvaluationResponse()
+
+internal class EvaluationFailure(val message: String) : EvaluationResponse()
+
+private val simXStream by lazy {
+    // Genotypes hold kotlin random generators, and lambdas (nested classes, which the simbrain wildcard does not allow)
+    // that relink copied genes
+    getSimbrainXStream().apply { allowTypesByRegExp(arrayOf("org\\.simbrain\\..*", "kotlin\\..*")) }
+}
+
+internal fun encodeSim(sim: EvoSim): ByteArray = ByteArrayOutputStream().also { bytes ->
+    GZIPOutputStream(bytes).use { simXStream.toXML(sim, it) }
+}.toByteArray()
+
+internal fun decodeSim(genome: ByteArray): EvoSim = GZIPInputStream(genome.inputStream()).use {
+    simXStream.fromXML(it) as EvoSim
+}
+
+internal fun writeRequest(output: DataOutputStream, genome: ByteArray, seed: Long) {
+    output.writeInt(genome.size)
+    output.write(genome)
+    output.writeLong(seed)
+    output.flush()
+}
+
+/**
+ * Returns the genome and seed of the next request, or null when the master has closed the stream.
+ */
+internal fun readRequest(input: DataInputStream): Pair<ByteArray, Long>? {
+    val size = try {
+        input.readInt()
+    } catch (e: EOFException) {
+        return null
+    }
+    return ByteArray(size).also { input.readFully(it) } to input.readLong()
+}
+
+internal fun writeResponse(output: DataOutputStream, response: EvaluationResponse) {
+    when (response) {
+        is Fitness -> {
+            output.writeBoolean(true)
+            output.writeDouble(response.value)
+        }
+        is EvaluationFailure -> {
+            output.writeBoolean(false)
+            output.writeUTF(response.message.take(10000))
+        }
+    }
+    output.flush()
+}
+
+internal fun readResponse(input: DataInputStream): EvaluationResponse? {
+    val success = try {
+        input.readBoolean()
+    } catch (e: EOFException) {
+        return null
+    }
+    return if (success) Fitness(input.readDouble()) else EvaluationFailure(input.readUTF())
+}
@@ -0,0 +1,477 @@
+package org.simbrain.util.projection
+
+import java.util.stream.IntStream
+import kotlin.math.abs
+import kotlin.math.exp
+import kotlin.math.ln
+import kotlin.random.Random
+
+/**
+ * t-SNE of the points of a [KDTree], approximated as in
+ *
+ * Van der Maaten, L. (2014). Accelerating t-SNE using tree-based algorithms. The Journal of Machine Learning
+ * Research, 15(1), 3221-3245.
+ *
+ * Input similarities are only computed between each point and its nearest neighbors, which are found with the kd-tree,
+ * and the repulsion of groups of distant points is summarized using a quad-tree of the output coordinates. An
+ * iteration takes O(N log N) time rather than O(N²).
+ *
+ * Points inserted into the kd-tree can be embedded between iterations with [addPoints]. A new point starts at the
+ * average position of its neighbors and the optimization carries on from where it was. Neighbors are searched for
+ * again once the number of points has grown by a tenth.
+ */
+class BarnesHutTSNE(
+    val kdTree: KDTree,
+    val perplexity: Double = 20.0,
+    var eta: Double = 200.0,
+    var theta: Double = 0.5,
+    private val random: Random = Random(0)
+) {
+
+    /**
+     * Number of points embedded, the first points of the kd-tree.
+     */
+    var size = 0
+        private set
+
+    /**
+     * Number of iterations so far.
+     */
+    var iteration = 0
+        private set
+
+    /**
+     * Kullback-Leibler divergence between the input and output similarities, as of the last iteration.
+     */
+    var cost = 0.0
+        private set
+
+    /**
+     * Output coordinates, x and y of point i at 2i and 2i + 1.
+     */
+    private var coordinates = DoubleArray(0)
+    private var updates = DoubleArray(0)
+    private var gains = DoubleArray(0)
+
+    /**
+     * Nearest neighbors of each point, and the conditional probability of each given the point.
+     */
+    private val neighbors = ArrayList<IntArray>()
+    private val conditionals = ArrayList<DoubleArray>()
+
+    /**
+     * Number of points when neighbors were last searched for every point.
+     */
+    private var searchedSize = 0
+
+    private var lastPoint: DataPoint2? = null
+
+    /**
+     * Symmetric joint probabilities in compressed rows: those of point i are at `rowStarts[i] until rowStarts[i + 1]`.
+     */
+    private var rowStarts = IntArray(1)
+    private var columns = IntArray(0)
+    private var joint = DoubleArray(0)
+    private var jointStale = true
+
+    init {
+        ensureCapacity(kdTree.size)
+        for (i in 0 until 2 * kdTree.size) {
+            coordinates[i] = random.nextDouble(-INITIAL_SCALE, INITIAL_SCALE)
+        }
+        size = kdTree.size
+        lastPoint = if (size > 0) kdTree[size - 1] else null
+        searchNeighbors()
+        updateDownstairs()
+    }
+
+    /**
+     * True if the first [size] points of the kd-tree are still the points embedded.
+     */
+    val isCurrent get() = size <= kdTree.size && (size == 0 || kdTree[size - 1] === lastPoint)
+
+    /**
+     * Embeds the points inserted into the kd-tree since the last call, each at the average position of its neighbors
+     * weighted by their similarity, and sets their downstairs coordinates.
+     */
+    fun addPoints() {
+        val newSize = kdTree.size
+        if (newSize <= size) return
+        ensureCapacity(newSize)
+        for (i in size until newSize) {
+            val (row, probabilities) = similarities(i)
+            var x = 0.0
+            var y = 0.0
+            var total = 0.0
+            row.forEachIndexed { k, j ->
+                if (j < i) {
+                    x += probabilities[k] * coordinates[2 * j]
+                    y += probabilities[k] * coordinates[2 * j + 1]
+                    total += probabilities[k]
+                }
+            }
+            coordinates[2 * i] = if (total > 0) x / total else random.nextDouble(-INITIAL_SCALE, INITIAL_SCALE)
+            coordinates[2 * i + 1] = if (total > 0) y / total else random.nextDouble(-INITIAL_SCALE, INITIAL_SCALE)
+            neighbors.add(row)
+            conditionals.add(probabilities)
+            kdTree[i].downstairsPoint[0] = coordinates[2 * i]
+            kdTree[i].downstairsPoint[1] = coordinates[2 * i + 1]
+        }
+        size = newSize
+        lastPoint = kdTree[size - 1]
+        jointStale = true
+        if (size > searchedSize + searchedSize / 10) {
+            searchNeighbors()
+        }
+    }
+
+    /**
+     * Runs [iterations] iterations of gradient descent, after embedding any new points.
+     */
+    fun update(iterations: Int) {
+        addPoints()
+        if (size < 2) return
+        if (jointStale) {
+            symmetrize()
+        }
+        for (i in 0 until iterations) {
+            step(computeCost = i == iterations - 1)
+        }
+    }
+
+    /**
+     * Sets the downstairs coordinates of the embedded points.
+     */
+    fun updateDownstairs() {
+        for (i in 0 until size) {
+            kdTree[i].downstairsPoint[0] = coordinates[2 * i]
+            kdTree[i].downstairsPoint[1] = coordinates[2 * i + 1]
+        }
+    }
+
+    private fun ensureCapacity(numPoints: Int) {
+        if (2 * numPoints > coordinates.size) {
+            val capacity = maxOf(2 * numPoints, 2 * coordinates.size)
+            coordinates = coordinates.copyOf(capacity)
+            updates = updates.copyOf(capacity)
+            val oldSize = gains.size
+            gains = gains.copyOf(capacity).also { it.fill(1.0, oldSize) }
+        }
+    }
+
+    /**
+     * Searches for the neighbors of every point and recomputes their conditional probabilities, in parallel.
+     */
+    private fun searchNeighbors() {
+        val rows = arrayOfNulls<Pair<IntArray, DoubleArray>>(size)
+        IntStream.range(0, size).parallel().forEach { i -> rows[i] = similarities(i) }
+        neighbors.clear()
+        conditionals.clear()
+        rows.forEach {
+            neighbors.add(it!!.first)
+            conditionals.add(it.second)
+        }
+        searchedSize = size
+        jointStale = true
+    }
+
+    /**
+     * The nearest neighbors of point [i] among the points of the kd-tree, and their conditional probabilities given
+     * point [i], with the Gaussian width set so that their perplexity is [perplexity].
+     */
+    private fun similarities(i: Int): Pair<IntArray, DoubleArray> {
+        val k = minOf(kdTree.size - 1, (NEIGHBORS_PER_PERPLEXITY * perplexity).toInt())
+        val point = kdTree[i]
+        val row = kdTree.findClosestNIndices(point, k + 1).filter { it != i }.take(k).toIntArray()
+        val squaredDistances = DoubleArray(row.size) {
+            val distance = point.euclideanDistance(kdTree[row[it]])
+            distance * distance
+        }
+        return row to calibrate(squaredDistances)
+    }
+
+    /**
+     * Conditional probabilities `exp(-beta * d) / sum`, with beta found by binary search so that their entropy is the
+     * log of the perplexity.
+     */
+    private fun calibrate(squaredDistances: DoubleArray): DoubleArray {
+        val probabilities = DoubleArray(squaredDistances.size)
+        if (squaredDistances.isEmpty()) return probabilities
+        // Shifting distances by the smallest one does not change the probabilities, but avoids underflow
+        val shift = squaredDistances.minOrNull()!!
+        val targetEntropy = ln(perplexity)
+        var beta = 1.0
+        var low = 0.0
+        var high = Double.POSITIVE_INFINITY
+        var sum = 0.0
+        for (step in 0 until CALIBRATION_STEPS) {
+            sum = 0.0
+            var weightedSum = 0.0
+            for (j in squaredDistances.indices) {
+                probabilities[j] = exp(-beta * (squaredDistances[j] - shift))
+                sum += probabilities[j]
+                weightedSum += (squaredDistances[j] - shift) * probabilities[j]
+            }
+            val entropy = ln(sum) + beta * weightedSum / sum
+            if (abs(entropy - targetEntropy) < CALIBRATION_TOLERANCE) break
+            if (entropy > targetEntropy) {
+                low = beta
+                beta = if (high == Double.POSITIVE_INFINITY) beta * 2 else (beta + high) / 2
+            } else {
+                high = beta
+                beta = (beta + low) / 2
+            }
+        }
+        for (j in probabilities.indices) {
+            probabilities[j] /= sum
+        }
+        return probabilities
+    }
+
+    /**
+     * Computes the joint probabilities `(p(j|i) + p(i|j)) / 2N` from the conditional ones.
+     */
+    private fun symmetrize() {
+        val counts = IntArray(size + 1)
+        for (i in 0 until size) {
+            counts[i + 1] += neighbors[i].size
+            neighbors[i].forEach { counts[it + 1]++ }
+        }
+        for (i in 0 until size) {
+            counts[i + 1] += counts[i]
+        }
+        val next = counts.copyOf()
+        val columns = IntArray(counts[size])
+        val joint = DoubleArray(counts[size])
+        for (i in 0 until size) {
+            neighbors[i].forEachIndexed { k, j ->
+                val probability = conditionals[i][k] / (2 * size)
+                columns[next[i]] = j
+                joint[next[i]++] = probability
+                columns[next[j]] = i
+                joint[next[j]++] = probability
+            }
+        }
+        // Merge the entries of each row that are for the same column
+        val positions = IntArray(size) { -1 }
+        val rowStarts = IntArray(size + 1)
+        var end = 0
+        for (i in 0 until size) {
+            rowStarts[i] = end
+            for (entry in counts[i] until counts[i + 1]) {
+                val j = columns[entry]
+                if (positions[j] >= rowStarts[i]) {
+                    joint[positions[j]] += joint[entry]
+                } else {
+                    positions[j] = end
+                    columns[end] = j
+                    joint[end++] = joint[entry]
+                }
+            }
+        }
+        rowStarts[size] = end
+        this.rowStarts = rowStarts
+        this.columns = columns
+        this.joint = joint
+        jointStale = false
+    }
+
+    private class Force {
+        var x = 0.0
+        var y = 0.0
+        var sumQ = 0.0
+    }
+
+    private fun step(computeCost: Boolean) {
+        val exaggeration = if (iteration < EXAGGERATION_ITERATIONS) EARLY_EXAGGERATION else 1.0
+        val momentum = if (iteration < EXAGGERATION_ITERATIONS) INITIAL_MOMENTUM else FINAL_MOMENTUM
+        val tree = QuadTree(coordinates, size)
+        val gradient = DoubleArray(2 * size)
+        val sumQs = DoubleArray(size)
+        IntStream.range(0, size).parallel().forEach { i ->
+            val force = Force()
+            tree.repulse(i, theta * theta, force)
+            gradient[2 * i] = force.x
+            gradient[2 * i + 1] = force.y
+            sumQs[i] = force.sumQ
+        }
+        val sumQ = sumQs.sum()
+        val costs = DoubleArray(size)
+        IntStream.range(0, size).parallel().forEach { i ->
+            var x = 0.0
+            var y = 0.0
+            for (entry in rowStarts[i] until rowStarts[i + 1]) {
+                val j = columns[entry]
+                val dx = coordinates[2 * i] - coordinates[2 * j]
+                val dy = coordinates[2 * i + 1] - coordinates[2 * j + 1]
+                val q = 1 / (1 + dx * dx + dy * dy)
+                x += joint[entry] * q * dx
+                y += joint[entry] * q * dy
+                if (computeCost) {
+                    costs[i] += joint[entry] * ln(joint[entry] * sumQ / q)
+                }
+            }
+            gradient[2 * i] = 4 * (exaggeration * x - gradient[2 * i] / sumQ)
+            gradient[2 * i + 1] = 4 * (exaggeration * y - gradient[2 * i + 1] / sumQ)
+        }
+        if (computeCost) {
+            cost = costs.sum()
+        }
+
+        var meanX = 0.0
+        var meanY = 0.0
+        for (k in gradient.indices) {
+            gains[k] = if ((gradient[k] > 0) != (updates[k] > 0)) gains[k] + 0.2 else maxOf(gains[k] * 0.8, MIN_GAIN)
+            updates[k] = momentum * updates[k] - eta * gains[k] * gradient[k]
+            coordinates[k] += updates[k]
+            if (k % 2 == 0) meanX += coordinates[k] else meanY += coordinates[k]
+        }
+        for (i in 0 until size) {
+            coordinates[2 * i] -= meanX / size
+            coordinates[2 * i + 1] -= meanY / size
+        }
+        iteration++
+    }
+
+    /**
+     * Quad-tree of output coordinates. Each node holds the points in a square, their number and their center of
+     * mass. Nodes are stored in arrays, and the points of each node are a range of [order].
+     */
+    private class QuadTree(val coordinates: DoubleArray, size: Int) {
+        val order = IntArray(size) { it }
+        var nodeCount = 0
+        var starts = IntArray(2 * size + 1)
+        var ends = IntArray(2 * size + 1)
+        var centersX = DoubleArray(2 * size + 1)
+        var centersY = DoubleArray(2 * size + 1)
+        var widths = DoubleArray(2 * size + 1)
+        var leaves = BooleanArray(2 * size + 1)
+        var children = IntArray(4 * (2 * size + 1))
+        val root: Int
+
+        init {
+            var minX = Double.POSITIVE_INFINITY
+            var minY = Double.POSITIVE_INFINITY
+            var maxX = Double.NEGATIVE_INFINITY
+            var maxY = Double.NEGATIVE_INFINITY
+            for (i in 0 until size) {
+                minX = minOf(minX, coordinates[2 * i])
+                maxX = maxOf(maxX, coordinates[2 * i])
+                minY = minOf(minY, coordinates[2 * i + 1])
+                maxY = maxOf(maxY, coordinates[2 * i + 1])
+            }
+            // Widen slightly so that points on the maximum edges fall inside
+            val width = maxOf(maxX - minX, maxY - minY) * (1 + 1e-9) + Double.MIN_VALUE
+            root = build(0, size, minX, minY, width, 0)
+        }
+
+        private fun build(from: Int, to: Int, x: Double, y: Double, width: Double, depth: Int): Int {
+            val node = nodeCount++
+            if (node == starts.size) grow()
+            var sumX = 0.0
+            var sumY = 0.0
+            for (k in from until to) {
+                sumX += coordinates[2 * order[k]]
+                sumY += coordinates[2 * order[k] + 1]
+            }
+            starts[node] = from
+            ends[node] = to
+            centersX[node] = sumX / (to - from)
+            centersY[node] = sumY / (to - from)
+            widths[node] = width
+            leaves[node] = to - from <= 1 || depth >= MAX_DEPTH
+            if (leaves[node]) return node
+
+            val half = width / 2
+            val splitY = partition(from, to) { coordinates[2 * it + 1] < y + half }
+            val splitBelow = partition(from, splitY) { coordinates[2 * it] < x + half }
+            val splitAbove = partition(splitY, to) { coordinates[2 * it] < x + half }
+            val bounds = intArrayOf(from, splitBelow, splitY, splitAbove, to)
+            for (quadrant in 0 until 4) {
+                val child = if (bounds[quadrant] == bounds[quadrant + 1]) NONE else build(
+                    bounds[quadrant], bounds[quadrant + 1],
+                    x + half * (quadrant % 2), y + half * (quadrant / 2), half, depth + 1
+                )
+                // Assigned after building the child, which may have grown the arrays
+                children[4 * node + quadrant] = child
+            }
+            return node
+        }
+
+        private fun grow() {
+            val capacity = 2 * starts.size
+            starts = starts.copyOf(capacity)
+            ends = ends.copyOf(capacity)
+            centersX = centersX.copyOf(capacity)
+            centersY = centersY.copyOf(capacity)
+            widths = widths.copyOf(capacity)
+            leaves = leaves.copyOf(capacity)
+            children = children.copyOf(4 * capacity)
+        }
+
+        /**
+         * Moves the points of `order[from until to]` for which [predicate] is true before the others. Returns the
+         * index of the first of the others.
+         */
+        private inline fun partition(from: Int, to: Int, predicate: (Int) -> Boolean): Int {
+            var split = from
+            for (k in from until to) {
+                if (predicate(order[k])) {
+                    val swap = order[split]
+                    order[split++] = order[k]
+                    order[k] = swap
+                }
+            }
+            return split
+        }
+
+        /**
+         * Adds the unnormalized repulsion of point [i] by the other points to [force], as well as the sum of their
+         * unnormalized similarities. Nodes narrower than the square root of [thetaSquared] times their distance are
+         * treated as a single point.
+         */
+        fun repulse(i: Int, thetaSquared: Double, force: Force, node: Int = root) {
+            val x = coordinates[2 * i]
+            val y = coordinates[2 * i + 1]
+            if (leaves[node]) {
+                for (k in starts[node] until ends[node]) {
+                    val j = order[k]
+                    if (j == i) continue
+                    addRepulsion(x - coordinates[2 * j], y - coordinates[2 * j + 1], 1, force)
+                }
+                return
+            }
+            val dx = x - centersX[node]
+            val dy = y - centersY[node]
+            if (widths[node] * widths[node] < thetaSquared * (dx * dx + dy * dy)) {
+                addRepulsion(dx, dy, ends[node] - starts[node], force)
+                return
+            }
+            for (quadrant in 0 until 4) {
+                val child = children[4 * node + quadrant]
+                if (child != NONE) repulse(i, thetaSquared, force, child)
+            }
+        }
+
+        private fun addRepulsion(dx: Double, dy: Double, count: Int, force: Force) {
+            val q = 1 / (1 + dx * dx + dy * dy)
+            force.sumQ += count * q
+            force.x += count * q * q * dx
+            force.y += count * q * q * dy
+        }
+    }
+
+    companion object {
+        private const val NONE = -1
+        private const val MAX_DEPTH = 50
+        private const val NEIGHBORS_PER_PERPLEXITY = 3
+        private const val CALIBRATION_STEPS = 200
+        private const val CALIBRATION_TOLERANCE = 1e-5
+        private const val INITIAL_SCALE = 1e-4
+        private const val EARLY_EXAGGERATION = 12.0
+        private const val EXAGGERATION_ITERATIONS = 250
+        private const val INITIAL_MOMENTUM = 0.5
+        private const val FINAL_MOMENTUM = 0.8
+        private const val MIN_GAIN = 0.01
+    }
+}
@@ -40,8 +40,9 @@ class Dataset2(val dimension: Int) {
     }
 
     fun perturbOverlappingPoints(perturbation: Double = 0.1, epsilon: Double = 1e-6) {
-        kdTree.map { it.downstairsPoint }.forEach { i ->
-            kdTree.map { it.downstairsPoint }.forEach { j ->
+        val downstairsPoints = kdTree.map { it.downstairsPoint }
+        downstairsPoints.forEach { i ->
+            downstairsPoints.forEach { j ->
                 if (i !== j) {
                     val distance = i.euclideanDistance(j)
                     if (distance < epsilon) {
@@ -5,194 +5,426 @@ import com.thoughtworks.xstream.converters.MarshallingContext
 import com.thoughtworks.xstream.converters.UnmarshallingContext
 import com.thoughtworks.xstream.io.HierarchicalStreamReader
 import com.thoughtworks.xstream.io.HierarchicalStreamWriter
-import java.util.*
-import kotlin.math.abs
-
+import java.util.stream.Collectors
+import kotlin.math.floor
+import kotlin.math.ln
+
+/**
+ * A k-d tree of [DataPoint2]s, used to find the points of a dataset near a given point, e.g. to check whether a new
+ * point is already in a projection.
+ *
+ * Points are kept in the order they were inserted, which is the order of iteration and of [get]. The upstairs
+ * coordinates of each point are copied into one array when it is inserted, and the tree is stored as arrays of point
+ * indices. When an insertion makes the tree too deep, the smallest unbalanced subtree containing the new point is
+ * rebuilt around medians (as in a scapegoat tree), so the tree stays balanced when points arrive in sorted or
+ * correlated order.
+ */
 class KDTree(val dimension: Int) : Iterable<DataPoint2> {
 
     @Transient
     private var pointCount = 0
     val size get() = pointCount
 
-    private data class Node(
-        var point: DataPoint2,
-        val axis: Int,
-        var left: Node? = null,
-        var right: Node? = null
-    )
+    @Transient
+    private var points = arrayOfNulls<DataPoint2>(INITIAL_CAPACITY)
 
+    /**
+     * Upstairs coordinates of the points, those of point i from `offsets[i]` until `offsets[i + 1]`.
+     */
     @Transient
-    private var root: Node? = null
+    private var coordinates = DoubleArray(INITIAL_CAPACITY * dimension)
 
-    private fun buildTree(points: List<DataPoint2>, depth: Int): Node? {
-        if (points.isEmpty()) {
-            return null
-        }
+    @Transient
+    private var offsets = IntArray(INITIAL_CAPACITY + 1)
 
-        val axis = depth % dimension
-        val sortedPoints = points.sortedBy { it.upstairsPoint[axis] }
-        val median = sortedPoints.size / 2
+    @Transient
+    private var left = IntArray(INITIAL_CAPACITY)
 
-        return Node(
-            point = sortedPoints[median],
-            axis = axis,
-            left = buildTree(sortedPoints.subList(0, median), depth + 1),
-            right = buildTree(sortedPoints.subList(median + 1, sortedPoints.size), depth + 1)
-        )
-    }
+    @Transient
+    private var right = IntArray(INITIAL_CAPACITY)
 
-    fun insert(point: DataPoint2) {
-        root = insert(root, point, 0)
-        pointCount++
+    @Transient
+    private var axes = IntArray(INITIAL_CAPACITY)
+
+    @Transient
+    private var subtreeSizes = IntArray(INITIAL_CAPACITY)
+
+    @Transient
+    private var root = NONE
+
+    /**
+     * Nodes from the root to the last inserted point.
+     */
+    @Transient
+    private var path = IntArray(64)
+
+    /**
+     * Returns the [index]th point inserted.
+     */
+    operator fun get(index: Int): DataPoint2 {
+        if (index !in 0 until pointCount) throw IndexOutOfBoundsException("Index $index, size $pointCount")
+        return points[index]!!
     }
 
-    private fun insert(node: Node?, point: DataPoint2, depth: Int): Node {
-        if (node == null) {
-            return Node(point, depth % dimension)
+    fun insert(point: DataPoint2) {
+        val index = append(point)
+        if (root == NONE) {
+            root = index
+            return
         }
+        var node = root
+        var depth = 0
+        while (true) {
+            if (depth == path.size) {
+                path = path.copyOf(depth * 2)
+            }
+            path[depth++] = node
+            subtreeSizes[node]++
+            val axis = axes[node]
+            val children = if (point.upstairsPoint[axis] < coordinate(node, axis)) left else right
+            if (children[node] == NONE) {
+                children[node] = index
+                axes[index] = (axis + 1) % dimension
+                break
+            }
+            node = children[node]
+        }
+        if (depth > maxDepth(pointCount)) {
+            rebalance(index, depth)
+        }
+    }
 
-        val axis = node.axis
-        val currentNode = node.point.upstairsPoint[axis]
-        val newPoint = point.upstairsPoint[axis]
+    /**
+     * Inserts many points and rebuilds the tree once.
+     */
+    fun insertAll(points: Collection<DataPoint2>) {
+        points.forEach { append(it) }
+        root = build(IntArray(pointCount) { it }, 0, pointCount)
+    }
 
-        if (newPoint < currentNode) {
-            node.left = insert(node.left, point, depth + 1)
-        } else {
-            node.right = insert(node.right, point, depth + 1)
+    private fun append(point: DataPoint2): Int {
+        if (point.upstairsPoint.size < dimension) {
+            throw IllegalArgumentException("Point has ${point.upstairsPoint.size} dimensions, the tree has $dimension")
         }
-
-        return node
+        val index = pointCount
+        if (index == points.size) {
+            val capacity = index * 2
+            points = points.copyOf(capacity)
+            offsets = offsets.copyOf(capacity + 1)
+            left = left.copyOf(capacity)
+            right = right.copyOf(capacity)
+            axes = axes.copyOf(capacity)
+            subtreeSizes = subtreeSizes.copyOf(capacity)
+        }
+        val start = offsets[index]
+        val end = start + point.upstairsPoint.size
+        if (end > coordinates.size) {
+            coordinates = coordinates.copyOf(maxOf(end, coordinates.size * 2))
+        }
+        point.upstairsPoint.copyInto(coordinates, start)
+        offsets[index + 1] = end
+        points[index] = point
+        left[index] = NONE
+        right[index] = NONE
+        axes[index] = 0
+        subtreeSizes[index] = 1
+        pointCount++
+        return index
     }
 
-    private data class SearchNode(
-        val node: Node,
-        val distance: Double
-    ) : Comparable<SearchNode> {
-        override fun compareTo(other: SearchNode): Int {
-            return -distance.compareTo(other.distance)
+    private fun coordinate(index: Int, axis: Int) = coordinates[offsets[index] + axis]
+
+    /**
+     * Depth beyond which the tree is unbalanced, log base 1 / [ALPHA] of the number of points.
+     */
+    private fun maxDepth(numPoints: Int) = floor(ln(numPoints.toDouble()) / -ln(ALPHA)).toInt()
+
+    /**
+     * Rebuilds the lowest subtree on the path to a newly inserted point in which a child holds more than [ALPHA] of
+     * the nodes.
+     */
+    private fun rebalance(inserted: Int, depth: Int) {
+        var childSize = subtreeSizes[inserted]
+        for (k in depth - 1 downTo 0) {
+            val node = path[k]
+            if (childSize > ALPHA * subtreeSizes[node]) {
+                val nodes = IntArray(subtreeSizes[node])
+                collect(node, nodes, 0)
+                val subtree = build(nodes, 0, nodes.size, if (k == 0) dimension - 1 else axes[path[k - 1]])
+                when {
+                    k == 0 -> root = subtree
+                    left[path[k - 1]] == node -> left[path[k - 1]] = subtree
+                    else -> right[path[k - 1]] = subtree
+                }
+                return
+            }
+            childSize = subtreeSizes[node]
         }
     }
 
-    fun findClosestPoint(target: DataPoint2) = findClosestNPoints(target, 1).firstOrNull()
+    private fun collect(node: Int, nodes: IntArray, start: Int): Int {
+        if (node == NONE) return start
+        var next = collect(left[node], nodes, start)
+        nodes[next++] = node
+        return collect(right[node], nodes, next)
+    }
 
-    fun findClosestNPoints(target: DataPoint2, n: Int): List<DataPoint2> {
-        val closestNPoints = PriorityQueue<SearchNode>()
+    /**
+     * Builds a balanced subtree of the points `nodes[from until to]`, splitting each subtree at a median. Large subtrees
+     * are split along the axis on which their points are most spread out, and small ones along the axis after that of
+     * their parent, which is cheaper to choose. Returns the root.
+     */
+    private fun build(nodes: IntArray, from: Int, to: Int, parentAxis: Int = dimension - 1): Int {
+        if (from >= to) return NONE
+        val axis = if (to - from >= WIDEST_AXIS_SIZE) widestAxis(nodes, from, to) else (parentAxis + 1) % dimension
+        val median = (from + to) / 2
+        select(nodes, from, to - 1, median, axis)
+        val node = nodes[median]
+        axes[node] = axis
+        subtreeSizes[node] = to - from
+        left[node] = build(nodes, from, median, axis)
+        right[node] = build(nodes, median + 1, to, axis)
+        return node
+    }
 
-        fun searchClosest(node: Node?, depth: Int) {
-            if (node == null) {
-                return
+    private fun widestAxis(nodes: IntArray, from: Int, to: Int): Int {
+        var widest = 0
+        var widestSpread = -1.0
+        for (axis in 0 until dimension) {
+            var min = Double.POSITIVE_INFINITY
+            var max = Double.NEGATIVE_INFINITY
+            for (k in from until to) {
+                val value = coordinate(nodes[k], axis)
+                min = minOf(min, value)
+                max = maxOf(max, value)
             }
+            if (max - min > widestSpread) {
+                widest = axis
+                widestSpread = max - min
+            }
+        }
+        return widest
+    }
 
-            val distance = target.euclideanDistance(node.point)
-            if (closestNPoints.size < n || distance < closestNPoints.peek().distance) {
-                if (closestNPoints.size == n) {
-                    closestNPoints.poll()
+    /**
+     * Reorders the nodes from index [from] to [to], inclusive, so that the node at [k] has the k-th smallest coordinate
+     * on [axis], those before it have smaller or equal coordinates and those after it larger or equal ones.
+     */
+    private fun select(nodes: IntArray, from: Int, to: Int, k: Int, axis: Int) {
+        var lo = from
+        var hi = to
+        while (lo < hi) {
+            val pivot = coordinate(nodes[(lo + hi) ushr 1], axis)
+            var i = lo
+            var j = hi
+            while (i <= j) {
+                while (coordinate(nodes[i], axis) < pivot) i++
+                while (coordinate(nodes[j], axis) > pivot) j--
+                if (i <= j) {
+                    val swap = nodes[i]
+                    nodes[i] = nodes[j]
+                    nodes[j] = swap
+                    i++
+                    j--
                 }
-                closestNPoints.offer(SearchNode(node, distance))
             }
+            when {
+                k <= j -> hi = j
+                k >= i -> lo = i
+                else -> return
+            }
+        }
+    }
+
+    private fun squaredDistance(target: DoubleArray, index: Int): Double {
+        val start = offsets[index]
+        var sum = 0.0
+        for (i in 0 until minOf(target.size, offsets[index + 1] - start)) {
+            sum += (target[i] - coordinates[start + i]) * (target[i] - coordinates[start + i])
+        }
+        return sum
+    }
 
-            val axis = node.axis
-            val diff = target.upstairsPoint[axis] - node.point.upstairsPoint[axis]
-            val (nearNode, farNode) = if (diff < 0) {
-                node.left to node.right
+    /**
+     * The closest points found so far in a search, as a max-heap on squared distance.
+     */
+    private class Neighbors(val n: Int, val maxSquaredDistance: Double) {
+        val indices = IntArray(n)
+        val squaredDistances = DoubleArray(n)
+        var size = 0
+
+        /**
+         * Squared distance within which a point is closer than those found so far.
+         */
+        val bound get() = if (size < n) maxSquaredDistance else squaredDistances[0]
+
+        fun offer(index: Int, squaredDistance: Double) {
+            if (squaredDistance >= bound) return
+            if (size < n) {
+                siftUp(size++, index, squaredDistance)
             } else {
-                node.right to node.left
+                siftDown(0, index, squaredDistance)
             }
+        }
 
-            searchClosest(nearNode, depth + 1)
+        private fun siftUp(start: Int, index: Int, squaredDistance: Double) {
+            var k = start
+            while (k > 0 && squaredDistances[(k - 1) / 2] < squaredDistance) {
+                move((k - 1) / 2, k)
+                k = (k - 1) / 2
+            }
+            squaredDistances[k] = squaredDistance
+            indices[k] = index
+        }
 
-            if (abs(diff) < closestNPoints.peek().distance || closestNPoints.size < n) {
-                searchClosest(farNode, depth + 1)
+        private fun siftDown(start: Int, index: Int, squaredDistance: Double) {
+            var k = start
+            while (2 * k + 1 < size) {
+                var child = 2 * k + 1
+                if (child + 1 < size && squaredDistances[child + 1] > squaredDistances[child]) child++
+                if (squaredDistances[child] <= squaredDistance) break
+                move(child, k)
+                k = child
             }
+            squaredDistances[k] = squaredDistance
+            indices[k] = index
         }
 
-        searchClosest(root, 0)
+        private fun move(from: Int, to: Int) {
+            squaredDistances[to] = squaredDistances[from]
+            indices[to] = indices[from]
+        }
 
-        return closestNPoints.map { it.node.point }
+        fun sortedIndices() = (0 until size).sortedWith(compareBy({ squaredDistances[it] }, { indices[it] }))
+            .map { indices[it] }
     }
 
-    private fun inOrderTraversal(node: Node?, action: (DataPoint2) -> Unit) {
-        if (node == null) return
-        inOrderTraversal(node.left, action)
-        action(node.point)
-        inOrderTraversal(node.right, action)
+    private fun search(node: Int, target: DoubleArray, neighbors: Neighbors) {
+        if (node == NONE) return
+        neighbors.offer(node, squaredDistance(target, node))
+        val diff = target[axes[node]] - coordinate(node, axes[node])
+        search(if (diff < 0) left[node] else right[node], target, neighbors)
+        if (diff * diff < neighbors.bound) {
+            search(if (diff < 0) right[node] else left[node], target, neighbors)
+        }
     }
 
-    override fun iterator(): Iterator<DataPoint2> {
-        val nodes = mutableListOf<DataPoint2>()
-        inOrderTraversal(root) { nodes.add(it) }
-        return nodes.iterator()
+    private fun findClosest(target: DataPoint2, n: Int, maxDistance: Double): List<Int> {
+        if (n <= 0) return listOf()
+        val neighbors = Neighbors(n, maxDistance * maxDistance)
+        search(root, target.upstairsPoint, neighbors)
+        return neighbors.sortedIndices()
     }
 
-    private fun findMinimum(node: Node?, targetAxis: Int, searchAxis: Int): Node? {
-        if (node == null) return null
-        if (searchAxis == targetAxis) {
-            return findMinimum(node.left, targetAxis, (searchAxis + 1) % dimension) ?: node
+    /**
+     * Returns the closest point to [target] that is closer than [maxDistance], or null if there is none.
+     */
+    fun findClosestPoint(target: DataPoint2, maxDistance: Double = Double.POSITIVE_INFINITY) =
+        findClosest(target, 1, maxDistance).firstOrNull()?.let { points[it] }
+
+    /**
+     * Returns the [n] closest points to [target], closest first.
+     */
+    fun findClosestNPoints(target: DataPoint2, n: Int) =
+        findClosest(target, n, Double.POSITIVE_INFINITY).map { points[it]!! }
+
+    /**
+     * Returns the indices of the [n] closest points to [target], closest first. See [get].
+     */
+    fun findClosestNIndices(target: DataPoint2, n: Int) = findClosest(target, n, Double.POSITIVE_INFINITY).toIntArray()
+
+    /**
+     * Returns the [n] closest points to each of [targets], searching for several targets in parallel.
+     */
+    fun findClosestNPoints(targets: List<DataPoint2>, n: Int): List<List<DataPoint2>> = targets.parallelStream()
+        .map { findClosestNPoints(it, n) }
+        .collect(Collectors.toList())
+
+    /**
+     * Returns the points within [radius] of [target], bounds included, in the order they were inserted.
+     */
+    fun findPointsWithin(target: DataPoint2, radius: Double): List<DataPoint2> {
+        val found = mutableListOf<Int>()
+        val radiusSquared = radius * radius
+        val targetPoint = target.upstairsPoint
+        fun searchWithin(node: Int) {
+            if (node == NONE) return
+            if (squaredDistance(targetPoint, node) <= radiusSquared) {
+                found.add(node)
+            }
+            // Points on the left are no further along the axis than the node, and points on the right no closer
+            val diff = targetPoint[axes[node]] - coordinate(node, axes[node])
+            if (diff <= radius) searchWithin(left[node])
+            if (diff >= -radius) searchWithin(right[node])
         }
-
-        val leftMin = findMinimum(node.left, targetAxis, (searchAxis + 1) % dimension)
-        val rightMin = findMinimum(node.right, targetAxis, (searchAxis + 1) % dimension)
-
-        return listOfNotNull(node, leftMin, rightMin)
-            .minByOrNull { it.point.upstairsPoint[targetAxis] }
+        searchWithin(root)
+        return found.sorted().map { points[it]!! }
     }
 
-    fun delete(target: DataPoint2): Boolean {
-        return delete(null, root, target, 0) != null
+    /**
+     * Number of nodes on the longest path from the root to a leaf.
+     */
+    internal fun height(): Int {
+        fun height(node: Int): Int = if (node == NONE) 0 else 1 + maxOf(height(left[node]), height(right[node]))
+        return height(root)
     }
 
-    private fun delete(parent: Node?, node: Node?, target: DataPoint2, depth: Int): Node? {
-        if (node == null) {
-            return null
-        }
-
-        val axis = depth % dimension
-
-        if (node.point.upstairsPoint.contentEquals(target.upstairsPoint)) {
-            pointCount--
-            if (node.right != null) {
-                val minNode = findMinimum(node.right, axis, (depth + 1) % dimension)!!
-                node.point = minNode.point
-                node.right = delete(node, node.right, minNode.point, depth + 1)
-            } else if (node.left != null) {
-                if (parent == null) {
-                    root = node.left
-                } else {
-                    if (parent.left == node) {
-                        parent.left = node.left
-                    } else {
-                        parent.right = node.left
-                    }
-                }
-                return node.left
-            } else {
-                if (parent == null) {
-                    root = null
-                } else {
-                    if (parent.left == node) {
-                        parent.left = null
-                    } else {
-                        parent.right = null
-                    }
-                }
-                return null
-            }
-        } else {
-            if (target.upstairsPoint[axis] < node.point.upstairsPoint[axis]) {
-                delete(node, node.left, target, depth + 1)
-            } else {
-                delete(node, node.right, target, depth + 1)
-            }
+    override fun iterator(): Iterator<DataPoint2> {
+        // Iterate over the points when the iterator was created, even if more are inserted
+        val points = points
+        val count = pointCount
+        return object : Iterator<DataPoint2> {
+            var next = 0
+            override fun hasNext() = next < count
+            override fun next() = points[next++] ?: throw NoSuchElementException()
         }
+    }
 
-        return node
+    /**
+     * Deletes the first inserted point with the same upstairs coordinates as [target]. The tree is rebuilt.
+     */
+    fun delete(target: DataPoint2): Boolean {
+        val index = (0 until pointCount).firstOrNull {
+            points[it]!!.upstairsPoint.contentEquals(target.upstairsPoint)
+        } ?: return false
+        val remaining = toMutableList().apply { removeAt(index) }
+        clear()
+        insertAll(remaining)
+        return true
     }
 
     fun clear() {
-        root = null
+        points = arrayOfNulls(INITIAL_CAPACITY)
+        coordinates = DoubleArray(INITIAL_CAPACITY * dimension)
+        offsets = IntArray(INITIAL_CAPACITY + 1)
+        left = IntArray(INITIAL_CAPACITY)
+        right = IntArray(INITIAL_CAPACITY)
+        axes = IntArray(INITIAL_CAPACITY)
+        subtreeSizes = IntArray(INITIAL_CAPACITY)
+        root = NONE
         pointCount = 0
     }
 
+    /**
+     * Trees are saved with [KDTreeConvertor]. Without it, only the dimension is saved and the tree is empty.
+     */
+    private fun readResolve(): Any = KDTree(dimension)
+
+    companion object {
+        private const val NONE = -1
+        private const val INITIAL_CAPACITY = 16
+
+        /**
+         * Largest fraction of the nodes of a subtree that one of its children may hold after a rebuild is triggered.
+         */
+        private const val ALPHA = 0.75
+
+        /**
+         * Smallest number of points for which a subtree is split along the axis with the largest spread.
+         */
+        private const val WIDEST_AXIS_SIZE = 64
+    }
+
 }
 
 
@@ -216,11 +448,9 @@ class KDTreeConvertor : Converter {
         val dims = reader.value.toInt()
         reader.moveUp()
         reader.moveDown()
-        val datapoints = context.convertAnother(reader.value, ArrayList::class.java) as List<DataPoint2>
+        val datapoints = context.convertAnother(null, ArrayList::class.java) as List<DataPoint2>
         reader.moveUp()
-        val kdTree = KDTree(dims)
-        datapoints.forEach { kdTree.insert(it) }
-        return kdTree
+        return KDTree(dims).apply { insertAll(datapoints) }
     }
 }
 
@@ -0,0 +1,253 @@
+package org.simbrain.util.projection
+
+import org.simbrain.util.euclideanDistance
+import kotlin.random.Random
+
+/**
+ * Approximate [k] nearest neighbor graph of the points of a [KDTree], built and refined by nearest neighbor descent:
+ *
+ * Dong, W., Moses, C., & Li, K. (2011). Efficient k-nearest neighbor graph construction for generic similarity
+ * measures. Proceedings of the 20th International Conference on World Wide Web, 577-586.
+ *
+ * Unlike a kd-tree search, which degrades to a scan of every point in high dimensions, each refinement round compares
+ * each point only with the neighbors of its neighbors. Points inserted into the kd-tree are added with [addPoints] by
+ * a greedy search of the graph, and later rounds of [refine] improve their neighbors and those of the points near
+ * them. Points are referred to by their index in the kd-tree.
+ */
+class NeighborGraph(val kdTree: KDTree, val k: Int, private val random: Random = Random(0)) {
+
+    /**
+     * Number of points in the graph, the first points of the kd-tree.
+     */
+    var size = 0
+        private set
+
+    /**
+     * Neighbors of each point and their distances, closest first. Rows have [k] slots, unused slots are [NONE] at
+     * infinite distance. A neighbor is flagged new until it has been compared with the other neighbors of the point.
+     */
+    private val neighbors = ArrayList<IntArray>()
+    private val distances = ArrayList<DoubleArray>()
+    private val isNew = ArrayList<BooleanArray>()
+
+    private var lastPoint: DataPoint2? = null
+
+    /**
+     * True if the last round of [refine] changed few neighbor lists and no points were added since.
+     */
+    var converged = false
+        private set
+
+    init {
+        if (k < 1) throw IllegalArgumentException("Number of neighbors must be positive, was $k")
+        size = kdTree.size
+        lastPoint = if (size > 0) kdTree[size - 1] else null
+        for (i in 0 until size) {
+            addRow()
+        }
+        // Start from random neighbors, which refinement improves
+        for (i in 0 until size) {
+            repeat(minOf(k, size - 1)) {
+                val j = random.nextInt(size)
+                if (j != i) offer(i, j, distance(i, j))
+            }
+        }
+        while (!converged) {
+            refine()
+        }
+    }
+
+    /**
+     * True if the first [size] points of the kd-tree are still the points of the graph.
+     */
+    val isCurrent get() = size <= kdTree.size && (size == 0 || kdTree[size - 1] === lastPoint)
+
+    /**
+     * Returns the neighbors of point [i], closest first.
+     */
+    fun neighbors(i: Int) = neighbors[i].copyOf(rowSize(i))
+
+    /**
+     * Returns the distances of the neighbors of point [i], in the order of [neighbors].
+     */
+    fun distances(i: Int) = distances[i].copyOf(rowSize(i))
+
+    private fun rowSize(i: Int) = neighbors[i].indexOf(NONE).let { if (it < 0) k else it }
+
+    /**
+     * Adds the points inserted into the kd-tree since the last call. Each point's neighbors are found by a search of
+     * the graph, and the point becomes a neighbor of those of them it is closer to than their current neighbors.
+     */
+    fun addPoints() {
+        for (i in size until kdTree.size) {
+            val (found, foundDistances) = search(kdTree[i].upstairsPoint, k)
+            addRow()
+            size++
+            found.forEachIndexed { n, j ->
+                offer(i, j, foundDistances[n])
+                offer(j, i, foundDistances[n])
+            }
+        }
+        lastPoint = if (size > 0) kdTree[size - 1] else null
+        converged = false
+    }
+
+    /**
+     * Runs one round of nearest neighbor descent: every point's new neighbors are compared with each other and with
+     * its old neighbors, counting neighbors in both directions. Returns the number of neighbor lists changed.
+     */
+    fun refine(): Int {
+        if (size < 3) {
+            converged = true
+            return 0
+        }
+        val newForward = Array(size) { i -> flagged(i, true) }
+        val oldForward = Array(size) { i -> flagged(i, false) }
+        for (i in 0 until size) {
+            isNew[i].fill(false)
+        }
+        val newReverse = Reservoirs()
+        val oldReverse = Reservoirs()
+        for (i in 0 until size) {
+            newForward[i].forEach { newReverse.add(it, i) }
+            oldForward[i].forEach { oldReverse.add(it, i) }
+        }
+        var updates = 0
+        for (i in 0 until size) {
+            val newCandidates = newForward[i] + newReverse[i]
+            val oldCandidates = oldForward[i] + oldReverse[i]
+            for (a in newCandidates.indices) {
+                val u = newCandidates[a]
+                for (b in a + 1 until newCandidates.size) {
+                    updates += join(u, newCandidates[b])
+                }
+                for (v in oldCandidates) {
+                    updates += join(u, v)
+                }
+            }
+        }
+        converged = updates <= CONVERGENCE * size * k
+        return updates
+    }
+
+    /**
+     * Returns approximately the [n] closest points of the graph to [target] and their distances, closest first, by a
+     * greedy search that moves towards closer neighbors. The search starts from the closest points in the kd-tree, so
+     * that it reaches the right part of the graph when it is not connected, e.g. when the data are in separate
+     * clusters, and from a few random points.
+     */
+    fun search(target: DoubleArray, n: Int): Pair<IntArray, DoubleArray> {
+        val breadth = maxOf(n, SEARCH_BREADTH)
+        val found = IntArray(breadth) { NONE }
+        val foundDistances = DoubleArray(breadth) { Double.POSITIVE_INFINITY }
+        val expanded = BooleanArray(breadth)
+        val visited = HashSet<Int>()
+        fun visit(j: Int) {
+            if (!visited.add(j)) return
+            val distance = target.euclideanDistance(kdTree[j].upstairsPoint)
+            if (distance >= foundDistances[breadth - 1]) return
+            var slot = breadth - 1
+            while (slot > 0 && foundDistances[slot - 1] > distance) {
+                found[slot] = found[slot - 1]
+                foundDistances[slot] = foundDistances[slot - 1]
+                expanded[slot] = expanded[slot - 1]
+                slot--
+            }
+            found[slot] = j
+            foundDistances[slot] = distance
+            expanded[slot] = false
+        }
+        if (size <= breadth) {
+            for (j in 0 until size) visit(j)
+        } else {
+            kdTree.findClosestNIndices(DataPoint2(target), SEARCH_ENTRIES).forEach { if (it < size) visit(it) }
+            repeat(SEARCH_ENTRIES) { visit(random.nextInt(size)) }
+        }
+        while (true) {
+            val next = (0 until breadth).firstOrNull { found[it] != NONE && !expanded[it] } ?: break
+            expanded[next] = true
+            neighbors[found[next]].forEach { if (it != NONE) visit(it) }
+        }
+        val count = minOf(n, found.indexOf(NONE).let { if (it < 0) breadth else it })
+        return found.copyOf(count) to foundDistances.copyOf(count)
+    }
+
+    private fun addRow() {
+        neighbors.add(IntArray(k) { NONE })
+        distances.add(DoubleArray(k) { Double.POSITIVE_INFINITY })
+        isNew.add(BooleanArray(k))
+    }
+
+    private fun distance(i: Int, j: Int) = kdTree[i].euclideanDistance(kdTree[j])
+
+    /**
+     * Neighbors of point [i] that are flagged new, or not, according to [new].
+     */
+    private fun flagged(i: Int, new: Boolean): IntArray {
+        val row = neighbors[i]
+        return (0 until k).filter { row[it] != NONE && isNew[i][it] == new }.map { row[it] }.toIntArray()
+    }
+
+    /**
+     * Offers [u] and [v] as neighbors of each other. Returns the number of neighbor lists changed.
+     */
+    private fun join(u: Int, v: Int): Int {
+        if (u == v) return 0
+        val distance = distance(u, v)
+        return (if (offer(u, v, distance)) 1 else 0) + (if (offer(v, u, distance)) 1 else 0)
+    }
+
+    /**
+     * Makes [j] a neighbor of [i] if it is closer than the farthest neighbor and not already a neighbor. Returns true
+     * if it was added.
+     */
+    private fun offer(i: Int, j: Int, distance: Double): Boolean {
+        val row = neighbors[i]
+        val rowDistances = distances[i]
+        val flags = isNew[i]
+        if (i == j || distance >= rowDistances[k - 1] || row.contains(j)) return false
+        var slot = k - 1
+        while (slot > 0 && rowDistances[slot - 1] > distance) {
+            row[slot] = row[slot - 1]
+            rowDistances[slot] = rowDistances[slot - 1]
+            flags[slot] = flags[slot - 1]
+            slot--
+        }
+        row[slot] = j
+        rowDistances[slot] = distance
+        flags[slot] = true
+        return true
+    }
+
+    /**
+     * A uniform sample of at most [k] reverse neighbors of each point.
+     */
+    private inner class Reservoirs {
+        val samples = Array(size) { IntArray(k) }
+        val counts = IntArray(size)
+
+        fun add(i: Int, j: Int) {
+            val count = ++counts[i]
+            if (count <= k) {
+                samples[i][count - 1] = j
+            } else {
+                val slot = random.nextInt(count)
+                if (slot < k) samples[i][slot] = j
+            }
+        }
+
+        operator fun get(i: Int) = samples[i].copyOf(minOf(k, counts[i]))
+    }
+
+    companion object {
+        private const val NONE = -1
+
+        /**
+         * Fraction of neighbor lists changed in a round below which construction stops.
+         */
+        private const val CONVERGENCE = 0.001
+
+        private const val SEARCH_BREADTH = 32
+        private const val SEARCH_ENTRIES = 8
+    }
+}
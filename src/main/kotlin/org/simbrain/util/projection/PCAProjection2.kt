@@ -2,6 +2,9 @@ package org.simbrain.util.projection
 
 import org.simbrain.util.UserParameter
 import smile.feature.extraction.PCA
+import kotlin.math.abs
+import kotlin.math.sqrt
+import kotlin.random.Random
 
 class PCAProjection2: ProjectionMethod2() {
 
@@ -9,10 +12,172 @@ class PCAProjection2: ProjectionMethod2() {
             "false, refit PCA components each update")
     var freeze: Boolean = false
 
+    @UserParameter(
+        label = "Online update",
+        description = "If true, the components are updated with each new point in time proportional to the square of " +
+                "the dimension, rather than refit on the whole dataset. Use for long-running simulations.",
+        order = 10
+    )
+    var online: Boolean = false
+
+    @UserParameter(
+        label = "Realignment interval",
+        description = "In online mode, the number of new points after which existing points are re-projected onto the " +
+                "current components in the background. If 0 existing points are never re-projected.",
+        minimumValue = 0.0,
+        order = 20
+    )
+    var realignmentInterval = 100
+
     val initialProjectionMethod = CoordinateProjection2()
 
     var pca: PCA? = null
 
+    /**
+     * Running statistics of the dataset, used in online mode.
+     */
+    @Transient
+    private var statistics: Statistics? = null
+
+    /**
+     * Number of points projected online since the existing points were last re-projected.
+     */
+    @Transient
+    private var pointsSinceRealignment = 0
+
+    /**
+     * True if existing points should be re-projected onto the current components, see [realign].
+     */
+    val realignmentDue get() = online && realignmentInterval > 0 && pointsSinceRealignment >= realignmentInterval
+
+    /**
+     * Running mean and scatter matrix of a dataset, and its first two principal components, tracked by subspace
+     * iteration.
+     */
+    private class Statistics(val dataset: Dataset2) {
+        val dimension = dataset.dimension
+        var count = 0
+        val mean = DoubleArray(dimension)
+
+        /**
+         * Sum of the outer products of the deviations from the mean, row-major.
+         */
+        val scatter = DoubleArray(dimension * dimension)
+
+        val components = Array(2) { DoubleArray(dimension) }
+
+        init {
+            val random = Random(0)
+            components.forEach { component -> component.indices.forEach { component[it] = random.nextDouble(-1.0, 1.0) } }
+            orthonormalize(components)
+        }
+
+        /**
+         * Adds a point to the mean and scatter matrix (Welford's algorithm).
+         */
+        fun add(point: DoubleArray) {
+            count++
+            val delta = DoubleArray(dimension) { point[it] - mean[it] }
+            for (i in 0 until dimension) {
+                mean[i] += delta[i] / count
+            }
+            for (i in 0 until dimension) {
+                val deviation = point[i] - mean[i]
+                val row = i * dimension
+                for (j in 0 until dimension) {
+                    scatter[row + j] += delta[j] * deviation
+                }
+            }
+        }
+
+        /**
+         * Multiplies the components by the scatter matrix and orthonormalizes them. Returns the largest change in a
+         * component entry.
+         */
+        fun iterate(): Double {
+            val next = Array(components.size) { c ->
+                val component = components[c]
+                DoubleArray(dimension) { i ->
+                    val row = i * dimension
+                    var sum = 0.0
+                    for (j in 0 until dimension) {
+                        sum += scatter[row + j] * component[j]
+                    }
+                    sum
+                }
+            }
+            orthonormalize(next, components)
+            var change = 0.0
+            for (c in components.indices) {
+                for (i in 0 until dimension) {
+                    change = maxOf(change, abs(next[c][i] - components[c][i]))
+                }
+                next[c].copyInto(components[c])
+            }
+            return change
+        }
+
+        /**
+         * Iterates until the components stop changing.
+         */
+        fun converge(tolerance: Double = 1e-9, maxIterations: Int = 200) {
+            for (iteration in 0 until maxIterations) {
+                if (iterate() < tolerance) return
+            }
+        }
+
+        fun project(point: DoubleArray) = DoubleArray(components.size) { c ->
+            val component = components[c]
+            var sum = 0.0
+            for (i in 0 until dimension) {
+                sum += (point[i] - mean[i]) * component[i]
+            }
+            sum
+        }
+
+        /**
+         * Returns a copy of these statistics, unaffected by later updates.
+         */
+        fun copy() = Statistics(dataset).also { copy ->
+            copy.count = count
+            mean.copyInto(copy.mean)
+            scatter.copyInto(copy.scatter)
+            components.forEachIndexed { c, component -> component.copyInto(copy.components[c]) }
+        }
+
+        /**
+         * Gram-Schmidt orthonormalization. A vector that vanishes keeps its value in [previous], and signs are chosen
+         * to agree with [previous], so that projections do not flip from one update to the next.
+         */
+        private fun orthonormalize(vectors: Array<DoubleArray>, previous: Array<DoubleArray>? = null) {
+            vectors.forEachIndexed { c, vector ->
+                for (other in vectors.take(c)) {
+                    val dot = vector.dot(other)
+                    for (i in vector.indices) {
+                        vector[i] -= dot * other[i]
+                    }
+                }
+                val norm = sqrt(vector.dot(vector))
+                if (norm < 1e-12) {
+                    previous?.get(c)?.copyInto(vector)
+                } else {
+                    val sign = if (previous != null && vector.dot(previous[c]) < 0) -1.0 else 1.0
+                    for (i in vector.indices) {
+                        vector[i] *= sign / norm
+                    }
+                }
+            }
+        }
+
+        private fun DoubleArray.dot(other: DoubleArray): Double {
+            var sum = 0.0
+            for (i in indices) {
+                sum += this[i] * other[i]
+            }
+            return sum
+        }
+    }
+
     /**
      * This re-fits PCA.
      */
@@ -22,7 +187,13 @@ class PCAProjection2: ProjectionMethod2() {
             initialProjectionMethod.init(dataset)
             return
         }
-        reFitPCA(dataset)
+        if (online) {
+            initStatistics(dataset).let { statistics ->
+                dataset.kdTree.forEach { it.setDownstairs(statistics.project(it.upstairsPoint)) }
+            }
+        } else {
+            reFitPCA(dataset)
+        }
     }
 
     override fun addPoint(dataset: Dataset2, point: DataPoint2) {
@@ -30,6 +201,10 @@ class PCAProjection2: ProjectionMethod2() {
             initialProjectionMethod.addPoint(dataset, point)
             return
         }
+        if (online) {
+            addPointOnline(dataset, point)
+            return
+        }
         if (!freeze && pca == null) {
             reFitPCA(dataset)
         }
@@ -37,6 +212,56 @@ class PCAProjection2: ProjectionMethod2() {
         point.setDownstairs(pca!!.apply(point.upstairsPoint))
     }
 
+    /**
+     * Updates the running statistics with the new point and projects it onto the updated components. Existing points
+     * keep their projections until they are realigned.
+     */
+    private fun addPointOnline(dataset: Dataset2, point: DataPoint2) {
+        val statistics = statistics
+        if (statistics == null || statistics.dataset !== dataset || statistics.count != dataset.kdTree.size - 1) {
+            init(dataset)
+            return
+        }
+        statistics.add(point.upstairsPoint)
+        if (!freeze) {
+            statistics.iterate()
+        }
+        point.setDownstairs(statistics.project(point.upstairsPoint))
+        pointsSinceRealignment++
+    }
+
+    private fun initStatistics(dataset: Dataset2) = Statistics(dataset).also { statistics ->
+        dataset.kdTree.forEach { statistics.add(it.upstairsPoint) }
+        statistics.converge()
+        this.statistics = statistics
+        pointsSinceRealignment = 0
+    }
+
+    /**
+     * Converges the online components and re-projects the points of the dataset onto them. The components are
+     * converged, and the points projected, on a copy of the statistics outside the dataset lock, so that points can be
+     * added meanwhile. The lock is only taken again to write back the new components and projections.
+     */
+    fun realign(dataset: Dataset2) {
+        val (statistics, points, copy) = synchronized(dataset) {
+            pointsSinceRealignment = 0
+            val statistics = statistics?.takeIf { it.dataset === dataset } ?: return
+            Triple(statistics, dataset.kdTree.toList(), statistics.copy())
+        }
+        if (!freeze) {
+            copy.converge()
+        }
+        val projections = points.map { copy.project(it.upstairsPoint) }
+        synchronized(dataset) {
+            if (this.statistics === statistics) {
+                if (!freeze) {
+                    copy.components.forEachIndexed { c, component -> component.copyInto(statistics.components[c]) }
+                }
+                (points zip projections).forEach { (point, projection) -> point.setDownstairs(projection) }
+            }
+        }
+    }
+
     private fun reFitPCA(dataset: Dataset2) {
         val upstairs = dataset.computeUpstairsArray()
         pca = PCA.fit(upstairs).getProjection(2).also {
@@ -55,4 +280,4 @@ class PCAProjection2: ProjectionMethod2() {
             return ProjectionMethod2.getTypes()
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,96 @@
+package org.simbrain.util.projection
+
+import java.util.stream.IntStream
+
+/**
+ * Distances between pairs of points, stored as the upper triangle of the distance matrix in one array. The distances
+ * from point j to points 0 until j follow those of point j - 1, so adding a point appends its distances to the points
+ * already there without moving any others.
+ *
+ * The matrix is symmetric with a zero diagonal: `this[i, j]` is `this[j, i]`, and `this[i, i]` is 0.
+ *
+ * The distances of [MAX_POINTS] points fill the largest array the JVM allocates, so no more points can be added.
+ */
+class PackedDistanceMatrix {
+
+    private var distances = DoubleArray(0)
+
+    /**
+     * Number of points.
+     */
+    var size = 0
+        private set
+
+    operator fun get(i: Int, j: Int) = when {
+        i < j -> distances[index(i, j)]
+        i > j -> distances[index(j, i)]
+        else -> 0.0
+    }
+
+    operator fun set(i: Int, j: Int, distance: Double) {
+        when {
+            i < j -> distances[index(i, j)] = distance
+            i > j -> distances[index(j, i)] = distance
+            else -> throw IllegalArgumentException("The distance from a point to itself is always 0")
+        }
+    }
+
+    /**
+     * Adds a point, given its distance to each of the points already in the matrix.
+     */
+    fun add(distanceTo: (Int) -> Double) {
+        ensureCapacity(size + 1)
+        val start = index(0, size)
+        for (i in 0 until size) {
+            distances[start + i] = distanceTo(i)
+        }
+        size++
+    }
+
+    /**
+     * Sets the number of points to [size] and every distance to `distance(i, j)` for i < j. Rows are computed in
+     * parallel if [parallel] is true.
+     */
+    fun fill(size: Int, parallel: Boolean = false, distance: (Int, Int) -> Double) {
+        ensureCapacity(size)
+        this.size = size
+        val rows = IntStream.range(1, size)
+        (if (parallel) rows.parallel() else rows).forEach { j ->
+            val start = index(0, j)
+            for (i in 0 until j) {
+                distances[start + i] = distance(i, j)
+            }
+        }
+    }
+
+    fun clear() {
+        size = 0
+    }
+
+    private fun ensureCapacity(numPoints: Int) {
+        if (numPoints > MAX_POINTS) {
+            throw IllegalArgumentException("A packed distance matrix holds at most $MAX_POINTS points, not $numPoints")
+        }
+        val required = (numPoints.toLong() * (numPoints - 1) / 2).toInt()
+        if (required > distances.size) {
+            distances = distances.copyOf(maxOf(required, (distances.size * 2L).coerceAtMost(MAX_ARRAY_SIZE).toInt()))
+        }
+    }
+
+    /**
+     * Index of the distance between i and j, for i < j. The product is unsigned, which covers every j below
+     * [MAX_POINTS].
+     */
+    private fun index(i: Int, j: Int) = (j * (j - 1) ushr 1) + i
+
+    companion object {
+
+        private const val MAX_ARRAY_SIZE = Int.MAX_VALUE - 8L
+
+        /**
+         * Largest number of points whose distances fit in one array.
+         */
+        const val MAX_POINTS = 65_536
+    }
+
+}
@@ -37,7 +37,8 @@ abstract class ProjectionMethod2() : CopyableObject {
             PCAProjection2::class.java,
             SammonProjection2::class.java,
             TriangulateProjection2::class.java,
-            TSNEProjection::class.java
+            TSNEProjection::class.java,
+            UMAPProjection2::class.java
         )
     }
 
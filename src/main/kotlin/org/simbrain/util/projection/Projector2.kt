@@ -2,7 +2,9 @@ package org.simbrain.util.projection
 
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
 import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
 import org.simbrain.util.UserParameter
 import org.simbrain.util.createDialog
 import org.simbrain.util.display
@@ -20,6 +22,12 @@ class Projector2(initialDimension: Int = 25) : EditableObject, CoroutineScope {
     @Transient
     var events = ProjectorEvents3()
 
+    /**
+     * Background re-projection of existing points, see [PCAProjection2.realign].
+     */
+    @Transient
+    private var realignment: Job? = null
+
     var dimension: Int = initialDimension
         set(value) {
             dataset = Dataset2(value)
@@ -68,18 +76,33 @@ class Projector2(initialDimension: Int = 25) : EditableObject, CoroutineScope {
 
     fun addDataPoint(newPoint: DataPoint2) {
         synchronized(dataset) {
-            val closestPoint = dataset.kdTree.findClosestPoint(newPoint)
-            if (closestPoint != null && closestPoint.euclideanDistance(newPoint) < tolerance) {
+            val closestPoint = dataset.kdTree.findClosestPoint(newPoint, tolerance)
+            if (closestPoint != null) {
                 dataset.currentPoint = closestPoint
             } else {
                 dataset.kdTree.insert(newPoint)
                 dataset.currentPoint = newPoint
                 projectionMethod.addPoint(dataset, newPoint)
+                realignIfDue()
             }
             events.datasetChanged.fireAndBlock()
         }
     }
 
+    /**
+     * Re-projects existing points in the background when an online projection method has moved on since they were
+     * projected.
+     */
+    private fun realignIfDue() {
+        val method = projectionMethod
+        if (method is PCAProjection2 && method.realignmentDue && realignment?.isActive != true) {
+            realignment = launch {
+                method.realign(dataset)
+                events.datasetChanged.fire()
+            }
+        }
+    }
+
     fun init() {
         projectionMethod.init(dataset)
     }
@@ -1,7 +1,11 @@
 package org.simbrain.util.projection
 
 import org.simbrain.util.UserParameter
+import org.simbrain.util.euclideanDistance
+import java.util.*
+import java.util.stream.IntStream
 import kotlin.math.pow
+import kotlin.random.Random
 
 class SammonProjection2: ProjectionMethod2(), IterableProjectionMethod2 {
 
@@ -11,18 +15,71 @@ class SammonProjection2: ProjectionMethod2(), IterableProjectionMethod2 {
     @UserParameter(label = "Epsilon", minimumValue = 0.0, increment = .1)
     var epsilon = 100.0
 
-    override fun init(dataset: Dataset2) {
-        initDistances(dataset)
+    @UserParameter(
+        label = "Parallel update",
+        description = "If true, all points are moved at once, in parallel, based on where the other points were before " +
+                "the iteration. If false, points are moved one at a time.",
+        order = 10
+    )
+    var parallelUpdate = false
+
+    @UserParameter(
+        label = "Sample size",
+        description = "If positive, each point is moved based on its distances to this many randomly chosen points " +
+                "rather than to every point. Use for large datasets.",
+        minimumValue = 0.0,
+        order = 20
+    )
+    var sampleSize = 0
+
+    /**
+     * Upstairs distances between the points of the dataset, indexed by the order the points were added. Updated as
+     * points are added.
+     */
+    @Transient
+    private var distances: Distances? = null
+
+    private class Distances(val dataset: Dataset2) {
+        val points = ArrayList<DataPoint2>()
+        val indices = IdentityHashMap<DataPoint2, Int>()
+        val upstairs = PackedDistanceMatrix()
+        val downstairs = PackedDistanceMatrix()
+
+        /**
+         * Sum of the upstairs distances over all ordered pairs of points.
+         */
+        var upstairsSum = 0.0
+
+        fun add(point: DataPoint2) {
+            upstairs.add { points[it].euclideanDistance(point).also { distance -> upstairsSum += 2 * distance } }
+            indices[point] = points.size
+            points.add(point)
+        }
+
+        /**
+         * Indices of the points of the dataset in the order of its kd-tree, or null if the dataset has points that
+         * were not added.
+         */
+        fun datasetOrder(): IntArray? {
+            if (dataset.kdTree.size != points.size) return null
+            val order = IntArray(points.size)
+            dataset.kdTree.forEachIndexed { position, point -> order[position] = indices[point] ?: return null }
+            return order
+        }
     }
 
-    private fun initDistances(dataset: Dataset2) {
+    override fun init(dataset: Dataset2) {
         synchronized(dataset) {
-            upstairsDistances = dataset.computeUpstairsDistances()
-            upstairsDistanceSum = upstairsDistances?.sumOf { it.sum() }
+            initDistances(dataset)
             dataset.perturbOverlappingPoints()
         }
     }
 
+    private fun initDistances(dataset: Dataset2) = Distances(dataset).also { distances ->
+        dataset.kdTree.forEach { distances.add(it) }
+        this.distances = distances
+    }
+
     override fun addPoint(dataset: Dataset2, point: DataPoint2) {
         synchronized(dataset) {
             if (dataset.kdTree.size < 15) {
@@ -30,43 +87,150 @@ class SammonProjection2: ProjectionMethod2(), IterableProjectionMethod2 {
             } else {
                 downstairsInitializationMethod2.addPoint(dataset, point)
             }
-            initDistances(dataset)
+            val distances = distances
+            if (distances == null || distances.dataset !== dataset || distances.points.size != dataset.kdTree.size - 1) {
+                init(dataset)
+            } else {
+                distances.add(point)
+                perturbOverlappingPoints(distances, point)
+            }
         }
     }
 
-    var upstairsDistances: List<List<Double>>? = null
-    var downstairsDistances: List<List<Double>>? = null
-    var upstairsDistanceSum: Double? = null
+    /**
+     * Moves [point] and any point downstairs at the same place, so that no downstairs distance is zero.
+     */
+    private fun perturbOverlappingPoints(distances: Distances, point: DataPoint2, perturbation: Double = 0.1) {
+        distances.points.forEach { other ->
+            if (other !== point && other.downstairsPoint.euclideanDistance(point.downstairsPoint) < 1e-6) {
+                for (p in listOf(point, other)) {
+                    p.downstairsPoint[0] += Random.nextDouble(-perturbation, +perturbation)
+                    p.downstairsPoint[1] += Random.nextDouble(-perturbation, +perturbation)
+                }
+            }
+        }
+    }
 
     override fun iterate(dataset: Dataset2) {
         synchronized(dataset) {
             if (dataset.kdTree.size < 2) return
-            downstairsDistances = dataset.computeDownstairsDistances()
-            dataset.kdTree.forEachIndexed { j, p1 ->
-                var partialSum = 0.0
-                (0 until p1.downstairsPoint.size).forEach { d ->
-                    dataset.kdTree.forEachIndexed { i, p2 ->
-                        if (i != j) {
-                            partialSum += (
-                                    (upstairsDistances!![i][j] - downstairsDistances!![i][j])
-                                            * (p2.downstairsPoint[d] - p1.downstairsPoint[d])
-                                    ) / upstairsDistances!![i][j] / downstairsDistances!![i][j]
-                        }
+            var distances = distances?.takeIf { it.dataset === dataset }
+            var order = distances?.datasetOrder()
+            if (distances == null || order == null) {
+                distances = initDistances(dataset)
+                order = distances.datasetOrder()!!
+            }
+            if (sampleSize > 0 && sampleSize < order.size - 1) {
+                iterateSampled(distances)
+            } else if (parallelUpdate) {
+                iterateParallel(distances)
+            } else {
+                iterateSequential(distances, order)
+            }
+        }
+    }
+
+    /**
+     * Moves the points one at a time, in the order of the kd-tree. Each point moves based on where the points before
+     * it have already moved to, and on the downstairs distances from the start of the iteration.
+     */
+    private fun iterateSequential(distances: Distances, order: IntArray) {
+        val points = distances.points
+        val upstairs = distances.upstairs
+        val downstairs = distances.downstairs
+        downstairs.fill(points.size) { i, j -> points[i].downstairsPoint.euclideanDistance(points[j].downstairsPoint) }
+        for (j in order) {
+            val p1 = points[j].downstairsPoint
+            var partialSum = 0.0
+            for (d in p1.indices) {
+                for (i in order) {
+                    if (i != j) {
+                        partialSum += ((upstairs[i, j] - downstairs[i, j]) * (points[i].downstairsPoint[d] - p1[d])) /
+                                upstairs[i, j] / downstairs[i, j]
                     }
+                }
+                p1[d] = p1[d] - ((epsilon * 2 * partialSum) / distances.upstairsSum)
+            }
+        }
+
+        // Computes Closeness
+        error = 0.0
+        for (a in order.indices) {
+            for (b in a + 1 until order.size) {
+                val i = order[a]
+                val j = order[b]
+                error += (upstairs[i, j] - downstairs[i, j]).pow(2) / upstairs[i, j]
+            }
+        }
+    }
 
-                    p1.downstairsPoint[d] = p1.downstairsPoint[d] - ((epsilon * 2 * partialSum) / upstairsDistanceSum!!)
+    /**
+     * Moves all the points at once, based on where the points were at the start of the iteration. Points are updated
+     * in parallel.
+     */
+    private fun iterateParallel(distances: Distances) {
+        val points = distances.points
+        val upstairs = distances.upstairs
+        val downstairs = distances.downstairs
+        downstairs.fill(points.size, parallel = true) { i, j ->
+            points[i].downstairsPoint.euclideanDistance(points[j].downstairsPoint)
+        }
+        val previous = points.map { it.downstairsPoint.copyOf() }
+        val rowErrors = DoubleArray(points.size)
+        IntStream.range(0, points.size).parallel().forEach { j ->
+            val p1 = previous[j]
+            var partialSum = 0.0
+            for (d in p1.indices) {
+                for (i in points.indices) {
+                    if (i != j) {
+                        partialSum += ((upstairs[i, j] - downstairs[i, j]) * (previous[i][d] - p1[d])) /
+                                upstairs[i, j] / downstairs[i, j]
+                    }
                 }
+                points[j].downstairsPoint[d] = p1[d] - ((epsilon * 2 * partialSum) / distances.upstairsSum)
             }
+            for (i in 0 until j) {
+                rowErrors[j] += (upstairs[i, j] - downstairs[i, j]).pow(2) / upstairs[i, j]
+            }
+        }
+        error = rowErrors.sum()
+    }
 
-            // Computes Closeness
-            error = 0.0
-            for (i in 0 until dataset.kdTree.size) {
-                for (j in i + 1 until dataset.kdTree.size) {
-                    error += (upstairsDistances!![i][j] - downstairsDistances!![i][j]).pow(2) / upstairsDistances!![i][j]
+    /**
+     * Moves each point based on its distances to [sampleSize] random points, scaled up to the number of points. The
+     * error is estimated from the sampled distances.
+     */
+    private fun iterateSampled(distances: Distances) {
+        val points = distances.points
+        val upstairs = distances.upstairs
+        val n = points.size
+        val previous = if (parallelUpdate) points.map { it.downstairsPoint.copyOf() } else points.map { it.downstairsPoint }
+        val scale = (n - 1).toDouble() / sampleSize
+        val rowErrors = DoubleArray(n)
+        val rows = IntStream.range(0, n)
+        (if (parallelUpdate) rows.parallel() else rows).forEach { j ->
+            val p1 = previous[j]
+            val samples = IntArray(sampleSize) { Random.nextInt(n - 1).let { i -> if (i >= j) i + 1 else i } }
+            val downstairs = DoubleArray(sampleSize) { previous[samples[it]].euclideanDistance(p1) }
+            val position = p1.copyOf()
+            var partialSum = 0.0
+            for (d in p1.indices) {
+                for (s in samples.indices) {
+                    val i = samples[s]
+                    if (downstairs[s] > 0) {
+                        partialSum += scale * ((upstairs[i, j] - downstairs[s]) * (previous[i][d] - position[d])) /
+                                upstairs[i, j] / downstairs[s]
+                    }
                 }
+                position[d] = position[d] - ((epsilon * 2 * partialSum) / distances.upstairsSum)
+            }
+            points[j].setDownstairs(position)
+            for (s in samples.indices) {
+                rowErrors[j] += (upstairs[samples[s], j] - downstairs[s]).pow(2) / upstairs[samples[s], j]
             }
-            // println(e / upstairsDistanceSum!!)
         }
+        // Each pair is sampled twice as often as in a sum over unordered pairs
+        error = rowErrors.sum() * scale / 2
     }
 
     override var error = 0.0
@@ -82,4 +246,4 @@ class SammonProjection2: ProjectionMethod2(), IterableProjectionMethod2 {
             return ProjectionMethod2.getTypes()
         }
     }
-}
\ No newline at end of file
+}
@@ -13,6 +13,24 @@ class TSNEProjection: ProjectionMethod2(), IterableProjectionMethod2  {
     @UserParameter(label = "Learning Rate")
     var eta: Double = 200.0
 
+    @UserParameter(
+        label = "Theta",
+        description = "Accuracy of the Barnes-Hut approximation. Lower values are more accurate but slower. If 0, " +
+                "the exact algorithm is used, which takes time and memory proportional to the square of the number " +
+                "of points.",
+        minimumValue = 0.0,
+        increment = .1
+    )
+    var theta: Double = 0.5
+
+    @UserParameter(
+        label = "Iterations per update",
+        description = "Number of iterations each time the projection is iterated. Fewer iterations keep the " +
+                "projection responsive.",
+        minimumValue = 1.0
+    )
+    var iterationsPerUpdate = 10
+
     val downstairsInitializationMethod = CoordinateProjection2()
     val downstairsInitializationMethod2 = TriangulateProjection2()
 
@@ -20,14 +38,39 @@ class TSNEProjection: ProjectionMethod2(), IterableProjectionMethod2  {
 
     var tsne: TSNE? = null
 
+    @Transient
+    private var barnesHut: BarnesHutTSNE? = null
+
     override fun init(dataset: Dataset2) {
+        if (theta > 0) {
+            synchronized(dataset) {
+                tsne = null
+                initBarnesHut(dataset).apply {
+                    update(iterationsPerUpdate)
+                    updateDownstairs()
+                }
+            }
+            return
+        }
+        barnesHut = null
         tsne = TSNE(dataset.computeUpstairsArray(), 2, perplexity, eta, 1000).also {
             dataset.setDownstairsData(it.coordinates)
         }
     }
 
+    private fun initBarnesHut(dataset: Dataset2) = BarnesHutTSNE(dataset.kdTree, perplexity, eta, theta).also {
+        barnesHut = it
+    }
+
     override fun addPoint(dataset: Dataset2, point: DataPoint2) {
         synchronized(dataset) {
+            // Start new points near their neighbors, so that the Barnes-Hut optimization carries on from where it was
+            val barnesHut = barnesHut
+            if (theta > 0 && barnesHut != null && barnesHut.kdTree === dataset.kdTree && barnesHut.isCurrent &&
+                barnesHut.size == dataset.kdTree.size - 1) {
+                barnesHut.addPoints()
+                return
+            }
             if (dataset.kdTree.size < 15) {
                 downstairsInitializationMethod.addPoint(dataset, point)
             } else {
@@ -39,11 +82,24 @@ class TSNEProjection: ProjectionMethod2(), IterableProjectionMethod2  {
     override var error: Double = 0.0
 
     override fun iterate(dataset: Dataset2) {
+        if (theta > 0) {
+            synchronized(dataset) {
+                val barnesHut = barnesHut?.takeIf {
+                    it.kdTree === dataset.kdTree && it.isCurrent && it.perplexity == perplexity
+                } ?: initBarnesHut(dataset)
+                barnesHut.eta = eta
+                barnesHut.theta = theta
+                barnesHut.update(iterationsPerUpdate)
+                barnesHut.updateDownstairs()
+                error = barnesHut.cost
+            }
+            return
+        }
         tsne?.let {
-            it.update(1000)
+            it.update(iterationsPerUpdate)
             dataset.setDownstairsData(it.coordinates)
+            error = it.cost()
         }
-        // TODO: Cost function?
     }
 
     override fun copy() = TSNEProjection()
@@ -57,4 +113,4 @@ class TSNEProjection: ProjectionMethod2(), IterableProjectionMethod2  {
         }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,462 @@
+package org.simbrain.util.projection
+
+import org.simbrain.util.UserParameter
+import java.util.stream.IntStream
+import kotlin.math.abs
+import kotlin.math.exp
+import kotlin.math.ln
+import kotlin.math.pow
+import kotlin.random.Random
+
+/**
+ * Uniform manifold approximation and projection:
+ *
+ * McInnes, L., Healy, J., & Melville, J. (2018). UMAP: Uniform manifold approximation and projection for dimension
+ * reduction. arXiv preprint arXiv:1802.03426.
+ *
+ * Each point is connected to its nearest neighbors in a [NeighborGraph], which is updated as points are added rather
+ * than rebuilt, and the downstairs points are moved by stochastic gradient descent so that points connected in the
+ * graph are close and other points are apart. Each iteration runs a few epochs, with the edges of the graph split
+ * into chunks updated in parallel. New points are placed near their neighbors without refitting, see [transform].
+ */
+class UMAPProjection2 : ProjectionMethod2(), IterableProjectionMethod2 {
+
+    @UserParameter(
+        label = "Neighbors",
+        description = "Number of nearest neighbors each point is connected to. Larger values preserve more of the " +
+                "global structure of the data, smaller values more of its local structure.",
+        minimumValue = 2.0,
+        order = 10
+    )
+    var numNeighbors = 15
+
+    @UserParameter(
+        label = "Minimum distance",
+        description = "How closely points can be packed together downstairs.",
+        minimumValue = 0.0,
+        increment = .05,
+        order = 20
+    )
+    var minDistance = 0.1
+
+    @UserParameter(label = "Learning Rate", minimumValue = 0.0, increment = .1, order = 30)
+    var learningRate = 1.0
+
+    @UserParameter(
+        label = "Epochs",
+        description = "Number of epochs over which the learning rate decays. Later epochs use a tenth of the " +
+                "learning rate, so that new points keep settling.",
+        minimumValue = 1.0,
+        order = 40
+    )
+    var epochs = 200
+
+    @UserParameter(
+        label = "Epochs per update",
+        description = "Number of epochs each time the projection is iterated. Fewer epochs keep the projection " +
+                "responsive.",
+        minimumValue = 1.0,
+        order = 50
+    )
+    var epochsPerUpdate = 5
+
+    @Transient
+    private var layout: Layout? = null
+
+    override var error: Double = 0.0
+
+    /**
+     * The neighbor graph of a dataset, its fuzzy edge weights and the downstairs coordinates being optimized.
+     */
+    private class Layout(val dataset: Dataset2, val k: Int, minDistance: Double) {
+
+        val random = Random(0)
+
+        val graph = NeighborGraph(dataset.kdTree, k, random)
+
+        val size get() = graph.size
+
+        /**
+         * Parameters of the downstairs similarity `1 / (1 + a * d^(2b))`, fitted to [minDistance].
+         */
+        var a = 0.0
+        var b = 0.0
+        var minDistance = Double.NaN
+            set(value) {
+                if (value != field) {
+                    fitCurve(value)
+                    field = value
+                }
+            }
+
+        /**
+         * Downstairs coordinates, x and y of point i at 2i and 2i + 1.
+         */
+        var coordinates = DoubleArray(0)
+
+        /**
+         * Edges of the graph, each once, with their symmetrized weights. Each epoch an edge is sampled if its next
+         * sample is due, and edges of weight w are sampled every `maxWeight / w` epochs.
+         */
+        var heads = IntArray(0)
+        var tails = IntArray(0)
+        var weights = DoubleArray(0)
+        var epochsPerSample = DoubleArray(0)
+        var nextSample = DoubleArray(0)
+        var edgesStale = true
+
+        var epoch = 0
+
+        var cost = 0.0
+
+        init {
+            this.minDistance = minDistance
+            ensureCapacity(size)
+            for (i in 0 until 2 * size) {
+                coordinates[i] = random.nextDouble(-INITIAL_SCALE, INITIAL_SCALE)
+            }
+        }
+
+        val isCurrent get() = graph.isCurrent
+
+        fun ensureCapacity(numPoints: Int) {
+            if (2 * numPoints > coordinates.size) {
+                coordinates = coordinates.copyOf(maxOf(2 * numPoints, 2 * coordinates.size))
+            }
+        }
+
+        /**
+         * Adds the points inserted into the dataset since the last call to the graph and places each of them among
+         * the points before it.
+         */
+        fun addPoints() {
+            val from = size
+            graph.addPoints()
+            ensureCapacity(size)
+            for (i in from until size) {
+                val row = graph.neighbors(i)
+                val rowDistances = graph.distances(i)
+                val earlier = row.indices.filter { row[it] < i }
+                val (x, y) = embed(
+                    earlier.map { row[it] }.toIntArray(),
+                    earlier.map { rowDistances[it] }.toDoubleArray(),
+                    i
+                )
+                coordinates[2 * i] = x
+                coordinates[2 * i + 1] = y
+                dataset.kdTree[i].downstairsPoint[0] = x
+                dataset.kdTree[i].downstairsPoint[1] = y
+            }
+            edgesStale = true
+        }
+
+        /**
+         * Returns the downstairs coordinates of an upstairs point with the given neighbors, without moving other
+         * points: it starts at the average of its neighbors weighted by their membership strengths and is moved by a
+         * few epochs against the fixed layout, repelled by random points among the first [numPoints].
+         */
+        fun embed(neighbors: IntArray, neighborDistances: DoubleArray, numPoints: Int = size): DoubleArray {
+            if (neighbors.isEmpty()) {
+                return DoubleArray(2) { random.nextDouble(-INITIAL_SCALE, INITIAL_SCALE) }
+            }
+            val memberships = memberships(neighborDistances)
+            var x = 0.0
+            var y = 0.0
+            val total = memberships.sum()
+            neighbors.forEachIndexed { n, j ->
+                x += memberships[n] / total * coordinates[2 * j]
+                y += memberships[n] / total * coordinates[2 * j + 1]
+            }
+            if (numPoints < 2) return doubleArrayOf(x, y)
+            val maxMembership = memberships.maxOrNull()!!
+            for (step in 0 until TRANSFORM_EPOCHS) {
+                val alpha = TRANSFORM_RATE * (1 - step.toDouble() / TRANSFORM_EPOCHS)
+                neighbors.forEachIndexed { n, j ->
+                    if (random.nextDouble() * maxMembership > memberships[n]) return@forEachIndexed
+                    var dx = x - coordinates[2 * j]
+                    var dy = y - coordinates[2 * j + 1]
+                    val attraction = attraction(dx * dx + dy * dy)
+                    x += alpha * clip(attraction * dx)
+                    y += alpha * clip(attraction * dy)
+                    repeat(NEGATIVE_SAMPLE_RATE) {
+                        val other = random.nextInt(numPoints)
+                        dx = x - coordinates[2 * other]
+                        dy = y - coordinates[2 * other + 1]
+                        val repulsion = repulsion(dx * dx + dy * dy)
+                        x += alpha * if (repulsion > 0) clip(repulsion * dx) else MAX_GRADIENT
+                        y += alpha * if (repulsion > 0) clip(repulsion * dy) else MAX_GRADIENT
+                    }
+                }
+            }
+            return doubleArrayOf(x, y)
+        }
+
+        /**
+         * Membership strengths `exp(-(d - rho) / sigma)` of neighbors at the given distances, closest first, where rho
+         * is the distance to the closest neighbor and sigma is found by binary search so that the strengths sum to
+         * `log2(k)`.
+         */
+        fun memberships(neighborDistances: DoubleArray): DoubleArray {
+            val memberships = DoubleArray(neighborDistances.size)
+            if (neighborDistances.isEmpty()) return memberships
+            val rho = neighborDistances.firstOrNull { it > 0 } ?: 0.0
+            val target = ln(k.toDouble()) / ln(2.0)
+            val minSigma = MIN_SIGMA_SCALE * neighborDistances.average()
+            var sigma = 1.0
+            var low = 0.0
+            var high = Double.POSITIVE_INFINITY
+            for (step in 0 until CALIBRATION_STEPS) {
+                var sum = 0.0
+                for (n in neighborDistances.indices) {
+                    sum += exp(-maxOf(0.0, neighborDistances[n] - rho) / sigma)
+                }
+                if (abs(sum - target) < CALIBRATION_TOLERANCE) break
+                if (sum > target) {
+                    high = sigma
+                    sigma = (low + high) / 2
+                } else {
+                    low = sigma
+                    sigma = if (high == Double.POSITIVE_INFINITY) sigma * 2 else (low + high) / 2
+                }
+            }
+            sigma = maxOf(sigma, minSigma, Double.MIN_VALUE)
+            for (n in neighborDistances.indices) {
+                memberships[n] = exp(-maxOf(0.0, neighborDistances[n] - rho) / sigma)
+            }
+            return memberships
+        }
+
+        /**
+         * Computes the memberships of each point's neighbors and combines the two directions of each edge as a fuzzy
+         * union, `w(i, j) + w(j, i) - w(i, j) * w(j, i)`.
+         */
+        fun buildEdges() {
+            val rows = Array(size) { graph.neighbors(it) }
+            val memberships = Array(size) { memberships(graph.distances(it)) }
+            val heads = ArrayList<Int>()
+            val tails = ArrayList<Int>()
+            val weights = ArrayList<Double>()
+            for (i in 0 until size) {
+                rows[i].forEachIndexed { n, j ->
+                    val reverse = rows[j].indexOf(i)
+                    // Edges in both directions are added once, from the lower index
+                    if (reverse >= 0 && j < i) return@forEachIndexed
+                    val forward = memberships[i][n]
+                    val backward = if (reverse >= 0) memberships[j][reverse] else 0.0
+                    heads.add(i)
+                    tails.add(j)
+                    weights.add(forward + backward - forward * backward)
+                }
+            }
+            this.heads = heads.toIntArray()
+            this.tails = tails.toIntArray()
+            this.weights = weights.toDoubleArray()
+            val maxWeight = this.weights.maxOrNull() ?: 1.0
+            epochsPerSample = DoubleArray(this.weights.size) { maxWeight / this.weights[it] }
+            nextSample = DoubleArray(this.weights.size) { epoch + epochsPerSample[it] }
+            edgesStale = false
+        }
+
+        /**
+         * Runs [numEpochs] epochs of gradient descent, refining the neighbor graph first if it has changed.
+         */
+        fun update(numEpochs: Int, learningRate: Double, totalEpochs: Int) {
+            if (!graph.converged && graph.refine() > 0) {
+                edgesStale = true
+            }
+            if (size < 2) return
+            if (edgesStale) {
+                buildEdges()
+            }
+            val numChunks = (heads.size + CHUNK_SIZE - 1) / CHUNK_SIZE
+            repeat(numEpochs) {
+                val alpha = learningRate * maxOf(1 - epoch.toDouble() / totalEpochs, FINAL_RATE)
+                val seed = random.nextLong()
+                // Chunks share the coordinates without locking, as in the reference implementation: a point updated
+                // by two chunks at once may lose one of the updates, which the descent tolerates
+                IntStream.range(0, numChunks).parallel().forEach { chunk ->
+                    val chunkRandom = Random(seed + chunk)
+                    for (e in chunk * CHUNK_SIZE until minOf(heads.size, (chunk + 1) * CHUNK_SIZE)) {
+                        if (nextSample[e] > epoch + 1) continue
+                        nextSample[e] += epochsPerSample[e]
+                        sample(heads[e], tails[e], alpha, chunkRandom)
+                    }
+                }
+                epoch++
+            }
+            cost = crossEntropy()
+        }
+
+        /**
+         * Moves the ends of an edge towards each other and the head away from a few random points.
+         */
+        private fun sample(i: Int, j: Int, alpha: Double, random: Random) {
+            var dx = coordinates[2 * i] - coordinates[2 * j]
+            var dy = coordinates[2 * i + 1] - coordinates[2 * j + 1]
+            val attraction = attraction(dx * dx + dy * dy)
+            val gx = alpha * clip(attraction * dx)
+            val gy = alpha * clip(attraction * dy)
+            coordinates[2 * i] += gx
+            coordinates[2 * i + 1] += gy
+            coordinates[2 * j] -= gx
+            coordinates[2 * j + 1] -= gy
+            repeat(NEGATIVE_SAMPLE_RATE) {
+                val other = random.nextInt(size)
+                if (other == i) return@repeat
+                dx = coordinates[2 * i] - coordinates[2 * other]
+                dy = coordinates[2 * i + 1] - coordinates[2 * other + 1]
+                val repulsion = repulsion(dx * dx + dy * dy)
+                coordinates[2 * i] += alpha * if (repulsion > 0) clip(repulsion * dx) else MAX_GRADIENT
+                coordinates[2 * i + 1] += alpha * if (repulsion > 0) clip(repulsion * dy) else MAX_GRADIENT
+            }
+        }
+
+        /**
+         * Gradient coefficient of the log similarity of points at squared distance [squaredDistance].
+         */
+        private fun attraction(squaredDistance: Double): Double {
+            if (squaredDistance <= 0) return 0.0
+            return -2 * a * b * squaredDistance.pow(b - 1) / (a * squaredDistance.pow(b) + 1)
+        }
+
+        /**
+         * Gradient coefficient of the log dissimilarity of points at squared distance [squaredDistance].
+         */
+        private fun repulsion(squaredDistance: Double) =
+            2 * b / ((REPULSION_OFFSET + squaredDistance) * (a * squaredDistance.pow(b) + 1))
+
+        private fun clip(gradient: Double) = gradient.coerceIn(-MAX_GRADIENT, MAX_GRADIENT)
+
+        /**
+         * Cross entropy between the edge weights and the downstairs similarities of their ends, over the edges of the
+         * graph.
+         */
+        private fun crossEntropy(): Double {
+            var sum = 0.0
+            for (e in heads.indices) {
+                val dx = coordinates[2 * heads[e]] - coordinates[2 * tails[e]]
+                val dy = coordinates[2 * heads[e] + 1] - coordinates[2 * tails[e] + 1]
+                val q = (1 / (1 + a * (dx * dx + dy * dy).pow(b))).coerceIn(EPSILON, 1 - EPSILON)
+                val w = weights[e].coerceIn(EPSILON, 1 - EPSILON)
+                sum += w * ln(w / q) + (1 - w) * ln((1 - w) / (1 - q))
+            }
+            return sum
+        }
+
+        /**
+         * Fits [a] and [b] by least squares so that `1 / (1 + a * d^(2b))` approximates 1 up to [minDistance] and
+         * `exp(-(d - minDistance))` beyond, using a pattern search.
+         */
+        private fun fitCurve(minDistance: Double) {
+            val xs = DoubleArray(CURVE_SAMPLES) { 3.0 * (it + 1) / CURVE_SAMPLES }
+            val ys = DoubleArray(CURVE_SAMPLES) { if (xs[it] < minDistance) 1.0 else exp(minDistance - xs[it]) }
+            fun error(a: Double, b: Double) = xs.indices.sumOf {
+                val difference = 1 / (1 + a * xs[it].pow(2 * b)) - ys[it]
+                difference * difference
+            }
+            var bestA = 1.5
+            var bestB = 0.9
+            var bestError = error(bestA, bestB)
+            var step = 0.5
+            while (step > 1e-6) {
+                var improved = false
+                for ((da, db) in listOf(step to 0.0, -step to 0.0, 0.0 to step, 0.0 to -step)) {
+                    val candidateA = bestA + da
+                    val candidateB = bestB + db
+                    if (candidateA <= 0 || candidateB <= 0) continue
+                    val candidateError = error(candidateA, candidateB)
+                    if (candidateError < bestError) {
+                        bestA = candidateA
+                        bestB = candidateB
+                        bestError = candidateError
+                        improved = true
+                    }
+                }
+                if (!improved) step /= 2
+            }
+            a = bestA
+            b = bestB
+        }
+
+        fun updateDownstairs() {
+            for (i in 0 until size) {
+                dataset.kdTree[i].downstairsPoint[0] = coordinates[2 * i]
+                dataset.kdTree[i].downstairsPoint[1] = coordinates[2 * i + 1]
+            }
+        }
+    }
+
+    override fun init(dataset: Dataset2) {
+        synchronized(dataset) {
+            initLayout(dataset).apply {
+                update(epochsPerUpdate, learningRate, epochs)
+                updateDownstairs()
+            }
+        }
+    }
+
+    private fun initLayout(dataset: Dataset2) = Layout(dataset, numNeighbors, minDistance).also { layout = it }
+
+    private fun currentLayout(dataset: Dataset2) = layout?.takeIf {
+        it.dataset === dataset && it.isCurrent && it.k == numNeighbors
+    }
+
+    override fun addPoint(dataset: Dataset2, point: DataPoint2) {
+        synchronized(dataset) {
+            val layout = currentLayout(dataset)?.takeIf { it.size == dataset.kdTree.size - 1 }
+            if (layout == null) {
+                init(dataset)
+                return
+            }
+            layout.addPoints()
+        }
+    }
+
+    override fun iterate(dataset: Dataset2) {
+        synchronized(dataset) {
+            val layout = currentLayout(dataset) ?: initLayout(dataset)
+            layout.minDistance = minDistance
+            layout.addPoints()
+            layout.update(epochsPerUpdate, learningRate, epochs)
+            layout.updateDownstairs()
+            error = layout.cost
+        }
+    }
+
+    /**
+     * Returns the downstairs coordinates of [upstairsPoint] in the current projection, without adding it to the
+     * dataset or moving other points. Returns null if the dataset has not been projected.
+     */
+    fun transform(dataset: Dataset2, upstairsPoint: DoubleArray): DoubleArray? {
+        synchronized(dataset) {
+            val layout = currentLayout(dataset) ?: return null
+            val (neighbors, distances) = layout.graph.search(upstairsPoint, layout.k)
+            return layout.embed(neighbors, distances)
+        }
+    }
+
+    override fun copy() = UMAPProjection2()
+
+    override val name = "UMAP"
+
+    companion object {
+        private const val INITIAL_SCALE = 10.0
+        private const val NEGATIVE_SAMPLE_RATE = 5
+        private const val MAX_GRADIENT = 4.0
+        private const val REPULSION_OFFSET = 0.001
+        private const val FINAL_RATE = 0.1
+        private const val CHUNK_SIZE = 4096
+        private const val TRANSFORM_EPOCHS = 30
+        private const val TRANSFORM_RATE = 0.25
+        private const val MIN_SIGMA_SCALE = 1e-3
+        private const val CALIBRATION_STEPS = 64
+        private const val CALIBRATION_TOLERANCE = 1e-5
+        private const val CURVE_SAMPLES = 300
+        private const val EPSILON = 1e-4
+
+        @JvmStatic
+        fun getTypes(): List<Class<*>> {
+            return ProjectionMethod2.getTypes()
+        }
+    }
+}
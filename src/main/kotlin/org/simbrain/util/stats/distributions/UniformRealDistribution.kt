@@ -50,10 +50,8 @@ class UniformRealDistribution(floor:Double = 0.0, ceil: Double = 1.0) : Probabil
     override val name = "Uniform (Real)"
 
     override fun deepCopy(): UniformRealDistribution {
-        val copy = UniformRealDistribution()
+        val copy = UniformRealDistribution(floor, ceil)
         copy.randomSeed = randomSeed
-        copy.ceil = ceil
-        copy.floor = floor
         return copy
     }
 
@@ -12,6 +12,8 @@ import org.simbrain.workspace.updater.UpdateAction
 import org.simbrain.workspace.updater.WorkspaceUpdater
 import org.simbrain.workspace.updater.updateAction
 import java.io.*
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
 import java.util.*
 
 /**
@@ -69,6 +71,13 @@ class Workspace: CoroutineScope {
     @Transient
     private var workspaceChanged = false
 
+    /**
+     * Counts the times the workspace has been marked as changed, so that a background save only clears
+     * [workspaceChanged] if nothing changed after its snapshot was taken.
+     */
+    @Transient
+    private var changeCount = 0L
+
     /**
      * Current workspace file.
      */
@@ -147,6 +156,7 @@ class Workspace: CoroutineScope {
         // Remove all couplings associated with this component
         // this.getCouplingManager().removeCouplings(component);
         _componentList.remove(component)
+        component.dispose()
         setWorkspaceChanged(true)
         events.componentRemoved.fireAndForget(component)
     }
@@ -287,8 +297,23 @@ class Workspace: CoroutineScope {
      *
      * @param workspaceChanged Has workspace been changed value
      */
+    @Synchronized
     fun setWorkspaceChanged(workspaceChanged: Boolean) {
         this.workspaceChanged = workspaceChanged
+        if (workspaceChanged) {
+            changeCount++
+        }
+    }
+
+    /**
+     * Clears [workspaceChanged] unless the workspace has been marked as changed since [changeCount] was
+     * [snapshotChangeCount].
+     */
+    @Synchronized
+    private fun clearWorkspaceChanged(snapshotChangeCount: Long) {
+        if (changeCount == snapshotChangeCount) {
+            workspaceChanged = false
+        }
     }
     /**
      * @return the currentDirectory
@@ -402,7 +427,7 @@ class Workspace: CoroutineScope {
     fun save(file: File?, headless: Boolean = false) {
         if (file != null) {
             try {
-                val ostream = FileOutputStream(file)
+                val ostream = BufferedOutputStream(FileOutputStream(file))
                 try {
                     val serializer = WorkspaceSerializer(this)
                     serializer.serialize(ostream, headless)
@@ -418,6 +443,28 @@ class Workspace: CoroutineScope {
         }
     }
 
+    /**
+     * Save to a file without stopping the simulation. A snapshot of the workspace is serialized between two updates
+     * (see [WorkspaceUpdater.betweenUpdates]), and then written to the file on a background thread while the
+     * simulation continues. The file is only replaced once the snapshot has been completely written, so an
+     * interrupted save does not corrupt it.
+     *
+     * @param file file to save.
+     * @return the job writing the file, which completes when the file has been written.
+     */
+    @JvmOverloads
+    fun saveInBackground(file: File, headless: Boolean = false) = launch(Dispatchers.IO) {
+        var snapshotChangeCount = 0L
+        val snapshot = updater.betweenUpdates {
+            snapshotChangeCount = synchronized(this@Workspace) { changeCount }
+            ByteArrayOutputStream().also { WorkspaceSerializer(this@Workspace).serialize(it, headless) }
+        }
+        val temp = File(file.absoluteFile.parentFile, file.name + ".tmp")
+        temp.outputStream().use { snapshot.writeTo(it) }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING)
+        clearWorkspaceChanged(snapshotChangeCount)
+    }
+
     /**
      * Returns a "flat" representation of the workspace as a byte array from the zipped representation
      * [WorkspaceSerializer] produces.
@@ -0,0 +1,274 @@
+package org.simbrain.workspace.batch
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.runBlocking
+import org.simbrain.workspace.Producer
+import org.simbrain.workspace.Workspace
+import org.simbrain.workspace.WorkspaceComponent
+import org.simbrain.workspace.serialization.WorkspaceSerializer
+import org.simbrain.workspace.updater.PerformanceMonitor
+import java.io.File
+import java.io.FileInputStream
+import java.io.Writer
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import kotlin.system.exitProcess
+
+/**
+ * Options for a batch of headless workspace runs. See [usage].
+ */
+class BatchOptions(
+    val workspaceFiles: List<File>,
+    val iterations: Int = 1000,
+    /**
+     * Descriptions of the producers whose values are written, either the simple description of the producer
+     * (e.g. "Neuron_1:Activation") or that prefixed by the component name and a slash.
+     */
+    val producers: List<String> = listOf(),
+    /**
+     * Write producer values every this many iterations.
+     */
+    val every: Int = 1,
+    val outputDirectory: File = File("."),
+    val threads: Int = Runtime.getRuntime().availableProcessors(),
+    /**
+     * Print the producers of each workspace rather than running it.
+     */
+    val listProducers: Boolean = false,
+    /**
+     * If set, latency metrics are recorded and appended to this file (csv or json lines, by extension) every
+     * [metricsPeriodMillis] and when the batch finishes.
+     */
+    val metricsFile: File? = null,
+    val metricsPeriodMillis: Long = 10_000
+)
+
+/**
+ * Result of one run.
+ */
+data class BatchResult(val name: String, val iterations: Int, val nanoTime: Long) {
+
+    val iterationsPerSecond get() = iterations / (nanoTime / 1e9)
+
+    override fun toString() = "$name: $iterations iterations in ${"%.2f".format(nanoTime / 1e9)} s " +
+            "(${"%.1f".format(iterationsPerSecond)} iterations/sec)"
+}
+
+/**
+ * Runs saved workspaces headless, with no gui, no updater events and no performance monitoring, and streams the
+ * values of selected producers to a csv file per workspace. Workspaces are run concurrently, one per thread.
+ */
+class BatchRunner(val options: BatchOptions) {
+
+    /**
+     * Open a workspace without creating any desktop components.
+     */
+    fun open(file: File) = Workspace().also { workspace ->
+        FileInputStream(file).use { WorkspaceSerializer(workspace).deserialize(it, true) }
+    }
+
+    /**
+     * Find the producers selected in the options. Throws if one is not found.
+     */
+    fun selectProducers(workspace: Workspace): List<Producer> = with(workspace.couplingManager) {
+        val all = workspace.componentList.flatMap { component -> component.producers.map { component to it } }
+        options.producers.map { description ->
+            all.firstOrNull { (component, producer) -> description.matches(component, producer) }?.second
+                ?: throw IllegalArgumentException("Producer $description not found")
+        }
+    }
+
+    private fun String.matches(component: WorkspaceComponent, producer: Producer) =
+        this == producer.simpleDescription || this == "${component.name}/${producer.simpleDescription}"
+
+    /**
+     * Open and run a saved workspace.
+     */
+    fun run(file: File) = run(open(file), file.nameWithoutExtension)
+
+    /**
+     * Run a workspace for the configured number of iterations, writing producer values to [name].csv.
+     */
+    fun run(workspace: Workspace, name: String): BatchResult {
+        val producers = selectProducers(workspace)
+        val output = File(options.outputDirectory, "$name.csv")
+        val start = System.nanoTime()
+        output.bufferedWriter().use { writer ->
+            if (producers.isNotEmpty()) {
+                writer.writeHeader(producers)
+            }
+            runBlocking {
+                workspace.updater.iterateHeadless(options.iterations) { time ->
+                    if (producers.isNotEmpty() && time % options.every == 0) {
+                        writer.writeValues(time, producers)
+                    }
+                }
+            }
+        }
+        return BatchResult(name, options.iterations, System.nanoTime() - start)
+    }
+
+    /**
+     * Run all the workspaces, at most [BatchOptions.threads] at a time, and print the throughput of each run as it
+     * finishes.
+     */
+    fun runAll(): List<BatchResult> {
+        val pool = Executors.newFixedThreadPool(options.threads.coerceIn(1, options.workspaceFiles.size.coerceAtLeast(1)))
+        try {
+            val futures = options.workspaceFiles.map { file ->
+                pool.submit(Callable { run(file).also { println(it) } })
+            }
+            return futures.map {
+                try {
+                    it.get()
+                } catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                }
+            }
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    /**
+     * Print the producers of each workspace, in the form accepted by --producer.
+     */
+    fun listProducers() {
+        options.workspaceFiles.forEach { file ->
+            val workspace = open(file)
+            println("${file.name}:")
+            with(workspace.couplingManager) {
+                workspace.componentList.forEach { component ->
+                    component.producers.forEach { println("\t${component.name}/${it.simpleDescription}") }
+                }
+            }
+        }
+    }
+
+    private fun Writer.writeHeader(producers: List<Producer>) {
+        write("iteration")
+        producers.forEach { producer ->
+            val value = producer.value
+            val size = when (value) {
+                is DoubleArray -> value.size
+                is IntArray -> value.size
+                else -> 1
+            }
+            if (value is DoubleArray || value is IntArray) {
+                val labels = producer.labelArray
+                for (i in 0 until size) {
+                    write(",")
+                    write(csvCell(labels?.getOrNull(i) ?: "${producer.simpleDescription}[$i]"))
+                }
+            } else {
+                write(",")
+                write(csvCell(producer.simpleDescription))
+            }
+        }
+        write("\n")
+    }
+
+    private fun Writer.writeValues(time: Int, producers: List<Producer>) {
+        write(time.toString())
+        producers.forEach { producer ->
+            when (val value = producer.value) {
+                is DoubleArray -> value.forEach { write(","); write(it.toString()) }
+                is IntArray -> value.forEach { write(","); write(it.toString()) }
+                else -> { write(","); write(csvCell(value.toString())) }
+            }
+        }
+        write("\n")
+    }
+
+    private fun csvCell(text: String) = if (text.contains(',') || text.contains('"')) {
+        "\"" + text.replace("\"", "\"\"") + "\""
+    } else {
+        text
+    }
+}
+
+private const val usage = """Usage: simbrain-batch [options] workspace.zip...
+Runs each workspace headless and writes the values of the selected producers to <workspace name>.csv.
+
+Options:
+  --iterations N     number of iterations per workspace (default 1000)
+  --producer P       producer to write, e.g. "Neuron_1:Activation" or "Network1/Neuron_1:Activation". Repeatable.
+  --every K          write producer values every K iterations (default 1)
+  --output DIR       directory for the csv files (default current directory)
+  --threads T        number of workspaces run at once (default number of processors)
+  --list             print the producers of each workspace and exit
+  --metrics FILE     record update latencies and append them to FILE every 10 s and at the end (.csv or json lines)"""
+
+/**
+ * Parse command line arguments. See [usage].
+ */
+fun parseBatchOptions(args: Array<String>): BatchOptions {
+    val files = ArrayList<File>()
+    val producers = ArrayList<String>()
+    var iterations = 1000
+    var every = 1
+    var output = File(".")
+    var threads = Runtime.getRuntime().availableProcessors()
+    var list = false
+    var metrics: File? = null
+    val remaining = args.iterator()
+    fun value(option: String) = if (remaining.hasNext()) remaining.next() else {
+        throw IllegalArgumentException("Missing value for $option")
+    }
+    while (remaining.hasNext()) {
+        when (val arg = remaining.next()) {
+            "--iterations" -> iterations = value(arg).toInt()
+            "--producer" -> producers.add(value(arg))
+            "--every" -> every = value(arg).toInt()
+            "--output" -> output = File(value(arg))
+            "--threads" -> threads = value(arg).toInt()
+            "--list" -> list = true
+            "--metrics" -> metrics = File(value(arg))
+            else -> {
+                if (arg.startsWith("--")) throw IllegalArgumentException("Unknown option $arg")
+                files.add(File(arg))
+            }
+        }
+    }
+    if (files.isEmpty()) throw IllegalArgumentException("No workspace files given")
+    files.firstOrNull { !it.isFile }?.let { throw IllegalArgumentException("Workspace file $it not found") }
+    if (iterations < 0 || every < 1 || threads < 1) {
+        throw IllegalArgumentException("Iterations must not be negative; every and threads must be positive")
+    }
+    return BatchOptions(files, iterations, producers, every, output, threads, list, metrics)
+}
+
+/**
+ * Entry point of simbrain-batch.
+ */
+fun main(args: Array<String>) {
+    System.setProperty("java.awt.headless", "true")
+    val options = try {
+        parseBatchOptions(args)
+    } catch (e: IllegalArgumentException) {
+        System.err.println(e.message)
+        System.err.println(usage)
+        exitProcess(2)
+    }
+    PerformanceMonitor.enabled = false
+    PerformanceMonitor.metricsEnabled = options.metricsFile != null
+    val runner = BatchRunner(options)
+    if (options.listProducers) {
+        runner.listProducers()
+        exitProcess(0)
+    }
+    options.outputDirectory.mkdirs()
+    val start = System.nanoTime()
+    val dumpScope = CoroutineScope(Dispatchers.IO)
+    options.metricsFile?.let { PerformanceMonitor.dumpPeriodically(dumpScope, it, options.metricsPeriodMillis) }
+    val results = runner.runAll()
+    dumpScope.cancel()
+    options.metricsFile?.let { PerformanceMonitor.dump(it) }
+    val seconds = (System.nanoTime() - start) / 1e9
+    println("${results.size} runs, ${results.sumOf { it.iterations }} iterations in ${"%.2f".format(seconds)} s " +
+            "(${"%.1f".format(results.sumOf { it.iterations } / seconds)} iterations/sec overall)")
+    exitProcess(0)
+}
@@ -21,6 +21,12 @@ import java.lang.reflect.Type
  */
 class Coupling private constructor(val producer: Producer, val consumer: Consumer) {
 
+    /**
+     * Calls the consumer's setter with the result of the producer's getter. Generated when the coupling is created,
+     * see [compileTransfer].
+     */
+    private val transfer = compileTransfer(producer, consumer)
+
     /**
      * This is the main action!  Set the value of the consumer based on the
      * value of the producer.
@@ -30,7 +36,7 @@ class Coupling private constructor(val producer: Producer, val consumer: Consume
      * (cf http://www.javapractices.com/topic/TopicAction.do?Id=15)).
      */
     fun update() {
-        consumer.setValue(producer.value)
+        transfer()
     }
 
     val type: Type
@@ -0,0 +1,72 @@
+package org.simbrain.workspace.couplings
+
+import org.simbrain.workspace.Consumer
+import org.simbrain.workspace.Producer
+import java.lang.invoke.LambdaMetafactory
+import java.lang.invoke.MethodHandles
+import java.lang.invoke.MethodType
+import java.lang.reflect.Method
+import java.lang.reflect.Modifier
+import java.util.function.BiConsumer
+import java.util.function.Function
+import java.util.function.ObjDoubleConsumer
+import java.util.function.ToDoubleFunction
+
+/**
+ * Create a function that sets the value of [consumer] to the value of [producer] by calling the getter and setter
+ * directly, through lambdas generated once with [LambdaMetafactory], rather than through [Method.invoke] on each
+ * update. Couplings of primitive doubles do not box the value. Falls back to [Producer.getValue] and
+ * [Consumer.setValue] when the methods cannot be bound this way.
+ */
+internal fun compileTransfer(producer: Producer, consumer: Consumer): () -> Unit {
+    val source: Any = producer.baseObject
+    val target: Any = consumer.baseObject
+    return try {
+        val getter = producer.method
+        val setter = consumer.method
+        if (getter.returnType == Double::class.javaPrimitiveType && setter.parameterTypes[0] == Double::class.javaPrimitiveType) {
+            val get = getter.bind<ToDoubleFunction<Any>>(ToDoubleFunction::class.java, "applyAsDouble")
+            val set = setter.bind<ObjDoubleConsumer<Any>>(ObjDoubleConsumer::class.java, "accept")
+            ({ set.accept(target, get.applyAsDouble(source)) })
+        } else {
+            val get = getter.bind<Function<Any, Any?>>(Function::class.java, "apply")
+            val set = setter.bind<BiConsumer<Any, Any?>>(BiConsumer::class.java, "accept")
+            ({ set.accept(target, get.apply(source)) })
+        }
+    } catch (e: Throwable) {
+        // E.g. methods of non-public or system classes
+        ({ consumer.setValue(producer.value) })
+    }
+}
+
+/**
+ * Generate an instance of the functional interface [functionalInterface] whose single method [name] calls this
+ * instance method, with the receiver as the first argument.
+ */
+@Suppress("UNCHECKED_CAST")
+private fun <T> Method.bind(functionalInterface: Class<*>, name: String): T {
+    require(!Modifier.isStatic(modifiers)) { "Attribute method $this is static" }
+    val lookup = MethodHandles.privateLookupIn(declaringClass, MethodHandles.lookup())
+    val handle = lookup.unreflect(this)
+    // The erased signature of the interface method, e.g. (Object)Object for Function.apply
+    val interfaceMethod = functionalInterface.methods.first { it.name == name && !it.isDefault }
+    val erasedType = MethodType.methodType(interfaceMethod.returnType, interfaceMethod.parameterTypes)
+    // The signature it is instantiated with: receiver first, primitives other than the specialized ones boxed
+    val instantiatedType = MethodType.methodType(
+        if (erasedType.returnType() == Any::class.java) returnType.boxed() else returnType,
+        arrayOf(declaringClass) + parameterTypes.mapIndexed { i, type ->
+            if (erasedType.parameterType(i + 1) == Any::class.java) type.boxed() else type
+        }
+    )
+    val site = LambdaMetafactory.metafactory(
+        lookup,
+        name,
+        MethodType.methodType(functionalInterface),
+        erasedType,
+        handle,
+        instantiatedType
+    )
+    return site.target.invokeWithArguments() as T
+}
+
+private fun Class<*>.boxed(): Class<*> = if (isPrimitive) MethodType.methodType(this).wrap().returnType() else this
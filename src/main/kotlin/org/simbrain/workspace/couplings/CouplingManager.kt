@@ -1,8 +1,9 @@
 package org.simbrain.workspace.couplings
 
+import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.async
 import kotlinx.coroutines.awaitAll
-import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.withContext
 import org.simbrain.util.cartesianProduct
 import org.simbrain.workspace.*
 import java.lang.reflect.Method
@@ -14,6 +15,12 @@ import kotlin.reflect.jvm.javaMethod
 const val HIGH_PRIORITY = 1
 const val LOW_PRIORITY = 100
 
+/**
+ * Workspaces with at least this many couplings update them in parallel. Below it the cost of dispatching exceeds
+ * that of updating.
+ */
+const val PARALLEL_COUPLING_THRESHOLD = 256
+
 /**
  * Maintains a list of [Coupling]s, and of potential [Producer] and [Consumer] objects. Supports creation of
  * couplings, setting of producer and consumer visibility, and filtering of all three types of objecs.
@@ -47,6 +54,21 @@ class CouplingManager(val workspace: Workspace) {
      */
     private val attributeContainerCouplings = HashMap<AttributeContainer, LinkedHashSet<Coupling>>()
 
+    /**
+     * Couplings grouped by the object that consumes their values. Couplings into different objects are independent
+     * and can be updated in parallel; couplings into the same object, e.g. many-to-one couplings to
+     * Neuron.addInputValue, are updated in order. Null when couplings have been added or removed since it was built.
+     */
+    @Volatile
+    private var consumerGroups: List<List<Coupling>>? = null
+
+    /**
+     * Incremented whenever couplings are added or removed, so that schedules built from the couplings can tell when
+     * they are out of date.
+     */
+    var modificationCount = 0L
+        private set
+
     val methodVisibilities = HashMap<Method, Boolean>()
 
     /**
@@ -189,6 +211,8 @@ class CouplingManager(val workspace: Workspace) {
      */
     fun createCoupling(producer: Producer?, consumer: Consumer?) = Coupling.create(producer, consumer).also {
         _couplings.add(it)
+        consumerGroups = null
+        modificationCount++
         attributeContainerCouplings.getOrPut(it.producer.baseObject) { LinkedHashSet() }.add(it)
         attributeContainerCouplings.getOrPut(it.consumer.baseObject) { LinkedHashSet() }.add(it)
         events.couplingAdded.fireAndForget(it)
@@ -284,11 +308,21 @@ class CouplingManager(val workspace: Workspace) {
     }
 
     /**
-     * Update all couplings by setting the consumers to take the values of their producers.
+     * Update all couplings by setting the consumers to take the values of their producers. With more than
+     * [PARALLEL_COUPLING_THRESHOLD] couplings, couplings into different objects are updated in parallel.
      */
     suspend fun updateCouplings() {
-        coroutineScope {
-            couplings.map { async { it.update() } }.awaitAll()
+        val groups = consumerGroups ?: _couplings.groupBy { it.consumer.baseObject }.values.toList()
+            .also { consumerGroups = it }
+        if (_couplings.size < PARALLEL_COUPLING_THRESHOLD || groups.size < 2) {
+            groups.forEach { group -> group.forEach { it.update() } }
+            return
+        }
+        val chunkSize = (groups.size / (4 * Runtime.getRuntime().availableProcessors())).coerceAtLeast(1)
+        withContext(Dispatchers.Default) {
+            groups.chunked(chunkSize).map { chunk ->
+                async { chunk.forEach { group -> group.forEach { it.update() } } }
+            }.awaitAll()
         }
     }
 
@@ -304,6 +338,8 @@ class CouplingManager(val workspace: Workspace) {
 
     private fun removeCouplingWithoutFiringEvent(coupling: Coupling) {
         _couplings.remove(coupling)
+        consumerGroups = null
+        modificationCount++
         attributeContainerCouplings[coupling.producer.baseObject]?.let {
             it.remove(coupling)
             if (it.isEmpty()) {
@@ -320,6 +356,8 @@ class CouplingManager(val workspace: Workspace) {
 
     fun removeAttributeContainer(attributeContainer: AttributeContainer) {
         attributeContainerCouplings[attributeContainer]?.let {
+            consumerGroups = null
+            modificationCount++
             it.forEach { coupling ->
                 _couplings.remove(coupling)
                 if (coupling.consumer.baseObject !== attributeContainer) {
@@ -51,6 +51,31 @@ class PerformanceMonitorPanel(private val workspace: Workspace) : JPanel(BorderL
             BorderFactory.createEmptyBorder(0, 0, 0, 0)
         )
         contentPanel.add(threadPane)
+        val scheduleList = JList<String>()
+        val schedulePane = JScrollPane(scheduleList)
+        schedulePane.border = BorderFactory.createCompoundBorder(
+            BorderFactory.createTitledBorder("Schedule"),
+            BorderFactory.createEmptyBorder(0, 0, 0, 0)
+        )
+        scheduleList.font = Font("Monospaced", Font.PLAIN, 11)
+        contentPanel.add(schedulePane)
+        val latencyList = JList<String>()
+        val latencyPane = JScrollPane(latencyList)
+        latencyPane.border = BorderFactory.createCompoundBorder(
+            BorderFactory.createTitledBorder("Latency"),
+            BorderFactory.createEmptyBorder(0, 0, 0, 0)
+        )
+        latencyList.font = Font("Monospaced", Font.PLAIN, 11)
+        contentPanel.add(latencyPane)
+
+        val metricsBox = JCheckBox("Record latency histograms", PerformanceMonitor.metricsEnabled)
+        metricsBox.addActionListener { PerformanceMonitor.metricsEnabled = metricsBox.isSelected }
+        val resetButton = JButton("Reset")
+        resetButton.addActionListener { PerformanceMonitor.resetMetrics() }
+        this.add("North", JPanel().apply {
+            add(metricsBox)
+            add(resetButton)
+        })
 
         this.add("Center", contentPanel)
 
@@ -98,6 +123,24 @@ class PerformanceMonitorPanel(private val workspace: Workspace) : JPanel(BorderL
                 val (threadName, name) = record
                 "$threadName: $name"
             }) }
+            latencyList.model = DefaultListModel<String>().apply {
+                if (PerformanceMonitor.metricsEnabled) {
+                    val snapshot = PerformanceMonitor.snapshot()
+                    addElement("Updates: ${snapshot.updates} (${snapshot.updatesPerSecond.format(1)}/s)")
+                    snapshot.latencies.forEach {
+                        fun Long.toSecondString() = (this / 1e9).format(5)
+                        addElement("%-30s n:%d p50:%s p99:%s".format(
+                            it.name.take(30), it.count, it.p50Nanos.toSecondString(), it.p99Nanos.toSecondString()
+                        ))
+                    }
+                }
+            }
+            // Components and critical path of a dependency graph update, if used
+            scheduleList.model = DefaultListModel<String>().apply {
+                workspace.updater.updateManager.actionList.filterIsInstance<DependencyGraphUpdate>().forEach {
+                    addAll(it.describeSchedule())
+                }
+            }
         }
 
     }
@@ -0,0 +1,210 @@
+package org.simbrain.workspace.updater
+
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import org.simbrain.util.format
+import org.simbrain.workspace.WorkspaceComponent
+import org.simbrain.workspace.couplings.Coupling
+
+/**
+ * Updates components in the order given by the couplings between them. Couplings define a graph from producing to
+ * consuming component. Each component is updated as soon as the components it consumes from have been updated and
+ * the couplings into it have been updated, so components that share no couplings are updated concurrently, and a
+ * chain of components (e.g. a world driving a network driving a plot) is propagated within one iteration rather than
+ * one component per iteration as in [UpdateAllAction].
+ *
+ * Components in a cycle of couplings are updated as in [UpdateAllAction]: the couplings into them are all updated
+ * first, using the values produced in the previous iteration by the other components of the cycle, and then the
+ * components are updated in parallel. The order in which couplings into a component are updated is the order in which
+ * they were created, so results do not depend on thread timing.
+ */
+class DependencyGraphUpdate(@Transient val updater: WorkspaceUpdater) : UpdateAction(
+    description = "Dependency Graph Update",
+    longDescription = "Update components in coupling order, independent components concurrently"
+) {
+
+    /**
+     * A strongly connected set of components, i.e. a single component or the components of a cycle of couplings,
+     * with the couplings into them.
+     */
+    class Node(val components: List<WorkspaceComponent>, val couplings: List<Coupling>, val isCycle: Boolean) {
+
+        /**
+         * Nodes whose components produce values for this node.
+         */
+        val predecessors = ArrayList<Node>()
+
+        /**
+         * Time the last update of this node took.
+         */
+        var nanoTime = 0L
+            internal set
+
+        val name get() = components.joinToString { it.name }
+
+        override fun toString() = name
+    }
+
+    /**
+     * Nodes in topological order, and couplings whose components are not known, which are updated first.
+     */
+    class Schedule(val nodes: List<Node>, val unscheduledCouplings: List<Coupling>)
+
+    private var schedule: Schedule? = null
+
+    private var scheduledComponents = listOf<WorkspaceComponent>()
+
+    private var scheduledCouplings = -1L
+
+    /**
+     * The current schedule, rebuilt when components or couplings have changed.
+     */
+    val currentSchedule: Schedule
+        get() {
+            val components = updater.components
+            val couplingManager = updater.workspace.couplingManager
+            val current = schedule
+            if (current != null && components == scheduledComponents &&
+                couplingManager.modificationCount == scheduledCouplings) {
+                return current
+            }
+            scheduledComponents = components
+            scheduledCouplings = couplingManager.modificationCount
+            return createSchedule(components, couplingManager.couplings).also { schedule = it }
+        }
+
+    override suspend fun run() {
+        val (nodes, unscheduled) = currentSchedule.let { it.nodes to it.unscheduledCouplings }
+        unscheduled.forEach { it.update() }
+        coroutineScope {
+            val jobs = HashMap<Node, Deferred<Unit>>()
+            for (node in nodes) {
+                val predecessors = node.predecessors.map { jobs[it]!! }
+                jobs[node] = async {
+                    predecessors.awaitAll()
+                    val start = System.nanoTime()
+                    PerformanceMonitor.record(node, { "Schedule: ${node.name}" }) {
+                        PerformanceMonitor.record(PerformanceMonitor.COUPLINGS) {
+                            node.couplings.forEach { it.update() }
+                        }
+                        val components = node.components.filter { it.updateOn }
+                        if (components.size == 1) {
+                            components.first().update()
+                        } else {
+                            components.map { async { it.update() } }.awaitAll()
+                        }
+                    }
+                    node.nanoTime = System.nanoTime() - start
+                }
+            }
+        }
+        updater.events.couplingsUpdates.fireAndForget()
+    }
+
+    /**
+     * The nodes of the longest chain of dependent nodes, measured by the time their last update took, and its total
+     * time in nanoseconds.
+     */
+    val criticalPath: Pair<List<Node>, Long>
+        get() {
+            val nodes = schedule?.nodes ?: return listOf<Node>() to 0L
+            val finish = HashMap<Node, Long>()
+            val previous = HashMap<Node, Node>()
+            for (node in nodes) {
+                val slowest = node.predecessors.maxByOrNull { finish[it]!! }
+                finish[node] = node.nanoTime + (slowest?.let { finish[it]!! } ?: 0L)
+                slowest?.let { previous[node] = it }
+            }
+            val last = nodes.maxByOrNull { finish[it]!! } ?: return listOf<Node>() to 0L
+            return generateSequence(last) { previous[it] }.toList().reversed() to finish[last]!!
+        }
+
+    /**
+     * One line per node of the schedule, with the nodes it waits for and the time its last update took, followed by
+     * the critical path.
+     */
+    fun describeSchedule(): List<String> {
+        val nodes = schedule?.nodes ?: return listOf()
+        fun Long.toSecondString() = (this / 1e9).format(5)
+        val lines = nodes.map { node ->
+            val cycle = if (node.isCycle) " (cycle)" else ""
+            val after = if (node.predecessors.isEmpty()) "" else " after ${node.predecessors.joinToString { it.name }}"
+            "${node.name}$cycle$after: ${node.nanoTime.toSecondString()}"
+        }
+        val (path, nanoTime) = criticalPath
+        return lines + "Critical path: ${path.joinToString(" > ")}: ${nanoTime.toSecondString()}"
+    }
+
+    companion object {
+
+        /**
+         * Group the components into strongly connected sets by their couplings and sort the sets topologically.
+         */
+        @JvmStatic
+        fun createSchedule(components: List<WorkspaceComponent>, couplings: Collection<Coupling>): Schedule {
+            val componentOf = HashMap<Any, WorkspaceComponent>()
+            components.forEach { component -> component.attributeContainers.forEach { componentOf[it] = component } }
+
+            val unscheduled = ArrayList<Coupling>()
+            val incoming = components.associateWith { ArrayList<Coupling>() }
+            val consumersOf = components.associateWith { LinkedHashSet<WorkspaceComponent>() }
+            for (coupling in couplings) {
+                val producer = componentOf[coupling.producer.baseObject]
+                val consumer = componentOf[coupling.consumer.baseObject]
+                if (producer == null || consumer == null) {
+                    unscheduled.add(coupling)
+                } else {
+                    incoming[consumer]!!.add(coupling)
+                    consumersOf[producer]!!.add(consumer)
+                }
+            }
+
+            // Tarjan's algorithm, which finds strongly connected components in reverse topological order
+            val index = HashMap<WorkspaceComponent, Int>()
+            val lowLink = HashMap<WorkspaceComponent, Int>()
+            val stack = ArrayDeque<WorkspaceComponent>()
+            val groups = ArrayList<List<WorkspaceComponent>>()
+            fun connect(component: WorkspaceComponent) {
+                index[component] = index.size
+                lowLink[component] = index[component]!!
+                stack.addLast(component)
+                for (consumer in consumersOf[component]!!) {
+                    if (consumer !in index) {
+                        connect(consumer)
+                        lowLink[component] = minOf(lowLink[component]!!, lowLink[consumer]!!)
+                    } else if (consumer in stack) {
+                        lowLink[component] = minOf(lowLink[component]!!, index[consumer]!!)
+                    }
+                }
+                if (lowLink[component] == index[component]) {
+                    val group = ArrayList<WorkspaceComponent>()
+                    do {
+                        val member = stack.removeLast()
+                        group.add(member)
+                    } while (member !== component)
+                    groups.add(group.sortedBy { components.indexOf(it) })
+                }
+            }
+            components.forEach { if (it !in index) connect(it) }
+
+            val nodeOf = HashMap<WorkspaceComponent, Node>()
+            val nodes = groups.asReversed().map { group ->
+                val couplingSet = group.flatMap { incoming[it]!! }.toSet()
+                val isCycle = group.size > 1 || group.first() in consumersOf[group.first()]!!
+                Node(group, couplings.filter { it in couplingSet }, isCycle).also { node ->
+                    group.forEach { nodeOf[it] = node }
+                }
+            }
+            for (node in nodes) {
+                node.couplings
+                    .map { nodeOf[componentOf[it.producer.baseObject]]!! }
+                    .distinct()
+                    .filter { it !== node }
+                    .forEach { node.predecessors.add(it) }
+            }
+            return Schedule(nodes, unscheduled)
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package org.simbrain.workspace.updater
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * Histogram of durations in nanoseconds, in the manner of HdrHistogram: each power of two is split into
+ * [SUB_BUCKETS] buckets, so percentiles are accurate to about 3% whatever the scale. All buckets are allocated up
+ * front, and recording is thread safe and does not allocate.
+ */
+class LatencyHistogram(val name: String) {
+
+    private val counts = AtomicLongArray(BUCKETS)
+
+    private val _count = AtomicLong()
+
+    private val total = AtomicLong()
+
+    private val _max = AtomicLong()
+
+    val count get() = _count.get()
+
+    val max get() = _max.get()
+
+    val mean get() = count.let { if (it == 0L) 0.0 else total.get().toDouble() / it }
+
+    /**
+     * Record a duration in nanoseconds. Negative durations are recorded as 0.
+     */
+    fun record(nanoTime: Long) {
+        val value = nanoTime.coerceAtLeast(0)
+        counts.incrementAndGet(indexOf(value))
+        _count.incrementAndGet()
+        total.addAndGet(value)
+        var max = _max.get()
+        while (value > max && !_max.compareAndSet(max, value)) {
+            max = _max.get()
+        }
+    }
+
+    /**
+     * The duration below which the given fraction (0 to 1) of recorded durations fall, to the precision of the
+     * buckets. Returns 0 if nothing was recorded.
+     */
+    fun percentile(fraction: Double): Long {
+        val count = count
+        if (count == 0L) {
+            return 0
+        }
+        val rank = (fraction * count).toLong().coerceIn(1, count)
+        var seen = 0L
+        for (i in 0 until BUCKETS) {
+            seen += counts.get(i)
+            if (seen >= rank) {
+                return midpoint(i).coerceAtMost(max)
+            }
+        }
+        return max
+    }
+
+    /**
+     * Forget all recorded durations.
+     */
+    fun reset() {
+        for (i in 0 until BUCKETS) {
+            counts.set(i, 0)
+        }
+        _count.set(0)
+        total.set(0)
+        _max.set(0)
+    }
+
+    companion object {
+
+        const val SUB_BUCKET_BITS = 5
+
+        const val SUB_BUCKETS = 1 shl SUB_BUCKET_BITS
+
+        /**
+         * Enough buckets for any non-negative long.
+         */
+        private const val BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS
+
+        /**
+         * Values below [SUB_BUCKETS] have a bucket each. Above that, the bucket is given by the position of the
+         * highest bit and the [SUB_BUCKET_BITS] bits after it.
+         */
+        fun indexOf(value: Long): Int {
+            if (value < SUB_BUCKETS) {
+                return value.toInt()
+            }
+            val shift = 63 - java.lang.Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS
+            return (shift + 1) * SUB_BUCKETS + (value ushr shift).toInt() - SUB_BUCKETS
+        }
+
+        /**
+         * The smallest value in a bucket.
+         */
+        fun lowerBound(index: Int): Long {
+            if (index < SUB_BUCKETS) {
+                return index.toLong()
+            }
+            val shift = index / SUB_BUCKETS - 1
+            return (SUB_BUCKETS + index % SUB_BUCKETS).toLong() shl shift
+        }
+
+        private fun midpoint(index: Int): Long {
+            if (index < SUB_BUCKETS) {
+                return index.toLong()
+            }
+            val shift = index / SUB_BUCKETS - 1
+            return lowerBound(index) + ((1L shl shift) shr 1)
+        }
+    }
+}
@@ -1,13 +1,27 @@
 package org.simbrain.workspace.updater
 
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.delay
 import kotlinx.coroutines.flow.MutableSharedFlow
 import kotlinx.coroutines.flow.asSharedFlow
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import org.simbrain.util.Events2
 import org.simbrain.workspace.gui.PerformanceMonitorPanel
-import kotlin.system.measureNanoTime
+import java.io.File
+import java.util.*
+import java.util.concurrent.atomic.AtomicLong
+import java.util.function.LongConsumer
 
 /**
  * A singleton object that can be used to track how long blocks of code take to execute. Used by the
  * [PerformanceMonitorPanel] to display performance statistics.
+ *
+ * There are two modes, which can be used together. When [enabled], every measurement is sent through [flow] for the
+ * panel. When [metricsEnabled], measurements are added to a preallocated [LatencyHistogram] per identifier, along
+ * with counts of workspace updates and the time spent firing events, without allocating; this is cheap enough to
+ * leave on in batch runs. See [snapshot] and [dumpPeriodically].
  */
 object PerformanceMonitor {
 
@@ -17,39 +31,102 @@ object PerformanceMonitor {
      */
     var enabled = false
 
+    /**
+     * Whether to record latency histograms and counters.
+     */
+    var metricsEnabled = false
+        set(value) {
+            field = value
+            Events2.dispatchTimeListener = if (value) eventDispatchListener else null
+            if (value && startTime.get() == 0L) {
+                startTime.set(System.nanoTime())
+            }
+        }
+
+    /**
+     * Identifier of the time taken to update all couplings.
+     */
+    const val COUPLINGS = "Couplings"
+
+    /**
+     * Identifier of the time taken by one workspace update.
+     */
+    const val WORKSPACE_UPDATE = "Workspace update"
+
+    /**
+     * Identifier of the time spent firing an event, i.e. launching its handlers and waiting for those that wait.
+     */
+    const val EVENT_DISPATCH = "Event dispatch"
+
     /**
      * Asynchronously buffers measured events for tracking their performance stats.
      */
     private val mutableSharedFlow = MutableSharedFlow<PerformanceMetrics>()
     val flow = mutableSharedFlow.asSharedFlow()
 
+    /**
+     * Histograms by identifier. Identifiers are often components, update actions, or schedule nodes, so they are held
+     * weakly: the histogram of one that is removed from the workspace is dropped when it is garbage collected.
+     */
+    @PublishedApi
+    internal val histograms: MutableMap<Any, LatencyHistogram> = Collections.synchronizedMap(WeakHashMap())
+
+    private val updates = AtomicLong()
+
+    private val startTime = AtomicLong()
+
+    private val eventDispatchListener = LongConsumer { nanoTime -> histogram(EVENT_DISPATCH, EVENT_DISPATCH).record(nanoTime) }
+
     /**
      * Record the time a provided block takes to execute.
      */
-    suspend fun record(
+    suspend inline fun record(
         /**
          * An object which identifies the "type" of the event, so that statistics can be gathered like average, max,
          * and min time it takes that type of event to execute.
          */
         identifier: Any,
         /**
-         * String description for [PerformanceMonitorPanel].
+         * String description for [PerformanceMonitorPanel]. Only called when needed.
          */
-        name: String = identifier.toString(),
+        name: () -> String = { identifier.toString() },
         /**
          * The block to be executed and measured.
          */
-        block: suspend () -> Unit
+        block: () -> Unit
     ) {
+        if (!enabled && !metricsEnabled) {
+            block()
+            return
+        }
+        val start = System.nanoTime()
+        block()
+        val nanoTime = System.nanoTime() - start
+        if (metricsEnabled) {
+            (histograms[identifier] ?: histogram(identifier, name())).record(nanoTime)
+        }
         if (enabled) {
-            val nanoTime = measureNanoTime {
-                block()
-            }
-            val thread = Thread.currentThread()
+            publish(identifier, name(), nanoTime)
+        }
+    }
 
-            mutableSharedFlow.emit(PerformanceMetrics(identifier, name, thread.name, nanoTime))
-        } else {
-            block()
+    @PublishedApi
+    internal suspend fun publish(identifier: Any, name: String, nanoTime: Long) {
+        mutableSharedFlow.emit(PerformanceMetrics(identifier, name, Thread.currentThread().name, nanoTime))
+    }
+
+    /**
+     * The histogram for an identifier, created with the given name if there is none.
+     */
+    fun histogram(identifier: Any, name: String): LatencyHistogram =
+        histograms[identifier] ?: synchronized(histograms) { histograms.getOrPut(identifier) { LatencyHistogram(name) } }
+
+    /**
+     * Count a workspace update. Only counted when [metricsEnabled].
+     */
+    fun countUpdate() {
+        if (metricsEnabled) {
+            updates.incrementAndGet()
         }
     }
 
@@ -57,10 +134,131 @@ object PerformanceMonitor {
      * Convenient way to invoke actions and record their performance.
      */
     suspend operator fun UpdateAction.invoke() {
-        record(this, description?: "(Unnamed Action)") {
+        record(this, { description ?: "(Unnamed Action)" }) {
             run()
         }
     }
+
+    /**
+     * Current counters and latency statistics.
+     */
+    fun snapshot(): MetricsSnapshot {
+        val start = startTime.get()
+        val elapsed = if (start == 0L) 0L else System.nanoTime() - start
+        val updates = updates.get()
+        return MetricsSnapshot(
+            System.currentTimeMillis(),
+            elapsed,
+            updates,
+            if (elapsed == 0L) 0.0 else updates / (elapsed / 1e9),
+            synchronized(histograms) { histograms.values.toList() }.sortedBy { it.name }.map {
+                LatencyStats(it.name, it.count, it.mean, it.percentile(.5), it.percentile(.99), it.max)
+            }
+        )
+    }
+
+    /**
+     * Clear all counters and histograms.
+     */
+    fun resetMetrics() {
+        synchronized(histograms) { histograms.values.toList() }.forEach { it.reset() }
+        updates.set(0)
+        startTime.set(if (metricsEnabled) System.nanoTime() else 0L)
+    }
+
+    /**
+     * Append a snapshot to [file] every [periodMillis] until the scope is cancelled: a row per histogram if the file
+     * name ends with .csv, otherwise a line of json per snapshot.
+     */
+    fun dumpPeriodically(scope: CoroutineScope, file: File, periodMillis: Long) = scope.launch(Dispatchers.IO) {
+        while (isActive) {
+            delay(periodMillis)
+            dump(file)
+        }
+    }
+
+    /**
+     * Append a snapshot to [file], as csv or json lines depending on its extension.
+     */
+    fun dump(file: File) {
+        val snapshot = snapshot()
+        if (file.extension.equals("csv", ignoreCase = true)) {
+            if (!file.exists() || file.length() == 0L) {
+                file.appendText(MetricsSnapshot.CSV_HEADER + "\n")
+            }
+            file.appendText(snapshot.toCsv())
+        } else {
+            file.appendText(snapshot.toJson() + "\n")
+        }
+    }
 }
 
-data class PerformanceMetrics(val identifier: Any, val name: String, val threadName: String, val nanoTime: Long);
\ No newline at end of file
+data class PerformanceMetrics(val identifier: Any, val name: String, val threadName: String, val nanoTime: Long);
+
+/**
+ * Latency statistics of one identifier of the [PerformanceMonitor], in nanoseconds.
+ */
+data class LatencyStats(
+    val name: String,
+    val count: Long,
+    val meanNanos: Double,
+    val p50Nanos: Long,
+    val p99Nanos: Long,
+    val maxNanos: Long
+)
+
+/**
+ * Counters and latency statistics of the [PerformanceMonitor] at one time.
+ */
+data class MetricsSnapshot(
+    val timeMillis: Long,
+    val elapsedNanos: Long,
+    val updates: Long,
+    val updatesPerSecond: Double,
+    val latencies: List<LatencyStats>
+) {
+
+    /**
+     * One row per latency, with the counters repeated on each row.
+     */
+    fun toCsv() = buildString {
+        latencies.forEach {
+            append("$timeMillis,$updates,$updatesPerSecond,${csvName(it.name)},${it.count},${it.meanNanos},")
+            append("${it.p50Nanos},${it.p99Nanos},${it.maxNanos}\n")
+        }
+    }
+
+    fun toJson() = buildString {
+        append("{\"timeMillis\":$timeMillis,\"elapsedNanos\":$elapsedNanos,\"updates\":$updates,")
+        append("\"updatesPerSecond\":$updatesPerSecond,\"latencies\":[")
+        latencies.forEachIndexed { i, it ->
+            if (i > 0) append(",")
+            append("{\"name\":${jsonString(it.name)},\"count\":${it.count},\"meanNanos\":${it.meanNanos},")
+            append("\"p50Nanos\":${it.p50Nanos},\"p99Nanos\":${it.p99Nanos},\"maxNanos\":${it.maxNanos}}")
+        }
+        append("]}")
+    }
+
+    companion object {
+        const val CSV_HEADER = "timeMillis,updates,updatesPerSecond,name,count,meanNanos,p50Nanos,p99Nanos,maxNanos"
+
+        private fun csvName(name: String) = if (name.contains(',') || name.contains('"')) {
+            "\"" + name.replace("\"", "\"\"") + "\""
+        } else {
+            name
+        }
+
+        private fun jsonString(text: String) = buildString {
+            append('"')
+            text.forEach { c ->
+                when {
+                    c == '"' -> append("\\\"")
+                    c == '\\' -> append("\\\\")
+                    c < ' ' -> append("\\u%04x".format(c.code))
+                    else -> append(c)
+                }
+            }
+            append('"')
+        }
+    }
+}
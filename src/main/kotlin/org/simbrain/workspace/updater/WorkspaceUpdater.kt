@@ -1,10 +1,13 @@
 package org.simbrain.workspace.updater
 
 import kotlinx.coroutines.*
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import org.pmw.tinylog.Logger
 import org.simbrain.workspace.Workspace
 import org.simbrain.workspace.WorkspaceComponent
 import org.simbrain.workspace.events.WorkspaceUpdaterEvents
+import java.util.concurrent.ConcurrentLinkedQueue
 
 /**
  * This class manages workspace updates. "Running" and "Stepping" the simulation
@@ -33,9 +36,21 @@ class WorkspaceUpdater(val workspace: Workspace) {
     /**
      * Whether updates should continue to run.
      */
+    @Volatile
     var isRunning = false
         private set
 
+    /**
+     * Tasks waiting for the current update to finish. See [betweenUpdates].
+     */
+    private val pendingTasks = ConcurrentLinkedQueue<() -> Unit>()
+
+    /**
+     * Held while the update actions run and while pending tasks run, so that the two never overlap, whatever
+     * [isRunning] says. Whoever releases it checks [pendingTasks] again, so a task is never left waiting.
+     */
+    private val updateLock = Mutex()
+
     /**
      * The number of times the update has run.
      */
@@ -76,6 +91,7 @@ class WorkspaceUpdater(val workspace: Workspace) {
             }
         }
         isRunning = false
+        runPendingTasks()
         for (component in workspace.componentList) {
             component.isRunning = false
         }
@@ -96,6 +112,7 @@ class WorkspaceUpdater(val workspace: Workspace) {
         }
         events.runFinished.fireAndForget()
         isRunning = false
+        runPendingTasks()
         for (component in workspace.componentList) {
             component.isRunning = false
         }
@@ -112,6 +129,7 @@ class WorkspaceUpdater(val workspace: Workspace) {
             events.runFinished.fireAndForget()
         }
         isRunning = false
+        runPendingTasks()
         for (component in workspace.componentList) {
             component.isRunning = false
         }
@@ -136,6 +154,7 @@ class WorkspaceUpdater(val workspace: Workspace) {
             doUpdate()
         }
         isRunning = false
+        runPendingTasks()
         finishingTask()
         for (component in workspace.componentList) {
             component.isRunning = false
@@ -153,12 +172,48 @@ class WorkspaceUpdater(val workspace: Workspace) {
             doUpdate()
         } while (predicate())
         isRunning = false
+        runPendingTasks()
         for (component in workspace.componentList) {
             component.isRunning = false
         }
         events.runFinished.fire()
     }
 
+    /**
+     * Iterate a set number of iterations on the calling thread, for batch runs with no gui. Unlike [iterate], no
+     * updater events are fired, and update actions are only timed if [PerformanceMonitor.metricsEnabled].
+     *
+     * @param numIterations the number of iterations to update
+     * @param afterIteration called after each iteration with the current time
+     */
+    suspend fun iterateHeadless(numIterations: Int, afterIteration: (time: Int) -> Unit = {}) {
+        isRunning = true
+        for (wc in workspace.componentList) {
+            wc.isRunning = true
+        }
+        val actions = updateManager.actionList + updateManager.nonRemovableActions
+        repeat(numIterations) {
+            time++
+            updateLock.withLock {
+                PerformanceMonitor.record(PerformanceMonitor.WORKSPACE_UPDATE) {
+                    for (action in actions) {
+                        with(PerformanceMonitor) {
+                            action()
+                        }
+                    }
+                }
+            }
+            PerformanceMonitor.countUpdate()
+            runPendingTasks()
+            afterIteration(time)
+        }
+        isRunning = false
+        runPendingTasks()
+        for (component in workspace.componentList) {
+            component.isRunning = false
+        }
+    }
+
     /**
      * Executes the main workspace update.
      */
@@ -166,16 +221,51 @@ class WorkspaceUpdater(val workspace: Workspace) {
         time++
         Logger.trace("starting: $time")
         withContext(workspace.coroutineContext) {
-            for (action in updateManager.actionList + updateManager.nonRemovableActions) {
-                with(PerformanceMonitor) {
-                    action()
+            updateLock.withLock {
+                PerformanceMonitor.record(PerformanceMonitor.WORKSPACE_UPDATE) {
+                    for (action in updateManager.actionList + updateManager.nonRemovableActions) {
+                        with(PerformanceMonitor) {
+                            action()
+                        }
+                    }
                 }
             }
         }
+        PerformanceMonitor.countUpdate()
+        runPendingTasks()
         events.workspaceUpdated.fireAndForget()
         Logger.trace("done: $time")
     }
 
+    /**
+     * Run [task] when no update is in progress, so that it sees the workspace in a consistent state: after the
+     * current update if one is in progress, otherwise right away. Used to take snapshots of a running
+     * simulation, see [Workspace.saveInBackground].
+     */
+    suspend fun <T> betweenUpdates(task: () -> T): T {
+        val result = CompletableDeferred<T>()
+        pendingTasks.add { result.completeWith(runCatching(task)) }
+        runPendingTasks()
+        return result.await()
+    }
+
+    /**
+     * Run the queued tasks unless an update holds [updateLock], in which case that update runs them when it
+     * finishes.
+     */
+    private fun runPendingTasks() {
+        while (pendingTasks.isNotEmpty() && updateLock.tryLock()) {
+            try {
+                while (true) {
+                    val task = pendingTasks.poll() ?: break
+                    task()
+                }
+            } finally {
+                updateLock.unlock()
+            }
+        }
+    }
+
     /**
      * Constructor for the updater that uses the default controller and default
      * number of threads.
@@ -0,0 +1,131 @@
+package org.simbrain.world.odorworld
+
+import org.simbrain.world.odorworld.entities.OdorWorldEntity
+import java.util.*
+import java.util.concurrent.locks.ReentrantReadWriteLock
+import kotlin.concurrent.read
+import kotlin.concurrent.write
+import kotlin.math.floor
+import kotlin.math.max
+
+/**
+ * A uniform grid over the locations of the entities of an [OdorWorld], so that sensors and collision checks only visit
+ * the entities near a point rather than every entity in the world. The world adds and removes entities, and entities
+ * report every change to their location, so the grid is always up to date.
+ *
+ * Queries return entities in the order they were added, which is their order in [OdorWorld.getEntityList]. Callers
+ * that sum over the entities found (e.g. smell stimuli) therefore add the same values in the same order as a scan of
+ * the whole list.
+ *
+ * Queries can run in parallel, e.g. when sensors are updated in parallel.
+ *
+ * @param cellSize width and height of a cell in pixels
+ */
+class EntityGrid(val cellSize: Double = 64.0) {
+
+    private class Entry(val entity: OdorWorldEntity, val order: Long, var cell: Long)
+
+    private val cells = HashMap<Long, MutableList<Entry>>()
+
+    private val entries = IdentityHashMap<OdorWorldEntity, Entry>()
+
+    private var nextOrder = 0L
+
+    private val lock = ReentrantReadWriteLock()
+
+    /**
+     * The largest width of the entities added so far. Used to find entities whose bounds may intersect a region.
+     */
+    var maxEntityWidth = 0.0
+        private set
+
+    /**
+     * The largest height of the entities added so far.
+     */
+    var maxEntityHeight = 0.0
+        private set
+
+    fun add(entity: OdorWorldEntity) {
+        lock.write {
+            if (entity in entries) {
+                return
+            }
+            val entry = Entry(entity, nextOrder++, cellOf(entity.x, entity.y))
+            entries[entity] = entry
+            cells.getOrPut(entry.cell) { ArrayList() }.add(entry)
+            maxEntityWidth = max(maxEntityWidth, entity.width)
+            maxEntityHeight = max(maxEntityHeight, entity.height)
+        }
+    }
+
+    fun remove(entity: OdorWorldEntity) {
+        lock.write {
+            entries.remove(entity)?.let { removeFromCell(it) }
+        }
+    }
+
+    operator fun contains(entity: OdorWorldEntity) = lock.read { entity in entries }
+
+    /**
+     * Moves an entity to the cell of its current location. Entities that are not in the grid are ignored.
+     */
+    fun moved(entity: OdorWorldEntity) {
+        lock.write {
+            val entry = entries[entity] ?: return
+            val cell = cellOf(entity.x, entity.y)
+            if (cell != entry.cell) {
+                removeFromCell(entry)
+                entry.cell = cell
+                cells.getOrPut(cell) { ArrayList() }.add(entry)
+            }
+        }
+    }
+
+    /**
+     * Returns the entities located in the given rectangle, bounds included, in the order they were added.
+     */
+    fun query(minX: Double, minY: Double, maxX: Double, maxY: Double): List<OdorWorldEntity> {
+        val found = ArrayList<Entry>()
+        lock.read {
+            fun collect(cell: List<Entry>) = cell.filterTo(found) {
+                it.entity.x in minX..maxX && it.entity.y in minY..maxY
+            }
+            val minCellX = cellIndex(minX)
+            val minCellY = cellIndex(minY)
+            val maxCellX = cellIndex(maxX)
+            val maxCellY = cellIndex(maxY)
+            val numCells = (maxCellX.toDouble() - minCellX + 1) * (maxCellY.toDouble() - minCellY + 1)
+            if (numCells > cells.size) {
+                // Large regions cover more cells than are occupied
+                cells.values.forEach { collect(it) }
+            } else {
+                for (cellX in minCellX..maxCellX) {
+                    for (cellY in minCellY..maxCellY) {
+                        cells[key(cellX, cellY)]?.let { collect(it) }
+                    }
+                }
+            }
+        }
+        found.sortBy { it.order }
+        return found.map { it.entity }
+    }
+
+    private fun removeFromCell(entry: Entry) {
+        val cell = cells[entry.cell] ?: return
+        cell.remove(entry)
+        if (cell.isEmpty()) {
+            cells.remove(entry.cell)
+        }
+    }
+
+    private fun cellIndex(coordinate: Double) = floor(coordinate / cellSize).coerceIn(-1e9, 1e9).toInt()
+
+    private fun cellOf(x: Double, y: Double) = key(cellIndex(x), cellIndex(y))
+
+    /**
+     * Packs cell coordinates into a long, multiplied by an odd constant so that keys stay distinct but spread over the
+     * hash table. The hash code of the packed coordinates alone, x xor y, is the same for many nearby cells.
+     */
+    private fun key(cellX: Int, cellY: Int) =
+        ((cellX.toLong() shl 32) or (cellY.toLong() and 0xffffffffL)) * -7046029254386353131L
+}
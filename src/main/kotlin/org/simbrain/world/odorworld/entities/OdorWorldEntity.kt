@@ -25,14 +25,20 @@ class OdorWorldEntity @JvmOverloads constructor(
     var entityType: EntityType = EntityType.SWISS,
     @Transient
     var events: EntityEvents2 = EntityEvents2(),
+    position: Location = Location(events),
 ) :
     EditableObject,
     AttributeContainer,
-    Locatable by Location(events),
+    Locatable by position,
     Rotatable by Rotation(events),
     Movable,
     WithSize by Size(entityType.imageWidth, entityType.imageHeight), Bounded, WithDispersion {
 
+    init {
+        // Keep the entity grid of the world up to date
+        position.onMoved = { world.entityMoved(this) }
+    }
+
     override var id: String? = null
 
     @UserParameter(label = "Name", order = 1)
@@ -56,6 +62,10 @@ class OdorWorldEntity @JvmOverloads constructor(
      * components.
      */
     var smellSource = SmellSource(10)
+        set(value) {
+            field = value
+            world.invalidateSmellExtent()
+        }
 
     private val _sensors: MutableList<Sensor> = ArrayList()
     val sensors: List<Sensor> get() = _sensors
@@ -101,14 +111,13 @@ class OdorWorldEntity @JvmOverloads constructor(
         val dx = cos(heading.toRadian()) * speed
         val dy = -sin(heading.toRadian()) * speed
 
-        val bounds = world.collidableObjects.filter { it !== this }
-
         val directionX = if (dx > 0) 1 else -1
         val directionY = if (dy > 0) 1 else -1
 
         val moveInX = Bound(x + dx, y, width, height)
 
-        val distanceXShortenBy = bounds
+        val distanceXShortenBy = world.getCollidableObjects(moveInX)
+            .filter { it !== this }
             .associateWith { moveInX.intersect(it) }
             .filter { it.value.intersect }
             .minByOrNull { it.value.dx }
@@ -116,7 +125,8 @@ class OdorWorldEntity @JvmOverloads constructor(
 
         val moveInY = Bound(x + (dx - distanceXShortenBy * directionX), y + dy, width, height)
 
-        val distanceYShortenBy = bounds
+        val distanceYShortenBy = world.getCollidableObjects(moveInY)
+            .filter { it !== this }
             .associateWith { moveInY.intersect(it) }
             .filter { it.value.intersect }
             .minByOrNull { it.value.dy }
@@ -137,9 +147,20 @@ class OdorWorldEntity @JvmOverloads constructor(
 
     fun update() {
         applyMovement()
+        updateSensors()
+        updateEffectors()
+    }
+
+    /**
+     * Update the sensors, which read the locations of entities but do not change them. See [OdorWorld.update].
+     */
+    fun updateSensors() {
         if (isSensorsEnabled) {
             sensors.forEach { it.update(this) }
         }
+    }
+
+    fun updateEffectors() {
         if (isEffectorsEnabled) {
             effectors.forEach { it.update(this) }
         }
@@ -227,7 +248,7 @@ class OdorWorldEntity @JvmOverloads constructor(
     }
 
     fun getEntitiesInRadius(radius: Double): List<OdorWorldEntity> {
-        return world.entityList
+        return world.getEntitiesNear(location, radius)
             .filter { it !== this }
             .filter { it.location.distance(location) <= radius }
     }
@@ -26,12 +26,19 @@ class Location(@Transient private val event: EntityLocationEvent) : Locatable {
     @Transient
     private var dirty = true
 
+    /**
+     * Called on this thread whenever x or y changes, unlike handlers of the moved event.
+     */
+    @Transient
+    var onMoved: (() -> Unit)? = null
+
     @UserParameter(label = "X", description = "X Position", useSetter = true, order = 3)
     override var x = 0.0
         set(value) {
             field = value
             event.moved.fireAndForget()
             dirty = true
+            onMoved?.invoke()
         }
 
     @UserParameter(label = "Y", description = "Y Position", useSetter = true, order = 3)
@@ -40,6 +47,7 @@ class Location(@Transient private val event: EntityLocationEvent) : Locatable {
             field = value
             event.moved.fireAndForget()
             dirty = true
+            onMoved?.invoke()
         }
 
     @Transient
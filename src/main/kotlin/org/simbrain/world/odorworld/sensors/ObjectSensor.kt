@@ -35,7 +35,8 @@ class ObjectSensor @JvmOverloads constructor(
     override fun update(parent: OdorWorldEntity) {
         currentValue = 0.0
         val sensorLocation = computeAbsoluteLocation(parent)
-        for (otherEntity in parent.world.entityList - parent) {
+        for (otherEntity in parent.world.getEntitiesNear(sensorLocation, decayFunction.effectiveRadius)) {
+            if (otherEntity === parent) continue
             if (otherEntity.entityType == objectType) {
                 val scaleFactor = decayFunction.getScalingFactor(
                     SimbrainMath.distance(sensorLocation, otherEntity.location)
@@ -49,7 +50,9 @@ class ObjectSensor @JvmOverloads constructor(
         currentValue = 0.0
         val retList = ArrayList<OdorWorldEntity>()
         val sensorLocation = computeAbsoluteLocation(parent)
-        for (otherEntity in parent.world.entityList) {
+        // Entities out of range have a value of zero, which only exceeds negative thresholds
+        val range = if (threshold >= 0) decayFunction.effectiveRadius else Double.POSITIVE_INFINITY
+        for (otherEntity in parent.world.getEntitiesNear(sensorLocation, range)) {
             if (otherEntity.entityType == objectType) {
                 val scaleFactor = decayFunction.getScalingFactor(
                     SimbrainMath.distance(sensorLocation, otherEntity.location)
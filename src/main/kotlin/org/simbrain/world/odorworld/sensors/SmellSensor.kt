@@ -22,6 +22,7 @@ import org.simbrain.util.math.SimbrainMath
 import org.simbrain.workspace.Producible
 import org.simbrain.workspace.couplings.HIGH_PRIORITY
 import org.simbrain.world.odorworld.entities.OdorWorldEntity
+import kotlin.math.max
 
 /**
  * A sensor which is updated based on the presence of [SmellSource]s near it.
@@ -41,13 +42,23 @@ class SmellSensor @JvmOverloads constructor(
 
     /**
      * Update the smell vector by iterating over entities and adding up their distance-scaled smell vectors.
+     *
+     * Only entities within the largest effective radius of the smell sources in the world are visited, since the
+     * stimuli of the others are zero. They are visited in the order of the entity list, so the sums are the same as
+     * when adding the stimuli of every entity.
      */
     override fun update(parent: OdorWorldEntity) {
-        smellVector = parent.world.entityList
-            .filter { it != parent } // Don't smell yourself
-            .map { Pair(it.smellSource, SimbrainMath.distance(it.location, computeAbsoluteLocation(parent))) }
-            .map { (smellSource, distance) -> smellSource.getStimulus(distance) }
-            .fold(DoubleArray(smellVector.size) {0.0},  SimbrainMath::addVector)
+        val world = parent.world
+        val sensorLocation = computeAbsoluteLocation(parent)
+        val sum = DoubleArray(max(smellVector.size, world.getMaxSmellDimension(parent)))
+        for (entity in world.getEntitiesNear(sensorLocation, world.maxSmellRadius)) {
+            if (entity === parent) continue // Don't smell yourself
+            val stimulus = entity.smellSource.getStimulus(SimbrainMath.distance(entity.location, sensorLocation))
+            for (i in stimulus.indices) {
+                sum[i] += stimulus[i]
+            }
+        }
+        smellVector = sum
     }
 
     /**
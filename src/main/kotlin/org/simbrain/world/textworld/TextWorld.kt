@@ -19,7 +19,7 @@
 package org.simbrain.world.textworld
 
 import org.simbrain.util.UserParameter
-import org.simbrain.util.generateCooccurrenceMatrix
+import org.simbrain.util.generateSparseCooccurrenceMatrix
 import org.simbrain.util.propertyeditor.EditableObject
 import org.simbrain.util.tokenizeWordsFromSentence
 import org.simbrain.util.uniqueTokensFromArray
@@ -66,6 +66,18 @@ class TextWorld : AttributeContainer, EditableObject {
     @UserParameter(label = "Use PPMI", order = 40 )
     var usePPMI = true
 
+    /**
+     * If positive, co-occurrence embeddings keep only this many of the most frequent contexts. Embeddings are stored
+     * densely, so with 0 a large vocabulary takes a tokens by tokens matrix.
+     */
+    @UserParameter(
+        label = "Context dimensions",
+        description = "Number of most frequent context tokens used as embedding dimensions, or 0 to use every token",
+        minimumValue = 0.0,
+        order = 45
+    )
+    var contextDimensions = 0
+
     @UserParameter(label = "Use cosine sim", order = 50 )
     var useCosine = true
 
@@ -399,8 +411,9 @@ class TextWorld : AttributeContainer, EditableObject {
             tokenVectorMap = TokenVectorMap(tokens, Matrix.eye(tokens.size))
 
         } else {
-            val result = generateCooccurrenceMatrix(docString, windowSize,skipGram, usePPMI)
-            tokenVectorMap = TokenVectorMap(result.first, result.second)
+            tokenVectorMap = TokenVectorMap(
+                generateSparseCooccurrenceMatrix(docString, windowSize, skipGram, usePPMI, contextDimensions)
+            )
         }
     }
 }
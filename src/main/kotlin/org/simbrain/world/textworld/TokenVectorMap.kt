@@ -1,5 +1,6 @@
 package org.simbrain.world.textworld
 
+import org.simbrain.util.CooccurrenceMatrix
 import org.simbrain.util.projection.DataPoint
 import org.simbrain.util.projection.NTree
 import org.simbrain.util.table.SimbrainDataModel
@@ -14,9 +15,21 @@ class TokenVectorMap(
     /**
      * Matrix whose rows correspond to vector representations of corresponding tokens.
      */
-    var tokenVectorMatrix: Matrix
+    var tokenVectorMatrix: Matrix,
+    /**
+     * Names of the columns of [tokenVectorMatrix], e.g. the context tokens of a co-occurrence matrix.
+     */
+    val contexts: List<String> = tokens
 ) {
 
+    /**
+     * Creates a map whose vectors are the rows of a co-occurrence matrix. The vectors are stored densely, with a
+     * component per context, so large vocabularies should be limited to their most frequent contexts, e.g. with the
+     * contextDimensions of [org.simbrain.util.generateSparseCooccurrenceMatrix].
+     */
+    constructor(cooccurrences: CooccurrenceMatrix) :
+            this(cooccurrences.tokens, cooccurrences.toMatrix(), cooccurrences.contexts)
+
     /**
      * Assume indices of the token list correspond to rows of the cocMatrix
      */
@@ -32,9 +45,7 @@ class TokenVectorMap(
      * components.
      *
      */
-    var dimension = size
-        // Currently because the matrices are always square the dimension just corresponds to number of rows
-        get() = size
+    val dimension get() = tokenVectorMatrix.ncol()
 
     /**
      * N-Tree (optimized to find vectors near a given vector) associating vectors with tokens.
@@ -75,7 +86,7 @@ class TokenVectorMap(
 
     fun createTableModel(): SimbrainDataModel {
         val table = createFromDoubleArray(tokenVectorMatrix.replaceNaN(0.0).toArray())
-        table.setColumnNames(tokensMap.keys.toList())
+        table.setColumnNames(contexts)
         table.rowNames = tokensMap.keys.toList()
         return table
     }
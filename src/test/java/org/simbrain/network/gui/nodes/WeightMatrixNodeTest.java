@@ -0,0 +1,39 @@
+package org.simbrain.network.gui.nodes;
+
+import org.junit.jupiter.api.Test;
+import org.simbrain.network.connections.OneToOne;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.matrix.NeuronArray;
+import org.simbrain.network.matrix.SparseWeightMatrix;
+import org.simbrain.network.matrix.WeightMatrix;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WeightMatrixNodeTest {
+
+    @Test
+    public void testSparseMatrixImageMatchesDense() {
+        Network net = new Network();
+        NeuronArray na1 = new NeuronArray(net, 3);
+        NeuronArray na2 = new NeuronArray(net, 2);
+        net.addNetworkModelsAsync(List.of(na1, na2));
+        SparseWeightMatrix swm = new SparseWeightMatrix(net, na1, na2, new OneToOne());
+        swm.setWeights(new double[]{1, -1});
+        WeightMatrix wm = new WeightMatrix(net, na1, na2);
+        wm.setWeights(new double[]{1, 0, 0, 0, -1, 0});
+
+        BufferedImage sparseImage = WeightMatrixNode.createMatrixImage(swm);
+        BufferedImage denseImage = WeightMatrixNode.createMatrixImage(wm);
+        assertNotNull(sparseImage);
+        assertEquals(3, sparseImage.getWidth());
+        assertEquals(2, sparseImage.getHeight());
+        for (int y = 0; y < 2; y++) {
+            for (int x = 0; x < 3; x++) {
+                assertEquals(denseImage.getRGB(x, y), sparseImage.getRGB(x, y));
+            }
+        }
+    }
+}
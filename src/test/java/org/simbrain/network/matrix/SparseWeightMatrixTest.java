@@ -0,0 +1,169 @@
+package org.simbrain.network.matrix;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.simbrain.network.connections.AllToAll;
+import org.simbrain.network.connections.ConnectionStrategy;
+import org.simbrain.network.connections.DistanceBased;
+import org.simbrain.network.connections.FixedDegree;
+import org.simbrain.network.connections.OneToOne;
+import org.simbrain.network.connections.Sparse;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.spikeresponders.JumpAndDecay;
+import org.simbrain.network.synapse_update_rules.HebbianRule;
+import org.simbrain.network.updaterules.IntegrateAndFireRule;
+import org.simbrain.network.util.SpikingMatrixData;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SparseWeightMatrixTest {
+
+    Network net;
+    NeuronArray na1;
+    NeuronArray na2;
+
+    @BeforeEach
+    public void setUp() {
+        net = new Network();
+        na1 = new NeuronArray(net, 3);
+        na2 = new NeuronArray(net, 2);
+        net.addNetworkModelsAsync(List.of(na1, na2));
+    }
+
+    @Test
+    public void testMatrixProductMatchesDense() {
+        SparseWeightMatrix swm = new SparseWeightMatrix(net, na1, na2, new AllToAll());
+        WeightMatrix wm = new WeightMatrix(net, na1, na2);
+        double[] weights = {1, 2, 3, 4, 5, 6};
+        swm.setWeights(weights);
+        wm.setWeights(weights);
+        na1.setActivations(new double[]{1, -1, .5});
+        assertArrayEquals(wm.getOutput().col(0), swm.getOutput().col(0), 0.0);
+        assertEquals(6.0, swm.get(1, 2), 0.0);
+        assertEquals(wm.getWeightMatrix().sum(), swm.toDense().sum(), 0.0);
+    }
+
+    @Test
+    public void testEveryStrategyConnectsLayers() throws Exception {
+        for (Class<?> type : ConnectionStrategy.getTypes()) {
+            ConnectionStrategy strategy = (ConnectionStrategy) type.getDeclaredConstructor().newInstance();
+            SparseWeightMatrix swm = new SparseWeightMatrix(net, na1, na2, strategy);
+            assertEquals(2, swm.getRowStart().length - 1, type.getSimpleName());
+        }
+    }
+
+    @Test
+    public void testOneToOneLayers() {
+        SparseWeightMatrix swm = new SparseWeightMatrix(net, na1, na2, new OneToOne());
+        assertEquals(2, swm.getNumConnections());
+        assertArrayEquals(new int[]{0, 1}, swm.getColumnIndices());
+    }
+
+    @Test
+    public void testSparseConnections() {
+        NeuronArray big = new NeuronArray(net, 200);
+        SparseWeightMatrix swm = new SparseWeightMatrix(net, big, big, new Sparse(.1, false, false));
+        int count = swm.getNumConnections();
+        assertTrue(count > 3000 && count < 5000, "Unexpected number of connections: " + count);
+        int[] rowStart = swm.getRowStart();
+        int[] columns = swm.getColumnIndices();
+        for (int i = 0; i < 200; i++) {
+            for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+                assertNotEquals(i, columns[k]); // No self connections
+                if (k > rowStart[i]) {
+                    assertTrue(columns[k] > columns[k - 1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * A sparse matrix in a new network whose weight randomizer is seeded with 1.
+     */
+    private SparseWeightMatrix seededSparseMatrix(ConnectionStrategy strategy) {
+        Network seeded = new Network();
+        seeded.getWeightRandomizer().setRandomSeed(1);
+        NeuronArray src = new NeuronArray(seeded, 40);
+        NeuronArray tar = new NeuronArray(seeded, 40);
+        seeded.addNetworkModelsAsync(List.of(src, tar));
+        SparseWeightMatrix swm = new SparseWeightMatrix(seeded, src, tar, strategy);
+        swm.randomize();
+        return swm;
+    }
+
+    @Test
+    public void testSeededConnectionsAreReproducible() {
+        for (ConnectionStrategy strategy : List.of(new Sparse(.2, false, false), new Sparse(.2, true, false),
+                new FixedDegree(), new DistanceBased())) {
+            SparseWeightMatrix first = seededSparseMatrix(strategy);
+            SparseWeightMatrix second = seededSparseMatrix(strategy);
+            assertArrayEquals(first.getColumnIndices(), second.getColumnIndices(), strategy.getName());
+            assertArrayEquals(first.getValues(), second.getValues(), 0.0, strategy.getName());
+        }
+    }
+
+    @Test
+    public void testEqualizedEfferents() {
+        NeuronArray src = new NeuronArray(net, 20);
+        NeuronArray tar = new NeuronArray(net, 50);
+        SparseWeightMatrix swm = new SparseWeightMatrix(net, src, tar, new Sparse(.2, true, false));
+        int[] outDegree = new int[20];
+        swm.forEachEntry((k, i, j) -> outDegree[j]++);
+        for (int degree : outDegree) {
+            assertEquals(10, degree);
+        }
+    }
+
+    @Test
+    public void testFixedDegree() {
+        NeuronArray src = new NeuronArray(net, 30);
+        NeuronArray tar = new NeuronArray(net, 10);
+        FixedDegree fixedDegree = new FixedDegree();
+        fixedDegree.setDegree(4);
+        SparseWeightMatrix swm = new SparseWeightMatrix(net, src, tar, fixedDegree);
+        int[] rowStart = swm.getRowStart();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(4, rowStart[i + 1] - rowStart[i]);
+        }
+    }
+
+    @Test
+    public void testDistanceBased() {
+        NeuronArray src = new NeuronArray(net, 50);
+        SparseWeightMatrix swm = new SparseWeightMatrix(net, src, src, new DistanceBased());
+        swm.forEachEntry((k, i, j) -> assertNotEquals(i, j));
+        assertTrue(swm.getNumConnections() < 50 * 50);
+    }
+
+    @Test
+    public void testHebbianLearning() {
+        SparseWeightMatrix swm = new SparseWeightMatrix(net, na1, na2, new AllToAll());
+        swm.setWeights(new double[6]);
+        HebbianRule rule = new HebbianRule();
+        rule.setLearningRate(.5);
+        swm.setPrototypeRule(rule);
+        na1.setActivations(new double[]{1, 2, 3});
+        na2.setActivations(new double[]{1, -1});
+        swm.update();
+        assertArrayEquals(new double[]{.5, 1, 1.5, -.5, -1, -1.5}, swm.getWeights(), 1e-10);
+    }
+
+    @Test
+    public void testSpikeResponderMatchesDense() {
+        na1.setUpdateRule(new IntegrateAndFireRule());
+        SparseWeightMatrix swm = new SparseWeightMatrix(net, na1, na2, new AllToAll());
+        WeightMatrix wm = new WeightMatrix(net, na1, na2);
+        double[] weights = {1, 2, 3, 4, 5, 6};
+        swm.setWeights(weights);
+        wm.setWeights(weights);
+        swm.setSpikeResponder(new JumpAndDecay());
+        wm.setSpikeResponder(new JumpAndDecay());
+        boolean[] spikes = ((SpikingMatrixData) na1.getDataHolder()).getSpikes();
+        spikes[1] = true;
+        assertArrayEquals(wm.getOutput().col(0), swm.getOutput().col(0), 1e-10);
+        spikes[1] = false;
+        assertArrayEquals(wm.getOutput().col(0), swm.getOutput().col(0), 1e-10);
+    }
+}
@@ -64,6 +64,19 @@ public class WeightMatrixTest {
     }
 
 
+    @Test
+    public void testAddOutputTo() {
+        wm.setWeights(new double[]{1, 2, 3, 4});
+        na1.setActivations(new double[]{1, 2});
+        double[] inputs = {1, -1};
+        wm.addOutputTo(inputs);
+        assertArrayEquals(new double[]{6,10}, inputs, 0.0);
+        // Replacing the activations matrix should be picked up by the next forward pass
+        na1.setActivations(new double[]{-1, 0});
+        wm.addOutputTo(inputs);
+        assertArrayEquals(new double[]{5,7}, inputs, 0.0);
+    }
+
     @Test
     public void testArrayToArray() {
         na1.setActivations(new double[]{.5, -.5});
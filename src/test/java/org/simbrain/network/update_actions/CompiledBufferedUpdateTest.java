@@ -0,0 +1,141 @@
+package org.simbrain.network.update_actions;
+
+import org.junit.jupiter.api.Test;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.neuron_update_rules.DecayRule;
+import org.simbrain.network.neuron_update_rules.LinearRule;
+import org.simbrain.network.synapse_update_rules.HebbianRule;
+import org.simbrain.workspace.updater.UpdateAction;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledBufferedUpdateTest {
+
+    /**
+     * Build a random network of loose neurons and synapses, including some that cannot be compiled.
+     */
+    private static List<Neuron> buildNetwork(Network net, long seed) {
+        Random random = new Random(seed);
+        List<Neuron> neurons = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            Neuron n = new Neuron(net);
+            if (i % 10 == 3) {
+                n.setUpdateRule(new DecayRule());
+            } else {
+                LinearRule rule = new LinearRule();
+                rule.setSlope(random.nextDouble() * 2);
+                rule.setClippingType(LinearRule.ClippingType.values()[i % 3]);
+                n.setUpdateRule(rule);
+            }
+            n.forceSetActivation(random.nextDouble() * 2 - 1);
+            neurons.add(n);
+        }
+        neurons.get(0).setClamped(true);
+        net.addNetworkModelsAsync(neurons);
+        List<Synapse> synapses = new ArrayList<>();
+        Set<Integer> connected = new HashSet<>();
+        for (int i = 0; i < 150; i++) {
+            int srcIndex = random.nextInt(neurons.size());
+            int tarIndex = random.nextInt(neurons.size());
+            if (!connected.add(srcIndex * neurons.size() + tarIndex)) {
+                continue;
+            }
+            Neuron src = neurons.get(srcIndex);
+            Neuron tar = neurons.get(tarIndex);
+            Synapse s = new Synapse(src, tar, random.nextDouble() * 2 - 1);
+            if (i % 25 == 0) {
+                s.setLearningRule(new HebbianRule());
+            } else if (i % 25 == 1) {
+                s.setDelay(2);
+            } else if (i % 25 == 2) {
+                s.setEnabled(false);
+            }
+            synapses.add(s);
+        }
+        net.addNetworkModelsAsync(synapses);
+        return neurons;
+    }
+
+    private static Network createNetwork(Function<Network, UpdateAction> action) {
+        Network net = new Network();
+        net.getUpdateManager().clear();
+        net.getUpdateManager().addAction(action.apply(net));
+        return net;
+    }
+
+    @Test
+    void testSameResultsAsBufferedUpdate() {
+        Network buffered = createNetwork(BufferedUpdate::new);
+        Network compiled = createNetwork(CompiledBufferedUpdate::new);
+        List<Neuron> bufferedNeurons = buildNetwork(buffered, 1);
+        List<Neuron> compiledNeurons = buildNetwork(compiled, 1);
+
+        for (int i = 0; i < 20; i++) {
+            // External input
+            bufferedNeurons.get(5).addInputValue(.1 * i);
+            compiledNeurons.get(5).addInputValue(.1 * i);
+            buffered.update();
+            compiled.update();
+            for (int j = 0; j < bufferedNeurons.size(); j++) {
+                assertEquals(bufferedNeurons.get(j).getActivation(), compiledNeurons.get(j).getActivation(), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    void testLazyWriteBack() {
+        Network net = createNetwork(CompiledBufferedUpdate::new);
+        Neuron n1 = new Neuron(net);
+        Neuron n2 = new Neuron(net);
+        Synapse s = new Synapse(n1, n2);
+        net.addNetworkModelsAsync(List.of(n1, n2, s));
+
+        n1.forceSetActivation(.5);
+        net.update();
+        assertTrue(net.getCompiledModels().getNeedsSync());
+        assertEquals(.5, n2.getActivation(), .001);
+        assertFalse(net.getCompiledModels().getNeedsSync());
+
+        // Strength changes and external edits are picked up on the next update
+        s.setStrength(2);
+        n1.forceSetActivation(.25);
+        net.update();
+        assertEquals(.5, n2.getActivation(), .001);
+    }
+
+    @Test
+    void testRecompileOnAddAndRemove() {
+        Network net = createNetwork(CompiledBufferedUpdate::new);
+        Neuron n1 = new Neuron(net);
+        Neuron n2 = new Neuron(net);
+        net.addNetworkModelsAsync(List.of(n1, n2, new Synapse(n1, n2)));
+        n1.setClamped(true);
+        n1.forceSetActivation(1);
+        net.update();
+        assertEquals(1, n2.getActivation(), .001);
+
+        Neuron n3 = new Neuron(net);
+        Synapse s = new Synapse(n1, n3, -1);
+        net.addNetworkModelsAsync(List.of(n3, s));
+        net.update();
+        assertEquals(-1, n3.getActivation(), .001);
+
+        s.delete();
+        net.update();
+        assertEquals(0, n3.getActivation(), .001);
+
+        n2.setClamped(true);
+        n2.forceSetActivation(.3);
+        net.update();
+        assertEquals(.3, n2.getActivation(), .001);
+    }
+}
@@ -0,0 +1,172 @@
+package org.simbrain.network.update_actions;
+
+import org.junit.jupiter.api.Test;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.neuron_update_rules.LinearRule;
+import org.simbrain.network.spikeresponders.JumpAndDecay;
+import org.simbrain.network.spikeresponders.StepResponder;
+import org.simbrain.network.synapse_update_rules.HebbianRule;
+import org.simbrain.network.updaterules.IntegrateAndFireRule;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventDrivenUpdateTest {
+
+    /**
+     * Build a random network of loose integrate and fire neurons, and a few linear neurons, with a mix of spike
+     * responders, delays and learning rules.
+     */
+    private static List<Neuron> buildNetwork(Network net, long seed) {
+        Random random = new Random(seed);
+        List<Neuron> neurons = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Neuron n = new Neuron(net);
+            if (i % 20 == 5) {
+                n.setUpdateRule(new LinearRule());
+            } else {
+                n.setUpdateRule(new IntegrateAndFireRule());
+                n.forceSetActivation(-70 + random.nextDouble() * 20);
+            }
+            neurons.add(n);
+        }
+        net.addNetworkModelsAsync(neurons);
+        List<Synapse> synapses = new ArrayList<>();
+        Set<Integer> connected = new HashSet<>();
+        for (int i = 0; i < 800; i++) {
+            int srcIndex = random.nextInt(neurons.size());
+            int tarIndex = random.nextInt(neurons.size());
+            if (!connected.add(srcIndex * neurons.size() + tarIndex)) {
+                continue;
+            }
+            Synapse s = new Synapse(neurons.get(srcIndex), neurons.get(tarIndex), random.nextDouble() * 4 - 1);
+            if (i % 3 == 0) {
+                StepResponder responder = new StepResponder();
+                responder.setResponseDuration(1 + i % 4);
+                s.setSpikeResponder(responder);
+            } else if (i % 3 == 1) {
+                JumpAndDecay responder = new JumpAndDecay();
+                responder.setTimeConstant(i % 2 == 0 ? 3 : 5);
+                s.setSpikeResponder(responder);
+            }
+            if (i % 7 == 0) {
+                // Delayed synapses are updated through the object path
+                s.setDelay(1 + i % 5);
+            }
+            if (i % 40 == 0) {
+                s.setLearningRule(new HebbianRule());
+            }
+            synapses.add(s);
+        }
+        net.addNetworkModelsAsync(synapses);
+        return neurons;
+    }
+
+    @Test
+    void testSameResultsAsBufferedUpdate() {
+        Network buffered = new Network();
+        buffered.getUpdateManager().clear();
+        buffered.getUpdateManager().addAction(new BufferedUpdate(buffered));
+        Network eventDriven = new Network();
+        eventDriven.getUpdateManager().clear();
+        eventDriven.getUpdateManager().addAction(new EventDrivenUpdate(eventDriven));
+
+        List<Neuron> bufferedNeurons = buildNetwork(buffered, 11);
+        List<Neuron> eventDrivenNeurons = buildNetwork(eventDriven, 11);
+
+        Random inputs = new Random(3);
+        int spikes = 0;
+        for (int i = 0; i < 300; i++) {
+            int j = inputs.nextInt(bufferedNeurons.size());
+            bufferedNeurons.get(j).addInputValue(10);
+            eventDrivenNeurons.get(j).addInputValue(10);
+            buffered.update();
+            eventDriven.update();
+            for (int k = 0; k < bufferedNeurons.size(); k++) {
+                Neuron expected = bufferedNeurons.get(k);
+                Neuron actual = eventDrivenNeurons.get(k);
+                assertEquals(expected.getActivation(), actual.getActivation(), 1e-9);
+                assertEquals(expected.isSpike(), actual.isSpike());
+                if (expected.isSpike()) {
+                    spikes++;
+                }
+            }
+        }
+        assertTrue(spikes > 0);
+    }
+
+    @Test
+    void testResponsesWrittenBackWhenActionRemoved() {
+        Network net = new Network();
+        net.getUpdateManager().clear();
+        EventDrivenUpdate action = new EventDrivenUpdate(net);
+        net.getUpdateManager().addAction(action);
+        Neuron source = new Neuron(net, new IntegrateAndFireRule());
+        Neuron target = new Neuron(net);
+        Synapse synapse = new Synapse(source, target, 2);
+        JumpAndDecay responder = new JumpAndDecay();
+        responder.setTimeConstant(2);
+        synapse.setSpikeResponder(responder);
+        net.addNetworkModelsAsync(List.of(source, target, synapse));
+        net.setTimeStep(1);
+
+        source.setClamped(true);
+        source.setSpike(true);
+        net.update();
+        // The spike arrives: the response jumps to jump height times strength
+        assertEquals(2, synapse.getPsr(), 1e-9);
+        net.update();
+        net.update();
+        net.getUpdateManager().removeAction(action);
+        // Two decays of half the distance to the base line each
+        assertEquals(.5, synapse.getPsr(), 1e-9);
+    }
+
+    /**
+     * Build a spiking source connected to a linear target by a jump and decay synapse with a delay of three updates,
+     * and return the target.
+     */
+    private static Neuron buildDelayedSynapse(Network net) {
+        Neuron source = new Neuron(net, new IntegrateAndFireRule());
+        Neuron target = new Neuron(net);
+        Synapse synapse = new Synapse(source, target, 1);
+        JumpAndDecay responder = new JumpAndDecay();
+        responder.setTimeConstant(2);
+        synapse.setSpikeResponder(responder);
+        synapse.setDelay(3);
+        net.addNetworkModelsAsync(List.of(source, target, synapse));
+        net.setTimeStep(1);
+        source.setClamped(true);
+        source.setSpike(true);
+        return target;
+    }
+
+    @Test
+    void testDelayedSynapseSameResultsAsBufferedUpdate() {
+        Network buffered = new Network();
+        buffered.getUpdateManager().clear();
+        buffered.getUpdateManager().addAction(new BufferedUpdate(buffered));
+        Network eventDriven = new Network();
+        eventDriven.getUpdateManager().clear();
+        eventDriven.getUpdateManager().addAction(new EventDrivenUpdate(eventDriven));
+        Neuron bufferedTarget = buildDelayedSynapse(buffered);
+        Neuron eventDrivenTarget = buildDelayedSynapse(eventDriven);
+
+        boolean responded = false;
+        for (int i = 0; i < 10; i++) {
+            buffered.update();
+            eventDriven.update();
+            assertEquals(bufferedTarget.getActivation(), eventDrivenTarget.getActivation(), 1e-9);
+            responded |= bufferedTarget.getActivation() != 0;
+        }
+        assertTrue(responded);
+    }
+}
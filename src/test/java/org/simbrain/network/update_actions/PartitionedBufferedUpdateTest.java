@@ -0,0 +1,221 @@
+package org.simbrain.network.update_actions;
+
+import org.junit.jupiter.api.Test;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.neuron_update_rules.DecayRule;
+import org.simbrain.network.neuron_update_rules.IACRule;
+import org.simbrain.network.neuron_update_rules.LinearRule;
+import org.simbrain.network.neuron_update_rules.SpikingThresholdRule;
+import org.simbrain.network.spikeresponders.ProbabilisticResponder;
+import org.simbrain.network.synapse_update_rules.HebbianRule;
+import org.simbrain.util.stats.distributions.NormalDistribution;
+import org.simbrain.util.stats.distributions.UniformRealDistribution;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PartitionedBufferedUpdateTest {
+
+    /**
+     * Build a random network of loose neurons and synapses with a mix of update and learning rules.
+     */
+    private static List<Neuron> buildNetwork(Network net, long seed) {
+        Random random = new Random(seed);
+        List<Neuron> neurons = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Neuron n = new Neuron(net);
+            if (i % 10 == 3) {
+                n.setUpdateRule(new DecayRule());
+            } else if (i % 50 == 7) {
+                n.setUpdateRule(new IACRule());
+            } else {
+                LinearRule rule = new LinearRule();
+                rule.setSlope(random.nextDouble() * 2);
+                n.setUpdateRule(rule);
+            }
+            n.forceSetActivation(random.nextDouble() * 2 - 1);
+            neurons.add(n);
+        }
+        net.addNetworkModelsAsync(neurons);
+        List<Synapse> synapses = new ArrayList<>();
+        Set<Integer> connected = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            int srcIndex = random.nextInt(neurons.size());
+            int tarIndex = random.nextInt(neurons.size());
+            if (!connected.add(srcIndex * neurons.size() + tarIndex)) {
+                continue;
+            }
+            Synapse s = new Synapse(neurons.get(srcIndex), neurons.get(tarIndex), random.nextDouble() - .5);
+            if (i % 10 == 0) {
+                s.setLearningRule(new HebbianRule());
+            } else if (i % 25 == 1) {
+                s.setDelay(3);
+            }
+            synapses.add(s);
+        }
+        net.addNetworkModelsAsync(synapses);
+        return neurons;
+    }
+
+    @Test
+    void testSameResultsAsBufferedUpdate() {
+        Network buffered = new Network();
+        buffered.getUpdateManager().clear();
+        buffered.getUpdateManager().addAction(new BufferedUpdate(buffered));
+        Network partitioned = new Network();
+        partitioned.getUpdateManager().clear();
+        partitioned.getUpdateManager().addAction(new PartitionedBufferedUpdate(partitioned));
+        partitioned.setUpdateChunkSize(16);
+        partitioned.setUpdateParallelism(4);
+
+        List<Neuron> bufferedNeurons = buildNetwork(buffered, 7);
+        List<Neuron> partitionedNeurons = buildNetwork(partitioned, 7);
+
+        for (int i = 0; i < 50; i++) {
+            bufferedNeurons.get(1).addInputValue(.2);
+            partitionedNeurons.get(1).addInputValue(.2);
+            buffered.update();
+            partitioned.update();
+            for (int j = 0; j < bufferedNeurons.size(); j++) {
+                assertEquals(bufferedNeurons.get(j).getActivation(), partitionedNeurons.get(j).getActivation());
+            }
+        }
+    }
+
+    /**
+     * Build loose neurons whose linear rules add noise drawn from one shared, seeded generator, half of them sharing
+     * one rule instance, connected in a ring.
+     */
+    private static List<Neuron> buildNoisyNetwork(Network net) {
+        NormalDistribution noise = new NormalDistribution(0, .1);
+        noise.setRandomSeed(42);
+        LinearRule sharedRule = new LinearRule();
+        sharedRule.setAddNoise(true);
+        sharedRule.setNoiseGenerator(noise);
+        List<Neuron> neurons = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Neuron n = new Neuron(net);
+            if (i % 2 == 0) {
+                n.setUpdateRule(sharedRule);
+            } else {
+                LinearRule rule = new LinearRule();
+                rule.setAddNoise(true);
+                rule.setNoiseGenerator(noise);
+                n.setUpdateRule(rule);
+            }
+            neurons.add(n);
+        }
+        net.addNetworkModelsAsync(neurons);
+        List<Synapse> synapses = new ArrayList<>();
+        for (int i = 0; i < neurons.size(); i++) {
+            synapses.add(new Synapse(neurons.get(i), neurons.get((i + 1) % neurons.size()), .5));
+        }
+        net.addNetworkModelsAsync(synapses);
+        return neurons;
+    }
+
+    @Test
+    void testNoisyRulesSameResultsAsBufferedUpdate() {
+        Network buffered = new Network();
+        buffered.getUpdateManager().clear();
+        buffered.getUpdateManager().addAction(new BufferedUpdate(buffered));
+        Network partitioned = new Network();
+        partitioned.getUpdateManager().clear();
+        partitioned.getUpdateManager().addAction(new PartitionedBufferedUpdate(partitioned));
+        partitioned.setUpdateChunkSize(8);
+        partitioned.setUpdateParallelism(4);
+
+        List<Neuron> bufferedNeurons = buildNoisyNetwork(buffered);
+        List<Neuron> partitionedNeurons = buildNoisyNetwork(partitioned);
+
+        for (int i = 0; i < 20; i++) {
+            buffered.update();
+            partitioned.update();
+            for (int j = 0; j < bufferedNeurons.size(); j++) {
+                assertEquals(bufferedNeurons.get(j).getActivation(), partitionedNeurons.get(j).getActivation());
+            }
+        }
+    }
+
+    /**
+     * Build spiking neurons connected in a ring by synapses whose probabilistic spike responders draw from one shared,
+     * seeded generator.
+     */
+    private static List<Neuron> buildProbabilisticNetwork(Network net) {
+        UniformRealDistribution randomizer = new UniformRealDistribution();
+        randomizer.setRandomSeed(42);
+        List<Neuron> neurons = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Neuron n = new Neuron(net);
+            n.setUpdateRule(new SpikingThresholdRule());
+            neurons.add(n);
+        }
+        net.addNetworkModelsAsync(neurons);
+        List<Synapse> synapses = new ArrayList<>();
+        for (int i = 0; i < neurons.size(); i++) {
+            Synapse s = new Synapse(neurons.get(i), neurons.get((i + 1) % neurons.size()), 1);
+            ProbabilisticResponder responder = new ProbabilisticResponder();
+            responder.setRandomizer(randomizer);
+            s.setSpikeResponder(responder);
+            synapses.add(s);
+        }
+        net.addNetworkModelsAsync(synapses);
+        return neurons;
+    }
+
+    @Test
+    void testProbabilisticRespondersSameResultsAsBufferedUpdate() {
+        Network buffered = new Network();
+        buffered.getUpdateManager().clear();
+        buffered.getUpdateManager().addAction(new BufferedUpdate(buffered));
+        Network partitioned = new Network();
+        partitioned.getUpdateManager().clear();
+        partitioned.getUpdateManager().addAction(new PartitionedBufferedUpdate(partitioned));
+        partitioned.setUpdateChunkSize(8);
+        partitioned.setUpdateParallelism(4);
+
+        List<Neuron> bufferedNeurons = buildProbabilisticNetwork(buffered);
+        List<Neuron> partitionedNeurons = buildProbabilisticNetwork(partitioned);
+
+        for (int i = 0; i < 20; i++) {
+            for (int j = 0; j < bufferedNeurons.size(); j += 3) {
+                bufferedNeurons.get(j).addInputValue(1);
+                partitionedNeurons.get(j).addInputValue(1);
+            }
+            buffered.update();
+            partitioned.update();
+            for (int j = 0; j < bufferedNeurons.size(); j++) {
+                assertEquals(bufferedNeurons.get(j).isSpike(), partitionedNeurons.get(j).isSpike());
+            }
+        }
+    }
+
+    @Test
+    void testChunkSizeAndParallelismCanChange() {
+        Network net = new Network();
+        net.getUpdateManager().clear();
+        net.getUpdateManager().addAction(new PartitionedBufferedUpdate(net));
+        Neuron n1 = new Neuron(net);
+        Neuron n2 = new Neuron(net);
+        net.addNetworkModelsAsync(List.of(n1, n2, new Synapse(n1, n2)));
+        n1.setClamped(true);
+        n1.forceSetActivation(1);
+
+        net.setUpdateChunkSize(1);
+        net.setUpdateParallelism(2);
+        net.update();
+        assertEquals(1, n2.getActivation(), .001);
+
+        net.setUpdateParallelism(1);
+        n1.forceSetActivation(.5);
+        net.update();
+        assertEquals(.5, n2.getActivation(), .001);
+    }
+}
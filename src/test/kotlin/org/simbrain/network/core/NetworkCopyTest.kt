@@ -0,0 +1,102 @@
+package org.simbrain.network.core
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.simbrain.network.groups.NeuronGroup
+import org.simbrain.network.matrix.NeuronArray
+import org.simbrain.network.matrix.WeightMatrix
+import org.simbrain.network.neuron_update_rules.LinearRule
+import org.simbrain.network.subnetworks.WinnerTakeAll
+import org.simbrain.network.updaterules.IntegrateAndFireRule
+import java.awt.geom.Point2D
+
+class NetworkCopyTest {
+
+    private fun createNetwork() = Network().apply {
+        val sharedRule = LinearRule().apply { upperBound = 2.0 }
+        val input = Neuron(this, sharedRule).apply {
+            label = "input"
+            isClamped = true
+            forceSetActivation(1.0)
+        }
+        val hidden = Neuron(this, sharedRule).apply { location = Point2D.Double(10.0, 20.0) }
+        val spiking = Neuron(this, IntegrateAndFireRule())
+        listOf(input, hidden, spiking).forEach { addNetworkModelAsync(it) }
+        addNetworkModelAsync(Synapse(input, hidden, 0.5).apply { delay = 2 })
+        addNetworkModelAsync(Synapse(hidden, spiking, 20.0))
+
+        val group1 = NeuronGroup(this, 4).apply { label = "group 1" }
+        val group2 = NeuronGroup(this, 3)
+        addNetworkModelAsync(group1)
+        addNetworkModelAsync(group2)
+        addNetworkModelAsync(Synapse(input, group1.getNeuron(0), 1.0))
+        addNetworkModelAsync(SynapseGroup2(group1, group2))
+
+        val array1 = NeuronArray(this, 5)
+        val array2 = NeuronArray(this, 3)
+        addNetworkModelsAsync(listOf(array1, array2, WeightMatrix(this, array1, array2).apply {
+            // Xml keeps 5 decimal places of matrix entries, so use weights that are exact in both copies
+            setWeights(Array(3) { i -> DoubleArray(5) { j -> (i - j) * .25 } })
+        }))
+        addNetworkModelAsync(NetworkTextObject(this, "text"))
+        repeat(3) { update() }
+    }
+
+    private val Network.state
+        get() = modelsInReconstructionOrder.map { model ->
+            when (model) {
+                is Neuron -> listOf(model.id, model.label, model.activation, model.x, model.y, model.isClamped)
+                is Synapse -> listOf(model.id, model.source.id, model.target.id, model.strength, model.psr)
+                is NeuronGroup -> listOf(model.id, model.label, model.neuronList.map { it.activation })
+                is NeuronArray -> listOf(model.id, model.label, model.activations.col(0).toList(), model.location)
+                is WeightMatrix -> listOf(model.id, model.source.id, model.target.id, model.weights.toList())
+                is SynapseGroup2 -> listOf(model.id, model.source.id, model.target.id, model.synapses.map { it.strength })
+                else -> listOf(model.id, model.label)
+            }
+        }
+
+    @Test
+    fun `structural copy matches xml copy`() {
+        val network = createNetwork()
+        val copy = NetworkCopier(network).copy()!!
+        val xmlCopy = network.copyThroughXml()
+        assertEquals(xmlCopy.state, copy.state)
+        assertEquals(network.state, copy.state)
+        assertEquals(
+            xmlCopy.updateManager.actionList.map { it.javaClass },
+            copy.updateManager.actionList.map { it.javaClass }
+        )
+        repeat(10) {
+            network.update()
+            copy.update()
+            xmlCopy.update()
+        }
+        assertEquals(network.state, copy.state)
+        assertEquals(xmlCopy.state, copy.state)
+        assertEquals(network.time, copy.time, 0.0)
+    }
+
+    @Test
+    fun `copy is independent and keeps shared objects shared`() {
+        val network = createNetwork()
+        val copy = network.copy()
+        val (input, hidden) = copy.getModels<Neuron>().toList()
+        assertSame(input.updateRule, hidden.updateRule)
+        assertNotSame(network.getModels<Neuron>().first().updateRule, input.updateRule)
+        assertSame(copy, input.network)
+        val group = copy.getModels<NeuronGroup>().first()
+        assertTrue(group.neuronList.all { it.updateRule === group.prototypeRule && it.parentGroup === group })
+        assertTrue(copy.getModels<Synapse>().all { it.source.network === copy && it.parentNetwork === copy })
+
+        copy.getModels<Synapse>().forEach { it.strength = 0.0 }
+        assertTrue(network.getModels<Synapse>().none { it.strength == 0.0 })
+    }
+
+    @Test
+    fun `unsupported models are copied through xml`() {
+        val network = createNetwork()
+        network.addNetworkModelAsync(WinnerTakeAll(network, 3))
+        assertNull(NetworkCopier(network).copy())
+        assertEquals(network.state, network.copy().state)
+    }
+}
@@ -0,0 +1,99 @@
+package org.simbrain.network.updaterules
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.NeuronUpdateRule
+import org.simbrain.network.matrix.NeuronArray
+import org.simbrain.network.neuron_update_rules.HodgkinHuxleyRule
+import org.simbrain.network.util.SpikingMatrixData
+import kotlin.math.sin
+
+/**
+ * Checks that the neuron array versions of update rules produce the same results as the scalar versions.
+ */
+class SpikingRuleArrayTest {
+
+    private val size = 8
+
+    /**
+     * Update [size] neurons and an array of the same size with rules made by [createRule], with the same initial
+     * activations and inputs, and check that activations and spikes match.
+     */
+    private fun assertSameAsScalarRule(
+        initialActivations: DoubleArray,
+        inputScale: Double,
+        iterations: Int = 200,
+        createRule: () -> NeuronUpdateRule<*, *>
+    ) {
+        val net = Network()
+        val neurons = List(size) { Neuron(net, createRule()) }
+        val array = NeuronArray(net, size)
+        array.updateRule = createRule()
+        net.addNetworkModelsAsync(neurons + array)
+        neurons.forEachIndexed { i, n -> n.forceSetActivation(initialActivations[i]) }
+        array.setActivations(initialActivations.copyOf())
+
+        var spikeCount = 0
+        repeat(iterations) { step ->
+            val inputs = DoubleArray(size) { i -> inputScale * sin(.1 * step + i) }
+            neurons.forEachIndexed { i, n -> n.addInputValue(inputs[i]) }
+            array.addInputs(inputs)
+            net.update()
+            neurons.forEachIndexed { i, n ->
+                assertEquals(n.activation, array.activations.get(i, 0), 1e-9, "Unit $i at step $step")
+                val data = array.dataHolder
+                if (data is SpikingMatrixData) {
+                    assertEquals(n.isSpike, data.spikes[i], "Spike of unit $i at step $step")
+                    if (n.isSpike) spikeCount++
+                }
+            }
+        }
+        if (array.dataHolder is SpikingMatrixData) {
+            assertTrue(spikeCount > 0, "No spikes to compare")
+        }
+    }
+
+    private fun spread(from: Double, to: Double) = DoubleArray(size) { from + (to - from) * it / (size - 1) }
+
+    @Test
+    fun `izhikevich array matches neurons`() {
+        assertSameAsScalarRule(spread(-70.0, 20.0), 10.0) {
+            IzhikevichRule().apply {
+                a = .02
+                b = .2
+                c = -65.0
+                d = 6.0
+            }
+        }
+    }
+
+    @Test
+    fun `integrate and fire array matches neurons`() {
+        assertSameAsScalarRule(spread(-70.0, -45.0), 20.0) { IntegrateAndFireRule() }
+    }
+
+    @Test
+    fun `adex array matches neurons`() {
+        assertSameAsScalarRule(spread(-70.0, 25.0), 0.0) {
+            AdExIFRule().apply { setI_bg(1.0) }
+        }
+    }
+
+    @Test
+    fun `morris lecar array matches neurons`() {
+        assertSameAsScalarRule(spread(-60.0, 40.0), 20.0) { MorrisLecarRule() }
+    }
+
+    @Test
+    fun `fitzhugh nagumo array matches neurons`() {
+        assertSameAsScalarRule(spread(-2.0, 2.0), 1.0) { FitzhughNagumo() }
+    }
+
+    @Test
+    fun `hodgkin huxley array matches neurons`() {
+        assertSameAsScalarRule(spread(-70.0, -60.0), 10.0) { HodgkinHuxleyRule() }
+    }
+}
@@ -0,0 +1,88 @@
+package org.simbrain.util
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.simbrain.network.core.getNetworkXStream
+import smile.math.matrix.Matrix
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.util.zip.ZipEntry
+import java.util.zip.ZipInputStream
+import java.util.zip.ZipOutputStream
+import kotlin.random.Random
+
+class BinaryBlocksTest {
+
+    class Holder(val weights: Matrix, val large: DoubleArray, val small: DoubleArray)
+
+    private val random = Random(1)
+
+    private val holder = Holder(
+        Matrix.of(Array(40) { DoubleArray(50) { random.nextDouble() } }),
+        DoubleArray(2000) { random.nextDouble() },
+        doubleArrayOf(1.0, 2.0, 3.0)
+    )
+
+    private val xstream = getNetworkXStream()
+
+    /**
+     * Save [holder] to a zip file the way the workspace serializer does, and return the entries of the zip file.
+     */
+    private fun save(): Map<String, ByteArray> {
+        val bytes = ByteArrayOutputStream()
+        ZipOutputStream(bytes).use { zip ->
+            zip.putNextEntry(ZipEntry("holder.xml"))
+            val blocks = BinaryBlocks("holder.xml")
+            blocks.begin()
+            try {
+                xstream.toXML(holder, zip)
+            } finally {
+                blocks.end()
+            }
+            blocks.write(zip)
+        }
+        val entries = HashMap<String, ByteArray>()
+        ZipInputStream(ByteArrayInputStream(bytes.toByteArray())).use { zip ->
+            generateSequence { zip.nextEntry }.forEach { entries[it.name] = zip.readBytes() }
+        }
+        return entries
+    }
+
+    private fun assertSameAsHolder(copy: Holder) {
+        assertArrayEquals(holder.weights.toArray(), copy.weights.toArray())
+        assertArrayEquals(holder.large, copy.large)
+        assertArrayEquals(holder.small, copy.small)
+    }
+
+    @Test
+    fun `large arrays are written to blocks`() {
+        val entries = save()
+        assertEquals(setOf("holder.xml", "holder.xml.blocks/0", "holder.xml.blocks/1"), entries.keys)
+        assertEquals(40 * 50 * 8, entries["holder.xml.blocks/0"]!!.size)
+        assertEquals(2000 * 8, entries["holder.xml.blocks/1"]!!.size)
+        val xml = String(entries["holder.xml"]!!)
+        assertTrue(xml.contains("<small>[1.00000, 2.00000, 3.00000]</small>"), xml)
+
+        val blocks = BinaryBlocks("holder.xml", entries)
+        blocks.begin()
+        val copy = try {
+            xstream.fromXML(ByteArrayInputStream(entries["holder.xml"])) as Holder
+        } finally {
+            blocks.end()
+        }
+        assertSameAsHolder(copy)
+    }
+
+    @Test
+    fun `xml without blocks is still read`() {
+        val xml = xstream.toXML(holder)
+        assertFalse(xml.contains(BinaryBlocks.ATTRIBUTE))
+        val blocks = BinaryBlocks("holder.xml", mapOf())
+        blocks.begin()
+        try {
+            assertSameAsHolder(xstream.fromXML(xml) as Holder)
+        } finally {
+            blocks.end()
+        }
+    }
+}
@@ -5,6 +5,7 @@ import kotlinx.coroutines.delay
 import kotlinx.coroutines.runBlocking
 import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Test
+import kotlin.concurrent.thread
 import kotlin.system.measureTimeMillis
 
 
@@ -15,6 +16,9 @@ class TestEvents : Events2() {
     val blockingEvent = NoArgEvent()
     val longFireAndForgetEvent = NoArgEvent()
     val changedEvent = ChangedEvent<String>()
+    val coalescedEvent = ChangedEvent<Int>()
+    val coalescedBlockingEvent = NoArgEvent()
+    val unhandledEvent = NoArgEvent()
 }
 
 class Event2Testing {
@@ -115,4 +119,87 @@ class Event2Testing {
         testEvents2.changedEvent.fireAndBlock("test", "test2")
         assert(fired) { "event should have fired" }
     }
-}
\ No newline at end of file
+
+    @Test
+    fun `events without handlers have none`() {
+        assert(!testEvents2.unhandledEvent.hasHandlers)
+        testEvents2.unhandledEvent.fireAndBlock()
+        testEvents2.unhandledEvent.on { }
+        assert(testEvents2.unhandledEvent.hasHandlers)
+    }
+
+    @Test
+    fun `fires within coalesce are delivered once after the block`() {
+        val received = java.util.concurrent.ConcurrentLinkedQueue<Int>()
+        testEvents2.coalescedEvent.on { new, _ -> received.add(new) }
+        Events2.coalesce {
+            repeat(10) {
+                testEvents2.coalescedEvent.fireAndBlock(it + 1, it)
+            }
+            runBlocking { delay(100L) }
+            assert(received.isEmpty()) { "handlers should not run before the block ends" }
+        }
+        runBlocking { delay(100L) }
+        assertEquals(listOf(10), received.toList())
+    }
+
+    @Test
+    fun `coalesced fires keep the first old value`() {
+        val received = java.util.concurrent.ConcurrentLinkedQueue<Pair<Int, Int>>()
+        testEvents2.coalescedEvent.on { new, old -> received.add(new to old) }
+        Events2.coalesce {
+            testEvents2.coalescedEvent.fireAndBlock(1, 0)
+            testEvents2.coalescedEvent.fireAndBlock(2, 1)
+            testEvents2.coalescedEvent.fireAndBlock(3, 2)
+        }
+        runBlocking { delay(100L) }
+        assertEquals(listOf(3 to 0), received.toList())
+    }
+
+    @Test
+    fun `nested coalesce delivers when the outer block ends`() {
+        val received = java.util.concurrent.ConcurrentLinkedQueue<Int>()
+        testEvents2.coalescedEvent.on { new, _ -> received.add(new) }
+        Events2.coalesce {
+            Events2.coalesce {
+                testEvents2.coalescedEvent.fireAndBlock(1, 0)
+            }
+            runBlocking { delay(100L) }
+            assert(received.isEmpty()) { "handlers should not run before the outer block ends" }
+            testEvents2.coalescedEvent.fireAndBlock(2, 1)
+        }
+        runBlocking { delay(100L) }
+        assertEquals(listOf(2), received.toList())
+    }
+
+    @Test
+    fun `coalesce does not hold fires from other threads`() {
+        val received = java.util.concurrent.ConcurrentLinkedQueue<Int>()
+        testEvents2.coalescedEvent.on { new, _ -> received.add(new) }
+        Events2.coalesce {
+            thread { testEvents2.coalescedEvent.fireAndBlock(1, 0) }.join()
+            runBlocking { delay(100L) }
+            assertEquals(listOf(1), received.toList())
+            val coalescing = Events2.currentCoalescing
+            thread { Events2.coalesceWith(coalescing) { testEvents2.coalescedEvent.fireAndBlock(2, 1) } }.join()
+            runBlocking { delay(100L) }
+            assertEquals(listOf(1), received.toList())
+        }
+        runBlocking { delay(100L) }
+        assertEquals(listOf(1, 2), received.toList())
+    }
+
+    @Test
+    fun `waiting handlers are not coalesced`() {
+        var counter = 0
+        testEvents2.coalescedBlockingEvent.on(wait = true) {
+            counter++
+        }
+        Events2.coalesce {
+            repeat(5) {
+                testEvents2.coalescedBlockingEvent.fireAndBlock()
+            }
+            assertEquals(5, counter)
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package org.simbrain.util
 
+import org.junit.jupiter.api.Assertions.assertArrayEquals
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
 import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Test
 import smile.math.matrix.Matrix
@@ -147,5 +149,54 @@ class TextUtilsTest {
         }
     }
 
-}
+    /**
+     * Co-occurrence matrix counted the way [generateCooccurrenceMatrix] did before it used the sparse counts.
+     */
+    private fun denseCooccurrences(docString: String, windowSize: Int, skipGram: Boolean): Matrix {
+        val convertedDocString = docString.removeSpecialCharacters()
+        val tokens = convertedDocString.tokenizeWordsFromSentence().uniqueTokensFromArray()
+        val matrix = Matrix(tokens.size, tokens.size)
+        for (sentence in convertedDocString.tokenizeSentencesFromDoc()) {
+            val words = sentence.tokenizeWordsFromSentence()
+            for (i in words.indices) {
+                for (j in (i - windowSize)..(if (skipGram) i + windowSize else i)) {
+                    if (j in words.indices && j != i) {
+                        matrix.add(tokens.indexOf(words[i]), tokens.indexOf(words[j]), 1.0)
+                    }
+                }
+            }
+        }
+        return matrix
+    }
+
+    @Test
+    fun `sparse co-occurrences match dense co-occurrences`() {
+        for (text in listOf(simpleText, harderText, mlkText)) {
+            for (skipGram in listOf(true, false)) {
+                val dense = denseCooccurrences(text, 3, skipGram)
+                val counts = generateSparseCooccurrenceMatrix(text, 3, skipGram, false).toMatrix()
+                val ppmi = generateSparseCooccurrenceMatrix(text, 3, skipGram, true).toMatrix()
+                assertArrayEquals(dense.toArray(), counts.toArray())
+                assertArrayEquals(manualPPMI(dense, true).replaceNaN(0.0).toArray(), ppmi.toArray())
+            }
+        }
+    }
 
+    @Test
+    fun `co-occurrences can be truncated to the most frequent contexts`() {
+        val full = generateSparseCooccurrenceMatrix(mlkText, 2, true)
+        val truncated = generateSparseCooccurrenceMatrix(mlkText, 2, true, contextDimensions = 10)
+        assertEquals(10, truncated.contexts.size)
+        assertEquals(10, truncated.matrix.ncol())
+        assertEquals(full.tokens.size, truncated.matrix.nrow())
+        // "freedom" co-occurs with more words than "mississippi"
+        assertTrue("freedom" in truncated.contexts)
+        assertFalse("mississippi" in truncated.contexts)
+        val fullMatrix = full.toMatrix()
+        val truncatedMatrix = truncated.toMatrix()
+        truncated.contexts.forEachIndexed { k, context ->
+            assertArrayEquals(fullMatrix.col(full.tokens.indexOf(context)), truncatedMatrix.col(k))
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+package org.simbrain.util.geneticalgorithm2
+
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.simbrain.custom_sims.simulations.Xor2Sim
+import org.simbrain.custom_sims.simulations.XorGenotype
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.Synapse
+import org.simbrain.network.synapse_update_rules.HebbianThresholdRule
+import org.simbrain.workspace.Workspace
+import java.util.concurrent.atomic.AtomicInteger
+
+class EvaluationPoolTest {
+
+    @Test
+    fun `evaluation in a reused network matches evaluation in a new network`() {
+        val context = ReusableNetwork()
+        var sims = List(20) { Xor2Sim(XorGenotype(it.toLong())) }
+        runBlocking {
+            repeat(5) {
+                sims = sims.map { (it.copy() as Xor2Sim).apply { repeat(3) { mutate() } } }
+                sims.forEach { sim -> assertEquals(sim.copy().eval(), sim.eval(context), 1e-12) }
+            }
+        }
+        val genotype = sims.last().xor2Genotype
+        assertEquals(genotype.connectionChromosome.size, context.network.getModels<Synapse>().count { it.isEnabled })
+    }
+
+    @Test
+    fun `models that are no longer expressed are parked and reused`() {
+        val context = ReusableNetwork()
+        val nodes = Chromosome2(List(3) { nodeGene2() })
+        val connections = Chromosome2(listOf(connectionGene2(nodes[0], nodes[2]) { strength = 2.0 }))
+        context.express("nodes", nodes)
+        val (synapse) = context.express("connections", connections)
+        synapse.source.forceSetActivation(1.0)
+        context.network.update()
+        assertEquals(2.0, synapse.psr)
+
+        val fewerNodes = nodes.copy()
+        val noConnections = connections.copy()
+        fewerNodes.removeAt(2)
+        noConnections.clear()
+        assertEquals(2, context.express("nodes", fewerNodes).size)
+        context.express("connections", noConnections)
+        assertFalse(synapse.isEnabled)
+        assertEquals(0.0, synapse.psr)
+
+        val moreNodes = nodes.copy()
+        val moreConnections = connections.copy()
+        context.express("nodes", moreNodes)
+        assertSame(synapse, context.express("connections", moreConnections).single())
+        assertTrue(synapse.isEnabled)
+        assertEquals(3, context.network.getModels<Neuron>().count())
+        assertEquals(1, context.network.getModels<Synapse>().count())
+    }
+
+    @Test
+    fun `reused synapses do not keep the state of their learning rule`() {
+        val nodes = Chromosome2(listOf(nodeGene2 { isClamped = true; forceSetActivation(1.0) }, nodeGene2()))
+        val connections = Chromosome2(listOf(connectionGene2(nodes[0], nodes[1]) {
+            strength = .5
+            // The sliding threshold is kept in the rule
+            learningRule = HebbianThresholdRule().apply {
+                learningRate = .1
+                useSlidingOutputThreshold = true
+                outputThresholdMomentum = .5
+            }
+        }))
+        fun evaluate(context: ReusableNetwork): Double {
+            context.express("nodes", nodes)
+            val (synapse) = context.express("connections", connections)
+            repeat(10) { context.network.update() }
+            return synapse.strength
+        }
+        val fresh = evaluate(ReusableNetwork())
+        val context = ReusableNetwork()
+        repeat(3) { assertEquals(fresh, evaluate(context), 1e-12) }
+    }
+
+    @Test
+    fun `pool bounds concurrent evaluations and reuses contexts`() {
+        val running = AtomicInteger()
+        val maxRunning = AtomicInteger()
+        val contexts = AtomicInteger()
+
+        class CountingSim : PooledEvoSim<Any> {
+            override fun mutate() {}
+            override suspend fun build() {}
+            override fun visualize(workspace: Workspace) = this
+            override fun copy() = CountingSim()
+            override suspend fun eval() = throw AssertionError("Pooled sims should be evaluated in a context")
+            override fun createContext(): Any = contexts.incrementAndGet()
+            override suspend fun eval(context: Any): Double {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), ::maxOf)
+                delay(5)
+                running.decrementAndGet()
+                return 0.0
+            }
+        }
+
+        runBlocking { EvaluationPool(3).evaluate(List(30) { CountingSim() }) }
+        assertEquals(3, maxRunning.get())
+        assertEquals(3, contexts.get())
+    }
+}
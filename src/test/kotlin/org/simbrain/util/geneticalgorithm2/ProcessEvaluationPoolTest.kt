@@ -0,0 +1,90 @@
+package org.simbrain.util.geneticalgorithm2
+
+import kotlinx.coroutines.TimeoutCancellationException
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.simbrain.custom_sims.simulations.Xor2Sim
+import org.simbrain.custom_sims.simulations.XorGenotype
+import org.simbrain.workspace.Workspace
+import java.io.File
+import kotlin.coroutines.coroutineContext
+
+/**
+ * Evaluates to its seed. Halts the worker the first time it is evaluated, throws, or never returns, depending on
+ * [failure].
+ */
+class FailingSim(val failure: String, val marker: File) : EvoSim {
+    override fun mutate() {}
+    override suspend fun build() {}
+    override fun visualize(workspace: Workspace) = this
+    override fun copy() = this
+    override suspend fun eval(): Double {
+        if (failure == "exception") {
+            throw IllegalArgumentException("Bad sim")
+        }
+        if (failure == "hang") {
+            Thread.sleep(Long.MAX_VALUE)
+        }
+        if (marker.createNewFile()) {
+            Runtime.getRuntime().halt(1)
+        }
+        return coroutineContext[EvaluationSeed]!!.seed.toDouble()
+    }
+}
+
+class ProcessEvaluationPoolTest {
+
+    @Test
+    fun `sims evaluated in worker processes have the same fitness`() {
+        val population = List(10) { Xor2Sim(XorGenotype(it.toLong())).apply { repeat(5) { mutate() } } }
+        val seeds = List(population.size) { it.toLong() }
+        val expected = runBlocking { EvaluationPool(2).evaluate(population, seeds) }
+        ProcessEvaluationPool(workers = 2).use { pool ->
+            assertEquals(expected, runBlocking { pool.evaluate(population, seeds) })
+            assertEquals(expected, runBlocking { pool.evaluate(population, seeds) })
+            assertEquals(2, pool.workersStarted)
+        }
+    }
+
+    @Test
+    fun `failed workers are restarted and the sim evaluated with the same seed`() {
+        val marker = File.createTempFile("simbrain", "worker").apply { delete() }
+        try {
+            ProcessEvaluationPool(workers = 1).use { pool ->
+                assertEquals(listOf(42.0), runBlocking { pool.evaluate(listOf(FailingSim("halt", marker)), listOf(42)) })
+                assertEquals(2, pool.workersStarted)
+            }
+        } finally {
+            marker.delete()
+        }
+    }
+
+    @Test
+    fun `exceptions thrown in workers are rethrown`() {
+        ProcessEvaluationPool(workers = 1).use { pool ->
+            val e = assertThrows<IllegalStateException> {
+                runBlocking { pool.evaluate(listOf(FailingSim("exception", File(""))), listOf(0)) }
+            }
+            assertTrue(e.message!!.contains("Bad sim"))
+            assertEquals(1, pool.workersStarted)
+        }
+    }
+
+    @Test
+    fun `cancelled evaluations destroy their workers`() {
+        ProcessEvaluationPool(workers = 2).use { pool ->
+            assertThrows<TimeoutCancellationException> {
+                runBlocking {
+                    withTimeout(5000) {
+                        pool.evaluate(List(2) { FailingSim("hang", File("")) }, listOf(0, 1))
+                    }
+                }
+            }
+            assertEquals(2, pool.workersStarted)
+            assertEquals(0, pool.workersRunning)
+        }
+    }
+}
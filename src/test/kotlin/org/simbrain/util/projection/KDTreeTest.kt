@@ -1,6 +1,11 @@
 package org.simbrain.util.projection
 
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Test
+import kotlin.random.Random
 
 class KDTreeTest {
 
@@ -65,4 +70,52 @@ class KDTreeTest {
             println("Closest point: $point")
         }
     }
-}
\ No newline at end of file
+
+    private val random = Random(1)
+
+    private fun randomPoint(dimension: Int) = DataPoint2(DoubleArray(dimension) { random.nextDouble() })
+
+    private fun bruteForceClosest(points: List<DataPoint2>, target: DataPoint2, n: Int) = points.withIndex()
+        .sortedWith(compareBy({ it.value.euclideanDistance(target) }, { it.index }))
+        .take(n)
+        .map { it.value }
+
+    @Test
+    fun `closest points and points within a radius are those found by comparing every point`() {
+        val points = List(2000) { randomPoint(5) }
+        val kdTree = KDTree(5)
+        points.forEach { kdTree.insert(it) }
+        repeat(100) {
+            val target = randomPoint(5)
+            assertEquals(bruteForceClosest(points, target, 10), kdTree.findClosestNPoints(target, 10))
+            assertEquals(points.filter { it.euclideanDistance(target) <= 0.3 }, kdTree.findPointsWithin(target, 0.3))
+        }
+        val targets = List(50) { randomPoint(5) }
+        assertEquals(targets.map { kdTree.findClosestNPoints(it, 3) }, kdTree.findClosestNPoints(targets, 3))
+    }
+
+    @Test
+    fun `tree stays balanced when points are inserted in order`() {
+        // Correlated points along a line, as from a slowly changing network
+        val points = List(5000) { i -> DataPoint2(DoubleArray(10) { d -> i * 0.01 + d * 0.001 * i }) }
+        val kdTree = KDTree(10)
+        points.forEach { kdTree.insert(it) }
+        assertTrue(kdTree.height() < 40, "height ${kdTree.height()}")
+        assertEquals(points, kdTree.toList())
+        assertEquals(points[1234], kdTree[1234])
+        val target = DataPoint2(DoubleArray(10) { 12.345 })
+        assertEquals(bruteForceClosest(points, target, 5), kdTree.findClosestNPoints(target, 5))
+    }
+
+    @Test
+    fun `closest point within a distance`() {
+        val kdTree = KDTree(2)
+        kdTree.insertAll(listOf(DataPoint2(doubleArrayOf(0.0, 0.0)), DataPoint2(doubleArrayOf(1.0, 0.0))))
+        assertEquals(kdTree[1], kdTree.findClosestPoint(DataPoint2(doubleArrayOf(0.9, 0.0)), 0.2))
+        assertNull(kdTree.findClosestPoint(DataPoint2(doubleArrayOf(0.5, 0.5)), 0.5))
+        assertTrue(kdTree.delete(DataPoint2(doubleArrayOf(0.0, 0.0))))
+        assertFalse(kdTree.delete(DataPoint2(doubleArrayOf(0.0, 0.0))))
+        assertEquals(1, kdTree.size)
+        assertEquals(kdTree[0], kdTree.findClosestPoint(DataPoint2(doubleArrayOf(0.0, 0.0))))
+    }
+}
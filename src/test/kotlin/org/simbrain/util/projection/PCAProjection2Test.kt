@@ -4,6 +4,7 @@ import org.junit.jupiter.api.Assertions
 import org.junit.jupiter.api.Test
 import org.simbrain.util.math.SimbrainMath
 import java.util.*
+import kotlin.random.Random
 
 class PCAProjection2Test {
     @Test
@@ -37,4 +38,62 @@ class PCAProjection2Test {
         Assertions.assertEquals(middleInterpointDist, interpointDistances[1], 0.01)
         Assertions.assertEquals(largestInterpointDist, interpointDistances[2], 0.01)
     }
-}
\ No newline at end of file
+
+    /**
+     * Points spread along a few directions with different variances, so the principal components are well separated.
+     */
+    private fun anisotropicPoints(n: Int, dimension: Int, random: Random) = List(n) {
+        val a = random.nextDouble(-10.0, 10.0)
+        val b = random.nextDouble(-3.0, 3.0)
+        DoubleArray(dimension) { i -> a * (i % 3 - 1) + b * (i % 2) + random.nextDouble(-0.1, 0.1) }
+    }
+
+    private fun assertSameDistances(expected: Projector2, actual: Projector2) {
+        val expectedDistances = expected.dataset.computeDownstairsDistances()
+        val actualDistances = actual.dataset.computeDownstairsDistances()
+        (expectedDistances.flatten() zip actualDistances.flatten()).forEach { (e, a) ->
+            Assertions.assertEquals(e, a, 1e-3 * (1 + e))
+        }
+    }
+
+    @Test
+    fun `online projection matches refit after realignment`() {
+        val points = anisotropicPoints(300, 10, Random(1))
+        val batch = Projector2(10)
+        points.forEach { batch.addDataPoint(it) }
+        batch.init()
+
+        val pca = PCAProjection2().apply {
+            online = true
+            realignmentInterval = 0
+        }
+        val online = Projector2(10).apply { projectionMethod = pca }
+        points.forEach { online.addDataPoint(it) }
+        Assertions.assertFalse(pca.realignmentDue)
+        pca.realign(online.dataset)
+        assertSameDistances(batch, online)
+    }
+
+    @Test
+    fun `online points are projected onto tracked components`() {
+        val random = Random(2)
+        val pca = PCAProjection2().apply {
+            online = true
+            realignmentInterval = 0
+        }
+        val online = Projector2(10).apply { projectionMethod = pca }
+        anisotropicPoints(100, 10, random).forEach { online.addDataPoint(it) }
+        pca.realign(online.dataset)
+
+        // New points from the same distribution are projected close to where a refit would put them
+        anisotropicPoints(100, 10, random).forEach { online.addDataPoint(it) }
+        val batch = Projector2(10)
+        online.dataset.kdTree.forEach { batch.addDataPoint(it.upstairsPoint) }
+        batch.init()
+        val expected = batch.dataset.computeDownstairsDistances()
+        val actual = online.dataset.computeDownstairsDistances()
+        val error = (expected.flatten() zip actual.flatten()).sumOf { (e, a) -> Math.abs(e - a) }
+        val total = expected.flatten().sum()
+        Assertions.assertTrue(error < 0.05 * total, "relative error ${error / total}")
+    }
+}
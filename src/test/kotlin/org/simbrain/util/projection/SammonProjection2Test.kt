@@ -0,0 +1,105 @@
+package org.simbrain.util.projection
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.simbrain.util.euclideanDistance
+import kotlin.math.pow
+import kotlin.random.Random
+
+class SammonProjection2Test {
+
+    val random = Random(1)
+
+    val sammon = SammonProjection2().apply { epsilon = 1.0 }
+
+    val projector = Projector2(5).apply { projectionMethod = sammon }
+
+    private fun addPoints(n: Int) = repeat(n) {
+        projector.addDataPoint(DoubleArray(projector.dimension) { random.nextDouble() })
+    }
+
+    /**
+     * An iteration of Sammon's mapping computed with full distance matrices, as before the distances were packed.
+     * Returns the error.
+     */
+    private fun referenceIterate(upstairs: List<DoubleArray>, downstairs: List<DoubleArray>): Double {
+        val upstairsDistances = upstairs.map { a -> upstairs.map { b -> a.euclideanDistance(b) } }
+        val upstairsDistanceSum = upstairsDistances.sumOf { it.sum() }
+        val downstairsDistances = downstairs.map { a -> downstairs.map { b -> a.euclideanDistance(b) } }
+        downstairs.forEachIndexed { j, p1 ->
+            var partialSum = 0.0
+            for (d in p1.indices) {
+                downstairs.forEachIndexed { i, p2 ->
+                    if (i != j) {
+                        partialSum += ((upstairsDistances[i][j] - downstairsDistances[i][j]) * (p2[d] - p1[d])) /
+                                upstairsDistances[i][j] / downstairsDistances[i][j]
+                    }
+                }
+                p1[d] = p1[d] - ((sammon.epsilon * 2 * partialSum) / upstairsDistanceSum)
+            }
+        }
+        var error = 0.0
+        for (i in upstairs.indices) {
+            for (j in i + 1 until upstairs.size) {
+                error += (upstairsDistances[i][j] - downstairsDistances[i][j]).pow(2) / upstairsDistances[i][j]
+            }
+        }
+        return error
+    }
+
+    private fun assertMatchesReference(iterations: Int) {
+        val upstairs = projector.dataset.kdTree.map { it.upstairsPoint }
+        val downstairs = projector.dataset.kdTree.map { it.downstairsPoint.copyOf() }
+        repeat(iterations) {
+            val error = referenceIterate(upstairs, downstairs)
+            sammon.iterate(projector.dataset)
+            assertEquals(error, sammon.error, 1e-9 * error)
+        }
+        (downstairs zip projector.dataset.kdTree.map { it.downstairsPoint }).forEach { (expected, actual) ->
+            assertEquals(expected[0], actual[0], 1e-9 * Math.abs(expected[0]))
+            assertEquals(expected[1], actual[1], 1e-9 * Math.abs(expected[1]))
+        }
+    }
+
+    @Test
+    fun `iterations match full distance matrices as points are added`() {
+        addPoints(40)
+        assertMatchesReference(10)
+        addPoints(20)
+        assertMatchesReference(10)
+    }
+
+    @Test
+    fun `parallel and sampled updates reduce the error`() {
+        addPoints(100)
+        sammon.iterate(projector.dataset)
+        val initialError = sammon.error
+        sammon.parallelUpdate = true
+        repeat(50) { sammon.iterate(projector.dataset) }
+        assertTrue(sammon.error < initialError)
+        val parallelError = sammon.error
+        sammon.sampleSize = 20
+        repeat(50) { sammon.iterate(projector.dataset) }
+        sammon.sampleSize = 0
+        sammon.iterate(projector.dataset)
+        assertTrue(sammon.error < parallelError)
+    }
+
+    @Test
+    fun `distances are recomputed for a new dataset`() {
+        addPoints(30)
+        sammon.iterate(projector.dataset)
+        projector.dimension = 5
+        addPoints(30)
+        assertMatchesReference(5)
+    }
+
+    @Test
+    fun `packed distances fail past the supported number of points`() {
+        assertThrows<IllegalArgumentException> {
+            PackedDistanceMatrix().fill(PackedDistanceMatrix.MAX_POINTS + 1) { _, _ -> 1.0 }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.simbrain.util.projection
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.simbrain.util.euclideanDistance
+import kotlin.random.Random
+
+class TSNEProjectionTest {
+
+    val random = Random(1)
+
+    val centers = List(4) { DoubleArray(10) { random.nextDouble(-10.0, 10.0) } }
+
+    private fun clusterPoint(cluster: Int) = DataPoint2(
+        DoubleArray(10) { centers[cluster][it] + random.nextDouble(-1.0, 1.0) },
+        label = "$cluster"
+    )
+
+    /**
+     * Fraction of points whose closest point downstairs is in the same cluster.
+     */
+    private fun clusterAgreement(points: List<DataPoint2>) = points.count { point ->
+        val closest = points.filter { it !== point }
+            .minByOrNull { it.downstairsPoint.euclideanDistance(point.downstairsPoint) }!!
+        closest.label == point.label
+    }.toDouble() / points.size
+
+    @Test
+    fun `Barnes-Hut t-SNE separates clusters`() {
+        val kdTree = KDTree(10)
+        repeat(400) { kdTree.insert(clusterPoint(it % 4)) }
+        val tsne = BarnesHutTSNE(kdTree, perplexity = 10.0)
+        tsne.update(300)
+        val cost = tsne.cost
+        tsne.update(100)
+        assertTrue(tsne.cost < cost)
+        tsne.updateDownstairs()
+        assertTrue(clusterAgreement(kdTree.toList()) > 0.95)
+    }
+
+    @Test
+    fun `Barnes-Hut approximation is close to exact gradient`() {
+        val kdTree = KDTree(10)
+        repeat(200) { kdTree.insert(clusterPoint(it % 4)) }
+        val exact = BarnesHutTSNE(kdTree, perplexity = 10.0, theta = 0.0)
+        val approximate = BarnesHutTSNE(kdTree, perplexity = 10.0, theta = 0.5)
+        exact.update(50)
+        approximate.update(50)
+        assertEquals(exact.cost, approximate.cost, 0.05 * exact.cost)
+    }
+
+    @Test
+    fun `added points start near their neighbors`() {
+        val projector = Projector2(10)
+        val tsne = TSNEProjection().apply { perplexity = 10.0 }
+        repeat(200) { projector.addDataPoint(clusterPoint(it % 4)) }
+        projector.projectionMethod = tsne
+        repeat(30) { tsne.iterate(projector.dataset) }
+        repeat(8) { projector.addDataPoint(clusterPoint(it % 4)) }
+        assertTrue(clusterAgreement(projector.dataset.kdTree.toList()) > 0.95)
+        tsne.iterate(projector.dataset)
+        assertTrue(tsne.error > 0)
+    }
+}
@@ -0,0 +1,93 @@
+package org.simbrain.util.projection
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotNull
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.simbrain.util.euclideanDistance
+import kotlin.random.Random
+
+class UMAPProjection2Test {
+
+    val random = Random(1)
+
+    val centers = List(4) { DoubleArray(20) { random.nextDouble(-10.0, 10.0) } }
+
+    private fun clusterPoint(cluster: Int) = DataPoint2(
+        DoubleArray(20) { centers[cluster][it] + random.nextDouble(-1.0, 1.0) },
+        label = "$cluster"
+    )
+
+    /**
+     * Fraction of points whose closest point downstairs is in the same cluster.
+     */
+    private fun clusterAgreement(points: List<DataPoint2>) = points.count { point ->
+        val closest = points.filter { it !== point }
+            .minByOrNull { it.downstairsPoint.euclideanDistance(point.downstairsPoint) }!!
+        closest.label == point.label
+    }.toDouble() / points.size
+
+    /**
+     * Fraction of the exact nearest neighbors, found with the kd-tree, that the graph has found.
+     */
+    private fun recall(graph: NeighborGraph, kdTree: KDTree): Double {
+        val found = (0 until kdTree.size).sumOf { i ->
+            val exact = kdTree.findClosestNIndices(kdTree[i], graph.k + 1).filter { it != i }.take(graph.k)
+            exact.intersect(graph.neighbors(i).toSet()).size
+        }
+        return found.toDouble() / (kdTree.size * graph.k)
+    }
+
+    @Test
+    fun `neighbor descent finds most nearest neighbors`() {
+        val kdTree = KDTree(20)
+        repeat(500) { kdTree.insert(clusterPoint(it % 4)) }
+        val graph = NeighborGraph(kdTree, 10)
+        assertTrue(graph.converged)
+        assertTrue(recall(graph, kdTree) > 0.9)
+    }
+
+    @Test
+    fun `neighbor graph is updated as points are added`() {
+        val kdTree = KDTree(20)
+        repeat(100) { kdTree.insert(clusterPoint(it % 4)) }
+        val graph = NeighborGraph(kdTree, 10)
+        repeat(400) { kdTree.insert(clusterPoint(it % 4)) }
+        graph.addPoints()
+        assertEquals(500, graph.size)
+        assertTrue(graph.isCurrent)
+        while (!graph.converged) {
+            graph.refine()
+        }
+        assertTrue(recall(graph, kdTree) > 0.9)
+    }
+
+    @Test
+    fun `UMAP separates clusters`() {
+        val projector = Projector2(20)
+        repeat(400) { projector.addDataPoint(clusterPoint(it % 4)) }
+        val umap = UMAPProjection2()
+        projector.projectionMethod = umap
+        repeat(40) { umap.iterate(projector.dataset) }
+        assertTrue(umap.error > 0)
+        assertTrue(clusterAgreement(projector.dataset.kdTree.toList()) > 0.95)
+    }
+
+    @Test
+    fun `added and transformed points are placed in their cluster`() {
+        val projector = Projector2(20)
+        val umap = UMAPProjection2()
+        projector.projectionMethod = umap
+        repeat(200) { projector.addDataPoint(clusterPoint(it % 4)) }
+        repeat(40) { umap.iterate(projector.dataset) }
+        repeat(8) { projector.addDataPoint(clusterPoint(it % 4)) }
+        assertTrue(clusterAgreement(projector.dataset.kdTree.toList()) > 0.95)
+
+        val points = projector.dataset.kdTree.toList()
+        val transformed = umap.transform(projector.dataset, clusterPoint(2).upstairsPoint)
+        assertNotNull(transformed)
+        val closest = points.minByOrNull { it.downstairsPoint.euclideanDistance(transformed!!) }!!
+        assertEquals("2", closest.label)
+        assertEquals(208, projector.dataset.kdTree.size)
+    }
+}
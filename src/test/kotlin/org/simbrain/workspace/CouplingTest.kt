@@ -1,6 +1,7 @@
 package org.simbrain.workspace
 
 
+import org.junit.jupiter.api.Assertions.assertArrayEquals
 import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Test
@@ -9,6 +10,7 @@ import org.simbrain.network.core.Network
 import org.simbrain.network.core.Neuron
 import org.simbrain.util.complement
 import org.simbrain.workspace.couplings.Coupling
+import org.simbrain.workspace.couplings.PARALLEL_COUPLING_THRESHOLD
 
 class CouplingTest {
 
@@ -241,4 +243,50 @@ class CouplingTest {
         assertEquals(.5, neuron2.activation, 0.0)
         assertEquals(.5, neuron3.activation, 0.0)
     }
+
+    @Test
+    fun `test many to one with enough couplings to update in parallel`() {
+        val sources = List(600) { Neuron(network).apply { forceSetActivation(it / 1000.0) } }
+        network.addNetworkModelsAsync(sources)
+        val network2 = Network()
+        workspace.addWorkspaceComponent(NetworkComponent("net2", network2))
+        val targets = List(200) { Neuron(network2) }
+        network2.addNetworkModelsAsync(targets)
+
+        // Each target gets the activations of three sources
+        with(couplingManager) {
+            sources.forEachIndexed { i, source ->
+                source.getProducer("getActivation") couple targets[i % targets.size].getConsumer("addInputValue")
+            }
+        }
+        assertTrue(couplingManager.couplings.size >= PARALLEL_COUPLING_THRESHOLD)
+
+        workspace.simpleIterate()
+        targets.forEachIndexed { i, target ->
+            assertEquals((i + (i + 200) + (i + 400)) / 1000.0, target.activation, 1e-12)
+        }
+    }
+
+    class ArrayContainer : AttributeContainer {
+        override val id = "Array"
+
+        @get:Producible
+        var values = doubleArrayOf()
+
+        @Consumable
+        fun setValuesArray(values: DoubleArray) {
+            this.values = values
+        }
+    }
+
+    @Test
+    fun `test array coupling`() {
+        val source = ArrayContainer().apply { values = doubleArrayOf(1.0, 2.0, 3.0) }
+        val target = ArrayContainer()
+        val coupling = with(couplingManager) {
+            source.getProducer("getValues") couple target.getConsumer("setValuesArray")
+        }
+        coupling.update()
+        assertArrayEquals(doubleArrayOf(1.0, 2.0, 3.0), target.values)
+    }
 }
@@ -0,0 +1,111 @@
+package org.simbrain.workspace
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.simbrain.network.NetworkComponent
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.Synapse
+import org.simbrain.workspace.updater.DependencyGraphUpdate
+import org.simbrain.workspace.updater.UpdateAllAction
+
+class DependencyGraphUpdateTest {
+
+    private val workspace = Workspace()
+
+    private fun addNetwork(name: String) = Network().also { workspace.addWorkspaceComponent(NetworkComponent(name, it)) }
+
+    private fun addNeuron(network: Network) = Neuron(network).also { network.addNetworkModelAsync(it) }
+
+    private fun couple(source: Neuron, target: Neuron) = with(workspace.couplingManager) {
+        source.getProducer("getActivation") couple target.getConsumer("addInputValue")
+    }
+
+    private fun useDependencyGraphUpdate() = DependencyGraphUpdate(workspace.updater).also {
+        workspace.updater.updateManager.clear()
+        workspace.updater.updateManager.addAction(it)
+    }
+
+    @Test
+    fun `components are grouped into cycles and sorted by couplings`() {
+        val a = addNeuron(addNetwork("a"))
+        val b = addNeuron(addNetwork("b"))
+        val c = addNeuron(addNetwork("c"))
+        val d = addNeuron(addNetwork("d"))
+        couple(b, d)
+        couple(a, b)
+        couple(d, b)
+
+        val schedule = useDependencyGraphUpdate().currentSchedule
+        val names = schedule.nodes.map { node -> node.components.map { it.name } }
+        assertEquals(3, names.size)
+        assertTrue(names.indexOf(listOf("a")) < names.indexOf(listOf("b", "d")))
+        assertTrue(listOf("c") in names)
+        val cycle = schedule.nodes.first { it.isCycle }
+        assertEquals(listOf("a"), cycle.predecessors.map { it.name })
+        assertEquals(3, cycle.couplings.size)
+        assertTrue(schedule.nodes.filter { it !== cycle }.none { it.isCycle || it.couplings.isNotEmpty() })
+    }
+
+    @Test
+    fun `values propagate along a chain within one iteration`() {
+        val network1 = addNetwork("net1")
+        val input = addNeuron(network1).apply {
+            isClamped = true
+            forceSetActivation(1.0)
+        }
+        val hidden = addNeuron(network1)
+        network1.addNetworkModelAsync(Synapse(input, hidden, 1.0))
+        val output = addNeuron(addNetwork("net2"))
+        couple(hidden, output)
+        val action = useDependencyGraphUpdate()
+
+        workspace.simpleIterate()
+        assertEquals(1.0, hidden.activation, 0.0)
+        assertEquals(1.0, output.activation, 0.0)
+        val (path, _) = action.criticalPath
+        assertEquals(listOf("net1", "net2"), path.map { it.name })
+        assertTrue(action.describeSchedule().last().startsWith("Critical path: net1 > net2"))
+    }
+
+    @Test
+    fun `cycles are updated like update all`() {
+        fun run(useGraph: Boolean): List<Pair<Double, Double>> {
+            val workspace = Workspace()
+            fun addNeuron(name: String) = Network().let { network ->
+                workspace.addWorkspaceComponent(NetworkComponent(name, network))
+                Neuron(network).also { network.addNetworkModelAsync(it) }
+            }
+            val n1 = addNeuron("net1").apply { forceSetActivation(1.0) }
+            val n2 = addNeuron("net2")
+            with(workspace.couplingManager) {
+                n1.getProducer("getActivation") couple n2.getConsumer("addInputValue")
+                n2.getProducer("getActivation") couple n1.getConsumer("addInputValue")
+            }
+            workspace.updater.updateManager.clear()
+            workspace.updater.updateManager.addAction(
+                if (useGraph) DependencyGraphUpdate(workspace.updater) else UpdateAllAction(workspace.updater)
+            )
+            return List(4) {
+                workspace.simpleIterate()
+                n1.activation to n2.activation
+            }
+        }
+        val expected = run(false)
+        assertEquals(listOf(0.0 to 1.0, 1.0 to 0.0, 0.0 to 1.0, 1.0 to 0.0), expected)
+        assertEquals(expected, run(true))
+    }
+
+    @Test
+    fun `schedule is rebuilt when couplings change`() {
+        val a = addNeuron(addNetwork("a"))
+        val b = addNeuron(addNetwork("b"))
+        val action = useDependencyGraphUpdate()
+        val first = action.currentSchedule
+        assertSame(first, action.currentSchedule)
+        couple(a, b)
+        val second = action.currentSchedule
+        assertNotSame(first, second)
+        assertEquals(listOf("a"), second.nodes.last().predecessors.map { it.name })
+    }
+}
@@ -0,0 +1,104 @@
+package org.simbrain.workspace
+
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.simbrain.network.NetworkComponent
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.workspace.updater.LatencyHistogram
+import org.simbrain.workspace.updater.PerformanceMonitor
+import java.io.File
+import java.lang.management.ManagementFactory
+
+class PerformanceMonitorTest {
+
+    @AfterEach
+    fun tearDown() {
+        PerformanceMonitor.metricsEnabled = false
+        PerformanceMonitor.resetMetrics()
+    }
+
+    @Test
+    fun `bucket bounds contain their values`() {
+        for (value in listOf(0L, 1L, 31L, 32L, 33L, 63L, 64L, 1000L, 123_456_789L, Long.MAX_VALUE)) {
+            val index = LatencyHistogram.indexOf(value)
+            assertTrue(LatencyHistogram.lowerBound(index) <= value, "$value")
+            if (value < Long.MAX_VALUE) {
+                assertTrue(value < LatencyHistogram.lowerBound(index + 1), "$value")
+            }
+        }
+    }
+
+    @Test
+    fun `percentiles are within bucket precision`() {
+        val histogram = LatencyHistogram("test")
+        for (i in 1..10_000L) {
+            histogram.record(i * 1000)
+        }
+        assertEquals(10_000, histogram.count)
+        assertEquals(5_000_000.0, histogram.percentile(.5).toDouble(), 5_000_000 * .04)
+        assertEquals(9_900_000.0, histogram.percentile(.99).toDouble(), 9_900_000 * .04)
+        assertEquals(10_000_000, histogram.max)
+        assertEquals(5_000_500.0, histogram.mean, 1e-6)
+    }
+
+    @Test
+    fun `recording does not allocate`() {
+        val threads = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+        val histogram = LatencyHistogram("test")
+        repeat(100_000) { histogram.record(it.toLong()) }
+        val before = threads.getThreadAllocatedBytes(Thread.currentThread().id)
+        repeat(1_000_000) { histogram.record(it * 31L) }
+        val allocated = threads.getThreadAllocatedBytes(Thread.currentThread().id) - before
+        assertTrue(allocated < 10_000, "Allocated $allocated bytes")
+    }
+
+    @Test
+    fun `metrics count workspace updates and actions`(@TempDir dir: File) {
+        val workspace = Workspace()
+        val network = Network()
+        workspace.addWorkspaceComponent(NetworkComponent("net", network))
+        network.addNetworkModelAsync(Neuron(network))
+        PerformanceMonitor.metricsEnabled = true
+        repeat(5) { workspace.simpleIterate() }
+
+        val snapshot = PerformanceMonitor.snapshot()
+        assertEquals(5, snapshot.updates)
+        assertTrue(snapshot.updatesPerSecond > 0)
+        val names = snapshot.latencies.associateBy { it.name }
+        assertEquals(5, names[PerformanceMonitor.WORKSPACE_UPDATE]!!.count)
+        assertEquals(5, names[PerformanceMonitor.COUPLINGS]!!.count)
+        assertEquals(5, names["Updating Component net"]!!.count)
+
+        val csv = File(dir, "metrics.csv")
+        PerformanceMonitor.dump(csv)
+        PerformanceMonitor.dump(csv)
+        val lines = csv.readLines()
+        assertEquals(1 + 2 * snapshot.latencies.size, lines.size)
+        assertTrue(lines.any { it.contains(",Workspace update,5,") })
+
+        val json = File(dir, "metrics.json")
+        PerformanceMonitor.dump(json)
+        val text = json.readText()
+        assertTrue(text.startsWith("{\"timeMillis\":"))
+        assertTrue(text.contains("\"name\":\"Workspace update\",\"count\":5,"))
+    }
+
+    @Test
+    fun `histograms of discarded identifiers are dropped`() {
+        var identifier: Any? = Any()
+        PerformanceMonitor.histogram(identifier!!, "Discarded").record(1000)
+        assertTrue(PerformanceMonitor.snapshot().latencies.any { it.name == "Discarded" })
+        identifier = null
+        repeat(20) {
+            if (PerformanceMonitor.snapshot().latencies.none { it.name == "Discarded" }) {
+                return
+            }
+            System.gc()
+            Thread.sleep(50)
+        }
+        fail<Unit>("Histogram of a discarded identifier was kept")
+    }
+}
@@ -1,8 +1,18 @@
 package org.simbrain.workspace
 
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
 import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.simbrain.workspace.serialization.WorkspaceSerializer
+import org.simbrain.world.odorworld.OdorWorldComponent
+import org.simbrain.world.odorworld.entities.EntityType
+import java.io.File
 
 /**
  * Also see [WorkspaceTest] for java based test
@@ -51,4 +61,72 @@ class WorkspaceTestKt {
         assertEquals(11, counter)
     }
 
-}
\ No newline at end of file
+    @Test
+    fun `tasks between updates do not overlap an update`() {
+        var updating = false
+        var overlaps = 0
+        workspace.addUpdateAction("update") {
+            updating = true
+            Thread.sleep(1)
+            updating = false
+        }
+        runBlocking {
+            val run = launch { workspace.iterateSuspend(50) }
+            repeat(20) {
+                workspace.updater.betweenUpdates { if (updating) overlaps++ }
+            }
+            run.join()
+        }
+        assertEquals(0, overlaps)
+    }
+
+    @Test
+    fun `tasks between updates wait for an update that was stopped`() {
+        val started = CompletableDeferred<Unit>()
+        var updating = false
+        var overlaps = 0
+        workspace.addUpdateAction("slow update") {
+            updating = true
+            started.complete(Unit)
+            Thread.sleep(200)
+            updating = false
+        }
+        runBlocking {
+            val run = launch(Dispatchers.Default) { workspace.updater.run() }
+            started.await()
+            workspace.updater.stop()
+            withTimeout(5000) {
+                workspace.updater.betweenUpdates { if (updating) overlaps++ }
+            }
+            run.join()
+            withTimeout(5000) {
+                workspace.updater.betweenUpdates { if (updating) overlaps++ }
+            }
+        }
+        assertEquals(0, overlaps)
+    }
+
+    @Test
+    fun `save in background while running`(@TempDir dir: File) {
+        val world = OdorWorldComponent("world").also { workspace.addWorkspaceComponent(it) }.world
+        repeat(3) { world.addEntity(EntityType.SWISS) }
+        val file = File(dir, "workspace.zip")
+        runBlocking {
+            val run = launch { workspace.iterateSuspend(100) }
+            workspace.saveInBackground(file, true).join()
+            run.join()
+        }
+        assertFalse(File(dir, "workspace.zip.tmp").exists())
+        val opened = Workspace()
+        file.inputStream().use { WorkspaceSerializer(opened).deserialize(it, true) }
+        val openedWorld = opened.componentList.filterIsInstance<OdorWorldComponent>().first().world
+        assertEquals(3, openedWorld.entityList.size)
+    }
+
+    @Test
+    fun `save in background clears the change flag`(@TempDir dir: File) {
+        workspace.setWorkspaceChanged(true)
+        runBlocking { workspace.saveInBackground(File(dir, "workspace.zip"), true).join() }
+        assertFalse(workspace.changesExist())
+    }
+}
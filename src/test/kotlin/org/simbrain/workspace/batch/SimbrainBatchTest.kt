@@ -0,0 +1,77 @@
+package org.simbrain.workspace.batch
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.simbrain.network.NetworkComponent
+import org.simbrain.network.core.Network
+import org.simbrain.network.core.Neuron
+import org.simbrain.network.core.Synapse
+import org.simbrain.workspace.Workspace
+import java.io.File
+
+class SimbrainBatchTest {
+
+    @TempDir
+    lateinit var dir: File
+
+    /**
+     * A workspace with a clamped neuron driving a second one through a synapse of strength [strength], and the
+     * description of the second neuron's activation producer.
+     */
+    private fun createWorkspace(strength: Double): Pair<Workspace, String> {
+        val workspace = Workspace()
+        val network = Network()
+        workspace.addWorkspaceComponent(NetworkComponent("net", network))
+        val input = Neuron(network)
+        val output = Neuron(network)
+        network.addNetworkModelsAsync(listOf(input, output, Synapse(input, output, strength)))
+        input.isClamped = true
+        input.forceSetActivation(1.0)
+        val description = with(workspace.couplingManager) { output.getProducer("getActivation").simpleDescription }
+        return workspace to description
+    }
+
+    @Test
+    fun `writes producer values every k iterations`() {
+        val (workspace, description) = createWorkspace(.5)
+        val runner = BatchRunner(
+            BatchOptions(listOf(), iterations = 4, producers = listOf(description), every = 2, outputDirectory = dir)
+        )
+        val result = runner.run(workspace, "half")
+        assertEquals(4, result.iterations)
+        assertEquals(4, workspace.time)
+        assertEquals(listOf("iteration,$description", "2,0.5", "4,0.5"), File(dir, "half.csv").readLines())
+    }
+
+    @Test
+    fun `producers can be qualified by component name`() {
+        val (workspace, description) = createWorkspace(2.0)
+        val runner = BatchRunner(BatchOptions(listOf(), iterations = 1, producers = listOf("net/$description"),
+            outputDirectory = dir))
+        runner.run(workspace, "double")
+        assertEquals(listOf("iteration,$description", "1,2.0"), File(dir, "double.csv").readLines())
+    }
+
+    @Test
+    fun `unknown producers are reported`() {
+        val (workspace, _) = createWorkspace(1.0)
+        val runner = BatchRunner(BatchOptions(listOf(), iterations = 1, producers = listOf("Nothing:Here"),
+            outputDirectory = dir))
+        assertThrows(IllegalArgumentException::class.java) { runner.run(workspace, "net") }
+    }
+
+    @Test
+    fun `parse options`() {
+        val file = File(dir, "net.zip").apply { writeText("") }
+        val options = parseBatchOptions(arrayOf("--iterations", "50", "--producer", "a", "--producer", "b",
+            "--threads", "3", file.path))
+        assertEquals(50, options.iterations)
+        assertEquals(listOf("a", "b"), options.producers)
+        assertEquals(3, options.threads)
+        assertEquals(listOf(file), options.workspaceFiles)
+        assertThrows(IllegalArgumentException::class.java) { parseBatchOptions(arrayOf("--iterations", "5")) }
+        assertThrows(IllegalArgumentException::class.java) { parseBatchOptions(arrayOf("--every", "0", file.path)) }
+    }
+}
@@ -0,0 +1,128 @@
+package org.simbrain.world.odorworld
+
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.simbrain.util.decayfunctions.GaussianDecayFunction
+import org.simbrain.util.decayfunctions.StepDecayFunction
+import org.simbrain.util.environment.SmellSource
+import org.simbrain.util.math.SimbrainMath
+import org.simbrain.util.point
+import org.simbrain.world.odorworld.entities.Bound
+import org.simbrain.world.odorworld.entities.EntityType
+import org.simbrain.world.odorworld.entities.OdorWorldEntity
+import org.simbrain.world.odorworld.sensors.ObjectSensor
+import org.simbrain.world.odorworld.sensors.SmellSensor
+import kotlin.random.Random
+
+class EntityGridTest {
+
+    val world = OdorWorld()
+
+    val random = Random(1)
+
+    /**
+     * Entities scattered over the world, each with a smell sensor and an object sensor. Every third entity has a step
+     * decay function with a larger dispersion, and some smell sources have more dimensions.
+     */
+    private fun populate(n: Int) = List(n) { i ->
+        world.addEntity(
+            random.nextDouble() * world.width, random.nextDouble() * world.height,
+            if (i % 2 == 0) EntityType.MOUSE else EntityType.SWISS
+        ).apply {
+            if (i % 3 == 0) {
+                smellSource.decayFunction = StepDecayFunction().apply { dispersion = 150.0; peakDistance = 20.0 }
+            }
+            if (i % 7 == 0) {
+                smellSource = SmellSource(8)
+            }
+            addSensor(SmellSensor("Smell", 45.0, 10.0))
+            addSensor(ObjectSensor(EntityType.SWISS))
+            heading = random.nextDouble() * 360
+            movement.speed = 5.0
+        }
+    }
+
+    /**
+     * The smell vector computed by scanning every entity, as before the grid.
+     */
+    private fun scannedSmell(sensor: SmellSensor, parent: OdorWorldEntity, size: Int) = world.entityList
+        .filter { it != parent }
+        .map { it.smellSource.getStimulus(SimbrainMath.distance(it.location, sensor.computeAbsoluteLocation(parent))) }
+        .fold(DoubleArray(size), SimbrainMath::addVector)
+
+    private fun scannedObjectValue(sensor: ObjectSensor, parent: OdorWorldEntity): Double {
+        var value = 0.0
+        for (other in world.entityList - parent) {
+            if (other.entityType == EntityType.SWISS) {
+                value += sensor.baseValue * sensor.decayFunction.getScalingFactor(
+                    SimbrainMath.distance(sensor.computeAbsoluteLocation(parent), other.location)
+                )
+            }
+        }
+        return value
+    }
+
+    private fun assertSensorsMatchScan(entities: List<OdorWorldEntity>) {
+        entities.forEach { entity ->
+            val smellSensor = entity.sensors.filterIsInstance<SmellSensor>().single()
+            val objectSensor = entity.sensors.filterIsInstance<ObjectSensor>().single()
+            val previousSize = smellSensor.smellVector.size
+            smellSensor.update(entity)
+            assertArrayEquals(scannedSmell(smellSensor, entity, previousSize), smellSensor.smellVector)
+            objectSensor.update(entity)
+            assertEquals(scannedObjectValue(objectSensor, entity), objectSensor.currentValue)
+            assertEquals(
+                world.entityList.filter { it !== entity && it.location.distance(entity.location) <= 60.0 },
+                entity.getEntitiesInRadius(60.0)
+            )
+        }
+    }
+
+    @Test
+    fun `sensors have the same values as when scanning every entity`() {
+        val entities = populate(300)
+        assertSensorsMatchScan(entities)
+        repeat(20) { world.update() }
+        world.deleteEntity(entities[5])
+        entities[10].location = point(-100.0, 2000.0)
+        assertSensorsMatchScan(entities - entities[5])
+    }
+
+    @Test
+    fun `sources without an effective radius are smelled from anywhere`() {
+        val entities = populate(100)
+        entities[50].smellSource.decayFunction = GaussianDecayFunction(10.0)
+        world.update()
+        assertSensorsMatchScan(entities)
+    }
+
+    @Test
+    fun `nearby collidable objects include every intersecting object`() {
+        world.wrapAround = false
+        val entities = populate(200)
+        repeat(20) {
+            world.update()
+            entities.forEach { entity ->
+                val bound = Bound(entity.x + 3, entity.y - 2, 40.0, 40.0)
+                assertEquals(
+                    world.collidableObjects.filter { bound.intersect(it).intersect },
+                    world.getCollidableObjects(bound).filter { bound.intersect(it).intersect }
+                )
+            }
+        }
+    }
+
+    @Test
+    fun `grid finds entities after they move between cells`() {
+        val grid = EntityGrid(10.0)
+        val entities = List(3) { OdorWorldEntity(world).apply { location = point(it * 25, 0) } }
+        entities.forEach { grid.add(it) }
+        assertEquals(entities.take(2), grid.query(-1.0, -1.0, 30.0, 1.0))
+        entities[2].location = point(5, 0)
+        grid.moved(entities[2])
+        assertEquals(listOf(entities[0], entities[2]), grid.query(-1.0, -1.0, 10.0, 1.0))
+        grid.remove(entities[0])
+        assertEquals(listOf(entities[2]), grid.query(-1.0, -1.0, 10.0, 1.0))
+    }
+}
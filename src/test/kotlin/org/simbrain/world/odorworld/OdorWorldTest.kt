@@ -1,15 +1,20 @@
 package org.simbrain.world.odorworld
 
 import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Assertions.assertArrayEquals
 import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Assertions.assertNotNull
 import org.junit.jupiter.api.Test
+import org.simbrain.util.environment.SmellSource
 import org.simbrain.util.point
+import org.simbrain.util.stats.distributions.NormalDistribution
 import org.simbrain.world.odorworld.entities.EntityType
 import org.simbrain.world.odorworld.entities.OdorWorldEntity
+import org.simbrain.world.odorworld.sensors.SmellSensor
 import java.io.ByteArrayInputStream
 import java.io.InputStream
 import java.nio.charset.StandardCharsets
+import kotlin.random.Random
 
 class OdorWorldTest {
 
@@ -49,4 +54,65 @@ class OdorWorldTest {
         assertEquals(swiss.location, swiss2?.location)
     }
 
-}
\ No newline at end of file
+    @Test
+    fun `parallel sensor update senses every entity before any moves`() {
+        fun createWorld() = OdorWorld().apply {
+            val random = Random(1)
+            repeat(200) {
+                addEntity(random.nextDouble() * width, random.nextDouble() * height, EntityType.MOUSE).apply {
+                    smellSource = SmellSource(DoubleArray(3) { random.nextDouble() })
+                    addSensor(SmellSensor())
+                    heading = random.nextDouble() * 360
+                    movement.speed = 3.0
+                }
+            }
+        }
+        val parallel = createWorld().apply { isParallelSensorUpdate = true }
+        val sequential = createWorld()
+        repeat(10) {
+            parallel.update()
+            sequential.entityList.forEach { it.updateSensors() }
+            sequential.entityList.forEach {
+                it.applyMovement()
+                it.updateEffectors()
+            }
+            (parallel.entityList zip sequential.entityList).forEach { (a, b) ->
+                assertEquals(b.location, a.location)
+                assertArrayEquals(
+                    (b.sensors.single() as SmellSensor).smellVector,
+                    (a.sensors.single() as SmellSensor).smellVector
+                )
+            }
+        }
+    }
+
+    @Test
+    fun `parallel sensor update with noisy smell sources is reproducible`() {
+        fun createWorld() = OdorWorld().apply {
+            isParallelSensorUpdate = true
+            val random = Random(2)
+            repeat(100) { i ->
+                addEntity(random.nextDouble() * width, random.nextDouble() * height, EntityType.MOUSE).apply {
+                    smellSource = SmellSource(DoubleArray(3) { random.nextDouble() }).apply {
+                        isAddNoise = true
+                        randomizer = NormalDistribution(0.0, .1).apply { randomSeed = i }
+                    }
+                    addSensor(SmellSensor())
+                }
+            }
+        }
+        val first = createWorld()
+        val second = createWorld()
+        repeat(5) {
+            first.update()
+            second.update()
+            (first.entityList zip second.entityList).forEach { (a, b) ->
+                assertArrayEquals(
+                    (a.sensors.single() as SmellSensor).smellVector,
+                    (b.sensors.single() as SmellSensor).smellVector
+                )
+            }
+        }
+    }
+
+}
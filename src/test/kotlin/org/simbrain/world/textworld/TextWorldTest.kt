@@ -25,4 +25,18 @@ class TextWorldTest {
         assertEquals("Word1", world.currentItem?.text)
     }
 
+    @Test
+    fun `co-occurrence dictionary is limited to the context dimensions`() {
+        world.contextDimensions = 4
+        world.loadDictionary("The cat can run. The dog can run. A bird can fly. The fish can swim.")
+        assertEquals(4, world.tokenVectorMap.dimension)
+        assertEquals(4, world.tokenVectorMap.get("dog").size)
+    }
+
+    @Test
+    fun `co-occurrence dictionary uses every context by default`() {
+        world.loadDictionary("The cat can run. The dog can run. A bird can fly. The fish can swim.")
+        assertEquals(world.tokenVectorMap.size, world.tokenVectorMap.dimension)
+    }
+
 }
\ No newline at end of file
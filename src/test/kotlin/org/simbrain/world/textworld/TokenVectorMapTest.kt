@@ -1,7 +1,9 @@
 package org.simbrain.world.textworld
 
 import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Test
+import org.simbrain.util.generateSparseCooccurrenceMatrix
 import smile.math.matrix.Matrix
 
 class TokenVectorMapTest {
@@ -14,6 +16,16 @@ class TokenVectorMapTest {
         assertArrayEquals(doubleArrayOf(0.0, 1.0), map.get("B"))
     }
 
+    @Test
+    fun `map from truncated co-occurrences has a dimension per context`() {
+        val cooccurrences = generateSparseCooccurrenceMatrix("The cat can run. The dog can run.", contextDimensions = 3)
+        val map = TokenVectorMap(cooccurrences)
+        assertEquals(3, map.dimension)
+        assertEquals(cooccurrences.tokens.size, map.size)
+        assertEquals(3, map.get("dog").size)
+        assertEquals(3, map.createTableModel().columnCount)
+    }
+
     // TODO: Below is what is happening but not sure we want this
     // @Test
     // fun `test zero vector when token is not in map`() {